@@ -0,0 +1,56 @@
+package drawpad.benchmarks;
+
+import drawpad.Circle;
+import drawpad.EntityStore;
+import drawpad.MovementSystem;
+import drawpad.PhysicsBody;
+import drawpad.PhysicsWorld;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares moving n entities with an EntityStore and MovementSystem against stepping the same number of linked
+ * shapes and bodies with a PhysicsWorld without collisions.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EntityStoreBenchmark {
+    @Param({"10000", "100000"})
+    public int entities;
+
+    private EntityStore store;
+    private PhysicsWorld world;
+
+    @Setup
+    public void setup() {
+        store = new EntityStore();
+        store.addSystem(new MovementSystem(0, 9.81));
+        world = new PhysicsWorld(entities);
+        world.setGravity(0, 9.81);
+        world.setCollisionsEnabled(false);
+        for (int i = 0; i < entities; i++) {
+            Circle circle = new Circle(5, i % 1000, i / 1000.0);
+            PhysicsBody body = new PhysicsBody();
+            body.setMass(1);
+            store.createEntity(circle, body);
+            world.add(circle, body);
+        }
+    }
+
+    @Benchmark
+    public EntityStore entityStoreUpdate() {
+        store.update(1 / 60.0);
+        return store;
+    }
+
+    @Benchmark
+    public PhysicsWorld physicsWorldStep() {
+        world.step(1 / 60.0);
+        return world;
+    }
+}
@@ -0,0 +1,51 @@
+package drawpad.benchmarks;
+
+import drawpad.InputManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.event.KeyEvent;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures InputManager.isKeyDown for a key that has never been pressed, which is the common case in a game
+ * loop polling many keys every frame, and the cost of passing a key press and release through the event buffer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class InputManagerBenchmark {
+    private InputManager input;
+    public int keyCode = KeyEvent.VK_SPACE;
+
+    @Setup
+    public void setup() {
+        input = new InputManager();
+    }
+
+    @Benchmark
+    public boolean isKeyDown() {
+        return input.isKeyDown(keyCode);
+    }
+
+    @Benchmark
+    public int isKeyDownAllKeys() {
+        int down = 0;
+        for (int i = 0; i < 256; i++) {
+            if (input.isKeyDown(i)) {
+                down++;
+            }
+        }
+        return down;
+    }
+
+    @Benchmark
+    public boolean postAndPoll() {
+        input.postKey(keyCode, true);
+        input.postKey(keyCode, false);
+        input.poll();
+        return input.isKeyReleased(keyCode);
+    }
+}
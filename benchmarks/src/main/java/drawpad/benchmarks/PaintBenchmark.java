@@ -0,0 +1,72 @@
+package drawpad.benchmarks;
+
+import drawpad.AbstractWindow;
+import drawpad.Circle;
+import drawpad.Rectangle;
+import drawpad.Triangle;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paints a window holding a mix of circles, rectangles and triangles into an offscreen BufferedImage, which
+ * goes through AbstractWindow.paintComponent exactly like a repaint on screen. The shapes are spread over an
+ * area four times the size of the image, so culling has work to do.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class PaintBenchmark {
+    private static final int SIZE = 800; // Width and height of the image
+    private static final Color[] COLORS = {Color.RED, Color.GREEN, Color.BLUE, Color.ORANGE, Color.MAGENTA};
+
+    @Param({"1000", "10000", "100000"})
+    public int shapes;
+
+    @Param({"false", "true"})
+    public boolean batched;
+
+    private AbstractWindow window;
+    private BufferedImage image;
+    private Graphics2D graphics;
+
+    @Setup
+    public void setup() {
+        window = new AbstractWindow() {
+        };
+        window.setSize(SIZE, SIZE);
+        window.setBatchedRendering(batched);
+        Random random = new Random(42);
+        for (int i = 0; i < shapes; i++) {
+            Color color = COLORS[random.nextInt(COLORS.length)];
+            double x = random.nextDouble() * SIZE * 2 - SIZE / 2.0;
+            double y = random.nextDouble() * SIZE * 2 - SIZE / 2.0;
+            double size = 4 + random.nextDouble() * 28;
+            double rotation = random.nextDouble() * 360;
+            switch (i % 3) {
+                case 0 -> window.addShape(new Circle(color, size / 2, x, y));
+                case 1 -> window.addShape(new Rectangle(color, size, size * 0.75, x, y, rotation));
+                default -> window.addShape(new Triangle(color, size, x, y, rotation));
+            }
+        }
+        image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+        graphics = image.createGraphics();
+    }
+
+    @TearDown
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage paint() {
+        window.paint(graphics);
+        return image;
+    }
+}
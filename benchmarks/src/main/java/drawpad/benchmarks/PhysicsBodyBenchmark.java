@@ -0,0 +1,42 @@
+package drawpad.benchmarks;
+
+import drawpad.PhysicsBody;
+import drawpad.Vector2D;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures PhysicsBody.applyGravity, once returning a new position and once writing into an existing vector.
+ * The velocity is reset before every iteration so it does not grow without bound.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PhysicsBodyBenchmark {
+    private PhysicsBody body;
+    private Vector2D position;
+    private Vector2D gravity;
+    private Vector2D dst;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        body = new PhysicsBody();
+        position = new Vector2D(100, 100);
+        gravity = new Vector2D(0, 9.81);
+        dst = new Vector2D(0, 0);
+    }
+
+    @Benchmark
+    public Vector2D applyGravity() {
+        return body.applyGravity(position, gravity);
+    }
+
+    @Benchmark
+    public Vector2D applyGravityInto() {
+        return body.applyGravity(position, gravity, dst);
+    }
+}
@@ -0,0 +1,88 @@
+package drawpad.benchmarks;
+
+import drawpad.Vector2D;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the allocating Vector2D operations with their in-place counterparts.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class Vector2DBenchmark {
+    private Vector2D a;
+    private Vector2D b;
+    private Vector2D dst;
+
+    @Setup
+    public void setup() {
+        a = new Vector2D(3, 4);
+        b = new Vector2D(-1.5, 2.25);
+        dst = new Vector2D(0, 0);
+    }
+
+    @Benchmark
+    public Vector2D add() {
+        return a.add(b);
+    }
+
+    @Benchmark
+    public Vector2D addInto() {
+        return a.addInto(b, dst);
+    }
+
+    @Benchmark
+    public Vector2D scale() {
+        return a.scalarMultiply(1.5);
+    }
+
+    @Benchmark
+    public Vector2D scaleInto() {
+        return a.scaleInto(1.5, dst);
+    }
+
+    @Benchmark
+    public Vector2D normalize() {
+        return a.normalize();
+    }
+
+    @Benchmark
+    public Vector2D normalizeInto() {
+        return a.normalizeInto(dst);
+    }
+
+    @Benchmark
+    public Vector2D rotate() {
+        return Vector2D.rotate(a, 0.5);
+    }
+
+    @Benchmark
+    public Vector2D rotateInto() {
+        return a.rotateInto(0.5, dst);
+    }
+
+    @Benchmark
+    public double dotProduct() {
+        return Vector2D.dotProduct(a, b);
+    }
+
+    @Benchmark
+    public double magnitude() {
+        return a.magnitude();
+    }
+
+    @Benchmark
+    public Vector2D lerp() {
+        return Vector2D.lerp(a, b, 0.25);
+    }
+
+    @Benchmark
+    public Vector2D lerpInto() {
+        return a.lerpInto(b, 0.25, dst);
+    }
+}
@@ -15,7 +15,6 @@ public class PanelDemo extends Window {
     @Override
     public void update() {
         circle.setRadius(circle.getRadius()+1);
-        repaint();
     }
 
     public static void main(String[] args){
@@ -1,6 +1,8 @@
 package drawpad;
 
 import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
 
 /**
  * This abstract class represents a generic shape and serves as a base class for concrete shape implementations.
@@ -12,7 +14,21 @@ public abstract class AbstractShape implements Shape {
     private double pos_x; // The x-coordinate of the shape's position
     private double pos_y; // The y-coordinate of the shape's position
     private double rotation; // The rotation for the shape(in radians)
+    private int zOrder; // The z-order used by batched rendering, lower values are drawn first
+    private ShapeListener[] listeners; // Listeners notified when the shape changes, null if there are none
+    private Rectangle2D.Double bounds; // Cached bounding box, created on first use
+    private boolean boundsValid; // Whether the cached bounding box matches the current state
+    private volatile AffineTransform localTransform; // Cached transform used by drawLocal, null when out of date
+    private volatile java.awt.Shape localOutline; // Cached outline in local coordinates, null when the size changed
+    private volatile Outline outline; // Cached outline in window coordinates, null when out of date
+    long sequence; // Order in which the shape was added to its window, used to keep draw order after culling
 
+    /**
+     * The outline of the shape in window coordinates together with its bounding box, published as one object so
+     * that readers on other threads never see one without the other.
+     */
+    private record Outline(java.awt.Shape shape, Rectangle2D bounds) {
+    }
 
     /**
      * Constructor to create an AbstractShape object with a specified color and position.
@@ -146,8 +162,23 @@ public abstract class AbstractShape implements Shape {
      * @param position the new position of the shape
      */
     public void setPosition(Vector2D position) {
+        fireShapeWillChange();
         this.pos_x = position.x;
         this.pos_y = position.y;
+        fireShapeMoved();
+    }
+
+    /**
+     * Sets the position of the shape. Listeners are notified once for both coordinates.
+     *
+     * @param pos_x the new x-coordinate of the shape's position
+     * @param pos_y the new y-coordinate of the shape's position
+     */
+    public void setPosition(double pos_x, double pos_y) {
+        fireShapeWillChange();
+        this.pos_x = pos_x;
+        this.pos_y = pos_y;
+        fireShapeMoved();
     }
 
     /**
@@ -165,7 +196,9 @@ public abstract class AbstractShape implements Shape {
      * @param pos_x the new x-coordinate of the shape's position
      */
     public void setPos_x(double pos_x) {
+        fireShapeWillChange();
         this.pos_x = pos_x;
+        fireShapeMoved();
     }
 
     /**
@@ -183,7 +216,9 @@ public abstract class AbstractShape implements Shape {
      * @param pos_y the new y-coordinate of the shape's position
      */
     public void setPos_y(double pos_y) {
+        fireShapeWillChange();
         this.pos_y = pos_y;
+        fireShapeMoved();
     }
 
     /**
@@ -201,7 +236,9 @@ public abstract class AbstractShape implements Shape {
      * @param rotation the new rotation angle of the rectangle
      */
     public void setRotation(double rotation) {
+        fireShapeWillChange();
         this.rotation = rotation;
+        fireShapeMoved();
     }
 
     /**
@@ -213,6 +250,27 @@ public abstract class AbstractShape implements Shape {
         return rotation;
     }
 
+    /**
+     * Sets the z-order of the shape. With batched rendering, shapes with a lower z-order are drawn first and
+     * shapes with the same z-order may be drawn in any order.
+     *
+     * @param zOrder the new z-order of the shape
+     */
+    public void setZOrder(int zOrder) {
+        fireShapeWillChange();
+        this.zOrder = zOrder;
+        fireAppearanceChanged();
+    }
+
+    /**
+     * Returns the z-order of the shape.
+     *
+     * @return the z-order of the shape
+     */
+    public int getZOrder() {
+        return zOrder;
+    }
+
     /**
      * Abstract method to resize the shape by a given factor.
      * Concrete subclasses must implement this method.
@@ -221,6 +279,176 @@ public abstract class AbstractShape implements Shape {
      */
     public abstract void resize(double factor);
 
+    /**
+     * Returns the axis-aligned bounding box of the shape, taking its rotation into account.
+     * The box is computed once and cached until the shape changes, so calling this method is cheap.
+     * The returned rectangle must not be modified.
+     *
+     * @return the bounding box of the shape
+     */
+    @Override
+    public Rectangle2D getBounds() {
+        if (bounds == null) {
+            bounds = new Rectangle2D.Double();
+        }
+        if (!boundsValid) {
+            computeBounds(bounds);
+            boundsValid = true;
+        }
+        return bounds;
+    }
+
+    /**
+     * Abstract method to calculate the axis-aligned bounding box of the shape, taking its rotation into account.
+     * Concrete subclasses must implement this method.
+     *
+     * @param bounds the rectangle to store the bounding box in
+     */
+    protected abstract void computeBounds(Rectangle2D.Double bounds);
+
+    /**
+     * Returns the transform from the coordinates drawLocal draws in to the coordinates the shape is positioned in,
+     * so that drawing with this transform applied and calling drawLocal draws the shape exactly like draw does.
+     * The transform is computed once and replaced by a new object when the shape changes, so comparing the
+     * returned object with an earlier one tells whether the shape changed. The returned transform must not be
+     * modified.
+     *
+     * @return the local transform of the shape
+     */
+    public AffineTransform getLocalTransform() {
+        AffineTransform transform = localTransform;
+        if (transform == null) {
+            transform = new AffineTransform();
+            computeLocalTransform(transform);
+            localTransform = transform;
+        }
+        return transform;
+    }
+
+    /**
+     * Calculates the transform returned by getLocalTransform. The default implementation leaves the transform
+     * at identity, which suits shapes whose drawLocal is the same as draw.
+     *
+     * @param transform the transform to store the result in, set to identity
+     */
+    protected void computeLocalTransform(AffineTransform transform) {
+    }
+
+    /**
+     * Draws the shape in its local coordinates, with getLocalTransform already applied to the Graphics object.
+     * It is used by SceneNode, which draws every shape with a single precomputed transform. The default
+     * implementation calls draw.
+     *
+     * @param g the Graphics object on which to draw the shape
+     */
+    protected void drawLocal(Graphics2D g) {
+        draw(g);
+    }
+
+    /**
+     * Returns the outline of the shape in its local coordinates, the ones drawLocal draws in. The outline follows
+     * the pixels the shape draws rather than its exact size, for example the width of a rectangle is rounded down
+     * like it is by fillRect, so it matches the drawn shape up to the pixels along its edges. It is computed once
+     * and only replaced when the size of the shape changes; moving or rotating the shape keeps it. The returned
+     * shape must not be modified.
+     *
+     * @return the local outline, or null if the shape does not provide one
+     */
+    public java.awt.Shape getLocalOutline() {
+        java.awt.Shape shape = localOutline;
+        if (shape == null) {
+            shape = computeLocalOutline();
+            localOutline = shape;
+        }
+        return shape;
+    }
+
+    /**
+     * Calculates the outline returned by getLocalOutline. It must only depend on the size of the shape, not on
+     * its position or rotation, which getLocalTransform takes care of. The default implementation returns null,
+     * in which case the bounding box is used as the outline.
+     *
+     * @return the outline in local coordinates, or null
+     */
+    protected java.awt.Shape computeLocalOutline() {
+        return null;
+    }
+
+    /**
+     * Returns the outline of the shape in window coordinates, for precise picking and intersection tests.
+     * It is built from the local outline and transform when first needed and cached until the shape is moved,
+     * rotated or resized. The returned shape must not be modified.
+     *
+     * @return the outline of the shape
+     */
+    public java.awt.Shape getOutline() {
+        return outline().shape();
+    }
+
+    /**
+     * Returns the tight axis-aligned bounding box of the outline. Unlike getBounds, which covers the exact size
+     * of the shape and is used for culling and physics, this box covers exactly the area the outline does.
+     * The returned rectangle must not be modified.
+     *
+     * @return the bounding box of the outline
+     */
+    public Rectangle2D getOutlineBounds() {
+        return outline().bounds();
+    }
+
+    private Outline outline() {
+        Outline current = outline;
+        if (current == null) {
+            java.awt.Shape local = getLocalOutline();
+            java.awt.Shape shape;
+            if (local == null) {
+                shape = (Rectangle2D) getBounds().clone();
+            } else {
+                AffineTransform transform = getLocalTransform();
+                shape = transform.isIdentity() ? local : transform.createTransformedShape(local);
+            }
+            current = new Outline(shape, shape.getBounds2D());
+            outline = current;
+        }
+        return current;
+    }
+
+    /**
+     * Returns true if the given point lies inside the outline of the shape.
+     *
+     * @param x the x-coordinate of the point
+     * @param y the y-coordinate of the point
+     * @return true if the shape covers the point
+     */
+    public boolean contains(double x, double y) {
+        Outline current = outline();
+        return current.bounds().contains(x, y) && current.shape().contains(x, y);
+    }
+
+    /**
+     * Returns true if the outline of the shape overlaps the given rectangle.
+     *
+     * @param x      the x-coordinate of the rectangle
+     * @param y      the y-coordinate of the rectangle
+     * @param width  the width of the rectangle
+     * @param height the height of the rectangle
+     * @return true if the shape and the rectangle overlap
+     */
+    public boolean intersects(double x, double y, double width, double height) {
+        Outline current = outline();
+        return current.bounds().intersects(x, y, width, height) && current.shape().intersects(x, y, width, height);
+    }
+
+    /**
+     * Returns true if the outline of the shape overlaps the given rectangle.
+     *
+     * @param rectangle the rectangle to test
+     * @return true if the shape and the rectangle overlap
+     */
+    public boolean intersects(Rectangle2D rectangle) {
+        return intersects(rectangle.getX(), rectangle.getY(), rectangle.getWidth(), rectangle.getHeight());
+    }
+
     /**
      * Abstract method to calculate and return the area of the shape.
      * Concrete subclasses must implement this method.
@@ -235,7 +463,9 @@ public abstract class AbstractShape implements Shape {
      * @param color the new color of the shape
      */
     public void setColor(Color color) {
+        fireShapeWillChange();
         this.color = color;
+        fireAppearanceChanged();
     }
 
     /**
@@ -246,4 +476,91 @@ public abstract class AbstractShape implements Shape {
     public Color getColor() {
         return this.color;
     }
+
+    /**
+     * Registers a listener that is notified whenever the position, rotation, size or color of the shape changes.
+     *
+     * @param listener the listener to be added
+     */
+    public void addShapeListener(ShapeListener listener) {
+        if (listeners == null) {
+            listeners = new ShapeListener[]{listener};
+            return;
+        }
+        ShapeListener[] grown = new ShapeListener[listeners.length + 1];
+        System.arraycopy(listeners, 0, grown, 0, listeners.length);
+        grown[listeners.length] = listener;
+        listeners = grown;
+    }
+
+    /**
+     * Removes a listener that was registered with addShapeListener.
+     *
+     * @param listener the listener to be removed
+     */
+    public void removeShapeListener(ShapeListener listener) {
+        if (listeners == null) {
+            return;
+        }
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                if (listeners.length == 1) {
+                    listeners = null;
+                    return;
+                }
+                ShapeListener[] shrunk = new ShapeListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, shrunk, 0, i);
+                System.arraycopy(listeners, i + 1, shrunk, i, listeners.length - i - 1);
+                listeners = shrunk;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Notifies the registered listeners that the shape is about to change, while it still has its old bounds.
+     * Subclasses must call this method at the start of every method that changes the size of the shape,
+     * and fireShapeChanged at the end.
+     */
+    protected void fireShapeWillChange() {
+        ShapeListener[] current = listeners;
+        if (current == null) {
+            return;
+        }
+        for (ShapeListener listener : current) {
+            listener.shapeWillChange(this);
+        }
+    }
+
+    /**
+     * Notifies the registered listeners that the shape has changed.
+     * Subclasses must call this method from every method that changes the size of the shape.
+     */
+    protected void fireShapeChanged() {
+        localOutline = null;
+        fireShapeMoved();
+    }
+
+    /**
+     * Drops the cached geometry that depends on the position and rotation and notifies the listeners.
+     */
+    private void fireShapeMoved() {
+        boundsValid = false;
+        localTransform = null;
+        outline = null;
+        fireAppearanceChanged();
+    }
+
+    /**
+     * Notifies the listeners of a change that keeps the geometry, such as a new color.
+     */
+    private void fireAppearanceChanged() {
+        ShapeListener[] current = listeners;
+        if (current == null) {
+            return;
+        }
+        for (ShapeListener listener : current) {
+            listener.shapeChanged(this);
+        }
+    }
 }
@@ -2,44 +2,558 @@ package drawpad;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * This class represents a custom JPanel that can display and manage a collection of shapes.
  * It provides methods to add and remove shapes from the panel, and automatically redraws the panel
  * when the collection of shapes changes.
+ * <p>
+ * Only the parts of the panel that changed are redrawn. Adding, removing or changing an AbstractShape marks its
+ * old and new bounding boxes as dirty; the dirty areas are merged and repainted with a single repaint call,
+ * either shortly after on the event dispatch thread or, when automatic repainting is turned off, from the next
+ * call to repaintDirtyRegion (which Window makes once per frame). Changes to shapes that are not AbstractShapes
+ * cannot be tracked and need a call to repaint().
+ * <p>
+ * The shapes can be owned by a simulation thread other than the event dispatch thread. The thread that calls
+ * applyPendingChanges becomes the owner: from then on shapes added or removed on any other thread are put in a
+ * lock-free queue and applied by the owner at its next call. With snapshot rendering enabled, the owner
+ * publishes a SceneSnapshot with publishSnapshot, and painting draws the latest snapshot instead of reading
+ * the shapes, so neither thread ever waits for the other.
  */
 public abstract class AbstractWindow extends JPanel {
+    private static final int CULL_MARGIN = 1; // Shapes are drawn at truncated pixel positions, so allow one pixel
+    private static final Comparator<AbstractShape> DRAW_ORDER = Comparator.comparingLong(shape -> shape.sequence);
+
     private final List<Shape> shapes; // List to store the shapes to be drawn
+    private final ShapeListener shapeListener; // Registered on every AbstractShape added to the panel
+    private final List<AbstractShape> visibleShapes; // Reused by paintComponent to collect the shapes to draw
+    private SpatialIndex spatialIndex; // Optional index used to answer region queries, null if not set
+    private int unindexedShapes; // Number of shapes that cannot be stored in the spatial index
+    private long nextSequence; // Sequence number given to the next shape, to restore draw order after a query
+    private final RenderQueue renderQueue; // Collects draw commands when batched rendering is enabled
+    private boolean batchedRendering; // Whether shapes are drawn through the render queue
+    private final Rectangle2D.Double dirtyRegion; // Union of the areas to repaint, guarded by itself
+    private boolean dirty; // Whether dirtyRegion holds an area
+    private boolean repaintScheduled; // Whether repaintDirtyRegion is queued on the event dispatch thread
+    private boolean autoRepaint = true; // Whether markDirty queues repaintDirtyRegion by itself
+    private final Runnable dirtyRegionRepainter; // Queued on the event dispatch thread by markDirty
+    private final Queue<Runnable> pendingChanges; // Additions and removals made on other threads than sceneThread
+    private volatile Thread sceneThread; // The thread that owns the shapes, null until applyPendingChanges is called
+    private final SceneSnapshotBuffer snapshots; // Passes the published snapshots to the painting thread
+    private volatile boolean snapshotRendering; // Whether painting draws the latest snapshot
+    private volatile RenderLayer[] layers = new RenderLayer[0]; // Sorted by depth, replaced on every change
+    private SpriteCache spriteCache; // Draws the shapes from cached images when set, used by the painting thread
+    private volatile FrameMetrics frameMetrics; // Records paint times when set
 
     /**
      * Default constructor that initializes an empty list of shapes.
      */
     public AbstractWindow() {
         shapes = new ArrayList<>();
+        shapeListener = new ShapeListener() {
+            @Override
+            public void shapeWillChange(AbstractShape shape) {
+                markDirty(shape.getBounds());
+            }
+
+            @Override
+            public void shapeChanged(AbstractShape shape) {
+                AbstractWindow.this.shapeChanged(shape);
+            }
+        };
+        visibleShapes = new ArrayList<>();
+        renderQueue = new RenderQueue();
+        dirtyRegion = new Rectangle2D.Double();
+        dirtyRegionRepainter = this::repaintDirtyRegion;
+        pendingChanges = new ConcurrentLinkedQueue<>();
+        snapshots = new SceneSnapshotBuffer();
     }
 
     /**
-     * Adds a new shape to the list of shapes and redraws the panel.
+     * Adds a new shape to the list of shapes and redraws the area it covers. When called on another thread than
+     * the one that owns the shapes, the shape is added at the owner's next call to applyPendingChanges.
      *
      * @param shape the shape to be added
      */
     public void addShape(Shape shape) {
+        if (isForeignThread()) {
+            pendingChanges.add(() -> addShape(shape));
+            return;
+        }
         shapes.add(shape);
-        repaint();
+        if (shape instanceof AbstractShape abstractShape) {
+            abstractShape.sequence = nextSequence++;
+            abstractShape.addShapeListener(shapeListener);
+            if (spatialIndex != null) {
+                spatialIndex.insert(abstractShape);
+            }
+        } else {
+            unindexedShapes++;
+        }
+        markDirty(shape.getBounds());
     }
 
     /**
-     * Removes a shape from the list of shapes and redraws the panel.
+     * Adds several shapes at once, in order, and redraws the area they cover. This is quicker than calling
+     * addShape for each of them: the list grows once and the dirty region is updated once for the whole batch.
+     * When called on another thread than the one that owns the shapes, the shapes are added together at the
+     * owner's next call to applyPendingChanges.
+     *
+     * @param shapes the shapes to be added
+     */
+    public void addShapes(Collection<? extends Shape> shapes) {
+        if (shapes.isEmpty()) {
+            return;
+        }
+        if (isForeignThread()) {
+            List<Shape> copy = new ArrayList<>(shapes);
+            pendingChanges.add(() -> addShapes(copy));
+            return;
+        }
+        this.shapes.addAll(shapes);
+        Rectangle2D.Double area = null;
+        boolean unbounded = false;
+        for (Shape shape : shapes) {
+            if (shape instanceof AbstractShape abstractShape) {
+                abstractShape.sequence = nextSequence++;
+                abstractShape.addShapeListener(shapeListener);
+                if (spatialIndex != null) {
+                    spatialIndex.insert(abstractShape);
+                }
+            } else {
+                unindexedShapes++;
+            }
+            Rectangle2D bounds = shape.getBounds();
+            if (bounds == null) {
+                unbounded = true;
+            } else if (area == null) {
+                area = new Rectangle2D.Double(bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
+            } else {
+                area.add(bounds);
+            }
+        }
+        markDirty(unbounded ? null : area);
+    }
+
+    /**
+     * Removes a shape from the list of shapes and redraws the area it covered. When called on another thread
+     * than the one that owns the shapes, the shape is removed at the owner's next call to applyPendingChanges.
      *
      * @param shape the shape to be removed
      */
     public void removeShape(Shape shape) {
-        shapes.remove(shape);
+        if (isForeignThread()) {
+            pendingChanges.add(() -> removeShape(shape));
+            return;
+        }
+        if (!shapes.remove(shape)) {
+            return;
+        }
+        if (shape instanceof AbstractShape abstractShape) {
+            abstractShape.removeShapeListener(shapeListener);
+            if (spatialIndex != null) {
+                spatialIndex.remove(abstractShape);
+            }
+        } else {
+            unindexedShapes--;
+        }
+        markDirty(shape.getBounds());
+    }
+
+    /**
+     * Creates a named layer of shapes. Layers are drawn in order of depth: layers with a negative depth below
+     * the shapes added to the window itself, the others above them. Layers with the same depth are drawn in
+     * the order they were created.
+     *
+     * @param name  the name of the layer
+     * @param depth the depth of the layer
+     * @return the new layer
+     * @throws IllegalArgumentException if a layer with the same name exists
+     */
+    public RenderLayer createLayer(String name, int depth) {
+        if (getLayer(name) != null) {
+            throw new IllegalArgumentException("A layer named " + name + " already exists");
+        }
+        RenderLayer layer = new RenderLayer(this, name, depth);
+        RenderLayer[] current = layers;
+        int i = current.length;
+        while (i > 0 && current[i - 1].getDepth() > depth) {
+            i--;
+        }
+        RenderLayer[] grown = new RenderLayer[current.length + 1];
+        System.arraycopy(current, 0, grown, 0, i);
+        grown[i] = layer;
+        System.arraycopy(current, i, grown, i + 1, current.length - i);
+        layers = grown;
+        return layer;
+    }
+
+    /**
+     * Returns the layer with the given name.
+     *
+     * @param name the name of the layer
+     * @return the layer, or null if there is none with that name
+     */
+    public RenderLayer getLayer(String name) {
+        for (RenderLayer layer : layers) {
+            if (layer.getName().equals(name)) {
+                return layer;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes the layer with the given name, together with its shapes.
+     *
+     * @param name the name of the layer
+     */
+    public void removeLayer(String name) {
+        RenderLayer[] current = layers;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i].getName().equals(name)) {
+                RenderLayer[] shrunk = new RenderLayer[current.length - 1];
+                System.arraycopy(current, 0, shrunk, 0, i);
+                System.arraycopy(current, i + 1, shrunk, i, current.length - i - 1);
+                layers = shrunk;
+                markDirty(null);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns true if the shapes are owned by another thread than the calling one, so changes have to be queued.
+     */
+    boolean isForeignThread() {
+        Thread owner = sceneThread;
+        return owner != null && owner != Thread.currentThread();
+    }
+
+    /**
+     * Queues a change for the owner's next call to applyPendingChanges.
+     */
+    void queueChange(Runnable change) {
+        pendingChanges.add(change);
+    }
+
+    /**
+     * Applies the additions and removals queued by other threads, in the order they were made, and makes the
+     * calling thread the owner of the shapes. Call it from the simulation thread at the start of every tick.
+     */
+    public void applyPendingChanges() {
+        sceneThread = Thread.currentThread();
+        Runnable change;
+        while ((change = pendingChanges.poll()) != null) {
+            change.run();
+        }
+    }
+
+    /**
+     * Publishes a snapshot of the current state of the shapes and of the layers for painting. Call it from the
+     * thread that owns the shapes once per frame, after the shapes have been updated. Has no effect on painting
+     * unless snapshot rendering is enabled.
+     *
+     * @return the version of the published snapshot
+     */
+    public long publishSnapshot() {
+        return snapshots.publish(shapes, layers, batchedRendering);
+    }
+
+    /**
+     * Enables or disables snapshot rendering. When enabled, painting draws the snapshot last published with
+     * publishSnapshot instead of reading the shapes, so the shapes can be changed on another thread while the
+     * panel is painted. The snapshot is drawn exactly like the shapes would be, batched or not.
+     *
+     * @param snapshotRendering true to paint the latest snapshot
+     */
+    public void setSnapshotRendering(boolean snapshotRendering) {
+        this.snapshotRendering = snapshotRendering;
+        repaint();
+    }
+
+    /**
+     * Returns true if snapshot rendering is enabled.
+     *
+     * @return true if painting draws the latest snapshot
+     */
+    public boolean isSnapshotRendering() {
+        return snapshotRendering;
+    }
+
+    /**
+     * Sets the spatial index used by the region, point and nearest queries and fills it with the current shapes.
+     * The index is kept up to date as shapes are added, removed, moved or resized.
+     * Passing null removes the index, after which the queries scan the whole list of shapes.
+     *
+     * @param spatialIndex the index to be used, or null
+     */
+    public void setSpatialIndex(SpatialIndex spatialIndex) {
+        this.spatialIndex = spatialIndex;
+        if (spatialIndex == null) {
+            return;
+        }
+        spatialIndex.clear();
+        for (Shape shape : shapes) {
+            if (shape instanceof AbstractShape abstractShape) {
+                spatialIndex.insert(abstractShape);
+            }
+        }
+    }
+
+    /**
+     * Enables or disables batched rendering. When enabled, visible shapes are collected in a RenderQueue that is
+     * sorted by z-order and color and drawn with as few state changes as possible. Shapes with the same z-order
+     * may then be drawn in a different order than they were added in.
+     *
+     * @param batchedRendering true to draw through the render queue
+     */
+    public void setBatchedRendering(boolean batchedRendering) {
+        this.batchedRendering = batchedRendering;
         repaint();
     }
 
+    /**
+     * Sets the cache used to draw circles, rectangles and triangles from pre-rasterized sprites, or null to draw
+     * every shape with its own draw method. The cache is not used with batched rendering, which merges the
+     * shapes into larger fills instead.
+     *
+     * @param spriteCache the cache to be used, or null
+     */
+    public void setSpriteCache(SpriteCache spriteCache) {
+        this.spriteCache = spriteCache;
+        repaint();
+    }
+
+    /**
+     * Sets the metrics that record how long painting takes and how many shapes are drawn. Window also records
+     * its updates in them. Passing null stops recording, which is the default.
+     *
+     * @param frameMetrics the metrics to record into, or null
+     */
+    public void setFrameMetrics(FrameMetrics frameMetrics) {
+        this.frameMetrics = frameMetrics;
+        repaint();
+    }
+
+    public FrameMetrics getFrameMetrics() {
+        return frameMetrics;
+    }
+
+    /**
+     * Returns the sprite cache used to draw the shapes.
+     *
+     * @return the sprite cache, or null if none is set
+     */
+    public SpriteCache getSpriteCache() {
+        return spriteCache;
+    }
+
+    /**
+     * Returns true if batched rendering is enabled.
+     *
+     * @return true if shapes are drawn through the render queue
+     */
+    public boolean isBatchedRendering() {
+        return batchedRendering;
+    }
+
+    /**
+     * Returns the spatial index used by the queries.
+     *
+     * @return the spatial index, or null if none is set
+     */
+    public SpatialIndex getSpatialIndex() {
+        return spatialIndex;
+    }
+
+    /**
+     * Returns every shape whose bounding box intersects the given region.
+     *
+     * @param x      the x-coordinate of the region
+     * @param y      the y-coordinate of the region
+     * @param width  the width of the region
+     * @param height the height of the region
+     * @return the shapes in the region
+     */
+    public List<AbstractShape> getShapesIn(double x, double y, double width, double height) {
+        List<AbstractShape> result = new ArrayList<>();
+        if (spatialIndex != null) {
+            return spatialIndex.queryRegion(x, y, width, height, result);
+        }
+        for (Shape shape : shapes) {
+            if (shape instanceof AbstractShape abstractShape
+                    && abstractShape.getBounds().intersects(x, y, width, height)) {
+                result.add(abstractShape);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns every shape whose bounding box contains the given point, for example the point under the cursor.
+     *
+     * @param x the x-coordinate of the point
+     * @param y the y-coordinate of the point
+     * @return the shapes at the point
+     */
+    public List<AbstractShape> getShapesAt(double x, double y) {
+        List<AbstractShape> result = new ArrayList<>();
+        if (spatialIndex != null) {
+            return spatialIndex.queryPoint(x, y, result);
+        }
+        for (Shape shape : shapes) {
+            if (shape instanceof AbstractShape abstractShape && abstractShape.getBounds().contains(x, y)) {
+                result.add(abstractShape);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the shape drawn on top at the given point, using the outline of each shape rather than its
+     * bounding box, so clicking next to a rotated rectangle or a triangle does not pick it.
+     *
+     * @param x the x-coordinate of the point
+     * @param y the y-coordinate of the point
+     * @return the topmost shape covering the point, or null if there is none
+     */
+    public AbstractShape getShapeAt(double x, double y) {
+        AbstractShape top = null;
+        for (AbstractShape shape : getShapesAt(x, y)) {
+            if ((top == null || DRAW_ORDER.compare(shape, top) > 0) && shape.contains(x, y)) {
+                top = shape;
+            }
+        }
+        return top;
+    }
+
+    /**
+     * Returns the k shapes whose bounding boxes are closest to the given point, closest first.
+     *
+     * @param x the x-coordinate of the point
+     * @param y the y-coordinate of the point
+     * @param k the maximum number of shapes to return
+     * @return the nearest shapes
+     */
+    public List<AbstractShape> getNearestShapes(double x, double y, int k) {
+        List<AbstractShape> result = new ArrayList<>();
+        if (spatialIndex != null) {
+            return spatialIndex.nearest(x, y, k, result);
+        }
+        for (Shape shape : shapes) {
+            if (shape instanceof AbstractShape abstractShape) {
+                result.add(abstractShape);
+            }
+        }
+        result.sort((a, b) -> Double.compare(distanceSq(a, x, y), distanceSq(b, x, y)));
+        return result.size() > k ? new ArrayList<>(result.subList(0, Math.max(k, 0))) : result;
+    }
+
+    private static double distanceSq(AbstractShape shape, double x, double y) {
+        Rectangle2D bounds = shape.getBounds();
+        return SpatialIndex.distanceSq(x, y, bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY());
+    }
+
+    /**
+     * Called whenever a shape on the panel changes.
+     *
+     * @param shape the shape that changed
+     */
+    private void shapeChanged(AbstractShape shape) {
+        if (spatialIndex != null) {
+            spatialIndex.update(shape);
+        }
+        markDirty(shape.getBounds());
+    }
+
+    /**
+     * Adds an area to the dirty region and makes sure it gets repainted. Null bounds mark the whole panel.
+     *
+     * @param bounds the area to repaint, or null for the whole panel
+     */
+    void markDirty(Rectangle2D bounds) {
+        boolean schedule;
+        synchronized (dirtyRegion) {
+            if (bounds == null) {
+                dirtyRegion.setRect(0, 0, getWidth(), getHeight());
+            } else if (dirty) {
+                dirtyRegion.add(bounds);
+            } else {
+                dirtyRegion.setRect(bounds);
+            }
+            dirty = true;
+            schedule = autoRepaint && !repaintScheduled;
+            repaintScheduled |= schedule;
+        }
+        if (schedule) {
+            SwingUtilities.invokeLater(dirtyRegionRepainter);
+        }
+    }
+
+    /**
+     * Repaints the areas changed since the last call, merged into a single rectangle, with one call to repaint.
+     * Does nothing if nothing changed. With automatic repainting this runs on the event dispatch thread soon
+     * after the first change; otherwise it has to be called, for example once per frame.
+     */
+    public void repaintDirtyRegion() {
+        int x0, y0, x1, y1;
+        FrameMetrics metrics = frameMetrics;
+        if (metrics != null && metrics.isOverlayVisible()) {
+            markDirty(metrics.getOverlayBounds()); // The numbers change every frame
+        }
+        synchronized (dirtyRegion) {
+            repaintScheduled = false;
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            // Shapes are drawn at truncated pixel positions, so round outwards and add the same margin as culling
+            x0 = (int) Math.floor(dirtyRegion.x) - CULL_MARGIN;
+            y0 = (int) Math.floor(dirtyRegion.y) - CULL_MARGIN;
+            x1 = (int) Math.ceil(dirtyRegion.x + dirtyRegion.width) + CULL_MARGIN;
+            y1 = (int) Math.ceil(dirtyRegion.y + dirtyRegion.height) + CULL_MARGIN;
+        }
+        repaint(x0, y0, x1 - x0, y1 - y0);
+    }
+
+    /**
+     * Sets whether changes are repainted automatically. When enabled (the default), the first change after a
+     * repaint queues repaintDirtyRegion on the event dispatch thread. Disable it when the caller repaints once
+     * per frame itself, so changes made during a frame are never split over several repaints.
+     *
+     * @param autoRepaint true to repaint changes automatically
+     */
+    public void setAutoRepaint(boolean autoRepaint) {
+        this.autoRepaint = autoRepaint;
+    }
+
+    /**
+     * Returns true if changes are repainted automatically.
+     *
+     * @return true if changes are repainted automatically
+     */
+    public boolean isAutoRepaint() {
+        return autoRepaint;
+    }
+
+    /**
+     * Forgets the areas changed since the last repaint, for example because a complete frame has been drawn
+     * by other means.
+     */
+    public void clearDirtyRegion() {
+        synchronized (dirtyRegion) {
+            dirty = false;
+        }
+    }
+
     /**
      * Overrides the paintComponent method of JPanel to draw all the shapes in the list.
      *
@@ -48,8 +562,124 @@ public abstract class AbstractWindow extends JPanel {
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
+        paintShapes(g);
+    }
+
+    /**
+     * Draws the shapes in the list that intersect the clip area of the Graphics object, without clearing it first.
+     * With snapshot rendering enabled, the latest snapshot, including its copy of the layers, is drawn instead.
+     * Layers with a negative depth are drawn first and the other layers last.
+     * Shapes whose bounding box lies outside the clip are skipped. When a spatial index is set, only the shapes
+     * it returns for the clip area are visited, so the cost depends on the number of visible shapes.
+     *
+     * @param g the Graphics object on which to draw the shapes
+     */
+    public void paintShapes(Graphics g) {
+        FrameMetrics metrics = frameMetrics;
+        long start = metrics != null ? System.nanoTime() : 0;
+        long startBytes = metrics != null ? FrameMetrics.currentThreadAllocatedBytes() : 0;
+        Dimension size = getSize();
+        int total;
+        int drawn;
+        if (snapshotRendering) {
+            SceneSnapshot snapshot = snapshots.acquire();
+            snapshot.paintLayers((Graphics2D) g, size.width, size.height, true);
+            drawn = snapshot.draw(g, spriteCache);
+            total = snapshot.size();
+            snapshot.paintLayers((Graphics2D) g, size.width, size.height, false);
+        } else {
+            RenderLayer[] currentLayers = layers;
+            int layer = 0;
+            while (layer < currentLayers.length && currentLayers[layer].getDepth() < 0) {
+                currentLayers[layer++].paint((Graphics2D) g, size.width, size.height);
+            }
+            total = shapes.size();
+            drawn = paintOwnShapes(g);
+            while (layer < currentLayers.length) {
+                currentLayers[layer++].paint((Graphics2D) g, size.width, size.height);
+            }
+        }
+        if (metrics != null) {
+            metrics.recordPaint(start, System.nanoTime() - start,
+                    FrameMetrics.currentThreadAllocatedBytes() - startBytes, drawn, total - drawn);
+            if (metrics.isOverlayVisible()) {
+                metrics.drawOverlay(g);
+            }
+        }
+    }
+
+    /**
+     * Adds the shapes paintShapes would draw to three lists in drawing order: the shapes of the visible layers
+     * with a negative depth, the shapes of the window itself and the shapes of the other visible layers.
+     * Must be called on the thread that owns the shapes.
+     */
+    void collectShapes(List<Shape> below, List<Shape> own, List<Shape> above) {
+        for (RenderLayer layer : layers) {
+            if (layer.isVisible()) {
+                (layer.getDepth() < 0 ? below : above).addAll(layer.getShapes());
+            }
+        }
+        own.addAll(shapes);
+    }
+
+    /**
+     * Draws the window's own shapes that intersect the clip area and returns how many were drawn.
+     */
+    private int paintOwnShapes(Graphics g) {
+        java.awt.Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new java.awt.Rectangle(getSize()); // Not getWidth and getHeight, which Window overrides
+        }
+        double x = clip.x - CULL_MARGIN;
+        double y = clip.y - CULL_MARGIN;
+        double width = clip.width + 2 * CULL_MARGIN;
+        double height = clip.height + 2 * CULL_MARGIN;
+
+        if (spatialIndex != null && unindexedShapes == 0) {
+            visibleShapes.clear();
+            spatialIndex.queryRegion(x, y, width, height, visibleShapes);
+            if (batchedRendering) {
+                // The queue sorts the commands itself, so the query order does not matter
+                for (AbstractShape shape : visibleShapes) {
+                    shape.submit(renderQueue);
+                }
+                flushRenderQueue(g);
+            } else {
+                visibleShapes.sort(DRAW_ORDER);
+                for (AbstractShape shape : visibleShapes) {
+                    drawShape(g, shape);
+                }
+            }
+            int drawn = visibleShapes.size();
+            visibleShapes.clear();
+            return drawn;
+        }
+        int drawn = 0;
         for (Shape shape : shapes) {
+            Rectangle2D bounds = shape.getBounds();
+            if (bounds == null || bounds.intersects(x, y, width, height)) {
+                drawn++;
+                if (batchedRendering) {
+                    shape.submit(renderQueue);
+                } else {
+                    drawShape(g, shape);
+                }
+            }
+        }
+        if (batchedRendering) {
+            flushRenderQueue(g);
+        }
+        return drawn;
+    }
+
+    private void drawShape(Graphics g, Shape shape) {
+        if (spriteCache == null || !spriteCache.draw((Graphics2D) g, shape)) {
             shape.draw(g);
         }
     }
-}
\ No newline at end of file
+
+    private void flushRenderQueue(Graphics g) {
+        renderQueue.draw(g);
+        renderQueue.clear();
+    }
+}
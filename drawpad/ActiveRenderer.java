@@ -0,0 +1,172 @@
+package drawpad;
+
+import java.awt.*;
+import java.awt.image.BufferStrategy;
+import java.awt.image.VolatileImage;
+
+/**
+ * This class draws the shapes of an AbstractWindow directly from the calling thread instead of waiting for Swing
+ * to call paintComponent. Each call to renderFrame draws a complete frame and puts it on the screen before it
+ * returns, so frame pacing is decided by the caller (usually a GameLoop) rather than by the event queue.
+ * <p>
+ * In RenderMode.BUFFER_STRATEGY a Canvas with a page-flipping BufferStrategy is placed inside the window.
+ * In RenderMode.VOLATILE_IMAGE the frame is drawn into an accelerated VolatileImage that is copied onto the
+ * window; the last frame is also used to answer paint requests from the system.
+ */
+public class ActiveRenderer {
+    private final AbstractWindow window; // The window whose shapes are drawn
+    private final RenderMode mode; // BUFFER_STRATEGY or VOLATILE_IMAGE
+    private Canvas canvas; // The surface used in BUFFER_STRATEGY mode
+    private BufferStrategy strategy; // Created once the canvas is displayable
+    private VolatileImage backBuffer; // The back buffer used in VOLATILE_IMAGE mode
+
+    /**
+     * Constructor to create an ActiveRenderer for the specified window.
+     *
+     * @param window the window whose shapes are drawn
+     * @param mode   RenderMode.BUFFER_STRATEGY or RenderMode.VOLATILE_IMAGE
+     */
+    public ActiveRenderer(AbstractWindow window, RenderMode mode) {
+        if (mode == RenderMode.PASSIVE) {
+            throw new IllegalArgumentException("ActiveRenderer does not support " + mode);
+        }
+        this.window = window;
+        this.mode = mode;
+    }
+
+    /**
+     * Prepares the window for active rendering. In BUFFER_STRATEGY mode this adds a Canvas filling the window,
+     * so it must be called on the event dispatch thread before the window is shown.
+     */
+    public void install() {
+        if (mode != RenderMode.BUFFER_STRATEGY || canvas != null) {
+            return;
+        }
+        canvas = new Canvas();
+        canvas.setIgnoreRepaint(true); // Every frame is drawn by renderFrame
+        canvas.setFocusable(false); // Keep keyboard focus on the window so its key bindings keep working
+        canvas.setBackground(window.getBackground());
+        window.setLayout(new BorderLayout());
+        window.add(canvas, BorderLayout.CENTER);
+    }
+
+    /**
+     * Draws a complete frame and shows it. Does nothing while the window is not yet displayable.
+     */
+    public void renderFrame() {
+        if (mode == RenderMode.BUFFER_STRATEGY) {
+            renderToStrategy();
+        } else {
+            renderToBackBuffer();
+        }
+        Toolkit.getDefaultToolkit().sync();
+    }
+
+    private void renderToStrategy() {
+        if (strategy == null) {
+            if (canvas == null || !canvas.isDisplayable()) {
+                return;
+            }
+            canvas.createBufferStrategy(2);
+            strategy = canvas.getBufferStrategy();
+        }
+        int width = canvas.getWidth();
+        int height = canvas.getHeight();
+        // The buffers can be lost at any time (for example when the display mode changes), in which case
+        // the frame has to be drawn again
+        do {
+            do {
+                Graphics g = strategy.getDrawGraphics();
+                try {
+                    drawFrame(g, width, height);
+                } finally {
+                    g.dispose();
+                }
+            } while (strategy.contentsRestored());
+            strategy.show();
+        } while (strategy.contentsLost());
+    }
+
+    private synchronized void renderToBackBuffer() {
+        GraphicsConfiguration configuration = window.getGraphicsConfiguration();
+        Dimension size = window.getSize();
+        if (configuration == null || size.width <= 0 || size.height <= 0) {
+            return;
+        }
+        do {
+            if (backBuffer == null || backBuffer.getWidth() != size.width || backBuffer.getHeight() != size.height
+                    || backBuffer.validate(configuration) == VolatileImage.IMAGE_INCOMPATIBLE) {
+                if (backBuffer != null) {
+                    backBuffer.flush();
+                }
+                backBuffer = configuration.createCompatibleVolatileImage(size.width, size.height);
+            }
+            Graphics2D g = backBuffer.createGraphics();
+            try {
+                drawFrame(g, size.width, size.height);
+            } finally {
+                g.dispose();
+            }
+            Graphics screen = window.getGraphics();
+            if (screen != null) {
+                screen.drawImage(backBuffer, 0, 0, null);
+                screen.dispose();
+            }
+        } while (backBuffer.contentsLost());
+    }
+
+    /**
+     * Copies the last frame onto the given Graphics object. Used in VOLATILE_IMAGE mode to repaint the window
+     * when the system asks for it between two frames.
+     *
+     * @param g the Graphics object to draw on
+     * @return true if a frame was drawn, false if there is no valid frame yet
+     */
+    public synchronized boolean paintLastFrame(Graphics g) {
+        if (backBuffer == null || backBuffer.contentsLost()) {
+            return false;
+        }
+        g.drawImage(backBuffer, 0, 0, null);
+        return true;
+    }
+
+    private void drawFrame(Graphics g, int width, int height) {
+        g.setColor(window.getBackground());
+        g.fillRect(0, 0, width, height);
+        g.setClip(0, 0, width, height);
+        window.paintShapes(g);
+    }
+
+    /**
+     * Releases the buffers. The renderer can be used again afterwards; the buffers are created on the next frame.
+     */
+    public synchronized void dispose() {
+        if (strategy != null) {
+            strategy.dispose();
+            strategy = null;
+        }
+        if (backBuffer != null) {
+            backBuffer.flush();
+            backBuffer = null;
+        }
+    }
+
+    /**
+     * Returns the Canvas placed in the window in BUFFER_STRATEGY mode. It covers the window, so it receives the
+     * mouse events that would otherwise go to the window.
+     *
+     * @return the canvas, or null if the mode is VOLATILE_IMAGE or install has not been called
+     */
+    public Canvas getCanvas() {
+        return canvas;
+    }
+
+    /**
+     * Returns the render mode.
+     *
+     * @return the render mode
+     */
+    public RenderMode getMode() {
+        return mode;
+    }
+}
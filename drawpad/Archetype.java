@@ -0,0 +1,234 @@
+package drawpad;
+
+import java.awt.*;
+import java.util.Arrays;
+
+/**
+ * This class holds all entities of an EntityStore that have exactly the same set of components. Every component
+ * property is stored in its own primitive array (one array per property, indexed by row), and the rows are kept
+ * dense: removing an entity moves the last row into its place. A system therefore walks contiguous memory without
+ * following references or making virtual calls per entity.
+ * <p>
+ * The arrays of the components the archetype does not have are null. The arrays may be longer than size() and
+ * are replaced when the archetype grows, so systems should read them again on every update rather than keep them.
+ */
+public final class Archetype {
+    private final int mask; // The ComponentType bits of the entities in this archetype
+    private int size; // Number of rows in use
+    private int[] entities; // The entity in each row
+
+    private double[] x; // TRANSFORM
+    private double[] y;
+    private double[] rotation;
+    private byte[] kind; // GEOMETRY
+    private double[] width;
+    private double[] height;
+    private Color[] color; // COLOR
+    private double[] velocityX; // PHYSICS
+    private double[] velocityY;
+    private double[] forceX;
+    private double[] forceY;
+    private double[] inverseMass;
+    private long[] tags; // TAGS
+
+    Archetype(int mask) {
+        this.mask = mask;
+        allocate(16);
+    }
+
+    private void allocate(int capacity) {
+        entities = entities == null ? new int[capacity] : Arrays.copyOf(entities, capacity);
+        if (has(ComponentType.TRANSFORM.mask())) {
+            x = copy(x, capacity);
+            y = copy(y, capacity);
+            rotation = copy(rotation, capacity);
+        }
+        if (has(ComponentType.GEOMETRY.mask())) {
+            kind = kind == null ? new byte[capacity] : Arrays.copyOf(kind, capacity);
+            width = copy(width, capacity);
+            height = copy(height, capacity);
+        }
+        if (has(ComponentType.COLOR.mask())) {
+            color = color == null ? new Color[capacity] : Arrays.copyOf(color, capacity);
+        }
+        if (has(ComponentType.PHYSICS.mask())) {
+            velocityX = copy(velocityX, capacity);
+            velocityY = copy(velocityY, capacity);
+            forceX = copy(forceX, capacity);
+            forceY = copy(forceY, capacity);
+            inverseMass = copy(inverseMass, capacity);
+        }
+        if (has(ComponentType.TAGS.mask())) {
+            tags = tags == null ? new long[capacity] : Arrays.copyOf(tags, capacity);
+        }
+    }
+
+    private static double[] copy(double[] array, int capacity) {
+        return array == null ? new double[capacity] : Arrays.copyOf(array, capacity);
+    }
+
+    /**
+     * Adds a row for an entity, with every property set to zero and the color set to black.
+     *
+     * @return the new row
+     */
+    int add(int entity) {
+        if (size == entities.length) {
+            allocate(size * 2);
+        }
+        int row = size++;
+        entities[row] = entity;
+        if (x != null) {
+            x[row] = 0;
+            y[row] = 0;
+            rotation[row] = 0;
+        }
+        if (kind != null) {
+            kind[row] = 0;
+            width[row] = 0;
+            height[row] = 0;
+        }
+        if (color != null) {
+            color[row] = Color.BLACK;
+        }
+        if (velocityX != null) {
+            velocityX[row] = 0;
+            velocityY[row] = 0;
+            forceX[row] = 0;
+            forceY[row] = 0;
+            inverseMass[row] = 0;
+        }
+        if (tags != null) {
+            tags[row] = 0;
+        }
+        return row;
+    }
+
+    /**
+     * Removes a row by moving the last row into its place.
+     *
+     * @return the entity that moved into the row, or -1 if the removed row was the last one
+     */
+    int remove(int row) {
+        int last = --size;
+        int moved = -1;
+        if (row != last) {
+            copyRow(this, last, row);
+            entities[row] = entities[last];
+            moved = entities[row];
+        }
+        if (color != null) {
+            color[last] = null; // Do not keep the color alive
+        }
+        return moved;
+    }
+
+    /**
+     * Copies the properties the two archetypes have in common from a row of another archetype to a row of this
+     * one.
+     */
+    void copyRow(Archetype from, int fromRow, int toRow) {
+        if (x != null && from.x != null) {
+            x[toRow] = from.x[fromRow];
+            y[toRow] = from.y[fromRow];
+            rotation[toRow] = from.rotation[fromRow];
+        }
+        if (kind != null && from.kind != null) {
+            kind[toRow] = from.kind[fromRow];
+            width[toRow] = from.width[fromRow];
+            height[toRow] = from.height[fromRow];
+        }
+        if (color != null && from.color != null) {
+            color[toRow] = from.color[fromRow];
+        }
+        if (velocityX != null && from.velocityX != null) {
+            velocityX[toRow] = from.velocityX[fromRow];
+            velocityY[toRow] = from.velocityY[fromRow];
+            forceX[toRow] = from.forceX[fromRow];
+            forceY[toRow] = from.forceY[fromRow];
+            inverseMass[toRow] = from.inverseMass[fromRow];
+        }
+        if (tags != null && from.tags != null) {
+            tags[toRow] = from.tags[fromRow];
+        }
+    }
+
+    /**
+     * Returns true if the archetype has all the given components.
+     *
+     * @param components a mask of ComponentType bits
+     * @return true if every component in the mask is present
+     */
+    public boolean has(int components) {
+        return (mask & components) == components;
+    }
+
+    public int getMask() {
+        return mask;
+    }
+
+    /**
+     * Returns the number of entities in the archetype, which are in rows 0 to size() - 1.
+     *
+     * @return the number of entities
+     */
+    public int size() {
+        return size;
+    }
+
+    public int[] getEntities() {
+        return entities;
+    }
+
+    public double[] getX() {
+        return x;
+    }
+
+    public double[] getY() {
+        return y;
+    }
+
+    public double[] getRotation() {
+        return rotation;
+    }
+
+    public byte[] getKind() {
+        return kind;
+    }
+
+    public double[] getWidth() {
+        return width;
+    }
+
+    public double[] getHeight() {
+        return height;
+    }
+
+    public Color[] getColor() {
+        return color;
+    }
+
+    public double[] getVelocityX() {
+        return velocityX;
+    }
+
+    public double[] getVelocityY() {
+        return velocityY;
+    }
+
+    public double[] getForceX() {
+        return forceX;
+    }
+
+    public double[] getForceY() {
+        return forceY;
+    }
+
+    public double[] getInverseMass() {
+        return inverseMass;
+    }
+
+    public long[] getTags() {
+        return tags;
+    }
+}
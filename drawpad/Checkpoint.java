@@ -0,0 +1,448 @@
+package drawpad;
+
+import java.awt.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class saves the state of a list of shapes and of the bodies of a PhysicsWorld in a compact binary form, so
+ * that a simulation can be rewound without walking or rebuilding the objects. Every shape is stored as a
+ * fixed-size record of its kind, packed ARGB color, z-order, position, rotation and size, and every body as its
+ * velocity and mass, all in one ByteBuffer that later captures reuse. Capturing does not allocate once the buffer
+ * has grown to the size of the scene.
+ * <p>
+ * A full checkpoint stores every record. A delta checkpoint stores only the records that differ from those of a
+ * full base checkpoint, each preceded by its index, so the checkpoint of a large scene in which few things changed
+ * is small. A delta stays tied to its base: it can no longer be restored once the base has been captured again.
+ * <p>
+ * restore writes a checkpoint back into the same shapes and bodies and only sets the values that differ, so
+ * listeners, the window and sleeping bodies are only disturbed by what actually changed. Shapes are matched by
+ * their index in the list and bodies by their slot in the world, so shapes and bodies that were added or removed
+ * since the capture cannot be restored.
+ * <p>
+ * The bytes, returned by getBuffer and accepted by load, are little-endian. A 36-byte header holds the kind (0 for
+ * full, 1 for delta), the number of shapes and of bodies, the number of shape and of body records that follow, the
+ * id of the checkpoint and the id of its base. A shape record holds the kind byte of EntityStore (or
+ * RenderQueue.CUSTOM for other shapes), the color, the z-order, and then x, y, rotation, width and height as
+ * doubles, where a circle has a width and height of twice its radius and a triangle of its base. A body record
+ * holds the velocity and the mass as doubles.
+ */
+public final class Checkpoint {
+    private static final int FULL = 0;
+    private static final int DELTA = 1;
+    private static final int HEADER_SIZE = 36;
+    static final int SHAPE_RECORD = 49; // Kind, color, z-order, x, y, rotation, width, height, also used by SceneFile
+    private static final int BODY_RECORD = 24; // Velocity x, velocity y, mass
+    private static final int INDEX = 4; // Size of the index in front of every record of a delta
+    private static final AtomicLong NEXT_ID = new AtomicLong(1); // Ids identify the contents a delta was made from
+
+    private ByteBuffer buffer = allocate(4096); // Header followed by the records
+    private int size = HEADER_SIZE; // Number of bytes in use
+    private Checkpoint base; // The checkpoint a delta was captured against, null for a full checkpoint
+
+    /**
+     * Constructor to create an empty, full Checkpoint of no shapes and no bodies.
+     */
+    public Checkpoint() {
+        writeHeader(FULL, 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Stores the state of every shape and body, replacing the previous contents of this checkpoint.
+     *
+     * @param shapes the shapes to be saved
+     * @param world  the world whose bodies are saved, or null to save no bodies
+     */
+    public void capture(List<? extends AbstractShape> shapes, PhysicsWorld world) {
+        int shapeCount = shapes.size();
+        int bodyCount = world == null ? 0 : world.size();
+        ensureCapacity(HEADER_SIZE + (long) shapeCount * SHAPE_RECORD + (long) bodyCount * BODY_RECORD);
+        int p = HEADER_SIZE;
+        for (int i = 0; i < shapeCount; i++) {
+            writeShape(buffer, p, shapes.get(i));
+            p += SHAPE_RECORD;
+        }
+        for (int i = 0; i < bodyCount; i++) {
+            writeBody(p, world, i);
+            p += BODY_RECORD;
+        }
+        writeHeader(FULL, shapeCount, bodyCount, shapeCount, bodyCount, 0);
+        size = p;
+        base = null;
+    }
+
+    /**
+     * Stores the shapes and bodies whose state differs from a full base checkpoint, replacing the previous
+     * contents of this checkpoint. Shapes and bodies beyond the ones in the base are always stored.
+     *
+     * @param base   the full checkpoint to compare with
+     * @param shapes the shapes to be saved
+     * @param world  the world whose bodies are saved, or null to save no bodies
+     * @throws IllegalArgumentException if the base is a delta or this checkpoint itself
+     */
+    public void captureDelta(Checkpoint base, List<? extends AbstractShape> shapes, PhysicsWorld world) {
+        if (base == this) {
+            throw new IllegalArgumentException("A checkpoint cannot be its own base");
+        }
+        if (base.isDelta()) {
+            throw new IllegalArgumentException("The base of a delta must be a full checkpoint");
+        }
+        int shapeCount = shapes.size();
+        int bodyCount = world == null ? 0 : world.size();
+        ensureCapacity(HEADER_SIZE + (long) shapeCount * (INDEX + SHAPE_RECORD)
+                + (long) bodyCount * (INDEX + BODY_RECORD));
+        byte[] bytes = buffer.array();
+        byte[] baseBytes = base.buffer.array();
+        int baseShapes = base.getShapeCount();
+        int baseBodies = base.getBodyCount();
+
+        // Every record is written after an index slot and kept only if it differs from the base's record
+        int p = HEADER_SIZE;
+        int shapeRecords = 0;
+        for (int i = 0; i < shapeCount; i++) {
+            writeShape(buffer, p + INDEX, shapes.get(i));
+            int from = HEADER_SIZE + i * SHAPE_RECORD;
+            if (i >= baseShapes || !Arrays.equals(bytes, p + INDEX, p + INDEX + SHAPE_RECORD, baseBytes, from,
+                    from + SHAPE_RECORD)) {
+                buffer.putInt(p, i);
+                p += INDEX + SHAPE_RECORD;
+                shapeRecords++;
+            }
+        }
+        int bodies = HEADER_SIZE + baseShapes * SHAPE_RECORD;
+        int bodyRecords = 0;
+        for (int i = 0; i < bodyCount; i++) {
+            writeBody(p + INDEX, world, i);
+            int from = bodies + i * BODY_RECORD;
+            if (i >= baseBodies || !Arrays.equals(bytes, p + INDEX, p + INDEX + BODY_RECORD, baseBytes, from,
+                    from + BODY_RECORD)) {
+                buffer.putInt(p, i);
+                p += INDEX + BODY_RECORD;
+                bodyRecords++;
+            }
+        }
+        writeHeader(DELTA, shapeCount, bodyCount, shapeRecords, bodyRecords, base.getId());
+        size = p;
+        this.base = base;
+    }
+
+    /**
+     * Writes the saved state back into the shapes and bodies, setting only the values that differ. Restoring a
+     * velocity or mass that differs wakes the body.
+     *
+     * @param shapes the shapes that were saved, in the same order
+     * @param world  the world whose bodies were saved, or null if no bodies were saved
+     * @throws IllegalArgumentException if the number or kinds of shapes, or the number of bodies, do not match
+     * @throws IllegalStateException    if this is a delta whose base has been captured again
+     */
+    public void restore(List<? extends AbstractShape> shapes, PhysicsWorld world) {
+        int shapeCount = getShapeCount();
+        int bodyCount = getBodyCount();
+        if (shapes.size() != shapeCount) {
+            throw new IllegalArgumentException("The checkpoint holds " + shapeCount + " shapes, not " + shapes.size());
+        }
+        int worldSize = world == null ? 0 : world.size();
+        if (worldSize != bodyCount) {
+            throw new IllegalArgumentException("The checkpoint holds " + bodyCount + " bodies, not " + worldSize);
+        }
+        if (base == null) {
+            int p = HEADER_SIZE;
+            for (int i = 0; i < shapeCount; i++) {
+                readShape(buffer, p, shapes.get(i), i);
+                p += SHAPE_RECORD;
+            }
+            for (int i = 0; i < bodyCount; i++) {
+                readBody(buffer, p, world, i);
+                p += BODY_RECORD;
+            }
+            return;
+        }
+        if (base.getId() != getBaseId()) {
+            throw new IllegalStateException("The base of the delta has been captured again");
+        }
+
+        // Walk the records of the delta, which are sorted by index, and take the others from the base
+        ByteBuffer from = base.buffer;
+        int p = HEADER_SIZE;
+        int left = buffer.getInt(12);
+        for (int i = 0; i < shapeCount; i++) {
+            if (left > 0 && buffer.getInt(p) == i) {
+                readShape(buffer, p + INDEX, shapes.get(i), i);
+                p += INDEX + SHAPE_RECORD;
+                left--;
+            } else {
+                readShape(from, HEADER_SIZE + i * SHAPE_RECORD, shapes.get(i), i);
+            }
+        }
+        int bodies = HEADER_SIZE + base.getShapeCount() * SHAPE_RECORD;
+        left = buffer.getInt(16);
+        for (int i = 0; i < bodyCount; i++) {
+            if (left > 0 && buffer.getInt(p) == i) {
+                readBody(buffer, p + INDEX, world, i);
+                p += INDEX + BODY_RECORD;
+                left--;
+            } else {
+                readBody(from, bodies + i * BODY_RECORD, world, i);
+            }
+        }
+    }
+
+    /**
+     * Returns the bytes of the checkpoint, for writing them to a file or a stream.
+     *
+     * @return a read-only little-endian buffer from position 0 to the end of the checkpoint, backed by this
+     *         checkpoint's buffer and only valid until the next capture or load
+     */
+    public ByteBuffer getBuffer() {
+        return buffer.asReadOnlyBuffer().limit(size).position(0).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Replaces the contents of this checkpoint with the bytes of a full checkpoint, from the position to the
+     * limit of the source.
+     *
+     * @param source the bytes of a checkpoint returned by getBuffer
+     * @throws IllegalArgumentException if the bytes are not a full checkpoint
+     */
+    public void load(ByteBuffer source) {
+        load(source, null);
+    }
+
+    /**
+     * Replaces the contents of this checkpoint with the bytes of a checkpoint, from the position to the limit of
+     * the source. The position of the source is not changed.
+     *
+     * @param source the bytes of a checkpoint returned by getBuffer
+     * @param base   the full checkpoint the delta was captured against, or null if the bytes are a full checkpoint
+     * @throws IllegalArgumentException if the bytes are malformed, or a delta without a matching base
+     */
+    public void load(ByteBuffer source, Checkpoint base) {
+        int length = source.remaining();
+        if (length < HEADER_SIZE) {
+            throw new IllegalArgumentException("Not a checkpoint: " + length + " bytes");
+        }
+        ensureCapacity(length);
+        buffer.put(0, source, source.position(), length);
+        size = length;
+        int kind = buffer.getInt(0);
+        int shapeRecords = buffer.getInt(12);
+        int bodyRecords = buffer.getInt(16);
+        int index = kind == DELTA ? INDEX : 0;
+        if (kind != FULL && kind != DELTA || shapeRecords < 0 || bodyRecords < 0
+                || length != HEADER_SIZE + (long) shapeRecords * (index + SHAPE_RECORD)
+                        + (long) bodyRecords * (index + BODY_RECORD)) {
+            writeHeader(FULL, 0, 0, 0, 0, 0);
+            size = HEADER_SIZE;
+            throw new IllegalArgumentException("Not a checkpoint");
+        }
+        if (kind == DELTA && (base == null || base.isDelta() || base.getId() != getBaseId())) {
+            writeHeader(FULL, 0, 0, 0, 0, 0);
+            size = HEADER_SIZE;
+            throw new IllegalArgumentException("The delta needs the full checkpoint it was captured against");
+        }
+        this.base = kind == DELTA ? base : null;
+    }
+
+    /**
+     * Returns whether this checkpoint only stores the differences from a base checkpoint.
+     *
+     * @return true for a delta, false for a full checkpoint
+     */
+    public boolean isDelta() {
+        return buffer.getInt(0) == DELTA;
+    }
+
+    public int getShapeCount() {
+        return buffer.getInt(4);
+    }
+
+    public int getBodyCount() {
+        return buffer.getInt(8);
+    }
+
+    /**
+     * Returns the number of shapes and bodies stored in this checkpoint: all of them for a full checkpoint, the
+     * changed ones for a delta.
+     *
+     * @return the number of records
+     */
+    public int getRecordCount() {
+        return buffer.getInt(12) + buffer.getInt(16);
+    }
+
+    /**
+     * Returns the number of bytes the checkpoint takes.
+     *
+     * @return the size in bytes
+     */
+    public int getSize() {
+        return size;
+    }
+
+    private long getId() {
+        return buffer.getLong(20);
+    }
+
+    private long getBaseId() {
+        return buffer.getLong(28);
+    }
+
+    private void writeHeader(int kind, int shapeCount, int bodyCount, int shapeRecords, int bodyRecords,
+                             long baseId) {
+        buffer.putInt(0, kind);
+        buffer.putInt(4, shapeCount);
+        buffer.putInt(8, bodyCount);
+        buffer.putInt(12, shapeRecords);
+        buffer.putInt(16, bodyRecords);
+        buffer.putLong(20, NEXT_ID.getAndIncrement());
+        buffer.putLong(28, baseId);
+    }
+
+    /**
+     * Writes the record of a shape at an index of a little-endian buffer.
+     *
+     * @return the kind of the shape, RenderQueue.CUSTOM if it is not a Circle, Rectangle or Triangle
+     */
+    static byte writeShape(ByteBuffer buffer, int p, AbstractShape shape) {
+        byte kind;
+        double width = 0;
+        double height = 0;
+        if (shape instanceof Circle circle) {
+            kind = EntityStore.OVAL;
+            width = height = 2 * circle.getRadius();
+        } else if (shape instanceof Rectangle rectangle) {
+            kind = EntityStore.RECTANGLE;
+            width = rectangle.getWidth();
+            height = rectangle.getHeight();
+        } else if (shape instanceof Triangle triangle) {
+            kind = EntityStore.TRIANGLE;
+            width = height = triangle.getBase();
+        } else {
+            kind = RenderQueue.CUSTOM; // Only the state common to all shapes is saved
+        }
+        Color color = shape.getColor();
+        buffer.put(p, kind);
+        buffer.putInt(p + 1, color == null ? 0 : color.getRGB());
+        buffer.putInt(p + 5, shape.getZOrder());
+        buffer.putDouble(p + 9, shape.getPos_x());
+        buffer.putDouble(p + 17, shape.getPos_y());
+        buffer.putDouble(p + 25, shape.getRotation());
+        buffer.putDouble(p + 33, width);
+        buffer.putDouble(p + 41, height);
+        return kind;
+    }
+
+    /**
+     * Creates a shape from its record in a little-endian buffer.
+     *
+     * @param color a color to use if it has the saved ARGB value, which saves creating a Color, or null
+     * @throws IllegalArgumentException if the record is not of a Circle, Rectangle or Triangle
+     */
+    static AbstractShape createShape(ByteBuffer from, int p, Color color) {
+        int argb = from.getInt(p + 1);
+        if (color == null || color.getRGB() != argb) {
+            color = new Color(argb, true);
+        }
+        double x = from.getDouble(p + 9);
+        double y = from.getDouble(p + 17);
+        double rotation = from.getDouble(p + 25);
+        double width = from.getDouble(p + 33);
+        AbstractShape shape = switch (from.get(p)) {
+            case EntityStore.OVAL -> new Circle(color, width / 2, x, y);
+            case EntityStore.RECTANGLE -> new Rectangle(color, width, from.getDouble(p + 41), x, y, rotation);
+            case EntityStore.TRIANGLE -> new Triangle(color, width, x, y, rotation);
+            default -> throw new IllegalArgumentException("Unsupported shape kind: " + from.get(p));
+        };
+        if (shape instanceof Circle && rotation != 0) {
+            shape.setRotation(rotation);
+        }
+        int zOrder = from.getInt(p + 5);
+        if (zOrder != 0) {
+            shape.setZOrder(zOrder);
+        }
+        return shape;
+    }
+
+    private void writeBody(int p, PhysicsWorld world, int i) {
+        buffer.putDouble(p, world.getVelocityX(i));
+        buffer.putDouble(p + 8, world.getVelocityY(i));
+        buffer.putDouble(p + 16, world.getBody(i).getMass());
+    }
+
+    private static void readShape(ByteBuffer from, int p, AbstractShape shape, int i) {
+        byte kind = from.get(p);
+        boolean matches = switch (kind) {
+            case EntityStore.OVAL -> shape instanceof Circle;
+            case EntityStore.RECTANGLE -> shape instanceof Rectangle;
+            case EntityStore.TRIANGLE -> shape instanceof Triangle;
+            default -> !(shape instanceof Circle || shape instanceof Rectangle || shape instanceof Triangle);
+        };
+        if (!matches) {
+            throw new IllegalArgumentException("Shape " + i + " is not of the saved kind: " + shape);
+        }
+        int argb = from.getInt(p + 1);
+        Color color = shape.getColor();
+        if ((color == null ? 0 : color.getRGB()) != argb) {
+            shape.setColor(new Color(argb, true));
+        }
+        int zOrder = from.getInt(p + 5);
+        if (shape.getZOrder() != zOrder) {
+            shape.setZOrder(zOrder);
+        }
+        double x = from.getDouble(p + 9);
+        double y = from.getDouble(p + 17);
+        if (shape.getPos_x() != x || shape.getPos_y() != y) {
+            shape.setPosition(x, y);
+        }
+        double rotation = from.getDouble(p + 25);
+        if (shape.getRotation() != rotation) {
+            shape.setRotation(rotation);
+        }
+        double width = from.getDouble(p + 33);
+        double height = from.getDouble(p + 41);
+        if (shape instanceof Circle circle && circle.getRadius() != width / 2) {
+            circle.setRadius(width / 2);
+        } else if (shape instanceof Rectangle rectangle) {
+            if (rectangle.getWidth() != width) {
+                rectangle.setWidth(width);
+            }
+            if (rectangle.getHeight() != height) {
+                rectangle.setHeight(height);
+            }
+        } else if (shape instanceof Triangle triangle && triangle.getBase() != width) {
+            triangle.setBase(width);
+        }
+    }
+
+    private static void readBody(ByteBuffer from, int p, PhysicsWorld world, int i) {
+        double vx = from.getDouble(p);
+        double vy = from.getDouble(p + 8);
+        if (world.getVelocityX(i) != vx || world.getVelocityY(i) != vy) {
+            world.setVelocity(i, vx, vy);
+        }
+        double mass = from.getDouble(p + 16);
+        PhysicsBody body = world.getBody(i);
+        if (body.getMass() != mass) {
+            body.setMass(mass);
+        }
+    }
+
+    private void ensureCapacity(long capacity) {
+        if (capacity > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many shapes and bodies for one checkpoint");
+        }
+        if (capacity > buffer.capacity()) {
+            ByteBuffer larger = allocate((int) Math.max(capacity, Math.min(2L * buffer.capacity(),
+                    Integer.MAX_VALUE - 8)));
+            larger.put(0, buffer, 0, size);
+            buffer = larger;
+        }
+    }
+
+    private static ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
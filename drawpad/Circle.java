@@ -1,6 +1,9 @@
 package drawpad;
 
 import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Rectangle2D;
 
 /**
  * This class represents a Circle shape, extending the AbstractShape class.
@@ -66,6 +69,49 @@ public class Circle extends AbstractShape {
         g.fillOval((int)getPos_x(), (int)getPos_y(), (int) (2 * radius), (int) (2 * radius));
     }
 
+    /**
+     * Calculates the transform that moves the circle to its position, rounded down to whole pixels like it is
+     * drawn.
+     *
+     * @param transform the transform to store the result in
+     */
+    @Override
+    protected void computeLocalTransform(AffineTransform transform) {
+        transform.translate((int) getPos_x(), (int) getPos_y());
+    }
+
+    /**
+     * Draws the circle with the top-left corner of its bounding box at the origin.
+     *
+     * @param g the Graphics object on which to draw the circle
+     */
+    @Override
+    protected void drawLocal(Graphics2D g) {
+        g.setColor(getColor());
+        g.fillOval(0, 0, (int) (2 * radius), (int) (2 * radius));
+    }
+
+    /**
+     * Returns the circle with the top-left corner of its bounding box at the origin, with its diameter rounded
+     * down to whole pixels like it is drawn.
+     *
+     * @return the outline of the circle
+     */
+    @Override
+    protected java.awt.Shape computeLocalOutline() {
+        return new Ellipse2D.Double(0, 0, (int) (2 * radius), (int) (2 * radius));
+    }
+
+    /**
+     * Adds the circle to a render queue as an oval.
+     *
+     * @param queue the queue to add the circle to
+     */
+    @Override
+    public void submit(RenderQueue queue) {
+        queue.addOval(getZOrder(), getColor(), getPos_x(), getPos_y(), 2 * radius, 2 * radius);
+    }
+
     /**
      * Calculates and returns the area of the circle using the formula: area = π * radius^2.
      *
@@ -75,13 +121,25 @@ public class Circle extends AbstractShape {
         return Math.PI * radius * radius;
     }
 
+    /**
+     * Calculates the bounding box of the circle. The position of a circle is the top-left corner of its bounding box.
+     *
+     * @param bounds the rectangle to store the bounding box in
+     */
+    @Override
+    protected void computeBounds(Rectangle2D.Double bounds) {
+        bounds.setRect(getPos_x(), getPos_y(), 2 * radius, 2 * radius);
+    }
+
     /**
      * Resizes the circle by multiplying its radius with the given factor.
      *
      * @param factor the factor by which to resize the circle
      */
     public void resize(double factor) {
+        fireShapeWillChange();
         this.radius = this.radius * factor;
+        fireShapeChanged();
     }
 
     /**
@@ -99,7 +157,9 @@ public class Circle extends AbstractShape {
      * @param radius the new radius of the circle
      */
     public void setRadius(double radius) {
+        fireShapeWillChange();
         this.radius = radius;
+        fireShapeChanged();
     }
 
     @Override
@@ -0,0 +1,633 @@
+package drawpad;
+
+/**
+ * This class tests two shapes for overlap and, if they overlap, finds the contact normal and penetration depth.
+ * Circles are tested analytically; rectangles and triangles are treated as convex polygons (taking their rotation
+ * into account) and tested with the separating axis theorem.
+ * <p>
+ * The shapes are tested at the given positions rather than their own, so a PhysicsWorld can test where its bodies
+ * are before the shapes have been moved. Positions use the convention of the shapes: the top-left corner of the
+ * unrotated shape. The result of the last successful test is kept in this object, so a detector must not be
+ * shared between threads.
+ * <p>
+ * For fast bodies it also finds the time of impact of two moving shapes, so a small circle cannot pass through a
+ * thin rectangle between two steps. A circle moving against a rectangle, triangle or circle is swept exactly;
+ * other pairs, and shapes that rotate while they move, use conservative advancement, which repeatedly moves the
+ * shapes forward by a distance they cannot cover without touching.
+ */
+public class CollisionDetector {
+    private static final int MAX_VERTICES = 4; // Rectangles have the most vertices
+    private static final double TRIANGLE_HALF_HEIGHT = Math.sqrt(3) / 4; // Half the height of a triangle of base 1
+    private static final double LINEAR_SLOP = 0.01; // Gap at which conservative advancement counts as touching
+    private static final int MAX_ADVANCEMENT_ITERATIONS = 32;
+
+    /**
+     * Returned by timeOfImpact when the shapes do not touch during the motion.
+     */
+    public static final double NO_IMPACT = Double.POSITIVE_INFINITY;
+
+    private final double[] verticesA = new double[2 * MAX_VERTICES]; // x, y pairs of the first polygon
+    private final double[] verticesB = new double[2 * MAX_VERTICES]; // x, y pairs of the second polygon
+    private double normalX; // Unit normal of the last contact, pointing from the first shape to the second
+    private double normalY;
+    private double depth; // Penetration depth of the last contact, negative for a gap within the margin
+
+    /**
+     * Tests whether two shapes overlap when placed at the given positions. Only Circle, Rectangle and Triangle
+     * are supported; any other shape never collides.
+     *
+     * @param a  the first shape
+     * @param ax the x-coordinate of the first shape's position
+     * @param ay the y-coordinate of the first shape's position
+     * @param b  the second shape
+     * @param bx the x-coordinate of the second shape's position
+     * @param by the y-coordinate of the second shape's position
+     * @return true if the shapes overlap, in which case the normal and depth can be read from this detector
+     */
+    public boolean collide(AbstractShape a, double ax, double ay, AbstractShape b, double bx, double by) {
+        return collide(a, ax, ay, b, bx, by, 0);
+    }
+
+    /**
+     * Tests whether two shapes overlap or are less than a margin apart when placed at the given positions. Shapes
+     * that are apart have a negative depth: minus the gap between them along the normal. A PhysicsWorld uses this
+     * to find the contacts that are about to touch, so it can stop the bodies where they meet.
+     *
+     * @param a      the first shape
+     * @param ax     the x-coordinate of the first shape's position
+     * @param ay     the y-coordinate of the first shape's position
+     * @param b      the second shape
+     * @param bx     the x-coordinate of the second shape's position
+     * @param by     the y-coordinate of the second shape's position
+     * @param margin the largest gap at which the shapes count as touching, 0 or more
+     * @return true if the shapes overlap or are within the margin, in which case the normal and depth can be read
+     * from this detector
+     */
+    public boolean collide(AbstractShape a, double ax, double ay, AbstractShape b, double bx, double by,
+                           double margin) {
+        if (a instanceof Circle circleA) {
+            double r = circleA.getRadius();
+            if (b instanceof Circle circleB) {
+                double s = circleB.getRadius();
+                return circleCircle(ax + r, ay + r, r, bx + s, by + s, s, margin);
+            }
+            int count = vertices(b, bx, by, b.getRotation(), verticesB);
+            if (count == 0 || !polygonCircle(verticesB, count, ax + r, ay + r, r, margin)) {
+                return false;
+            }
+            // The polygon test gives the normal from the polygon to the circle
+            normalX = -normalX;
+            normalY = -normalY;
+            return true;
+        }
+        int countA = vertices(a, ax, ay, a.getRotation(), verticesA);
+        if (countA == 0) {
+            return false;
+        }
+        if (b instanceof Circle circleB) {
+            double s = circleB.getRadius();
+            return polygonCircle(verticesA, countA, bx + s, by + s, s, margin);
+        }
+        int countB = vertices(b, bx, by, b.getRotation(), verticesB);
+        return countB != 0 && polygonPolygon(verticesA, countA, verticesB, countB, margin);
+    }
+
+    /**
+     * Finds when the first shape, moving in a straight line by (dx, dy) relative to the second, first touches it.
+     * Both shapes keep their rotation. When one of the shapes is a circle the time is exact; otherwise it is found
+     * by conservative advancement and the shapes are less than 0.01 apart at the returned time.
+     * If the shapes touch, the normal at the point of impact can be read from this detector, pointing from the
+     * first shape to the second, and the depth is 0 unless they already overlap at the start.
+     *
+     * @param a  the moving shape
+     * @param ax the x-coordinate of the first shape's position at the start of the motion
+     * @param ay the y-coordinate of the first shape's position at the start of the motion
+     * @param dx the distance the first shape moves along x, relative to the second
+     * @param dy the distance the first shape moves along y, relative to the second
+     * @param b  the second shape
+     * @param bx the x-coordinate of the second shape's position
+     * @param by the y-coordinate of the second shape's position
+     * @return the fraction of the motion, between 0 and 1, at which the shapes touch, or NO_IMPACT
+     */
+    public double timeOfImpact(AbstractShape a, double ax, double ay, double dx, double dy,
+                               AbstractShape b, double bx, double by) {
+        return timeOfImpact(a, ax, ay, a.getRotation(), dx, dy, 0, b, bx, by, b.getRotation(), 0, 0, 0);
+    }
+
+    /**
+     * Finds when two shapes that move and rotate at a constant rate during the motion first touch. The rotation
+     * is applied around the same center the shapes are drawn around. A circle against a shape that does not rotate
+     * is swept exactly; all other cases use conservative advancement, which stops when the shapes are less than
+     * 0.01 apart. If the shapes touch, the normal at the point of impact can be read from this detector, pointing
+     * from the first shape to the second.
+     *
+     * @param a   the first shape
+     * @param ax  the x-coordinate of the first shape's position at the start of the motion
+     * @param ay  the y-coordinate of the first shape's position at the start of the motion
+     * @param ar  the rotation of the first shape at the start of the motion
+     * @param adx the distance the first shape moves along x
+     * @param ady the distance the first shape moves along y
+     * @param adr the angle the first shape turns by
+     * @param b   the second shape
+     * @param bx  the x-coordinate of the second shape's position at the start of the motion
+     * @param by  the y-coordinate of the second shape's position at the start of the motion
+     * @param br  the rotation of the second shape at the start of the motion
+     * @param bdx the distance the second shape moves along x
+     * @param bdy the distance the second shape moves along y
+     * @param bdr the angle the second shape turns by
+     * @return the fraction of the motion, between 0 and 1, at which the shapes touch, or NO_IMPACT
+     */
+    public double timeOfImpact(AbstractShape a, double ax, double ay, double ar, double adx, double ady, double adr,
+                               AbstractShape b, double bx, double by, double br, double bdx, double bdy, double bdr) {
+        // Only the relative motion matters for shapes that do not rotate, and turning a circle changes nothing
+        double dx = adx - bdx;
+        double dy = ady - bdy;
+        depth = 0;
+        if (a instanceof Circle circleA && (bdr == 0 || b instanceof Circle)) {
+            double r = circleA.getRadius();
+            if (b instanceof Circle circleB) {
+                double s = circleB.getRadius();
+                return sweepCircles(ax + r, ay + r, r, dx, dy, bx + s, by + s, s);
+            }
+            int count = vertices(b, bx, by, br, verticesB);
+            if (count == 0) {
+                return NO_IMPACT;
+            }
+            double time = sweepCirclePolygon(ax + r, ay + r, r, dx, dy, verticesB, count);
+            normalX = -normalX; // The sweep gives the normal from the polygon to the circle
+            normalY = -normalY;
+            return time;
+        }
+        if (b instanceof Circle circleB && adr == 0) {
+            double s = circleB.getRadius();
+            int count = vertices(a, ax, ay, ar, verticesA);
+            return count == 0 ? NO_IMPACT : sweepCirclePolygon(bx + s, by + s, s, -dx, -dy, verticesA, count);
+        }
+        return advance(a, ax, ay, ar, adx, ady, adr, b, bx, by, br, bdx, bdy, bdr);
+    }
+
+    /**
+     * Sweeps a circle with center (cx, cy) by (dx, dy) against a circle that stays in place.
+     */
+    private double sweepCircles(double cx, double cy, double r, double dx, double dy, double ox, double oy,
+                                double s) {
+        if (circleCircle(cx, cy, r, ox, oy, s, 0)) {
+            return 0;
+        }
+        double time = sweepPoint(cx - ox, cy - oy, dx, dy, r + s);
+        if (time > 1) {
+            return NO_IMPACT;
+        }
+        double nx = ox - (cx + dx * time);
+        double ny = oy - (cy + dy * time);
+        double length = Math.sqrt(nx * nx + ny * ny);
+        normalX = nx / length;
+        normalY = ny / length;
+        return time;
+    }
+
+    /**
+     * Sweeps a circle with center (cx, cy) by (dx, dy) against a convex polygon that stays in place. The circle
+     * first touches either the side of an edge, moved out by the radius, or the circle of that radius around a
+     * corner, so the earliest of those hits is the time of impact. The normal points from the polygon to the
+     * circle.
+     */
+    private double sweepCirclePolygon(double cx, double cy, double r, double dx, double dy, double[] vertices,
+                                      int count) {
+        if (polygonCircle(vertices, count, cx, cy, r, 0)) {
+            return 0;
+        }
+        double centroidX = 0, centroidY = 0;
+        for (int i = 0; i < count; i++) {
+            centroidX += vertices[2 * i];
+            centroidY += vertices[2 * i + 1];
+        }
+        centroidX /= count;
+        centroidY /= count;
+
+        double best = NO_IMPACT;
+        for (int i = 0; i < count; i++) {
+            int j = i + 1 == count ? 0 : i + 1;
+            double x0 = vertices[2 * i], y0 = vertices[2 * i + 1];
+            double ex = vertices[2 * j] - x0, ey = vertices[2 * j + 1] - y0;
+            double length = Math.sqrt(ex * ex + ey * ey);
+            if (length == 0) {
+                continue;
+            }
+            double nx = ey / length, ny = -ex / length;
+            if (nx * (x0 - centroidX) + ny * (y0 - centroidY) < 0) {
+                nx = -nx;
+                ny = -ny;
+            }
+            double approach = nx * dx + ny * dy;
+            double gap = nx * (cx - x0) + ny * (cy - y0) - r;
+            if (approach >= 0 || gap < 0) {
+                continue; // Moving away from the edge, or behind it
+            }
+            double time = -gap / approach;
+            if (time >= best) {
+                continue;
+            }
+            double along = ((cx + dx * time - x0) * ex + (cy + dy * time - y0) * ey) / (length * length);
+            if (along >= 0 && along <= 1) {
+                best = time;
+                normalX = nx;
+                normalY = ny;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            double vx = vertices[2 * i], vy = vertices[2 * i + 1];
+            double time = sweepPoint(cx - vx, cy - vy, dx, dy, r);
+            if (time < best) {
+                best = time;
+                normalX = (cx + dx * time - vx) / r;
+                normalY = (cy + dy * time - vy) / r;
+            }
+        }
+        return best <= 1 ? best : NO_IMPACT;
+    }
+
+    /**
+     * Returns the earliest time in [0, 1] at which the point (x, y) moving by (dx, dy) is at the given distance
+     * from the origin, or NO_IMPACT.
+     */
+    private static double sweepPoint(double x, double y, double dx, double dy, double distance) {
+        double a = dx * dx + dy * dy;
+        double b = x * dx + y * dy;
+        double c = x * x + y * y - distance * distance;
+        if (a == 0 || b >= 0) {
+            return NO_IMPACT; // Not moving, or moving away
+        }
+        double discriminant = b * b - a * c;
+        if (discriminant < 0) {
+            return NO_IMPACT;
+        }
+        double time = (-b - Math.sqrt(discriminant)) / a;
+        return time >= 0 && time <= 1 ? time : NO_IMPACT;
+    }
+
+    /**
+     * Finds the time of impact by conservative advancement: no point of either shape moves faster than the
+     * relative speed of their centers plus each rotation rate times the distance from the shape's center to its
+     * furthest point, so the shapes can safely be moved forward by their distance divided by that bound.
+     */
+    private double advance(AbstractShape a, double ax, double ay, double ar, double adx, double ady, double adr,
+                           AbstractShape b, double bx, double by, double br, double bdx, double bdy, double bdr) {
+        double rx = adx - bdx, ry = ady - bdy;
+        double bound = Math.sqrt(rx * rx + ry * ry) + Math.abs(adr) * reach(a) + Math.abs(bdr) * reach(b);
+        double time = 0;
+        for (int iteration = 0; iteration < MAX_ADVANCEMENT_ITERATIONS; iteration++) {
+            double distance = separation(a, ax + adx * time, ay + ady * time, ar + adr * time,
+                    b, bx + bdx * time, by + bdy * time, br + bdr * time);
+            if (Double.isNaN(distance)) {
+                return NO_IMPACT; // Unsupported shape
+            }
+            if (distance <= LINEAR_SLOP) {
+                return time;
+            }
+            if (bound == 0) {
+                return NO_IMPACT;
+            }
+            // Aim for half the slop, so the shapes never overlap at the returned time
+            time += (distance - LINEAR_SLOP / 2) / bound;
+            if (time > 1) {
+                return NO_IMPACT;
+            }
+        }
+        return time;
+    }
+
+    /**
+     * Returns the distance from the center a shape rotates around to its furthest point.
+     */
+    private static double reach(AbstractShape shape) {
+        if (shape instanceof Rectangle rectangle) {
+            return Math.hypot(rectangle.getWidth(), rectangle.getHeight()) / 2;
+        }
+        if (shape instanceof Triangle triangle) {
+            return Math.hypot(triangle.getBase() / 2, triangle.getBase() * TRIANGLE_HALF_HEIGHT);
+        }
+        return 0; // A circle is unchanged by rotation
+    }
+
+    /**
+     * Returns the distance between two shapes, or minus the penetration depth if they overlap, and sets the
+     * normal from the first shape to the second. Returns NaN for unsupported shapes.
+     */
+    private double separation(AbstractShape a, double ax, double ay, double ar,
+                              AbstractShape b, double bx, double by, double br) {
+        if (a instanceof Circle circleA && b instanceof Circle circleB) {
+            double r = circleA.getRadius(), s = circleB.getRadius();
+            double dx = bx + s - ax - r, dy = by + s - ay - r;
+            double distance = Math.sqrt(dx * dx + dy * dy);
+            if (distance == 0) {
+                normalX = 0;
+                normalY = -1;
+            } else {
+                normalX = dx / distance;
+                normalY = dy / distance;
+            }
+            return distance - r - s;
+        }
+        if (a instanceof Circle circleA) {
+            double r = circleA.getRadius();
+            int count = vertices(b, bx, by, br, verticesB);
+            double distance = count == 0 ? Double.NaN : pointPolygon(verticesB, count, ax + r, ay + r) - r;
+            normalX = -normalX;
+            normalY = -normalY;
+            return distance;
+        }
+        int countA = vertices(a, ax, ay, ar, verticesA);
+        if (countA == 0) {
+            return Double.NaN;
+        }
+        if (b instanceof Circle circleB) {
+            double s = circleB.getRadius();
+            return pointPolygon(verticesA, countA, bx + s, by + s) - s;
+        }
+        int countB = vertices(b, bx, by, br, verticesB);
+        if (countB == 0) {
+            return Double.NaN;
+        }
+        if (polygonPolygon(verticesA, countA, verticesB, countB, 0)) {
+            return -depth;
+        }
+        // Separated convex polygons are closest between a corner of one and an edge of the other
+        double best = closestCorner(verticesA, countA, verticesB, countB, Double.POSITIVE_INFINITY, 1);
+        return Math.sqrt(closestCorner(verticesB, countB, verticesA, countA, best, -1));
+    }
+
+    /**
+     * Returns the distance from a point to a convex polygon, or minus the depth if the point is inside, and sets
+     * the normal from the polygon to the point.
+     */
+    private double pointPolygon(double[] vertices, int count, double px, double py) {
+        if (polygonCircle(vertices, count, px, py, 0, 0)) {
+            return -depth;
+        }
+        double closestX = 0, closestY = 0;
+        double closestDistanceSq = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            int j = i + 1 == count ? 0 : i + 1;
+            double x0 = vertices[2 * i], y0 = vertices[2 * i + 1];
+            double ex = vertices[2 * j] - x0, ey = vertices[2 * j + 1] - y0;
+            double lengthSq = ex * ex + ey * ey;
+            double t = lengthSq == 0 ? 0 : Math.max(0, Math.min(1, ((px - x0) * ex + (py - y0) * ey) / lengthSq));
+            double qx = x0 + ex * t, qy = y0 + ey * t;
+            double distanceSq = (px - qx) * (px - qx) + (py - qy) * (py - qy);
+            if (distanceSq < closestDistanceSq) {
+                closestDistanceSq = distanceSq;
+                closestX = qx;
+                closestY = qy;
+            }
+        }
+        double distance = Math.sqrt(closestDistanceSq);
+        normalX = (px - closestX) / distance;
+        normalY = (py - closestY) / distance;
+        return distance;
+    }
+
+    /**
+     * Finds the corner of the first polygon closest to an edge of the second. If it is closer than bestSq, the
+     * normal is set to the direction from the corner to the edge times sign, and the squared distance returned.
+     */
+    private double closestCorner(double[] corners, int cornerCount, double[] edges, int edgeCount, double bestSq,
+                                 double sign) {
+        for (int k = 0; k < cornerCount; k++) {
+            double px = corners[2 * k], py = corners[2 * k + 1];
+            for (int i = 0; i < edgeCount; i++) {
+                int j = i + 1 == edgeCount ? 0 : i + 1;
+                double x0 = edges[2 * i], y0 = edges[2 * i + 1];
+                double ex = edges[2 * j] - x0, ey = edges[2 * j + 1] - y0;
+                double lengthSq = ex * ex + ey * ey;
+                double t = lengthSq == 0 ? 0 : Math.max(0, Math.min(1, ((px - x0) * ex + (py - y0) * ey) / lengthSq));
+                double dx = x0 + ex * t - px, dy = y0 + ey * t - py;
+                double distanceSq = dx * dx + dy * dy;
+                if (distanceSq < bestSq) {
+                    double distance = Math.sqrt(distanceSq);
+                    bestSq = distanceSq;
+                    normalX = sign * dx / distance;
+                    normalY = sign * dy / distance;
+                }
+            }
+        }
+        return bestSq;
+    }
+
+    /**
+     * Returns the x component of the unit normal of the last contact, pointing from the first shape to the second.
+     *
+     * @return the x component of the normal
+     */
+    public double getNormalX() {
+        return normalX;
+    }
+
+    /**
+     * Returns the y component of the unit normal of the last contact, pointing from the first shape to the second.
+     *
+     * @return the y component of the normal
+     */
+    public double getNormalY() {
+        return normalY;
+    }
+
+    /**
+     * Returns how far the shapes of the last contact overlap along the normal, or minus the gap between them if
+     * they were found within the margin without overlapping.
+     *
+     * @return the penetration depth
+     */
+    public double getDepth() {
+        return depth;
+    }
+
+    private boolean circleCircle(double ax, double ay, double ra, double bx, double by, double rb, double margin) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double radii = ra + rb;
+        double distanceSq = dx * dx + dy * dy;
+        if (distanceSq >= (radii + margin) * (radii + margin)) {
+            return false;
+        }
+        double distance = Math.sqrt(distanceSq);
+        if (distance == 0) {
+            // Concentric circles, any direction separates them
+            normalX = 0;
+            normalY = -1;
+        } else {
+            normalX = dx / distance;
+            normalY = dy / distance;
+        }
+        depth = radii - distance;
+        return true;
+    }
+
+    /**
+     * Tests a convex polygon against a circle. The normal points from the polygon to the circle.
+     */
+    private boolean polygonCircle(double[] vertices, int count, double cx, double cy, double radius, double margin) {
+        double centroidX = 0, centroidY = 0;
+        for (int i = 0; i < count; i++) {
+            centroidX += vertices[2 * i];
+            centroidY += vertices[2 * i + 1];
+        }
+        centroidX /= count;
+        centroidY /= count;
+
+        // Find the edge the circle center is furthest outside of (or least inside of)
+        double bestSeparation = Double.NEGATIVE_INFINITY;
+        double bestNx = 0, bestNy = 0;
+        for (int i = 0; i < count; i++) {
+            int j = i + 1 == count ? 0 : i + 1;
+            double x0 = vertices[2 * i], y0 = vertices[2 * i + 1];
+            double ex = vertices[2 * j] - x0, ey = vertices[2 * j + 1] - y0;
+            double length = Math.sqrt(ex * ex + ey * ey);
+            if (length == 0) {
+                continue;
+            }
+            double nx = ey / length, ny = -ex / length;
+            if (nx * (x0 - centroidX) + ny * (y0 - centroidY) < 0) {
+                // Make the normal point out of the polygon whatever the winding order
+                nx = -nx;
+                ny = -ny;
+            }
+            double separation = nx * (cx - x0) + ny * (cy - y0);
+            if (separation > radius + margin) {
+                return false;
+            }
+            if (separation > bestSeparation) {
+                bestSeparation = separation;
+                bestNx = nx;
+                bestNy = ny;
+            }
+        }
+        if (bestSeparation <= 0) {
+            // The center is inside the polygon, push it out through the nearest edge
+            normalX = bestNx;
+            normalY = bestNy;
+            depth = radius - bestSeparation;
+            return true;
+        }
+
+        // The center is outside, the closest feature is a point on the polygon's boundary
+        double closestX = 0, closestY = 0;
+        double closestDistanceSq = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            int j = i + 1 == count ? 0 : i + 1;
+            double x0 = vertices[2 * i], y0 = vertices[2 * i + 1];
+            double ex = vertices[2 * j] - x0, ey = vertices[2 * j + 1] - y0;
+            double lengthSq = ex * ex + ey * ey;
+            double t = lengthSq == 0 ? 0 : ((cx - x0) * ex + (cy - y0) * ey) / lengthSq;
+            t = Math.max(0, Math.min(1, t));
+            double px = x0 + ex * t, py = y0 + ey * t;
+            double distanceSq = (cx - px) * (cx - px) + (cy - py) * (cy - py);
+            if (distanceSq < closestDistanceSq) {
+                closestDistanceSq = distanceSq;
+                closestX = px;
+                closestY = py;
+            }
+        }
+        if (closestDistanceSq >= (radius + margin) * (radius + margin)) {
+            return false;
+        }
+        double distance = Math.sqrt(closestDistanceSq);
+        normalX = (cx - closestX) / distance;
+        normalY = (cy - closestY) / distance;
+        depth = radius - distance;
+        return true;
+    }
+
+    /**
+     * Tests two convex polygons with the separating axis theorem. The axis of least overlap becomes the normal.
+     */
+    private boolean polygonPolygon(double[] a, int countA, double[] b, int countB, double margin) {
+        depth = Double.POSITIVE_INFINITY;
+        return testAxes(a, countA, a, countA, b, countB, margin) && testAxes(b, countB, a, countA, b, countB, margin);
+    }
+
+    /**
+     * Projects both polygons onto the normals of the edges of the first argument. Returns false as soon as an axis
+     * separates them, otherwise keeps the axis along which the second polygon has to move the least to get out,
+     * oriented in the direction it has to move.
+     */
+    private boolean testAxes(double[] edges, int edgeCount, double[] a, int countA, double[] b, int countB,
+                             double margin) {
+        for (int i = 0; i < edgeCount; i++) {
+            int j = i + 1 == edgeCount ? 0 : i + 1;
+            double ex = edges[2 * j] - edges[2 * i];
+            double ey = edges[2 * j + 1] - edges[2 * i + 1];
+            double length = Math.sqrt(ex * ex + ey * ey);
+            if (length == 0) {
+                continue;
+            }
+            double nx = ey / length, ny = -ex / length;
+            double minA = Double.POSITIVE_INFINITY, maxA = Double.NEGATIVE_INFINITY;
+            for (int k = 0; k < countA; k++) {
+                double p = nx * a[2 * k] + ny * a[2 * k + 1];
+                minA = Math.min(minA, p);
+                maxA = Math.max(maxA, p);
+            }
+            double minB = Double.POSITIVE_INFINITY, maxB = Double.NEGATIVE_INFINITY;
+            for (int k = 0; k < countB; k++) {
+                double p = nx * b[2 * k] + ny * b[2 * k + 1];
+                minB = Math.min(minB, p);
+                maxB = Math.max(maxB, p);
+            }
+            double forward = maxA - minB; // Distance the second polygon has to move along the axis to get out
+            double backward = maxB - minA; // Distance it has to move against the axis
+            if (forward <= -margin || backward <= -margin) {
+                return false;
+            }
+            if (forward < depth) {
+                depth = forward;
+                normalX = nx;
+                normalY = ny;
+            }
+            if (backward < depth) {
+                depth = backward;
+                normalX = -nx;
+                normalY = -ny;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the vertices of a rectangle or triangle placed at (x, y) with the given rotation into dst and returns
+     * how many there are, or 0 for other shapes. The rotation is applied around the same center the shape is drawn
+     * around.
+     */
+    private static int vertices(AbstractShape shape, double x, double y, double rotation, double[] dst) {
+        double cos = Math.cos(rotation);
+        double sin = Math.sin(rotation);
+        if (shape instanceof Rectangle rectangle) {
+            double halfWidth = rectangle.getWidth() / 2;
+            double halfHeight = rectangle.getHeight() / 2;
+            double centerX = x + halfWidth;
+            double centerY = y + halfHeight;
+            corner(dst, 0, centerX, centerY, -halfWidth, -halfHeight, cos, sin);
+            corner(dst, 1, centerX, centerY, halfWidth, -halfHeight, cos, sin);
+            corner(dst, 2, centerX, centerY, halfWidth, halfHeight, cos, sin);
+            corner(dst, 3, centerX, centerY, -halfWidth, halfHeight, cos, sin);
+            return 4;
+        }
+        if (shape instanceof Triangle triangle) {
+            double halfBase = triangle.getBase() / 2;
+            double halfHeight = triangle.getBase() * TRIANGLE_HALF_HEIGHT;
+            double centerX = x + halfBase;
+            double centerY = y + halfHeight;
+            corner(dst, 0, centerX, centerY, -halfBase, -halfHeight, cos, sin);
+            corner(dst, 1, centerX, centerY, halfBase, -halfHeight, cos, sin);
+            corner(dst, 2, centerX, centerY, 0, halfHeight, cos, sin);
+            return 3;
+        }
+        return 0;
+    }
+
+    private static void corner(double[] dst, int i, double centerX, double centerY, double localX, double localY,
+                               double cos, double sin) {
+        dst[2 * i] = centerX + localX * cos - localY * sin;
+        dst[2 * i + 1] = centerY + localX * sin + localY * cos;
+    }
+}
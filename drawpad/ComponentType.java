@@ -0,0 +1,55 @@
+package drawpad;
+
+/**
+ * The kinds of component an entity of an EntityStore can have. Sets of components are passed around as int
+ * masks, built by combining the masks of the types with |.
+ */
+public enum ComponentType {
+    /**
+     * The position of the top-left corner of the unrotated shape, and the rotation in radians.
+     */
+    TRANSFORM,
+
+    /**
+     * The kind of shape (EntityStore.RECTANGLE, TRIANGLE or OVAL) and its width and height.
+     */
+    GEOMETRY,
+
+    /**
+     * The color the shape is filled with.
+     */
+    COLOR,
+
+    /**
+     * The velocity, the force accumulated for the next step and the inverse mass (0 for static entities).
+     */
+    PHYSICS,
+
+    /**
+     * 64 bits that the user can give any meaning, for example to mark players, enemies or bullets.
+     */
+    TAGS;
+
+    /**
+     * Returns the mask of this component type.
+     *
+     * @return a mask with the bit of this type set
+     */
+    public int mask() {
+        return 1 << ordinal();
+    }
+
+    /**
+     * Returns the mask of a set of component types.
+     *
+     * @param types the component types
+     * @return a mask with the bits of the types set
+     */
+    public static int maskOf(ComponentType... types) {
+        int mask = 0;
+        for (ComponentType type : types) {
+            mask |= type.mask();
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,671 @@
+package drawpad;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class stores entities as plain data instead of as AbstractShape and PhysicsBody objects, for scenes with
+ * many similar things moving around. An entity is an int id with a set of components (see ComponentType): a
+ * transform, a shape geometry, a color, physics state and user tags.
+ * <p>
+ * Entities with the same set of components are packed together in an Archetype, which keeps every property in
+ * its own primitive array. Behavior lives in EntitySystems registered with addSystem; update runs each system
+ * over every archetype that has the components the system needs, in batches of contiguous rows. Systems that
+ * allow it are split across the cores of a ForkJoinPool for archetypes of at least parallelThreshold entities.
+ * MovementSystem moves entities that have physics, like PhysicsWorld does for bodies.
+ * <p>
+ * The store is a Shape, so it can be added to an AbstractWindow like any other shape: it draws every entity that
+ * has a transform, a geometry and a color, with the same Java2D calls the matching Circle, Rectangle or Triangle
+ * would make. Entities are drawn grouped by archetype, in no particular order otherwise.
+ * <p>
+ * Entity ids stay valid until the entity is destroyed; a destroyed id is not reused until its slot has been
+ * reused 128 times, and isAlive tells whether an id still refers to a live entity. This class is not thread-safe;
+ * it is meant to be updated and drawn from the thread that owns the shapes.
+ */
+public class EntityStore implements Shape {
+    /**
+     * Geometry kind of a rectangle, rotated around its center.
+     */
+    public static final byte RECTANGLE = RenderQueue.RECTANGLE;
+    /**
+     * Geometry kind of an equilateral triangle with a side of width, rotated around the center of its bounding box.
+     */
+    public static final byte TRIANGLE = RenderQueue.TRIANGLE;
+    /**
+     * Geometry kind of an oval filling its width and height; a circle of radius r has a width and height of 2r.
+     */
+    public static final byte OVAL = RenderQueue.OVAL;
+
+    private static final int INDEX_BITS = 24; // Low bits of an id, the slot of the entity
+    private static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+    private static final int GENERATION_MASK = (1 << (31 - INDEX_BITS)) - 1; // Keeps ids non-negative
+    private static final int DRAWN = ComponentType.maskOf(ComponentType.TRANSFORM, ComponentType.GEOMETRY,
+            ComponentType.COLOR);
+
+    private final Archetype[] archetypes = new Archetype[1 << ComponentType.values().length]; // By mask, lazily
+    private Archetype[] entityArchetype = new Archetype[64]; // By slot, null for free slots
+    private int[] entityRow = new int[64]; // By slot
+    private int[] generations = new int[64]; // By slot, the high bits of the id of the entity in the slot
+    private int[] freeSlots = new int[64]; // Stack of slots of destroyed entities
+    private int freeCount;
+    private int slotCount; // Number of slots used so far
+    private int size; // Number of live entities
+
+    private final List<EntitySystem> systems = new ArrayList<>();
+    private boolean updating; // Whether update is running, during which entities cannot be created or destroyed
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private int parallelThreshold = 16384; // Minimum number of entities in an archetype before it is split
+    private int batchSize = 4096; // Number of rows updated by one task
+
+    private final RenderQueue drawQueue = new RenderQueue(); // Reused by draw
+    private final Rectangle2D.Double bounds = new Rectangle2D.Double(); // Reused by submit
+
+    /**
+     * Creates an entity with the given components, all set to zero except for the color, which is black.
+     *
+     * @param components a mask of ComponentType bits
+     * @return the id of the entity
+     * @throws IllegalArgumentException if the mask has bits that are not of a ComponentType
+     */
+    public int createEntity(int components) {
+        checkNotUpdating();
+        Archetype archetype = archetype(components); // Checks the mask before a slot is taken
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (slotCount == INDEX_MASK + 1) {
+                throw new IllegalStateException("Too many entities");
+            }
+            if (slotCount == entityArchetype.length) {
+                int capacity = slotCount * 2;
+                entityArchetype = Arrays.copyOf(entityArchetype, capacity);
+                entityRow = Arrays.copyOf(entityRow, capacity);
+                generations = Arrays.copyOf(generations, capacity);
+            }
+            slot = slotCount++;
+        }
+        int entity = generations[slot] << INDEX_BITS | slot;
+        entityArchetype[slot] = archetype;
+        entityRow[slot] = archetype.add(entity);
+        size++;
+        return entity;
+    }
+
+    /**
+     * Creates an entity from a Circle, Rectangle or Triangle and, optionally, a PhysicsBody, copying their
+     * current state. The shape and the body are not linked to the entity afterwards.
+     *
+     * @param shape the shape to copy the transform, geometry and color from
+     * @param body  the body to copy the velocity, force and mass from, or null for an entity without physics
+     * @return the id of the entity
+     */
+    public int createEntity(AbstractShape shape, PhysicsBody body) {
+        byte kind;
+        double width;
+        double height;
+        if (shape instanceof Circle circle) {
+            kind = OVAL;
+            width = height = 2 * circle.getRadius();
+        } else if (shape instanceof Rectangle rectangle) {
+            kind = RECTANGLE;
+            width = rectangle.getWidth();
+            height = rectangle.getHeight();
+        } else if (shape instanceof Triangle triangle) {
+            kind = TRIANGLE;
+            width = height = triangle.getBase();
+        } else {
+            throw new IllegalArgumentException("Unsupported shape: " + shape);
+        }
+        int components = DRAWN;
+        if (body != null) {
+            components |= ComponentType.PHYSICS.mask();
+        }
+        int entity = createEntity(components);
+        setPosition(entity, shape.getPos_x(), shape.getPos_y());
+        setRotation(entity, shape.getRotation());
+        setGeometry(entity, kind, width, height);
+        setColor(entity, shape.getColor());
+        if (body != null) {
+            Vector2D velocity = body.getVelocity();
+            Vector2D force = body.getForce();
+            setVelocity(entity, velocity.x, velocity.y);
+            applyForce(entity, force.x, force.y);
+            setMass(entity, body.getMass());
+        }
+        return entity;
+    }
+
+    /**
+     * Destroys an entity. Its id no longer refers to anything.
+     *
+     * @param entity the id of the entity
+     */
+    public void destroyEntity(int entity) {
+        checkNotUpdating();
+        int slot = slotOf(entity);
+        removeRow(entityArchetype[slot], entityRow[slot]);
+        entityArchetype[slot] = null;
+        generations[slot] = (generations[slot] + 1) & GENERATION_MASK;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+        size--;
+    }
+
+    /**
+     * Returns true if the id refers to an entity that has not been destroyed.
+     *
+     * @param entity the id of the entity
+     * @return true if the entity is alive
+     */
+    public boolean isAlive(int entity) {
+        int slot = entity & INDEX_MASK;
+        return entity >= 0 && slot < slotCount && entityArchetype[slot] != null
+                && generations[slot] == entity >>> INDEX_BITS;
+    }
+
+    /**
+     * Returns the number of live entities.
+     *
+     * @return the number of entities
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the components of an entity.
+     *
+     * @param entity the id of the entity
+     * @return a mask of ComponentType bits
+     */
+    public int getComponents(int entity) {
+        return entityArchetype[slotOf(entity)].getMask();
+    }
+
+    /**
+     * Adds components to an entity, which moves it to another archetype. The new components are set to zero,
+     * except for the color, which is black.
+     *
+     * @param entity     the id of the entity
+     * @param components a mask of ComponentType bits
+     */
+    public void addComponents(int entity, int components) {
+        setComponents(entity, getComponents(entity) | components);
+    }
+
+    /**
+     * Removes components from an entity, which moves it to another archetype.
+     *
+     * @param entity     the id of the entity
+     * @param components a mask of ComponentType bits
+     */
+    public void removeComponents(int entity, int components) {
+        setComponents(entity, getComponents(entity) & ~components);
+    }
+
+    private void setComponents(int entity, int components) {
+        checkNotUpdating();
+        int slot = slotOf(entity);
+        Archetype from = entityArchetype[slot];
+        if (from.getMask() == components) {
+            return;
+        }
+        Archetype to = archetype(components);
+        int fromRow = entityRow[slot];
+        int toRow = to.add(entity);
+        to.copyRow(from, fromRow, toRow);
+        removeRow(from, fromRow);
+        entityArchetype[slot] = to;
+        entityRow[slot] = toRow;
+    }
+
+    private void removeRow(Archetype archetype, int row) {
+        int moved = archetype.remove(row);
+        if (moved != -1) {
+            entityRow[moved & INDEX_MASK] = row;
+        }
+    }
+
+    private Archetype archetype(int components) {
+        if (components < 0 || components >= archetypes.length) {
+            throw new IllegalArgumentException("Invalid components: " + components);
+        }
+        Archetype archetype = archetypes[components];
+        if (archetype == null) {
+            archetype = new Archetype(components);
+            archetypes[components] = archetype;
+        }
+        return archetype;
+    }
+
+    private int slotOf(int entity) {
+        if (!isAlive(entity)) {
+            throw new IllegalArgumentException("No such entity: " + entity);
+        }
+        return entity & INDEX_MASK;
+    }
+
+    /**
+     * Returns the row of an entity in its archetype, after checking that it has the given component.
+     */
+    private int rowOf(int entity, ComponentType component) {
+        int slot = slotOf(entity);
+        if (!entityArchetype[slot].has(component.mask())) {
+            throw new IllegalArgumentException("Entity " + entity + " has no " + component + " component");
+        }
+        return entityRow[slot];
+    }
+
+    private Archetype archetypeOf(int entity) {
+        return entityArchetype[entity & INDEX_MASK];
+    }
+
+    private void checkNotUpdating() {
+        if (updating) {
+            throw new IllegalStateException("Entities cannot be created, destroyed or changed in shape during update");
+        }
+    }
+
+    public double getX(int entity) {
+        int row = rowOf(entity, ComponentType.TRANSFORM);
+        return archetypeOf(entity).getX()[row];
+    }
+
+    public double getY(int entity) {
+        int row = rowOf(entity, ComponentType.TRANSFORM);
+        return archetypeOf(entity).getY()[row];
+    }
+
+    /**
+     * Sets the position of the top-left corner of the unrotated shape of an entity.
+     *
+     * @param entity the id of the entity, which must have a TRANSFORM component
+     * @param x      the x-coordinate
+     * @param y      the y-coordinate
+     */
+    public void setPosition(int entity, double x, double y) {
+        int row = rowOf(entity, ComponentType.TRANSFORM);
+        Archetype archetype = archetypeOf(entity);
+        archetype.getX()[row] = x;
+        archetype.getY()[row] = y;
+    }
+
+    public double getRotation(int entity) {
+        int row = rowOf(entity, ComponentType.TRANSFORM);
+        return archetypeOf(entity).getRotation()[row];
+    }
+
+    /**
+     * Sets the rotation of an entity.
+     *
+     * @param entity   the id of the entity, which must have a TRANSFORM component
+     * @param rotation the rotation in radians
+     */
+    public void setRotation(int entity, double rotation) {
+        int row = rowOf(entity, ComponentType.TRANSFORM);
+        archetypeOf(entity).getRotation()[row] = rotation;
+    }
+
+    public byte getKind(int entity) {
+        int row = rowOf(entity, ComponentType.GEOMETRY);
+        return archetypeOf(entity).getKind()[row];
+    }
+
+    public double getWidth(int entity) {
+        int row = rowOf(entity, ComponentType.GEOMETRY);
+        return archetypeOf(entity).getWidth()[row];
+    }
+
+    public double getHeight(int entity) {
+        int row = rowOf(entity, ComponentType.GEOMETRY);
+        return archetypeOf(entity).getHeight()[row];
+    }
+
+    /**
+     * Sets the shape of an entity.
+     *
+     * @param entity the id of the entity, which must have a GEOMETRY component
+     * @param kind   RECTANGLE, TRIANGLE or OVAL
+     * @param width  the width, or the side of a triangle
+     * @param height the height, ignored for triangles
+     */
+    public void setGeometry(int entity, byte kind, double width, double height) {
+        if (kind != RECTANGLE && kind != TRIANGLE && kind != OVAL) {
+            throw new IllegalArgumentException("Invalid geometry kind: " + kind);
+        }
+        int row = rowOf(entity, ComponentType.GEOMETRY);
+        Archetype archetype = archetypeOf(entity);
+        archetype.getKind()[row] = kind;
+        archetype.getWidth()[row] = width;
+        archetype.getHeight()[row] = height;
+    }
+
+    public Color getColor(int entity) {
+        int row = rowOf(entity, ComponentType.COLOR);
+        return archetypeOf(entity).getColor()[row];
+    }
+
+    /**
+     * Sets the color of an entity.
+     *
+     * @param entity the id of the entity, which must have a COLOR component
+     * @param color  the color, or null to not draw the entity
+     */
+    public void setColor(int entity, Color color) {
+        int row = rowOf(entity, ComponentType.COLOR);
+        archetypeOf(entity).getColor()[row] = color;
+    }
+
+    public double getVelocityX(int entity) {
+        int row = rowOf(entity, ComponentType.PHYSICS);
+        return archetypeOf(entity).getVelocityX()[row];
+    }
+
+    public double getVelocityY(int entity) {
+        int row = rowOf(entity, ComponentType.PHYSICS);
+        return archetypeOf(entity).getVelocityY()[row];
+    }
+
+    /**
+     * Sets the velocity of an entity.
+     *
+     * @param entity the id of the entity, which must have a PHYSICS component
+     * @param x      the velocity along the x-axis, in pixels per second
+     * @param y      the velocity along the y-axis, in pixels per second
+     */
+    public void setVelocity(int entity, double x, double y) {
+        int row = rowOf(entity, ComponentType.PHYSICS);
+        Archetype archetype = archetypeOf(entity);
+        archetype.getVelocityX()[row] = x;
+        archetype.getVelocityY()[row] = y;
+    }
+
+    /**
+     * Adds a force to an entity for the next step of MovementSystem.
+     *
+     * @param entity the id of the entity, which must have a PHYSICS component
+     * @param x      the force along the x-axis
+     * @param y      the force along the y-axis
+     */
+    public void applyForce(int entity, double x, double y) {
+        int row = rowOf(entity, ComponentType.PHYSICS);
+        Archetype archetype = archetypeOf(entity);
+        archetype.getForceX()[row] += x;
+        archetype.getForceY()[row] += y;
+    }
+
+    /**
+     * Returns the mass of an entity.
+     *
+     * @param entity the id of the entity, which must have a PHYSICS component
+     * @return the mass, or 0 for a static entity
+     */
+    public double getMass(int entity) {
+        int row = rowOf(entity, ComponentType.PHYSICS);
+        double inverseMass = archetypeOf(entity).getInverseMass()[row];
+        return inverseMass == 0 ? 0 : 1 / inverseMass;
+    }
+
+    /**
+     * Sets the mass of an entity. A mass of 0 (or less) makes the entity static, which is the default.
+     *
+     * @param entity the id of the entity, which must have a PHYSICS component
+     * @param mass   the new mass
+     */
+    public void setMass(int entity, double mass) {
+        int row = rowOf(entity, ComponentType.PHYSICS);
+        archetypeOf(entity).getInverseMass()[row] = mass > 0 ? 1 / mass : 0;
+    }
+
+    public long getTags(int entity) {
+        int row = rowOf(entity, ComponentType.TAGS);
+        return archetypeOf(entity).getTags()[row];
+    }
+
+    /**
+     * Sets the tags of an entity.
+     *
+     * @param entity the id of the entity, which must have a TAGS component
+     * @param tags   the tag bits
+     */
+    public void setTags(int entity, long tags) {
+        int row = rowOf(entity, ComponentType.TAGS);
+        archetypeOf(entity).getTags()[row] = tags;
+    }
+
+    /**
+     * Adds a system, which is updated after the systems added before it.
+     *
+     * @param system the system to be added
+     */
+    public void addSystem(EntitySystem system) {
+        systems.add(system);
+    }
+
+    /**
+     * Removes a system.
+     *
+     * @param system the system to be removed
+     */
+    public void removeSystem(EntitySystem system) {
+        systems.remove(system);
+    }
+
+    /**
+     * Runs every system, in the order they were added, over every archetype that has the components the system
+     * requires. Parallel systems are split into batches of batchSize rows on the pool for archetypes of at least
+     * parallelThreshold entities.
+     *
+     * @param dt the length of the step in seconds
+     */
+    public void update(double dt) {
+        checkNotUpdating();
+        updating = true;
+        try {
+            for (int s = 0; s < systems.size(); s++) {
+                EntitySystem system = systems.get(s);
+                int required = system.getRequiredComponents();
+                for (Archetype archetype : archetypes) {
+                    if (archetype == null || archetype.size() == 0 || !archetype.has(required)) {
+                        continue;
+                    }
+                    int count = archetype.size();
+                    if (system.isParallel() && count >= parallelThreshold && pool.getParallelism() > 1) {
+                        pool.invoke(new Batch(system, archetype, 0, count, dt));
+                    } else {
+                        system.update(archetype, 0, count, dt);
+                    }
+                }
+            }
+        } finally {
+            updating = false;
+        }
+    }
+
+    /**
+     * Updates a range of rows, splitting it in half until it is no larger than the batch size.
+     */
+    private final class Batch extends RecursiveAction {
+        private final EntitySystem system;
+        private final Archetype archetype;
+        private final int from;
+        private final int to;
+        private final double dt;
+
+        Batch(EntitySystem system, Archetype archetype, int from, int to, double dt) {
+            this.system = system;
+            this.archetype = archetype;
+            this.from = from;
+            this.to = to;
+            this.dt = dt;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= batchSize) {
+                system.update(archetype, from, to, dt);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Batch(system, archetype, from, mid, dt), new Batch(system, archetype, mid, to, dt));
+        }
+    }
+
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Sets the pool that parallel systems are split across.
+     *
+     * @param pool the pool to be used
+     */
+    public void setPool(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("Pool must not be null");
+        }
+        this.pool = pool;
+    }
+
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Sets the minimum number of entities an archetype must have before a parallel system is split across
+     * cores for it. Smaller archetypes are updated on the calling thread, where the cost of handing out tasks
+     * would outweigh the gain.
+     *
+     * @param parallelThreshold the minimum number of entities for a parallel update
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets the number of rows updated by one task of a parallel update.
+     *
+     * @param batchSize the number of rows per task, at least 1
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Draws every entity that has a transform, a geometry and a color.
+     *
+     * @param g the Graphics object on which to draw the entities
+     */
+    @Override
+    public void draw(Graphics g) {
+        drawQueue.clear();
+        submit(drawQueue);
+        drawQueue.drawInOrder(g);
+        drawQueue.clear();
+    }
+
+    /**
+     * Adds a draw command for every entity that has a transform, a geometry and a color.
+     *
+     * @param queue the queue to add the commands to
+     */
+    @Override
+    public void submit(RenderQueue queue) {
+        for (Archetype archetype : archetypes) {
+            if (archetype == null || !archetype.has(DRAWN)) {
+                continue;
+            }
+            double[] x = archetype.getX();
+            double[] y = archetype.getY();
+            double[] rotation = archetype.getRotation();
+            byte[] kind = archetype.getKind();
+            double[] width = archetype.getWidth();
+            double[] height = archetype.getHeight();
+            Color[] color = archetype.getColor();
+            for (int row = 0, count = archetype.size(); row < count; row++) {
+                if (color[row] == null) {
+                    continue;
+                }
+                switch (kind[row]) {
+                    case RECTANGLE -> queue.addRectangle(0, color[row], x[row], y[row], width[row], height[row],
+                            rotation[row], bounds(x[row], y[row], width[row], height[row], rotation[row]));
+                    case TRIANGLE -> queue.addTriangle(0, color[row], x[row], y[row], width[row], rotation[row],
+                            bounds(x[row], y[row], width[row], width[row] * Math.sqrt(3) / 2, rotation[row]));
+                    default -> queue.addOval(0, color[row], x[row], y[row], width[row], height[row]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a box that contains a width by height box at (x, y) rotated around its center, using the circle
+     * through its corners when it is rotated.
+     */
+    private Rectangle2D bounds(double x, double y, double width, double height, double rotation) {
+        if (rotation == 0) {
+            bounds.setRect(x, y, width, height);
+        } else {
+            double radius = Math.sqrt(width * width + height * height) / 2;
+            bounds.setRect(x + width / 2 - radius, y + height / 2 - radius, 2 * radius, 2 * radius);
+        }
+        return bounds;
+    }
+
+    /**
+     * Resizes the geometry of every entity by a given factor, keeping the top-left corners in place.
+     *
+     * @param factor the factor by which to resize the entities
+     */
+    @Override
+    public void resize(double factor) {
+        for (Archetype archetype : archetypes) {
+            if (archetype == null || !archetype.has(ComponentType.GEOMETRY.mask())) {
+                continue;
+            }
+            double[] width = archetype.getWidth();
+            double[] height = archetype.getHeight();
+            for (int row = 0, count = archetype.size(); row < count; row++) {
+                width[row] *= factor;
+                height[row] *= factor;
+            }
+        }
+    }
+
+    /**
+     * Returns the sum of the areas of the entities that have a geometry.
+     *
+     * @return the total area
+     */
+    @Override
+    public double getArea() {
+        double area = 0;
+        for (Archetype archetype : archetypes) {
+            if (archetype == null || !archetype.has(ComponentType.GEOMETRY.mask())) {
+                continue;
+            }
+            byte[] kind = archetype.getKind();
+            double[] width = archetype.getWidth();
+            double[] height = archetype.getHeight();
+            for (int row = 0, count = archetype.size(); row < count; row++) {
+                area += switch (kind[row]) {
+                    case RECTANGLE -> width[row] * height[row];
+                    case TRIANGLE -> Math.sqrt(3) / 4 * width[row] * width[row];
+                    default -> Math.PI / 4 * width[row] * height[row];
+                };
+            }
+        }
+        return area;
+    }
+}
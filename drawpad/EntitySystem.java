@@ -0,0 +1,36 @@
+package drawpad;
+
+/**
+ * This interface is implemented by the systems of an EntityStore. A system works on every entity that has at
+ * least the components returned by getRequiredComponents, one Archetype at a time, reading and writing the
+ * component arrays of the archetype directly.
+ */
+public interface EntitySystem {
+    /**
+     * Returns the components an entity must have to be updated by this system.
+     *
+     * @return a mask of ComponentType bits
+     */
+    int getRequiredComponents();
+
+    /**
+     * Updates the entities in rows [from, to) of an archetype. The system must not create or destroy entities,
+     * or add or remove components, while it is updated.
+     *
+     * @param archetype the archetype holding the entities
+     * @param from      the first row to update
+     * @param to        the row after the last row to update
+     * @param dt        the length of the step in seconds
+     */
+    void update(Archetype archetype, int from, int to, double dt);
+
+    /**
+     * Returns true if the rows of an archetype may be updated in separate batches on several threads at once,
+     * which is the case when update only touches the rows it is given. The default is false.
+     *
+     * @return true if the system can be updated in parallel
+     */
+    default boolean isParallel() {
+        return false;
+    }
+}
@@ -0,0 +1,327 @@
+package drawpad;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.awt.*;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class records how long the frames of a window take, for finding slow updates, slow painting and jitter.
+ * Set it on a window with AbstractWindow.setFrameMetrics to start recording.
+ * <p>
+ * For every frame it records the time spent in update(), the time spent painting, the time between the starts of
+ * two paints, how many of the window's own shapes were drawn and how many were skipped because they were outside
+ * the area being painted, and the bytes allocated by the updating and painting threads. The values are kept in
+ * Histograms, which give the p50, p99 and maximum of each. In LoopMode.SWING_TIMER it also counts the timer ticks
+ * that Swing merged because the event dispatch thread fell behind.
+ * <p>
+ * Recording costs a few calls to System.nanoTime and to the thread's allocation counter per frame and never
+ * allocates, so it can be left on. The values can be read through JMX after calling register, and drawn over the
+ * window by making the overlay visible.
+ */
+public class FrameMetrics implements FrameMetricsMXBean {
+    private static final com.sun.management.ThreadMXBean THREADS = threadBean(); // Null if allocation is not measured
+    private static final int OVERLAY_WIDTH = 250;
+    private static final int OVERLAY_LINE_HEIGHT = 14;
+    private static final int OVERLAY_LINES = 6;
+    private static final Color OVERLAY_BACKGROUND = new Color(0, 0, 0, 160);
+    private static final Font OVERLAY_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 11);
+
+    private final Histogram updateTimes = new Histogram(); // In nanoseconds
+    private final Histogram paintTimes = new Histogram(); // In nanoseconds
+    private final Histogram frameIntervals = new Histogram(); // Between the starts of two paints, in nanoseconds
+    private final Histogram shapesDrawn = new Histogram();
+    private final Histogram shapesCulled = new Histogram();
+    private final Histogram allocatedBytes = new Histogram(); // Per frame, by the updating and painting threads
+    private final AtomicLong pendingBytes = new AtomicLong(); // Allocated by updates since the last paint
+    private final AtomicLong mergedTimerTicks = new AtomicLong();
+    private long lastPaintStart; // Start of the previous paint, 0 before the first
+    private volatile boolean overlayVisible;
+    private ObjectName objectName; // Set while registered with JMX
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        try {
+            if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                    && bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+                return bean;
+            }
+        } catch (UnsupportedOperationException e) {
+            // Fall through, allocation is not measured on this JVM
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of bytes allocated by the calling thread since it started, for measuring the allocation
+     * of a piece of code by taking the difference.
+     *
+     * @return the bytes allocated by the calling thread, or 0 if the JVM cannot measure it
+     */
+    public static long currentThreadAllocatedBytes() {
+        return THREADS == null ? 0 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Records one call to update().
+     *
+     * @param nanos the time taken, in nanoseconds
+     * @param bytes the bytes allocated during the call
+     */
+    public void recordUpdate(long nanos, long bytes) {
+        updateTimes.record(nanos);
+        pendingBytes.addAndGet(bytes);
+    }
+
+    /**
+     * Records one paint of the window. The bytes allocated by the updates since the previous paint are added to
+     * the bytes allocated by the paint, so each frame is counted once.
+     *
+     * @param start  the System.nanoTime at which painting started
+     * @param nanos  the time taken, in nanoseconds
+     * @param bytes  the bytes allocated while painting
+     * @param drawn  the number of shapes drawn
+     * @param culled the number of shapes skipped because they lay outside the painted area
+     */
+    public void recordPaint(long start, long nanos, long bytes, int drawn, int culled) {
+        paintTimes.record(nanos);
+        shapesDrawn.record(drawn);
+        shapesCulled.record(culled);
+        allocatedBytes.record(bytes + pendingBytes.getAndSet(0));
+        synchronized (frameIntervals) {
+            if (lastPaintStart != 0) {
+                frameIntervals.record(start - lastPaintStart);
+            }
+            lastPaintStart = start;
+        }
+    }
+
+    /**
+     * Records a tick of the Swing timer. Ticks that arrive more than one and a half delays after the previous one
+     * are counted as merged ticks, one for every delay missed.
+     *
+     * @param intervalNanos the time since the previous tick, in nanoseconds
+     * @param delayNanos    the delay of the timer, in nanoseconds
+     */
+    public void recordTimerTick(long intervalNanos, long delayNanos) {
+        if (delayNanos > 0 && 2 * intervalNanos > 3 * delayNanos) {
+            mergedTimerTicks.addAndGet(Math.round((double) intervalNanos / delayNanos) - 1);
+        }
+    }
+
+    public Histogram getUpdateTimes() {
+        return updateTimes;
+    }
+
+    public Histogram getPaintTimes() {
+        return paintTimes;
+    }
+
+    public Histogram getFrameIntervals() {
+        return frameIntervals;
+    }
+
+    public Histogram getShapesDrawn() {
+        return shapesDrawn;
+    }
+
+    public Histogram getShapesCulled() {
+        return shapesCulled;
+    }
+
+    public Histogram getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    @Override
+    public long getFrameCount() {
+        return paintTimes.getCount();
+    }
+
+    @Override
+    public double getUpdateTimeP50Millis() {
+        return updateTimes.getPercentile(50) / 1e6;
+    }
+
+    @Override
+    public double getUpdateTimeP99Millis() {
+        return updateTimes.getPercentile(99) / 1e6;
+    }
+
+    @Override
+    public double getUpdateTimeMaxMillis() {
+        return updateTimes.getMax() / 1e6;
+    }
+
+    @Override
+    public double getPaintTimeP50Millis() {
+        return paintTimes.getPercentile(50) / 1e6;
+    }
+
+    @Override
+    public double getPaintTimeP99Millis() {
+        return paintTimes.getPercentile(99) / 1e6;
+    }
+
+    @Override
+    public double getPaintTimeMaxMillis() {
+        return paintTimes.getMax() / 1e6;
+    }
+
+    @Override
+    public double getFrameIntervalP50Millis() {
+        return frameIntervals.getPercentile(50) / 1e6;
+    }
+
+    @Override
+    public double getFrameIntervalP99Millis() {
+        return frameIntervals.getPercentile(99) / 1e6;
+    }
+
+    @Override
+    public double getFrameIntervalMaxMillis() {
+        return frameIntervals.getMax() / 1e6;
+    }
+
+    @Override
+    public long getShapesDrawnP50() {
+        return shapesDrawn.getPercentile(50);
+    }
+
+    @Override
+    public long getShapesDrawnP99() {
+        return shapesDrawn.getPercentile(99);
+    }
+
+    @Override
+    public long getShapesDrawnMax() {
+        return shapesDrawn.getMax();
+    }
+
+    @Override
+    public long getShapesCulledP50() {
+        return shapesCulled.getPercentile(50);
+    }
+
+    @Override
+    public long getShapesCulledP99() {
+        return shapesCulled.getPercentile(99);
+    }
+
+    @Override
+    public long getShapesCulledMax() {
+        return shapesCulled.getMax();
+    }
+
+    @Override
+    public long getAllocatedBytesP50() {
+        return allocatedBytes.getPercentile(50);
+    }
+
+    @Override
+    public long getAllocatedBytesP99() {
+        return allocatedBytes.getPercentile(99);
+    }
+
+    @Override
+    public long getAllocatedBytesMax() {
+        return allocatedBytes.getMax();
+    }
+
+    @Override
+    public long getMergedTimerTicks() {
+        return mergedTimerTicks.get();
+    }
+
+    @Override
+    public void reset() {
+        updateTimes.reset();
+        paintTimes.reset();
+        shapesDrawn.reset();
+        shapesCulled.reset();
+        allocatedBytes.reset();
+        pendingBytes.set(0);
+        mergedTimerTicks.set(0);
+        synchronized (frameIntervals) {
+            frameIntervals.reset();
+            lastPaintStart = 0;
+        }
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server as drawpad:type=FrameMetrics,name=name, so they can be
+     * read with JMX clients. Does nothing if already registered.
+     *
+     * @param name the name to register under, usually the title of the window
+     * @throws JMException if the name is invalid or already taken
+     */
+    public synchronized void register(String name) throws JMException {
+        if (objectName != null) {
+            return;
+        }
+        ObjectName candidate = new ObjectName("drawpad:type=FrameMetrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, candidate);
+        objectName = candidate;
+    }
+
+    /**
+     * Removes the metrics from the platform MBean server. Does nothing if not registered.
+     *
+     * @throws JMException if the metrics could not be removed
+     */
+    public synchronized void unregister() throws JMException {
+        if (objectName == null) {
+            return;
+        }
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        objectName = null;
+    }
+
+    /**
+     * Shows or hides a summary of the metrics in the top left corner of the window.
+     *
+     * @param overlayVisible true to draw the overlay
+     */
+    public void setOverlayVisible(boolean overlayVisible) {
+        this.overlayVisible = overlayVisible;
+    }
+
+    public boolean isOverlayVisible() {
+        return overlayVisible;
+    }
+
+    /**
+     * Returns the area covered by the overlay, which is repainted every frame while the overlay is visible.
+     *
+     * @return the bounds of the overlay
+     */
+    public java.awt.Rectangle getOverlayBounds() {
+        return new java.awt.Rectangle(0, 0, OVERLAY_WIDTH, OVERLAY_LINES * OVERLAY_LINE_HEIGHT + 6);
+    }
+
+    /**
+     * Draws the overlay. Called by AbstractWindow after the shapes when the overlay is visible, outside the
+     * measured paint time.
+     *
+     * @param g the Graphics object on which to draw the overlay
+     */
+    public void drawOverlay(Graphics g) {
+        java.awt.Rectangle bounds = getOverlayBounds();
+        g.setColor(OVERLAY_BACKGROUND);
+        g.fillRect(bounds.x, bounds.y, bounds.width, bounds.height);
+        g.setColor(Color.WHITE);
+        g.setFont(OVERLAY_FONT);
+        double interval = getFrameIntervalP50Millis();
+        String[] lines = {
+                String.format("fps      %6.1f", interval > 0 ? 1000 / interval : 0),
+                String.format("update   %6.2f p99 %6.2f ms", getUpdateTimeP50Millis(), getUpdateTimeP99Millis()),
+                String.format("paint    %6.2f p99 %6.2f ms", getPaintTimeP50Millis(), getPaintTimeP99Millis()),
+                String.format("interval %6.2f p99 %6.2f ms", interval, getFrameIntervalP99Millis()),
+                String.format("shapes   %6d culled %6d", getShapesDrawnP50(), getShapesCulledP50()),
+                String.format("alloc    %6d KB, merged %d", getAllocatedBytesP50() / 1024, getMergedTimerTicks())
+        };
+        for (int i = 0; i < lines.length; i++) {
+            g.drawString(lines[i], bounds.x + 5, bounds.y + (i + 1) * OVERLAY_LINE_HEIGHT);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package drawpad;
+
+/**
+ * The management interface of FrameMetrics, as shown by JMX clients such as JConsole and VisualVM.
+ * Times are in milliseconds; every value is computed from the frames recorded since the last reset.
+ */
+public interface FrameMetricsMXBean {
+    long getFrameCount();
+
+    double getUpdateTimeP50Millis();
+
+    double getUpdateTimeP99Millis();
+
+    double getUpdateTimeMaxMillis();
+
+    double getPaintTimeP50Millis();
+
+    double getPaintTimeP99Millis();
+
+    double getPaintTimeMaxMillis();
+
+    double getFrameIntervalP50Millis();
+
+    double getFrameIntervalP99Millis();
+
+    double getFrameIntervalMaxMillis();
+
+    long getShapesDrawnP50();
+
+    long getShapesDrawnP99();
+
+    long getShapesDrawnMax();
+
+    long getShapesCulledP50();
+
+    long getShapesCulledP99();
+
+    long getShapesCulledMax();
+
+    long getAllocatedBytesP50();
+
+    long getAllocatedBytesP99();
+
+    long getAllocatedBytesMax();
+
+    /**
+     * Returns the number of timer ticks that Swing merged into a later tick because the event dispatch thread
+     * was busy.
+     *
+     * @return the number of merged ticks
+     */
+    long getMergedTimerTicks();
+
+    /**
+     * Forgets all recorded frames.
+     */
+    void reset();
+}
@@ -0,0 +1,20 @@
+package drawpad;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * This interface receives the frames drawn by a HeadlessRunner.
+ * It is called on the thread running the HeadlessRunner, once per frame, right after the frame is drawn.
+ */
+public interface FrameSink {
+    /**
+     * Receives a frame. The image is reused for the next frame, so copy it if it has to be kept after this
+     * method returns.
+     *
+     * @param frame the number of the frame, starting at 0
+     * @param image the frame
+     * @throws IOException if the frame cannot be stored; this stops the runner
+     */
+    void frameRendered(long frame, BufferedImage image) throws IOException;
+}
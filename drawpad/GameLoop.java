@@ -0,0 +1,206 @@
+package drawpad;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class runs a fixed-timestep game loop on its own thread.
+ * Elapsed time, measured with System.nanoTime, is collected in an accumulator and consumed in steps of exactly
+ * 1 / updateRate seconds, so the simulation advances at the same rate no matter how long each frame takes.
+ * Rendering happens separately at up to renderRate frames per second and is given the fraction of a step
+ * left in the accumulator for interpolation.
+ * If the loop falls behind, at most maxUpdatesPerFrame steps are run before the next render and the rest of
+ * the backlog is dropped, so a slow machine runs the simulation slower instead of freezing.
+ */
+public class GameLoop implements Runnable {
+    private static final long SPIN_THRESHOLD = 1_000_000L; // Waits shorter than this (in ns) are spun instead of parked
+
+    private final GameLoopListener listener; // Receives the update and render calls
+    private volatile double updateRate = 60; // Simulation steps per second
+    private volatile double renderRate = 60; // Frames per second, 0 or less renders as often as possible
+    private volatile int maxUpdatesPerFrame = 5; // Maximum number of steps run between two frames
+    private volatile boolean running;
+    private Thread thread;
+
+    private volatile long updateCount; // Number of steps run since start
+    private volatile long renderCount; // Number of frames rendered since start
+    private volatile long droppedNanos; // Time dropped from the accumulator because of the catch-up limit
+
+    /**
+     * Constructor to create a GameLoop that drives the specified listener.
+     *
+     * @param listener the listener to be updated and rendered
+     */
+    public GameLoop(GameLoopListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Starts the loop on a new daemon thread. Does nothing if the loop is already running.
+     *
+     * @param name the name of the thread
+     */
+    public synchronized void start(String name) {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Asks the loop to stop and waits for its thread to finish, unless called from the loop thread itself.
+     */
+    public void stop() {
+        Thread current;
+        synchronized (this) {
+            running = false;
+            current = thread;
+            thread = null;
+        }
+        if (current != null && current != Thread.currentThread()) {
+            try {
+                current.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Returns true if the loop is running.
+     *
+     * @return true if the loop is running, false otherwise
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void run() {
+        long previous = System.nanoTime();
+        long accumulator = 0;
+        long nextRender = previous;
+        while (running) {
+            long step = (long) (1_000_000_000L / updateRate);
+            double renderRate = this.renderRate;
+            long renderInterval = renderRate > 0 ? (long) (1_000_000_000L / renderRate) : 0;
+            long maxBacklog = step * Math.max(1, maxUpdatesPerFrame);
+
+            long now = System.nanoTime();
+            accumulator += now - previous;
+            previous = now;
+            if (accumulator > maxBacklog) {
+                droppedNanos += accumulator - maxBacklog;
+                accumulator = maxBacklog;
+            }
+
+            double dt = step / 1e9;
+            while (accumulator >= step && running) {
+                listener.tick(dt);
+                accumulator -= step;
+                updateCount++;
+            }
+
+            if (now - nextRender >= 0) {
+                listener.render((double) accumulator / step);
+                renderCount++;
+                nextRender += renderInterval;
+                if (now - nextRender >= 0) {
+                    // Rendering fell behind, start counting again from now instead of rendering a burst
+                    nextRender = now + renderInterval;
+                }
+            }
+
+            long nextUpdate = now + (step - accumulator);
+            long wake = nextUpdate - nextRender < 0 ? nextUpdate : nextRender;
+            sleepUntil(wake);
+        }
+    }
+
+    /**
+     * Parks the thread until shortly before the deadline and spins for the rest, because parking alone
+     * is too coarse for frame pacing on some platforms.
+     */
+    private void sleepUntil(long deadline) {
+        long remaining = deadline - System.nanoTime();
+        while (remaining > 0 && running) {
+            if (remaining > SPIN_THRESHOLD) {
+                LockSupport.parkNanos(remaining - SPIN_THRESHOLD);
+            } else {
+                Thread.onSpinWait();
+            }
+            remaining = deadline - System.nanoTime();
+        }
+    }
+
+    public double getUpdateRate() {
+        return updateRate;
+    }
+
+    /**
+     * Sets the number of simulation steps per second.
+     *
+     * @param updateRate the number of steps per second, must be positive
+     */
+    public void setUpdateRate(double updateRate) {
+        if (!(updateRate > 0)) {
+            throw new IllegalArgumentException("updateRate must be positive: " + updateRate);
+        }
+        this.updateRate = updateRate;
+    }
+
+    public double getRenderRate() {
+        return renderRate;
+    }
+
+    /**
+     * Sets the maximum number of frames rendered per second.
+     *
+     * @param renderRate the number of frames per second, 0 or less to render as often as possible
+     */
+    public void setRenderRate(double renderRate) {
+        this.renderRate = renderRate;
+    }
+
+    public int getMaxUpdatesPerFrame() {
+        return maxUpdatesPerFrame;
+    }
+
+    /**
+     * Sets the maximum number of simulation steps run between two frames when the loop is catching up.
+     *
+     * @param maxUpdatesPerFrame the maximum number of steps per frame, at least 1
+     */
+    public void setMaxUpdatesPerFrame(int maxUpdatesPerFrame) {
+        this.maxUpdatesPerFrame = Math.max(1, maxUpdatesPerFrame);
+    }
+
+    /**
+     * Returns the number of simulation steps run since the loop was created.
+     *
+     * @return the number of steps
+     */
+    public long getUpdateCount() {
+        return updateCount;
+    }
+
+    /**
+     * Returns the number of frames rendered since the loop was created.
+     *
+     * @return the number of frames
+     */
+    public long getRenderCount() {
+        return renderCount;
+    }
+
+    /**
+     * Returns the simulation time, in nanoseconds, that was skipped because the loop fell too far behind.
+     *
+     * @return the dropped time in nanoseconds
+     */
+    public long getDroppedNanos() {
+        return droppedNanos;
+    }
+}
@@ -0,0 +1,22 @@
+package drawpad;
+
+/**
+ * This interface is implemented by objects driven by a GameLoop.
+ * Both methods are called on the loop thread.
+ */
+public interface GameLoopListener {
+    /**
+     * Advances the simulation by one fixed step.
+     *
+     * @param dt the length of the step in seconds, the same for every call
+     */
+    void tick(double dt);
+
+    /**
+     * Renders a frame.
+     *
+     * @param alpha how far the current time lies between the last completed step and the next one,
+     *              between 0 and 1; use it to interpolate between the previous and the current state
+     */
+    void render(double alpha);
+}
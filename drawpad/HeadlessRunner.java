@@ -0,0 +1,250 @@
+package drawpad;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class runs a Window without a JFrame or any other display, for render servers, exporting animations and
+ * throughput tests in CI. It works with java.awt.headless=true.
+ * <p>
+ * run calls start() once and then, for every frame, applies the pending shape changes, calls update() with a
+ * fixed step of 1 / updateRate seconds and draws the shapes into an offscreen image, which is passed to a
+ * FrameSink. Everything happens on the calling thread, which becomes the owner of the shapes. Frames are drawn as
+ * fast as possible by default, or paced to a fixed frame rate; since the step is fixed either way, the frames
+ * produced are the same. Window.render(double) is not called, and key bindings are not set up.
+ * <p>
+ * The runner keeps count of the frames and the time spent, so getFramesPerSecond gives the throughput of a run.
+ */
+public class HeadlessRunner {
+    private static final long SPIN_THRESHOLD = 1_000_000L; // Waits shorter than this (in ns) are spun instead of parked
+
+    private final Window window; // The window that is run
+    private int width; // Size of the frames in pixels
+    private int height;
+    private double frameRate; // Frames per second, 0 or less draws as fast as possible
+    private FrameSink frameSink; // Receives the frames, null to drop them
+    private TileRenderer tileRenderer; // Draws the frames when set, otherwise paintShapes is used
+    private BufferedImage image; // The frame, reused for every frame
+    private boolean started; // Whether start() has been called
+    private volatile boolean running;
+
+    private long frameCount; // Number of frames drawn by all runs
+    private long elapsedNanos; // Time spent in all runs
+    private long drawNanos; // Time spent drawing frames in all runs
+
+    /**
+     * Constructor to create a HeadlessRunner that draws frames of the window's configured size.
+     *
+     * @param window the window to run
+     */
+    public HeadlessRunner(Window window) {
+        this.window = window;
+        width = window.getWith();
+        height = window.getHeight();
+    }
+
+    /**
+     * Runs the given number of frames and returns when they are done or stop is called.
+     *
+     * @param frames the number of frames to run, 0 or less to run until stop is called
+     * @throws IOException if the frame sink fails, in which case the run ends
+     */
+    public void run(long frames) throws IOException {
+        running = true;
+        long start = System.nanoTime();
+        try {
+            window.setSize(width, height);
+            if (image == null || image.getWidth() != width || image.getHeight() != height) {
+                image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            }
+            if (!started) {
+                started = true;
+                window.applyPendingChanges(); // Take ownership of the shapes before start() adds any
+                window.start();
+            }
+            double dt = 1 / window.getUpdateRate();
+            long interval = frameRate > 0 ? (long) (1_000_000_000L / frameRate) : 0;
+            long nextFrame = System.nanoTime();
+            for (long i = 0; running && (frames <= 0 || i < frames); i++) {
+                window.step(dt);
+                long drawStart = System.nanoTime();
+                drawFrame();
+                drawNanos += System.nanoTime() - drawStart;
+                if (frameSink != null) {
+                    frameSink.frameRendered(frameCount, image);
+                }
+                frameCount++;
+                if (interval > 0) {
+                    nextFrame += interval;
+                    long now = System.nanoTime();
+                    if (now - nextFrame >= 0) {
+                        nextFrame = now; // Fell behind, carry on from now instead of running a burst
+                    } else {
+                        sleepUntil(nextFrame);
+                    }
+                }
+            }
+        } finally {
+            running = false;
+            elapsedNanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Asks a run to end after the current frame. Can be called from any thread.
+     */
+    public void stop() {
+        running = false;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void drawFrame() {
+        if (window.isSnapshotRendering()) {
+            window.publishSnapshot();
+        }
+        if (tileRenderer != null) {
+            tileRenderer.render(window, image);
+        } else {
+            Graphics2D g = image.createGraphics();
+            try {
+                // An image's graphics has no clip, and the window would cull against its configured size instead
+                g.setClip(0, 0, width, height);
+                g.setColor(window.getBackground());
+                g.fillRect(0, 0, width, height);
+                window.paintShapes(g);
+            } finally {
+                g.dispose();
+            }
+        }
+        window.clearDirtyRegion(); // Every frame is drawn completely
+    }
+
+    /**
+     * Parks the thread until shortly before the deadline and spins for the rest, like GameLoop.
+     */
+    private void sleepUntil(long deadline) {
+        long remaining = deadline - System.nanoTime();
+        while (remaining > 0 && running) {
+            if (remaining > SPIN_THRESHOLD) {
+                LockSupport.parkNanos(remaining - SPIN_THRESHOLD);
+            } else {
+                Thread.onSpinWait();
+            }
+            remaining = deadline - System.nanoTime();
+        }
+    }
+
+    /**
+     * Sets the size of the frames. Takes effect at the next run.
+     *
+     * @param width  the width in pixels, must be positive
+     * @param height the height in pixels, must be positive
+     */
+    public void setFrameSize(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Frame size must be positive: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+    }
+
+    public int getFrameWidth() {
+        return width;
+    }
+
+    public int getFrameHeight() {
+        return height;
+    }
+
+    public double getFrameRate() {
+        return frameRate;
+    }
+
+    /**
+     * Sets the number of frames drawn per second. Takes effect at the next run.
+     *
+     * @param frameRate the number of frames per second, 0 or less to draw as fast as possible (the default)
+     */
+    public void setFrameRate(double frameRate) {
+        this.frameRate = frameRate;
+    }
+
+    public FrameSink getFrameSink() {
+        return frameSink;
+    }
+
+    /**
+     * Sets where the frames go, for example a PngFrameSink.
+     *
+     * @param frameSink receives every frame, or null to drop the frames
+     */
+    public void setFrameSink(FrameSink frameSink) {
+        this.frameSink = frameSink;
+    }
+
+    public TileRenderer getTileRenderer() {
+        return tileRenderer;
+    }
+
+    /**
+     * Sets a TileRenderer to draw the frames on several threads. By default frames are drawn on the calling
+     * thread with paintShapes.
+     *
+     * @param tileRenderer the renderer to use, or null to draw on the calling thread
+     */
+    public void setTileRenderer(TileRenderer tileRenderer) {
+        this.tileRenderer = tileRenderer;
+    }
+
+    /**
+     * Returns the image the last frame was drawn into.
+     *
+     * @return the last frame, or null before the first run
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * Returns the number of frames drawn by all runs so far.
+     *
+     * @return the number of frames
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Returns the time spent in all runs so far, in nanoseconds.
+     *
+     * @return the elapsed time in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Returns the time spent drawing frames in all runs so far, in nanoseconds, leaving out the updates and
+     * the frame sink.
+     *
+     * @return the drawing time in nanoseconds
+     */
+    public long getDrawNanos() {
+        return drawNanos;
+    }
+
+    /**
+     * Returns the number of frames per second over all runs so far, including the time spent in updates and
+     * in the frame sink.
+     *
+     * @return the frames per second, or 0 before the first run
+     */
+    public double getFramesPerSecond() {
+        return elapsedNanos == 0 ? 0 : frameCount * 1e9 / elapsedNanos;
+    }
+}
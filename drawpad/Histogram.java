@@ -0,0 +1,113 @@
+package drawpad;
+
+import java.util.Arrays;
+
+/**
+ * This class counts non-negative long values in logarithmic buckets, to read percentiles of timings and sizes
+ * without keeping the values themselves.
+ * <p>
+ * Values below 16 get a bucket each; above that, every power of two is split into 16 buckets, so a percentile is
+ * accurate to within 1/16 (about 6%) of its value. The 960 buckets cover every long value and are allocated once,
+ * so recording a value never allocates. The methods are synchronized, which costs little as long as values are
+ * recorded by one thread at a time.
+ */
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 4; // Every power of two is split into 2^SUB_BUCKET_BITS buckets
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count; // Number of values recorded
+    private long sum; // Sum of the values recorded
+    private long max; // Largest value recorded
+
+    /**
+     * Counts a value. Negative values are counted as 0.
+     *
+     * @param value the value to count
+     */
+    public synchronized void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts[bucketOf(value)]++;
+        count++;
+        sum += value;
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    /**
+     * Returns an upper bound of the value below which the given percentage of the recorded values lie,
+     * never more than the largest value recorded.
+     *
+     * @param percentile the percentage, between 0 and 100
+     * @return the value at the percentile, or 0 if nothing has been recorded
+     */
+    public synchronized long getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return Math.min(max, upperBound(bucket));
+            }
+        }
+        return max;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the average of the recorded values.
+     *
+     * @return the mean, or 0 if nothing has been recorded
+     */
+    public synchronized double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Forgets all recorded values.
+     */
+    public synchronized void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int highestBit = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (highestBit - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (highestBit - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the largest value that falls in a bucket.
+     */
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int highestBit = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        int shift = highestBit - SUB_BUCKET_BITS;
+        long lowest = (1L << highestBit) | (subBucket << shift);
+        long upper = lowest + (1L << shift) - 1;
+        return upper < 0 ? Long.MAX_VALUE : upper;
+    }
+}
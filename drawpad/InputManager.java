@@ -1,52 +1,473 @@
 package drawpad;
 
 import javax.swing.*;
-import java.awt.event.ActionEvent;
-import java.util.HashMap;
-import java.util.Map;
+import java.awt.*;
+import java.awt.event.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * The InputManager class manages user input from keyboard events using key bindings.
- * It provides methods to check the state of keyboard keys.
+ * The InputManager class manages user input from the keyboard and the mouse.
+ * It provides methods to check the state of keyboard keys, mouse buttons and the mouse position.
+ * <p>
+ * Input events arrive on the event dispatch thread and are written, packed into a single long each, into a ring
+ * buffer with room for EVENT_CAPACITY events. The thread that runs the updates calls poll once per tick, which
+ * applies all events that arrived since the previous tick to the input state. The state is only written by poll,
+ * so it does not change halfway through an update. A key or button that goes down and up again between two polls
+ * is reported as down and pressed by the first poll, and its release is held back until the next poll, so even
+ * the shortest tap is seen as down for one tick. Window calls poll before every update(); an InputManager used
+ * on its own reports nothing down until poll is called.
+ * <p>
+ * The ring buffer has one writer and one reader, so it needs no locks: the writer publishes its position with a
+ * release store and the reader reads it with a volatile load, which makes the events written before it visible.
+ * Mouse moves do not go through the ring buffer: the latest position is published as a single volatile value that
+ * each move overwrites. If the ring buffer is full, the event is dropped, and the next poll releases all keys and
+ * buttons, since a dropped release would otherwise leave a key down for good. Keys are kept in bitsets of longs,
+ * and neither posting nor polling an event allocates.
+ * <p>
+ * The methods that read the state, such as isKeyDown, must be called on the thread that calls poll. The post
+ * methods must be called on one thread at a time, normally the event dispatch thread; they can also be used to
+ * feed recorded or synthetic input.
  */
 public class InputManager {
-    private final Map<Integer, Boolean> keyStates;
+    /**
+     * The number of key, button and wheel events that can wait for the next poll. Further events are dropped and
+     * counted, and the next poll releases all keys and buttons.
+     */
+    public static final int EVENT_CAPACITY = 1024;
+    /**
+     * Key codes from 0 up to this value are tracked; events for larger key codes are ignored.
+     */
+    public static final int KEY_CODES = 1 << 16;
+
+    private static final int KEY_DOWN = 1; // Event types, in the top 4 bits of an event
+    private static final int KEY_UP = 2;
+    private static final int MOUSE_DOWN = 3;
+    private static final int MOUSE_UP = 4;
+    private static final int MOUSE_WHEEL = 5;
+    private static final int RELEASE_ALL = 6;
+    private static final int COORDINATE_BITS = 20; // Bits for each of x and y, signed
+    private static final int COORDINATE_MASK = (1 << COORDINATE_BITS) - 1;
+    private static final int COORDINATE_MAX = (1 << (COORDINATE_BITS - 1)) - 1;
+    private static final int MOUSE_BUTTONS = 32; // Buttons from 1 to 31 are tracked
+
+    // Written by the posting thread, read by poll
+    private final long[] events = new long[EVENT_CAPACITY];
+    private final AtomicLong head = new AtomicLong(); // Number of events posted
+    private final AtomicLong tail = new AtomicLong(); // Number of events polled
+    private volatile long droppedEvents; // Events dropped because the buffer was full, written by the posting thread
+    private volatile long mousePosition; // The latest mouse position, x in the high and y in the low 32 bits
+
+    // Written by poll only
+    private final long[] keysDown = new long[KEY_CODES / 64];
+    private final long[] keysPressed = new long[KEY_CODES / 64]; // Keys that went down during the last poll
+    private final long[] keysReleased = new long[KEY_CODES / 64]; // Keys that went up during the last poll
+    private final int[] edgeWords = new int[EVENT_CAPACITY]; // Words of keysPressed and keysReleased to clear
+    private int edgeWordCount;
+    private boolean edgeWordsOverflowed; // Whether edgeWords ran out of room, so every word has to be cleared
+    private final long[] keysHeld = new long[KEY_CODES / 64]; // Keys released in the poll they went down in
+    private final int[] heldWords = new int[EVENT_CAPACITY]; // Words of keysHeld that may have bits set
+    private int heldWordCount;
+    private boolean heldWordsOverflowed; // Whether heldWords ran out of room, so every word has to be checked
+    private int buttonsDown; // Bit b is set while mouse button b is down
+    private int buttonsPressed;
+    private int buttonsReleased;
+    private int buttonsHeld; // Buttons released in the poll they went down in
+    private long seenDroppedEvents; // droppedEvents at the last poll
+    private int mouseX;
+    private int mouseY;
+    private int wheelRotation; // Sum of the wheel rotations during the last poll
+
+    private JComponent component; // The component whose input is captured, null if none
+    private KeyEventDispatcher keyDispatcher;
+    private MouseAdapter mouseListener;
+    private final List<Component> mouseSources = new ArrayList<>(); // Components besides component sending mouse input
+    private WindowFocusListener focusListener;
+    private java.awt.Window focusWindow; // The window focusListener is registered with
 
     /**
      * Constructor to initialize the InputManager.
      */
     public InputManager() {
-        keyStates = new HashMap<>();
     }
 
     /**
-     * Sets up key bindings for the specified component.
+     * Starts capturing the keyboard input of the window containing the specified component and the mouse input
+     * over the component. Key events are seen whichever component of the window has the focus, and they are
+     * not consumed. When the window loses the focus, all keys and buttons are released. Must be called on the
+     * event dispatch thread, after the component has been added to its window. Any component set up earlier
+     * stops being captured.
+     * <p>
+     * The events only change the state reported by isKeyDown and the other query methods when poll is called.
+     * Window polls before every update(); anyone else using this method has to call poll once per tick, or
+     * nothing is ever reported as down.
      *
      * @param component The component to set up key bindings for.
      */
     public void setupKeyBindings(JComponent component) {
-        int condition = JComponent.WHEN_IN_FOCUSED_WINDOW;
-        InputMap inputMap = component.getInputMap(condition);
-        ActionMap actionMap = component.getActionMap();
-
-        for (int i = 0; i < 256; i++) {
-            final int keyCode = i;
-            inputMap.put(KeyStroke.getKeyStroke(keyCode, 0), "key" + keyCode);
-            actionMap.put("key" + keyCode, new AbstractAction() {
-                @Override
-                public void actionPerformed(ActionEvent e) {
-                    keyStates.put(keyCode, true);
+        removeKeyBindings();
+        this.component = component;
+        keyDispatcher = event -> {
+            if (isInWindowOf(event.getComponent())) {
+                int id = event.getID();
+                if (id == KeyEvent.KEY_PRESSED || id == KeyEvent.KEY_RELEASED) {
+                    postKey(event.getKeyCode(), id == KeyEvent.KEY_PRESSED);
                 }
-            });
+            }
+            return false;
+        };
+        KeyboardFocusManager.getCurrentKeyboardFocusManager().addKeyEventDispatcher(keyDispatcher);
+
+        mouseListener = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                Point point = toComponent(e);
+                postMouseButton(e.getButton(), true, point.x, point.y);
+            }
 
-            inputMap.put(KeyStroke.getKeyStroke(keyCode, 0, true), "release" + keyCode);
-            actionMap.put("release" + keyCode, new AbstractAction() {
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                Point point = toComponent(e);
+                postMouseButton(e.getButton(), false, point.x, point.y);
+            }
+
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                Point point = toComponent(e);
+                postMouseMove(point.x, point.y);
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                Point point = toComponent(e);
+                postMouseMove(point.x, point.y);
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                postMouseWheel(e.getWheelRotation());
+            }
+        };
+        component.addMouseListener(mouseListener);
+        component.addMouseMotionListener(mouseListener);
+        component.addMouseWheelListener(mouseListener);
+
+        focusWindow = SwingUtilities.getWindowAncestor(component);
+        if (focusWindow != null) {
+            focusListener = new WindowAdapter() {
                 @Override
-                public void actionPerformed(ActionEvent e) {
-                    keyStates.put(keyCode, false);
+                public void windowLostFocus(WindowEvent e) {
+                    postReleaseAll();
+                }
+            };
+            focusWindow.addWindowFocusListener(focusListener);
+        }
+    }
+
+    /**
+     * Also captures the mouse input over another component, such as a Canvas that covers the component set up by
+     * setupKeyBindings and so receives its mouse events instead. Positions are converted to coordinates relative
+     * to the component set up by setupKeyBindings. Must be called on the event dispatch thread, after
+     * setupKeyBindings; removeKeyBindings stops capturing the source as well.
+     *
+     * @param source the component whose mouse input is captured
+     * @throws IllegalStateException if setupKeyBindings has not been called
+     */
+    public void addMouseSource(Component source) {
+        if (component == null) {
+            throw new IllegalStateException("setupKeyBindings must be called before addMouseSource");
+        }
+        if (source == component || mouseSources.contains(source)) {
+            return;
+        }
+        mouseSources.add(source);
+        source.addMouseListener(mouseListener);
+        source.addMouseMotionListener(mouseListener);
+        source.addMouseWheelListener(mouseListener);
+    }
+
+    /**
+     * Stops capturing the input set up by setupKeyBindings and addMouseSource. Must be called on the event
+     * dispatch thread.
+     */
+    public void removeKeyBindings() {
+        if (component == null) {
+            return;
+        }
+        KeyboardFocusManager.getCurrentKeyboardFocusManager().removeKeyEventDispatcher(keyDispatcher);
+        component.removeMouseListener(mouseListener);
+        component.removeMouseMotionListener(mouseListener);
+        component.removeMouseWheelListener(mouseListener);
+        for (Component source : mouseSources) {
+            source.removeMouseListener(mouseListener);
+            source.removeMouseMotionListener(mouseListener);
+            source.removeMouseWheelListener(mouseListener);
+        }
+        mouseSources.clear();
+        if (focusWindow != null) {
+            focusWindow.removeWindowFocusListener(focusListener);
+        }
+        component = null;
+        keyDispatcher = null;
+        mouseListener = null;
+        focusListener = null;
+        focusWindow = null;
+    }
+
+    private Point toComponent(MouseEvent e) {
+        Component source = e.getComponent();
+        if (source == component || source == null) {
+            return e.getPoint();
+        }
+        return SwingUtilities.convertPoint(source, e.getX(), e.getY(), component);
+    }
+
+    private boolean isInWindowOf(Component source) {
+        if (source == null || component == null) {
+            return false;
+        }
+        java.awt.Window window = SwingUtilities.getWindowAncestor(component);
+        return window != null && (source == window || SwingUtilities.getWindowAncestor(source) == window);
+    }
+
+    /**
+     * Posts a key going down or up.
+     *
+     * @param keyCode the key code, one of the KeyEvent.VK_ constants
+     * @param down    true if the key went down, false if it went up
+     */
+    public void postKey(int keyCode, boolean down) {
+        if (keyCode >= 0 && keyCode < KEY_CODES) {
+            post(pack(down ? KEY_DOWN : KEY_UP, keyCode, 0, 0));
+        }
+    }
+
+    /**
+     * Posts the mouse moving to a position. The position replaces the previous one instead of being queued, so it
+     * is never dropped.
+     *
+     * @param x the x coordinate relative to the component
+     * @param y the y coordinate relative to the component
+     */
+    public void postMouseMove(int x, int y) {
+        mousePosition = (long) x << 32 | (y & 0xffffffffL);
+    }
+
+    /**
+     * Posts a mouse button going down or up at a position.
+     *
+     * @param button the button, 1 for MouseEvent.BUTTON1 and so on
+     * @param down   true if the button went down, false if it went up
+     * @param x      the x coordinate relative to the component
+     * @param y      the y coordinate relative to the component
+     */
+    public void postMouseButton(int button, boolean down, int x, int y) {
+        postMouseMove(x, y);
+        if (button > 0 && button < MOUSE_BUTTONS) {
+            post(pack(down ? MOUSE_DOWN : MOUSE_UP, button, 0, 0));
+        }
+    }
+
+    /**
+     * Posts a rotation of the mouse wheel.
+     *
+     * @param rotation the number of notches, negative when rotated away from the user
+     */
+    public void postMouseWheel(int rotation) {
+        post(pack(MOUSE_WHEEL, 0, rotation, 0));
+    }
+
+    /**
+     * Posts the release of all keys and mouse buttons that are down, for example because the window lost the
+     * focus and will not see them being released.
+     */
+    public void postReleaseAll() {
+        post(pack(RELEASE_ALL, 0, 0, 0));
+    }
+
+    private static long pack(int type, int code, int x, int y) {
+        x = Math.max(-COORDINATE_MAX, Math.min(COORDINATE_MAX, x));
+        y = Math.max(-COORDINATE_MAX, Math.min(COORDINATE_MAX, y));
+        return (long) type << 60 | (long) code << 40 | (long) (x & COORDINATE_MASK) << COORDINATE_BITS
+                | (y & COORDINATE_MASK);
+    }
+
+    private void post(long event) {
+        long position = head.get(); // Only this thread writes head
+        if (position - tail.get() == EVENT_CAPACITY) {
+            droppedEvents++; // Seen by the next poll, which then releases everything
+            return;
+        }
+        events[(int) position & (EVENT_CAPACITY - 1)] = event;
+        head.lazySet(position + 1); // Publishes the event to poll
+    }
+
+    /**
+     * Applies the events posted since the last call to the input state, and makes the keys and buttons that went
+     * down or up in these events the ones reported as pressed or released. A key or button that went down and up
+     * again since the last call stays down until the next call, which reports it as released. If events were
+     * dropped since the last call, all keys and buttons are released. Call it once per tick, before reading the
+     * state; Window does this before every update().
+     *
+     * @return the number of events applied
+     */
+    public int poll() {
+        if (edgeWordsOverflowed) {
+            Arrays.fill(keysPressed, 0);
+            Arrays.fill(keysReleased, 0);
+            edgeWordsOverflowed = false;
+        } else {
+            for (int i = 0; i < edgeWordCount; i++) {
+                keysPressed[edgeWords[i]] = 0;
+                keysReleased[edgeWords[i]] = 0;
+            }
+        }
+        edgeWordCount = 0;
+        buttonsPressed = 0;
+        buttonsReleased = 0;
+        wheelRotation = 0;
+        releaseHeld();
+
+        long dropped = droppedEvents; // Read before head, so the events posted before these drops are applied first
+        long position = tail.get(); // Only this thread writes tail
+        long end = head.get();
+        for (long i = position; i != end; i++) {
+            apply(events[(int) i & (EVENT_CAPACITY - 1)]);
+        }
+        tail.lazySet(end); // Hands the slots back to the posting thread
+        if (dropped != seenDroppedEvents) {
+            seenDroppedEvents = dropped;
+            releaseAll(); // A dropped event may have been a release
+        }
+        long mouse = mousePosition;
+        mouseX = (int) (mouse >> 32);
+        mouseY = (int) mouse;
+        return (int) (end - position);
+    }
+
+    private void releaseHeld() {
+        if (heldWordsOverflowed) {
+            for (int word = 0; word < keysHeld.length; word++) {
+                releaseHeldWord(word);
+            }
+            heldWordsOverflowed = false;
+        } else {
+            for (int i = 0; i < heldWordCount; i++) {
+                releaseHeldWord(heldWords[i]);
+            }
+        }
+        heldWordCount = 0;
+        buttonsReleased |= buttonsHeld;
+        buttonsDown &= ~buttonsHeld;
+        buttonsHeld = 0;
+    }
+
+    private void releaseHeldWord(int word) {
+        long held = keysHeld[word];
+        if (held != 0) {
+            keysDown[word] &= ~held;
+            keysReleased[word] |= held;
+            keysHeld[word] = 0;
+            markEdge(word);
+        }
+    }
+
+    private void apply(long event) {
+        int type = (int) (event >>> 60);
+        int code = (int) (event >>> 40) & 0xfffff;
+        int x = (int) (event >> COORDINATE_BITS) << (32 - COORDINATE_BITS) >> (32 - COORDINATE_BITS);
+        switch (type) {
+            case KEY_DOWN -> setKey(code, true);
+            case KEY_UP -> setKey(code, false);
+            case MOUSE_DOWN -> setButton(code, true);
+            case MOUSE_UP -> setButton(code, false);
+            case MOUSE_WHEEL -> wheelRotation += x;
+            case RELEASE_ALL -> releaseAll();
+            default -> {
+            }
+        }
+    }
+
+    private void setKey(int keyCode, boolean down) {
+        int word = keyCode >>> 6;
+        long bit = 1L << keyCode;
+        if (down && (keysHeld[word] & bit) != 0) {
+            keysHeld[word] &= ~bit; // Down again before its held back release was reported, so it just stays down
+            return;
+        }
+        boolean wasDown = (keysDown[word] & bit) != 0;
+        if (down == wasDown) {
+            return; // Key repeat, or a release that was already applied
+        }
+        if (down) {
+            keysDown[word] |= bit;
+            keysPressed[word] |= bit;
+        } else if ((keysPressed[word] & bit) != 0) {
+            hold(word, bit); // Went down in this poll, so it is released in the next one
+            return;
+        } else {
+            keysDown[word] &= ~bit;
+            keysReleased[word] |= bit;
+        }
+        markEdge(word);
+    }
+
+    private void hold(int word, long bits) {
+        keysHeld[word] |= bits;
+        if (heldWordCount < heldWords.length) {
+            heldWords[heldWordCount++] = word;
+        } else {
+            heldWordsOverflowed = true;
+        }
+    }
+
+    private void markEdge(int word) {
+        if (edgeWordCount < edgeWords.length) {
+            edgeWords[edgeWordCount++] = word;
+        } else {
+            edgeWordsOverflowed = true;
+        }
+    }
+
+    private void setButton(int button, boolean down) {
+        int bit = 1 << button;
+        if (down && (buttonsHeld & bit) != 0) {
+            buttonsHeld &= ~bit;
+            return;
+        }
+        if (down == ((buttonsDown & bit) != 0)) {
+            return;
+        }
+        if (down) {
+            buttonsDown |= bit;
+            buttonsPressed |= bit;
+        } else if ((buttonsPressed & bit) != 0) {
+            buttonsHeld |= bit;
+        } else {
+            buttonsDown &= ~bit;
+            buttonsReleased |= bit;
+        }
+    }
+
+    private void releaseAll() {
+        for (int word = 0; word < keysDown.length; word++) {
+            long down = keysDown[word];
+            if (down != 0) {
+                long pressed = down & keysPressed[word]; // Held back until the next poll, like any other release
+                if (pressed != 0) {
+                    hold(word, pressed);
                 }
-            });
+                keysReleased[word] |= down & ~pressed;
+                keysDown[word] = pressed;
+                markEdge(word);
+            }
         }
+        int pressed = buttonsDown & buttonsPressed;
+        buttonsHeld |= pressed;
+        buttonsReleased |= buttonsDown & ~pressed;
+        buttonsDown = pressed;
     }
 
     /**
@@ -56,6 +477,97 @@ public class InputManager {
      * @return true if the key is down, false otherwise.
      */
     public boolean isKeyDown(int keyCode) {
-        return keyStates.getOrDefault(keyCode, false);
+        return isSet(keysDown, keyCode);
+    }
+
+    /**
+     * Checks if a specific key went down during the last poll.
+     *
+     * @param keyCode The key code of the key to check.
+     * @return true if the key was pressed this tick, false otherwise.
+     */
+    public boolean isKeyPressed(int keyCode) {
+        return isSet(keysPressed, keyCode);
+    }
+
+    /**
+     * Checks if a specific key went up during the last poll.
+     *
+     * @param keyCode The key code of the key to check.
+     * @return true if the key was released this tick, false otherwise.
+     */
+    public boolean isKeyReleased(int keyCode) {
+        return isSet(keysReleased, keyCode);
+    }
+
+    private static boolean isSet(long[] bits, int keyCode) {
+        return keyCode >= 0 && keyCode < KEY_CODES && (bits[keyCode >>> 6] & 1L << keyCode) != 0;
+    }
+
+    /**
+     * Checks if a mouse button is currently down.
+     *
+     * @param button the button, 1 for MouseEvent.BUTTON1 and so on
+     * @return true if the button is down, false otherwise
+     */
+    public boolean isMouseButtonDown(int button) {
+        return button > 0 && button < MOUSE_BUTTONS && (buttonsDown & 1 << button) != 0;
+    }
+
+    /**
+     * Checks if a mouse button went down during the last poll.
+     *
+     * @param button the button, 1 for MouseEvent.BUTTON1 and so on
+     * @return true if the button was pressed this tick, false otherwise
+     */
+    public boolean isMouseButtonPressed(int button) {
+        return button > 0 && button < MOUSE_BUTTONS && (buttonsPressed & 1 << button) != 0;
+    }
+
+    /**
+     * Checks if a mouse button went up during the last poll.
+     *
+     * @param button the button, 1 for MouseEvent.BUTTON1 and so on
+     * @return true if the button was released this tick, false otherwise
+     */
+    public boolean isMouseButtonReleased(int button) {
+        return button > 0 && button < MOUSE_BUTTONS && (buttonsReleased & 1 << button) != 0;
+    }
+
+    /**
+     * Returns the x coordinate of the last known mouse position, relative to the component.
+     *
+     * @return the x coordinate of the mouse
+     */
+    public int getMouseX() {
+        return mouseX;
+    }
+
+    /**
+     * Returns the y coordinate of the last known mouse position, relative to the component.
+     *
+     * @return the y coordinate of the mouse
+     */
+    public int getMouseY() {
+        return mouseY;
+    }
+
+    /**
+     * Returns how far the mouse wheel was rotated during the last poll.
+     *
+     * @return the number of notches, negative when rotated away from the user
+     */
+    public int getWheelRotation() {
+        return wheelRotation;
+    }
+
+    /**
+     * Returns the number of events dropped because poll was not called often enough to make room for them. Each
+     * poll that follows a drop releases all keys and buttons.
+     *
+     * @return the number of dropped events
+     */
+    public long getDroppedEvents() {
+        return droppedEvents;
     }
-}
\ No newline at end of file
+}
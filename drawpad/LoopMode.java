@@ -0,0 +1,17 @@
+package drawpad;
+
+/**
+ * The ways a Window can drive its update method.
+ */
+public enum LoopMode {
+    /**
+     * update() is called by a javax.swing.Timer on the event dispatch thread, once every fps milliseconds.
+     */
+    SWING_TIMER,
+
+    /**
+     * update() is called by a GameLoop on its own thread at a fixed rate, and rendering is requested at a
+     * separate rate.
+     */
+    FIXED_STEP
+}
@@ -0,0 +1,369 @@
+package drawpad;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * This class is a spatial index that stores shapes in a loose quadtree. Every node's region is extended to twice
+ * its size, so a shape is kept in exactly one node: the deepest node that contains its center and is at least as
+ * large as the shape. Moving a shape therefore only touches the node it leaves and the node it enters.
+ * Shapes whose center lies outside the root region are kept in the root.
+ */
+public class LooseQuadtree implements SpatialIndex {
+    private final Node root; // The node covering the whole indexed region
+    private final int maxDepth; // The maximum depth of a node below the root
+    private final int maxEntries; // Number of shapes a leaf holds before it is split
+    private final Map<AbstractShape, Entry> entries; // The entry of every indexed shape
+
+    /**
+     * Constructor to create a LooseQuadtree covering the specified region.
+     *
+     * @param x          the x-coordinate of the region
+     * @param y          the y-coordinate of the region
+     * @param width      the width of the region
+     * @param height     the height of the region
+     * @param maxDepth   the maximum depth of the tree
+     * @param maxEntries the number of shapes a leaf holds before it is split
+     */
+    public LooseQuadtree(double x, double y, double width, double height, int maxDepth, int maxEntries) {
+        if (!(width > 0) || !(height > 0)) {
+            throw new IllegalArgumentException("width and height must be positive: " + width + "x" + height);
+        }
+        double half = Math.max(width, height) / 2;
+        this.root = new Node(null, x + width / 2, y + height / 2, half, 0);
+        this.maxDepth = maxDepth;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.entries = new IdentityHashMap<>();
+    }
+
+    /**
+     * Constructor to create a LooseQuadtree covering the specified region with a maximum depth of 10
+     * and leaves of up to 8 shapes.
+     *
+     * @param x      the x-coordinate of the region
+     * @param y      the y-coordinate of the region
+     * @param width  the width of the region
+     * @param height the height of the region
+     */
+    public LooseQuadtree(double x, double y, double width, double height) {
+        this(x, y, width, height, 10, 8);
+    }
+
+    @Override
+    public void insert(AbstractShape shape) {
+        if (entries.containsKey(shape)) {
+            update(shape);
+            return;
+        }
+        Entry entry = new Entry(shape);
+        entry.setBounds(shape.getBounds());
+        entries.put(shape, entry);
+        place(root, entry);
+    }
+
+    @Override
+    public boolean remove(AbstractShape shape) {
+        Entry entry = entries.remove(shape);
+        if (entry == null) {
+            return false;
+        }
+        Node node = entry.node;
+        node.remove(entry);
+        prune(node);
+        return true;
+    }
+
+    @Override
+    public void update(AbstractShape shape) {
+        Entry entry = entries.get(shape);
+        if (entry == null) {
+            return;
+        }
+        entry.setBounds(shape.getBounds());
+        Node node = entry.node;
+        if (node.fits(entry) && (node.children == null || !fitsChild(node, entry))) {
+            return;
+        }
+        node.remove(entry);
+
+        // Climb to the closest ancestor that can hold the shape and descend again from there
+        Node target = node;
+        while (target.parent != null && !target.fits(entry)) {
+            target = target.parent;
+        }
+        place(target, entry);
+        prune(node);
+    }
+
+    @Override
+    public void clear() {
+        root.entries.clear();
+        root.children = null;
+        entries.clear();
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public List<AbstractShape> queryRegion(double x, double y, double width, double height, List<AbstractShape> result) {
+        queryRegion(root, x, y, x + width, y + height, result);
+        return result;
+    }
+
+    private void queryRegion(Node node, double minX, double minY, double maxX, double maxY, List<AbstractShape> result) {
+        for (Entry entry : node.entries) {
+            if (entry.intersects(minX, minY, maxX, maxY)) {
+                result.add(entry.shape);
+            }
+        }
+        if (node.children == null) {
+            return;
+        }
+        for (Node child : node.children) {
+            if (child != null && child.looseIntersects(minX, minY, maxX, maxY)) {
+                queryRegion(child, minX, minY, maxX, maxY, result);
+            }
+        }
+    }
+
+    @Override
+    public List<AbstractShape> queryPoint(double x, double y, List<AbstractShape> result) {
+        queryRegion(root, x, y, x, y, result);
+        return result;
+    }
+
+    @Override
+    public List<AbstractShape> nearest(double x, double y, int k, List<AbstractShape> result) {
+        if (k <= 0 || entries.isEmpty()) {
+            return result;
+        }
+        // Best-first search: nodes are ordered by the distance to their loose region, shapes by the distance to
+        // their bounds, so a shape taken from the queue is never farther than anything still in it
+        PriorityQueue<Candidate> queue = new PriorityQueue<>();
+        queue.add(new Candidate(0, root, null));
+        int found = 0;
+        while (!queue.isEmpty() && found < k) {
+            Candidate candidate = queue.poll();
+            if (candidate.entry != null) {
+                result.add(candidate.entry.shape);
+                found++;
+                continue;
+            }
+            Node node = candidate.node;
+            for (Entry entry : node.entries) {
+                double distanceSq = SpatialIndex.distanceSq(x, y, entry.minX, entry.minY, entry.maxX, entry.maxY);
+                queue.add(new Candidate(distanceSq, null, entry));
+            }
+            if (node.children != null) {
+                for (Node child : node.children) {
+                    if (child != null) {
+                        double loose = child.half * 2;
+                        double distanceSq = SpatialIndex.distanceSq(x, y,
+                                child.centerX - loose, child.centerY - loose, child.centerX + loose, child.centerY + loose);
+                        queue.add(new Candidate(distanceSq, child, null));
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Files the entry in the deepest node below start that fits it, splitting full leaves on the way.
+     */
+    private void place(Node start, Entry entry) {
+        Node node = start;
+        while (node.depth < maxDepth && fitsChild(node, entry)) {
+            if (node.children == null) {
+                if (node.entries.size() < maxEntries) {
+                    break;
+                }
+                split(node);
+            }
+            node = node.child(quadrant(node, entry));
+        }
+        node.add(entry);
+    }
+
+    /**
+     * Creates the child array of a leaf and pushes down every entry that fits a child.
+     */
+    private void split(Node node) {
+        node.children = new Node[4];
+        List<Entry> kept = new ArrayList<>(node.entries);
+        node.entries.clear();
+        for (Entry entry : kept) {
+            if (fitsChild(node, entry)) {
+                node.child(quadrant(node, entry)).add(entry);
+            } else {
+                node.add(entry);
+            }
+        }
+    }
+
+    /**
+     * Removes empty nodes from the bottom up, starting at the given node.
+     */
+    private static void prune(Node node) {
+        while (node.parent != null && node.entries.isEmpty() && node.children == null) {
+            Node parent = node.parent;
+            Node[] siblings = parent.children;
+            boolean empty = true;
+            for (int i = 0; i < 4; i++) {
+                if (siblings[i] == node) {
+                    siblings[i] = null;
+                } else if (siblings[i] != null) {
+                    empty = false;
+                }
+            }
+            if (empty) {
+                parent.children = null;
+            }
+            node = parent;
+        }
+    }
+
+    /**
+     * Returns true if the entry is small enough for a child of the node and its center lies inside the node.
+     */
+    private static boolean fitsChild(Node node, Entry entry) {
+        double childHalf = node.half / 2;
+        return entry.extent() <= childHalf * 2 && node.containsCenter(entry);
+    }
+
+    private static int quadrant(Node node, Entry entry) {
+        return (entry.centerX() >= node.centerX ? 1 : 0) | (entry.centerY() >= node.centerY ? 2 : 0);
+    }
+
+    /**
+     * A node of the tree. Its strict region is center +/- half and its loose region is center +/- 2 * half.
+     */
+    private static final class Node {
+        final Node parent;
+        final double centerX, centerY, half;
+        final int depth;
+        final List<Entry> entries = new ArrayList<>(4);
+        Node[] children; // Null for a leaf; individual children are created on demand
+
+        Node(Node parent, double centerX, double centerY, double half, int depth) {
+            this.parent = parent;
+            this.centerX = centerX;
+            this.centerY = centerY;
+            this.half = half;
+            this.depth = depth;
+        }
+
+        Node child(int quadrant) {
+            Node child = children[quadrant];
+            if (child == null) {
+                double h = half / 2;
+                child = new Node(this, centerX + ((quadrant & 1) != 0 ? h : -h),
+                        centerY + ((quadrant & 2) != 0 ? h : -h), h, depth + 1);
+                children[quadrant] = child;
+            }
+            return child;
+        }
+
+        void add(Entry entry) {
+            entry.node = this;
+            entry.slot = entries.size();
+            entries.add(entry);
+        }
+
+        void remove(Entry entry) {
+            // Swap the last entry into the freed slot so removal does not shift the list
+            Entry last = entries.remove(entries.size() - 1);
+            if (last != entry) {
+                entries.set(entry.slot, last);
+                last.slot = entry.slot;
+            }
+            entry.node = null;
+        }
+
+        boolean containsCenter(Entry entry) {
+            double cx = entry.centerX();
+            double cy = entry.centerY();
+            return cx >= centerX - half && cx < centerX + half && cy >= centerY - half && cy < centerY + half;
+        }
+
+        /**
+         * Returns true if this node's loose region fully contains the entry. The root holds everything.
+         */
+        boolean fits(Entry entry) {
+            if (parent == null) {
+                return true;
+            }
+            return entry.extent() <= half * 2 && containsCenter(entry);
+        }
+
+        boolean looseIntersects(double minX, double minY, double maxX, double maxY) {
+            double loose = half * 2;
+            return centerX - loose <= maxX && centerX + loose >= minX
+                    && centerY - loose <= maxY && centerY + loose >= minY;
+        }
+    }
+
+    /**
+     * An indexed shape together with its bounds and the node it is stored in.
+     */
+    private static final class Entry {
+        final AbstractShape shape;
+        double minX, minY, maxX, maxY;
+        Node node;
+        int slot; // Position of the entry in node.entries
+
+        Entry(AbstractShape shape) {
+            this.shape = shape;
+        }
+
+        void setBounds(Rectangle2D bounds) {
+            minX = bounds.getMinX();
+            minY = bounds.getMinY();
+            maxX = bounds.getMaxX();
+            maxY = bounds.getMaxY();
+        }
+
+        double centerX() {
+            return (minX + maxX) / 2;
+        }
+
+        double centerY() {
+            return (minY + maxY) / 2;
+        }
+
+        double extent() {
+            return Math.max(maxX - minX, maxY - minY);
+        }
+
+        boolean intersects(double minX, double minY, double maxX, double maxY) {
+            return this.minX <= maxX && this.maxX >= minX && this.minY <= maxY && this.maxY >= minY;
+        }
+    }
+
+    /**
+     * A node or a shape waiting in the nearest-neighbour queue.
+     */
+    private static final class Candidate implements Comparable<Candidate> {
+        final double distanceSq;
+        final Node node;
+        final Entry entry;
+
+        Candidate(double distanceSq, Node node, Entry entry) {
+            this.distanceSq = distanceSq;
+            this.node = node;
+            this.entry = entry;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            return Double.compare(distanceSq, other.distanceSq);
+        }
+    }
+}
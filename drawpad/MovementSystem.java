@@ -0,0 +1,82 @@
+package drawpad;
+
+/**
+ * This class is an EntitySystem that moves the entities of an EntityStore that have a transform and physics.
+ * It integrates gravity and the accumulated forces with semi-implicit Euler integration, like PhysicsWorld does
+ * for bodies, and clears the forces afterwards. Entities with an inverse mass of 0 are static and do not move.
+ * Every row is updated independently, so the system runs in parallel for large archetypes.
+ */
+public class MovementSystem implements EntitySystem {
+    private static final int REQUIRED = ComponentType.maskOf(ComponentType.TRANSFORM, ComponentType.PHYSICS);
+
+    private double gravityX; // Acceleration applied to every dynamic entity
+    private double gravityY;
+
+    /**
+     * Constructor to create a MovementSystem without gravity.
+     */
+    public MovementSystem() {
+    }
+
+    /**
+     * Constructor to create a MovementSystem with the specified gravity.
+     *
+     * @param gravityX the acceleration along the x-axis, in pixels per second squared
+     * @param gravityY the acceleration along the y-axis, in pixels per second squared
+     */
+    public MovementSystem(double gravityX, double gravityY) {
+        this.gravityX = gravityX;
+        this.gravityY = gravityY;
+    }
+
+    @Override
+    public int getRequiredComponents() {
+        return REQUIRED;
+    }
+
+    @Override
+    public boolean isParallel() {
+        return true;
+    }
+
+    @Override
+    public void update(Archetype archetype, int from, int to, double dt) {
+        double[] posX = archetype.getX(), posY = archetype.getY();
+        double[] velX = archetype.getVelocityX(), velY = archetype.getVelocityY();
+        double[] forceX = archetype.getForceX(), forceY = archetype.getForceY();
+        double[] inverseMass = archetype.getInverseMass();
+        double gx = gravityX * dt, gy = gravityY * dt;
+        for (int i = from; i < to; i++) {
+            double w = inverseMass[i];
+            if (w != 0) {
+                double vx = velX[i] + gx + forceX[i] * w * dt;
+                double vy = velY[i] + gy + forceY[i] * w * dt;
+                velX[i] = vx;
+                velY[i] = vy;
+                posX[i] += vx * dt;
+                posY[i] += vy * dt;
+            }
+            forceX[i] = 0;
+            forceY[i] = 0;
+        }
+    }
+
+    /**
+     * Sets the gravity applied to every dynamic entity.
+     *
+     * @param gravityX the acceleration along the x-axis, in pixels per second squared
+     * @param gravityY the acceleration along the y-axis, in pixels per second squared
+     */
+    public void setGravity(double gravityX, double gravityY) {
+        this.gravityX = gravityX;
+        this.gravityY = gravityY;
+    }
+
+    public double getGravityX() {
+        return gravityX;
+    }
+
+    public double getGravityY() {
+        return gravityY;
+    }
+}
@@ -7,6 +7,9 @@ public class PhysicsBody {
     private double mass;
     private double friction;
     private double restitution;
+    private boolean bullet; // Whether the world sweeps the body to stop it passing through thin bodies
+    PhysicsWorld world; // The world that owns the state of this body while it is added to one, null otherwise
+    int index; // The slot of this body in the arrays of its world
 
 
     public PhysicsBody(){
@@ -19,13 +22,205 @@ public class PhysicsBody {
     }
     // Method to apply gravity to the circle object
     public Vector2D applyGravity(Vector2D position, Vector2D gravity) {
-        // Calculate the gravitational force
-        Vector2D gravitationalForce = gravity.scalarMultiply(mass).scalarMultiply(1/60f);
+        return applyGravity(position, gravity, new Vector2D(0, 0));
+    }
 
+    /**
+     * Applies gravity for one step of 1/60 second and stores the new position in dst without allocating.
+     * dst may be the position itself. While the body is in a PhysicsWorld the velocity of the body in the world
+     * is the one that is changed.
+     *
+     * @param position the current position
+     * @param gravity  the gravity
+     * @param dst      the vector to store the new position in
+     * @return dst
+     */
+    public Vector2D applyGravity(Vector2D position, Vector2D gravity, Vector2D dst) {
+        if (world != null) {
+            velocity.set(world.getVelocityX(index), world.getVelocityY(index));
+        }
         // Update velocity using the gravitational force (assuming constant time step)
-        velocity = velocity.add(gravitationalForce);
+        velocity.addInPlace(gravity.x * mass * (1/60f), gravity.y * mass * (1/60f));
+        if (world != null) {
+            world.setVelocity(index, velocity.x, velocity.y);
+        }
 
         // Update position using the updated velocity
-        return position.add(velocity);
+        return position.addInto(velocity, dst);
+    }
+
+    /**
+     * Returns the velocity of the body. While the body is in a PhysicsWorld the value is read from the world.
+     *
+     * @return the velocity of the body
+     */
+    public Vector2D getVelocity() {
+        return getVelocity(new Vector2D(0, 0));
+    }
+
+    /**
+     * Copies the velocity of the body into dst without allocating.
+     *
+     * @param dst the vector to store the velocity in
+     * @return dst
+     */
+    public Vector2D getVelocity(Vector2D dst) {
+        if (world != null) {
+            return dst.set(world.getVelocityX(index), world.getVelocityY(index));
+        }
+        return dst.set(velocity);
+    }
+
+    /**
+     * Sets the velocity of the body.
+     *
+     * @param velocity the new velocity of the body
+     */
+    public void setVelocity(Vector2D velocity) {
+        if (world != null) {
+            world.setVelocity(index, velocity.x, velocity.y);
+        }
+        this.velocity.set(velocity);
+    }
+
+    /**
+     * Adds a force that is applied during the next step of the body's PhysicsWorld.
+     *
+     * @param force the force to be applied
+     */
+    public void applyForce(Vector2D force) {
+        if (world != null) {
+            world.applyForce(index, force.x, force.y);
+        } else {
+            this.force.addInPlace(force);
+        }
+    }
+
+    /**
+     * Returns the force accumulated for the next step.
+     *
+     * @return the accumulated force
+     */
+    public Vector2D getForce() {
+        return getForce(new Vector2D(0, 0));
+    }
+
+    /**
+     * Copies the force accumulated for the next step into dst without allocating.
+     *
+     * @param dst the vector to store the force in
+     * @return dst
+     */
+    public Vector2D getForce(Vector2D dst) {
+        if (world != null) {
+            return dst.set(world.getForceX(index), world.getForceY(index));
+        }
+        return dst.set(force);
+    }
+
+    public double getMass() {
+        return mass;
+    }
+
+    /**
+     * Sets the mass of the body. A mass of 0 (or less) makes the body static: it is not moved by forces or gravity.
+     *
+     * @param mass the new mass of the body
+     */
+    public void setMass(double mass) {
+        this.mass = mass;
+        if (world != null) {
+            world.setMass(index, mass);
+        }
+    }
+
+    public double getFriction() {
+        return friction;
+    }
+
+    /**
+     * Sets the friction coefficient used when the body slides along another body. The coefficient of a contact
+     * is the geometric mean of the coefficients of the two bodies.
+     *
+     * @param friction the new friction coefficient, 0 for no friction
+     */
+    public void setFriction(double friction) {
+        this.friction = friction;
+        if (world != null) {
+            world.setFriction(index, friction);
+        }
+    }
+
+    public double getRestitution() {
+        return restitution;
+    }
+
+    /**
+     * Sets how bouncy the body is: 0 stops it on impact, 1 bounces it back at the speed it hit with.
+     * A contact uses the larger restitution of the two bodies.
+     *
+     * @param restitution the new restitution, between 0 and 1
+     */
+    public void setRestitution(double restitution) {
+        this.restitution = restitution;
+        if (world != null) {
+            world.setRestitution(index, restitution);
+        }
+    }
+
+    public boolean isBullet() {
+        return bullet;
+    }
+
+    /**
+     * Marks the body as a bullet: a small or fast body that must not pass through other bodies between two steps.
+     * When a bullet moves more than half its size in one step, its world sweeps it along its path and stops it
+     * where it first touches another body, then lets it continue for the rest of the step. Slower bullets are
+     * handled like any other body, so the flag costs nothing while it is not needed.
+     *
+     * @param bullet true to sweep the body
+     */
+    public void setBullet(boolean bullet) {
+        this.bullet = bullet;
+        if (world != null) {
+            world.setBullet(index, bullet);
+        }
+    }
+
+    /**
+     * Returns whether the body is asleep in its world. A sleeping body rests and is not simulated until it is
+     * woken up.
+     *
+     * @return true if the body is in a world and asleep
+     */
+    public boolean isSleeping() {
+        return world != null && world.isAsleep(index);
+    }
+
+    /**
+     * Wakes the body, together with the bodies it rests on or against, if it is asleep in its world.
+     */
+    public void wake() {
+        if (world != null) {
+            world.wake(index);
+        }
+    }
+
+    /**
+     * Returns the shape this body moves, if it has been added to a PhysicsWorld.
+     *
+     * @return the shape of the body, or null if the body is not in a world
+     */
+    public AbstractShape getShape() {
+        return world == null ? null : world.getShape(index);
+    }
+
+    /**
+     * Returns the world the body has been added to.
+     *
+     * @return the world of the body, or null if the body is not in a world
+     */
+    public PhysicsWorld getWorld() {
+        return world;
     }
 }
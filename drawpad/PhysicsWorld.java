@@ -0,0 +1,1394 @@
+package drawpad;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class simulates many PhysicsBody objects at once. The state of every body is kept in primitive arrays
+ * (one array per property, indexed by the body's slot), so a step is a single tight loop over contiguous memory
+ * that the JIT can compile well. For large worlds the loop is split across the cores of a ForkJoinPool.
+ * <p>
+ * Each body is linked to the AbstractShape it moves; after every step the new positions are written to the
+ * shapes, so rendering follows the simulation. Positions use the same convention as the shapes: the top-left
+ * corner of the unrotated shape.
+ * <p>
+ * Bodies collide with each other. A sweep-and-prune broad phase over the bounding boxes of the shapes finds the
+ * pairs that may touch, a CollisionDetector tests those pairs exactly, and the contacts are resolved with
+ * sequential impulses that use the restitution and friction of the bodies. Bodies have no rotational inertia,
+ * so collisions change only their linear velocity.
+ * <p>
+ * Bodies flagged as bullets are swept when they move more than half their size in a step: instead of testing
+ * where they end up, the world finds the first time of impact along their path, stops them there, bounces them
+ * and sweeps them again for the rest of the step, up to a number of substeps. Only the bullets that need it get
+ * substeps, so the rest of the world keeps its timestep.
+ * <p>
+ * Bodies that have moved slower than the sleep speed for the sleep time fall asleep together with the rest of
+ * their island. Sleeping bodies are not integrated, their bounding boxes are not updated and pairs of sleeping
+ * or static bodies are not tested, so a step costs little more than the bodies that are actually moving. A
+ * sleeping island wakes up as a whole when an awake body touches one of its bodies, when a force or velocity is
+ * applied to one of them or when user code moves one of their shapes.
+ * This class is not thread-safe; it is meant to be stepped from one thread.
+ */
+public class PhysicsWorld {
+    private int size; // Number of bodies in the world
+    private double[] posX;
+    private double[] posY;
+    private double[] velX;
+    private double[] velY;
+    private double[] forceX; // Forces accumulated for the next step, cleared after each step
+    private double[] forceY;
+    private double[] inverseMass; // 0 for static bodies
+    private double[] friction;
+    private double[] restitution;
+    private boolean[] bullet;
+    private boolean[] asleep;
+    private double[] restTime; // Seconds each body has moved slower than the sleep speed
+    private boolean[] moving; // Whether each body is dynamic and awake, for the broad phase
+    private int[] sleepNext; // Next body of the same sleeping island, the bodies of an island form a cycle
+    private double[] startX; // Positions at the start of the step, used to sweep bullets
+    private double[] startY;
+    private PhysicsBody[] bodies;
+    private AbstractShape[] shapes;
+
+    private double gravityX; // Acceleration applied to every dynamic body
+    private double gravityY;
+    private ForkJoinPool pool = ForkJoinPool.commonPool(); // Used for worlds of at least parallelThreshold bodies
+    private int parallelThreshold = 16384; // Minimum number of bodies before the step is split across cores
+    private int batchSize = 4096; // Number of bodies integrated by one task
+
+    private static final double RESTITUTION_THRESHOLD = 1; // Closing speeds below this do not bounce, so resting bodies settle
+    private static final double PENETRATION_SLOP = 0.05; // Overlap that is tolerated, to keep resting contacts stable
+    private static final double POSITION_CORRECTION = 0.8; // Fraction of the remaining overlap removed per step
+    private static final long NO_PAIR = -1; // Empty slot of warmPairs
+    private static final double CONTACT_MARGIN = 0.5; // Gap at which bodies get a contact that stops them meeting
+
+    private boolean collisionsEnabled = true;
+    private int solverIterations = 8; // Number of passes of the impulse solver over all contacts
+    private final SweepAndPrune broadPhase = new SweepAndPrune();
+    private final CollisionDetector detector = new CollisionDetector();
+    private double[] boxMinX; // Bounding boxes of the shapes at the integrated positions, for the broad phase
+    private double[] boxMinY;
+    private double[] boxMaxX;
+    private double[] boxMaxY;
+    private int contactCount; // Number of contacts found in the last step
+    private int[] contactA = new int[16]; // Slots of the two bodies of each contact
+    private int[] contactB = new int[16];
+    private double[] contactNormalX = new double[16]; // Unit normal of each contact, pointing from A to B
+    private double[] contactNormalY = new double[16];
+    private double[] contactDepth = new double[16];
+    private double[] contactOffset = new double[16]; // Offset of B from A along the normal when the contact was found
+    private double[] contactFriction = new double[16]; // Combined friction of the two bodies
+    private double[] contactBounce = new double[16]; // Normal velocity the solver aims for: restitution, or gap closing
+    private double[] normalImpulse = new double[16]; // Impulses accumulated by the solver
+    private double[] tangentImpulse = new double[16];
+    private long[] warmPairs = emptyWarmPairs(32); // Hash table of the body pairs of the last step's contacts
+    private double[] warmNormal = new double[32]; // Normal impulse of each of those contacts, to start from
+    private double[] warmTangent = new double[32];
+    private double stepTime; // Length of the step being taken, for moving the bodies with their solved velocities
+
+    private int maxBulletSubsteps = 4; // Number of impacts a bullet can have in one step
+    private boolean[] sweeping; // Bullets that move far enough in this step to be swept
+    private double[] impactTime; // Earliest time of impact of each swept bullet in this step, as a fraction
+    private int[] impactPartner; // The body each swept bullet hits first
+    private double[] impactNormalX; // Normal of the first impact, pointing from the bullet to its partner
+    private double[] impactNormalY;
+    private int candidateCount; // Pairs of a swept bullet and a body its path may cross
+    private int[] candidateBullet = new int[16];
+    private int[] candidateOther = new int[16];
+    private int substepCount; // Number of bullet substeps taken in the last step
+
+    private static final int MAX_COLORS = 64; // Colors of a large island, one bit each in bodyColors
+    private int contactParallelThreshold = 1024; // Minimum number of contacts before they are solved in parallel
+    private int contactBatchSize = 256; // Number of contacts solved by one task
+    private int coloringThreshold = 2048; // Minimum number of contacts of an island before it is solved by color
+    private int islandCount; // Number of islands in the last step
+    private int[] islandParent = new int[0]; // Union-find links between the bodies
+    private int[] islandOfBody = new int[0]; // Island of each root body, -1 if it has none yet
+    private int[] contactIsland = new int[16]; // Island of each contact
+    private int[] islandStart = new int[17]; // Offset of the first contact of each island in islandContacts
+    private int[] islandContacts = new int[16]; // Contacts ordered by island
+    private long[] bodyColors = new long[0]; // Colors used by the contacts of each body in the island being colored
+    private int[] contactColor = new int[16]; // Color of each contact of that island
+    private int[] colorStart = new int[MAX_COLORS + 2]; // Offset of the first contact of each color, and the rest
+    private int[] coloredContacts = new int[16]; // Contacts of that island ordered by color
+
+    private boolean sleepingEnabled = true;
+    private double sleepSpeed = 5; // Bodies slower than this, in units per second, count as resting
+    private double sleepTime = 0.5; // Seconds an island has to rest before it falls asleep
+    private boolean islandsValid; // Whether islandParent holds the islands of this step
+    private int stamp; // Incremented every step, marks the islands already seen in islandStamp
+    private int[] islandStamp = new int[0]; // Step in which the island rooted at each body was last seen
+    private double[] islandRest = new double[0]; // Shortest rest time of the island rooted at each body
+    private int[] islandTail = new int[0]; // Last body added to the sleep cycle of the island rooted at each body
+    private int awakeCount; // Dynamic bodies awake after the last step
+    private int sleepingCount; // Dynamic bodies asleep after the last step
+
+    /**
+     * Constructor to create an empty PhysicsWorld with room for the specified number of bodies.
+     * The arrays grow when more bodies are added.
+     *
+     * @param capacity the initial number of bodies
+     */
+    public PhysicsWorld(int capacity) {
+        allocate(Math.max(capacity, 16));
+    }
+
+    /**
+     * Constructor to create an empty PhysicsWorld.
+     */
+    public PhysicsWorld() {
+        this(64);
+    }
+
+    private void allocate(int capacity) {
+        posX = copy(posX, capacity);
+        posY = copy(posY, capacity);
+        velX = copy(velX, capacity);
+        velY = copy(velY, capacity);
+        forceX = copy(forceX, capacity);
+        forceY = copy(forceY, capacity);
+        inverseMass = copy(inverseMass, capacity);
+        friction = copy(friction, capacity);
+        restitution = copy(restitution, capacity);
+        bullet = copy(bullet, capacity);
+        asleep = copy(asleep, capacity);
+        moving = copy(moving, capacity);
+        restTime = copy(restTime, capacity);
+        sleepNext = sleepNext == null ? new int[capacity] : Arrays.copyOf(sleepNext, capacity);
+        islandStamp = Arrays.copyOf(islandStamp, capacity);
+        islandRest = copy(islandRest, capacity);
+        islandTail = Arrays.copyOf(islandTail, capacity);
+        startX = copy(startX, capacity);
+        startY = copy(startY, capacity);
+        sweeping = copy(sweeping, capacity);
+        impactTime = copy(impactTime, capacity);
+        impactPartner = impactPartner == null ? new int[capacity] : Arrays.copyOf(impactPartner, capacity);
+        impactNormalX = copy(impactNormalX, capacity);
+        impactNormalY = copy(impactNormalY, capacity);
+        boxMinX = copy(boxMinX, capacity);
+        boxMinY = copy(boxMinY, capacity);
+        boxMaxX = copy(boxMaxX, capacity);
+        boxMaxY = copy(boxMaxY, capacity);
+        bodies = bodies == null ? new PhysicsBody[capacity] : Arrays.copyOf(bodies, capacity);
+        shapes = shapes == null ? new AbstractShape[capacity] : Arrays.copyOf(shapes, capacity);
+    }
+
+    private static double[] copy(double[] array, int capacity) {
+        return array == null ? new double[capacity] : Arrays.copyOf(array, capacity);
+    }
+
+    private static boolean[] copy(boolean[] array, int capacity) {
+        return array == null ? new boolean[capacity] : Arrays.copyOf(array, capacity);
+    }
+
+    private static long[] emptyWarmPairs(int capacity) {
+        long[] pairs = new long[capacity];
+        Arrays.fill(pairs, NO_PAIR);
+        return pairs;
+    }
+
+    /**
+     * Adds a body that moves the specified shape. The body's current velocity, force, mass, friction and
+     * restitution are copied into the world, and from then on the world owns that state: the body's getters
+     * and setters read and write the world.
+     *
+     * @param shape the shape moved by the body
+     * @param body  the body to be added
+     * @return the slot of the body
+     */
+    public int add(AbstractShape shape, PhysicsBody body) {
+        if (body.world != null) {
+            throw new IllegalArgumentException("The body already belongs to a world");
+        }
+        if (size == posX.length) {
+            allocate(size * 2);
+        }
+        int i = size++;
+        Vector2D velocity = body.getVelocity();
+        Vector2D force = body.getForce();
+        posX[i] = shape.getPos_x();
+        posY[i] = shape.getPos_y();
+        velX[i] = velocity.x;
+        velY[i] = velocity.y;
+        forceX[i] = force.x;
+        forceY[i] = force.y;
+        inverseMass[i] = inverse(body.getMass());
+        friction[i] = body.getFriction();
+        restitution[i] = body.getRestitution();
+        bullet[i] = body.isBullet();
+        asleep[i] = false;
+        restTime[i] = 0;
+        bodies[i] = body;
+        shapes[i] = shape;
+        body.world = this;
+        body.index = i;
+        return i;
+    }
+
+    /**
+     * Removes a body from the world. Its velocity is copied back into the body. The last body in the world
+     * is moved into the freed slot.
+     *
+     * @param body the body to be removed
+     */
+    public void remove(PhysicsBody body) {
+        if (body.world != this) {
+            return;
+        }
+        int i = body.index;
+        // The sleep cycles link slots, so the islands of the removed and the moved body are woken first
+        wake(i);
+        wake(size - 1);
+        Vector2D velocity = body.getVelocity();
+        body.world = null;
+        body.setVelocity(velocity);
+
+        int last = --size;
+        if (i != last) {
+            posX[i] = posX[last];
+            posY[i] = posY[last];
+            velX[i] = velX[last];
+            velY[i] = velY[last];
+            forceX[i] = forceX[last];
+            forceY[i] = forceY[last];
+            inverseMass[i] = inverseMass[last];
+            friction[i] = friction[last];
+            restitution[i] = restitution[last];
+            bullet[i] = bullet[last];
+            restTime[i] = restTime[last];
+            bodies[i] = bodies[last];
+            shapes[i] = shapes[last];
+            bodies[i].index = i;
+        }
+        bodies[last] = null;
+        shapes[last] = null;
+        Arrays.fill(warmPairs, NO_PAIR); // The moved body's slot no longer matches the pairs
+    }
+
+    /**
+     * Returns the number of bodies in the world.
+     *
+     * @return the number of bodies
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Sets the acceleration applied to every dynamic body, in units per second squared.
+     *
+     * @param x the x component of the gravity
+     * @param y the y component of the gravity
+     */
+    public void setGravity(double x, double y) {
+        if (x != gravityX || y != gravityY) {
+            wakeAll(); // Resting bodies may no longer be at rest
+        }
+        gravityX = x;
+        gravityY = y;
+    }
+
+    /**
+     * Advances the simulation by dt seconds using semi-implicit Euler integration, resolves the collisions
+     * and then moves the linked shapes.
+     *
+     * @param dt the length of the step in seconds
+     */
+    public void step(double dt) {
+        stepTime = dt;
+        readShapePositions();
+        if (size >= parallelThreshold && pool.getParallelism() > 1) {
+            pool.invoke(new Integrate(0, size, dt));
+        } else {
+            integrate(0, size, dt);
+        }
+        contactCount = 0;
+        candidateCount = 0;
+        substepCount = 0;
+        islandsValid = false;
+        if (collisionsEnabled && size > 1) {
+            findContacts();
+            solveContacts();
+            if (candidateCount > 0) {
+                solveBullets(dt);
+            }
+        }
+        storeImpulses();
+        updateSleep(dt);
+        writeShapePositions();
+    }
+
+    /**
+     * Integrates the bodies in slots [from, to). Static bodies (inverse mass 0) are left where they are.
+     */
+    private void integrate(int from, int to, double dt) {
+        double[] posX = this.posX, posY = this.posY, velX = this.velX, velY = this.velY;
+        double[] forceX = this.forceX, forceY = this.forceY, inverseMass = this.inverseMass;
+        double gx = gravityX * dt, gy = gravityY * dt;
+        for (int i = from; i < to; i++) {
+            double w = inverseMass[i];
+            if (w != 0 && !asleep[i]) {
+                double vx = velX[i] + gx + forceX[i] * w * dt;
+                double vy = velY[i] + gy + forceY[i] * w * dt;
+                velX[i] = vx;
+                velY[i] = vy;
+                posX[i] += vx * dt;
+                posY[i] += vy * dt;
+            }
+            forceX[i] = 0;
+            forceY[i] = 0;
+        }
+    }
+
+    /**
+     * Finds the touching pairs of bodies at their integrated positions. The bounding box of each shape is moved
+     * by the distance its body moved, which is cheaper than recomputing it. The box of a bullet that moved more
+     * than half its size is instead grown by that distance on every side around where it started, so it covers
+     * the bullet's whole path even after it bounces, and its pairs are swept rather than tested.
+     */
+    private void findContacts() {
+        for (int i = 0; i < size; i++) {
+            sweeping[i] = false;
+            moving[i] = isAwake(i);
+            if (asleep[i]) {
+                continue; // Its box was stored when it fell asleep
+            }
+            AbstractShape shape = shapes[i];
+            Rectangle2D bounds = shape.getBounds();
+            double dx = posX[i] - shape.getPos_x();
+            double dy = posY[i] - shape.getPos_y();
+            double distance = bullet[i] && inverseMass[i] != 0 ? Math.sqrt(dx * dx + dy * dy) : 0;
+            sweeping[i] = distance > halfSize(shape);
+            if (sweeping[i]) {
+                impactTime[i] = CollisionDetector.NO_IMPACT;
+                boxMinX[i] = bounds.getMinX() - distance;
+                boxMinY[i] = bounds.getMinY() - distance;
+                boxMaxX[i] = bounds.getMaxX() + distance;
+                boxMaxY[i] = bounds.getMaxY() + distance;
+                continue;
+            }
+            boxMinX[i] = bounds.getMinX() + dx - CONTACT_MARGIN;
+            boxMinY[i] = bounds.getMinY() + dy - CONTACT_MARGIN;
+            boxMaxX[i] = bounds.getMaxX() + dx + CONTACT_MARGIN;
+            boxMaxY[i] = bounds.getMaxY() + dy + CONTACT_MARGIN;
+        }
+        int pairs = broadPhase.update(boxMinX, boxMinY, boxMaxX, boxMaxY, moving, size);
+        if (sleepingCount > 0 && wakeTouched(pairs)) {
+            // The pairs among the woken bodies were left out, so they are searched again
+            for (int i = 0; i < size; i++) {
+                moving[i] = isAwake(i);
+            }
+            pairs = broadPhase.update(boxMinX, boxMinY, boxMaxX, boxMaxY, moving, size);
+        }
+        for (int p = 0; p < pairs; p++) {
+            int a = broadPhase.getFirst(p);
+            int b = broadPhase.getSecond(p);
+            if (!isAwake(a) && !isAwake(b)) {
+                continue; // Static and sleeping bodies do not move, so their contacts do not change
+            }
+            if (sweeping[a] || sweeping[b]) {
+                if (sweeping[a]) {
+                    addCandidate(a, b);
+                }
+                if (sweeping[b]) {
+                    addCandidate(b, a);
+                }
+                continue;
+            }
+            if (detector.collide(shapes[a], posX[a], posY[a], shapes[b], posX[b], posY[b], CONTACT_MARGIN)) {
+                addContact(a, b);
+            }
+        }
+    }
+
+    /**
+     * Wakes the sleeping islands that an awake body touches, before the contacts are collected, so that all the
+     * bodies of a woken island take part in this step's contacts.
+     *
+     * @return true if an island was woken
+     */
+    private boolean wakeTouched(int pairs) {
+        boolean woken = false;
+        for (int p = 0; p < pairs; p++) {
+            int a = broadPhase.getFirst(p);
+            int b = broadPhase.getSecond(p);
+            if (asleep[a] == asleep[b] || !isAwake(a) && !isAwake(b)) {
+                continue;
+            }
+            if (sweeping[a] || sweeping[b] || detector.collide(shapes[a], posX[a], posY[a], shapes[b], posX[b],
+                    posY[b], CONTACT_MARGIN)) {
+                wake(asleep[a] ? a : b);
+                woken = true;
+            }
+        }
+        return woken;
+    }
+
+    private boolean isAwake(int i) {
+        return inverseMass[i] != 0 && !asleep[i];
+    }
+
+    /**
+     * Wakes the body in a slot together with every other body of its sleeping island. Does nothing if it is
+     * awake.
+     *
+     * @param i the slot of the body
+     */
+    void wake(int i) {
+        if (i < 0 || i >= size || !asleep[i]) {
+            return;
+        }
+        int body = i;
+        do {
+            asleep[body] = false;
+            restTime[body] = 0;
+            body = sleepNext[body];
+        } while (body != i);
+    }
+
+    private void wakeAll() {
+        for (int i = 0; i < size; i++) {
+            asleep[i] = false;
+            restTime[i] = 0;
+        }
+    }
+
+    /**
+     * Updates how long every awake body has been resting and puts the islands whose bodies have all rested for
+     * the sleep time to sleep. Bodies without contacts form an island of their own.
+     */
+    private void updateSleep(double dt) {
+        int awake = 0, sleeping = 0;
+        if (!sleepingEnabled) {
+            for (int i = 0; i < size; i++) {
+                if (inverseMass[i] != 0) {
+                    awake++;
+                }
+            }
+            awakeCount = awake;
+            sleepingCount = 0;
+            return;
+        }
+        stamp++;
+        // Resting is judged by how far a body moved during the step: the solver leaves resting stacks with some
+        // velocity into their supports, which the position correction cancels every step
+        double reach = sleepSpeed * dt;
+        for (int i = 0; i < size; i++) {
+            if (!isAwake(i)) {
+                continue;
+            }
+            double dx = posX[i] - startX[i];
+            double dy = posY[i] - startY[i];
+            boolean resting = dx * dx + dy * dy <= reach * reach;
+            restTime[i] = resting ? restTime[i] + dt : 0;
+            int root = islandsValid ? findIsland(i) : i;
+            if (islandStamp[root] != stamp) {
+                islandStamp[root] = stamp;
+                islandRest[root] = restTime[i];
+                islandTail[root] = -1;
+            } else {
+                islandRest[root] = Math.min(islandRest[root], restTime[i]);
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            if (inverseMass[i] == 0) {
+                continue;
+            }
+            if (asleep[i]) {
+                sleeping++;
+                continue;
+            }
+            int root = islandsValid ? findIsland(i) : i;
+            if (islandRest[root] < sleepTime) {
+                awake++;
+                continue;
+            }
+            // Link the body into the cycle of its island
+            int tail = islandTail[root];
+            if (tail < 0) {
+                sleepNext[i] = i;
+            } else {
+                sleepNext[i] = sleepNext[tail];
+                sleepNext[tail] = i;
+            }
+            islandTail[root] = i;
+            asleep[i] = true;
+            velX[i] = 0;
+            velY[i] = 0;
+            storeBox(i);
+            sleeping++;
+        }
+        awakeCount = awake;
+        sleepingCount = sleeping;
+    }
+
+    /**
+     * Stores the bounding box of a body at its current position, for a body that falls asleep and whose box is
+     * then no longer updated.
+     */
+    private void storeBox(int i) {
+        AbstractShape shape = shapes[i];
+        Rectangle2D bounds = shape.getBounds();
+        double dx = posX[i] - shape.getPos_x();
+        double dy = posY[i] - shape.getPos_y();
+        boxMinX[i] = bounds.getMinX() + dx - CONTACT_MARGIN;
+        boxMinY[i] = bounds.getMinY() + dy - CONTACT_MARGIN;
+        boxMaxX[i] = bounds.getMaxX() + dx + CONTACT_MARGIN;
+        boxMaxY[i] = bounds.getMaxY() + dy + CONTACT_MARGIN;
+    }
+
+    /**
+     * Returns half the smallest width of a shape: a body moving less than that in a step cannot pass through
+     * another body without overlapping it at the end of some step.
+     */
+    private static double halfSize(AbstractShape shape) {
+        if (shape instanceof Circle circle) {
+            return circle.getRadius();
+        }
+        if (shape instanceof Rectangle rectangle) {
+            return Math.min(rectangle.getWidth(), rectangle.getHeight()) / 2;
+        }
+        if (shape instanceof Triangle triangle) {
+            return triangle.getBase() * Math.sqrt(3) / 6; // The radius of the inscribed circle
+        }
+        Rectangle2D bounds = shape.getBounds();
+        return Math.min(bounds.getWidth(), bounds.getHeight()) / 2;
+    }
+
+    /**
+     * Records a body the path of a swept bullet may cross, and sweeps the bullet against it: the bullet moves from
+     * where it started to where it was integrated, relative to the other body's motion.
+     */
+    private void addCandidate(int bullet, int other) {
+        int c = candidateCount++;
+        if (c == candidateBullet.length) {
+            candidateBullet = Arrays.copyOf(candidateBullet, c * 2);
+            candidateOther = Arrays.copyOf(candidateOther, c * 2);
+        }
+        candidateBullet[c] = bullet;
+        candidateOther[c] = other;
+        double dx = (posX[bullet] - startX[bullet]) - (posX[other] - startX[other]);
+        double dy = (posY[bullet] - startY[bullet]) - (posY[other] - startY[other]);
+        sweep(bullet, other, startX[bullet], startY[bullet], dx, dy, startX[other], startY[other]);
+    }
+
+    /**
+     * Sweeps a bullet against another body and keeps the impact if it is the earliest one of the bullet so far.
+     * An impact at the very start is ignored if the bullet is already moving away from the other body, so a
+     * bullet that has just bounced off a body is not stopped by it again.
+     */
+    private void sweep(int bullet, int other, double x, double y, double dx, double dy, double otherX,
+                       double otherY) {
+        double time = detector.timeOfImpact(shapes[bullet], x, y, dx, dy, shapes[other], otherX, otherY);
+        if (time >= impactTime[bullet]) {
+            return;
+        }
+        double nx = detector.getNormalX();
+        double ny = detector.getNormalY();
+        if (time == 0 && dx * nx + dy * ny <= 0) {
+            return;
+        }
+        impactTime[bullet] = time;
+        impactPartner[bullet] = other;
+        impactNormalX[bullet] = nx;
+        impactNormalY[bullet] = ny;
+    }
+
+    /**
+     * Moves every swept bullet to its first impact, bounces it off the body it hit and sweeps it again over the
+     * rest of the step, until it has no more impacts or has used up its substeps. The other bodies stay where they
+     * are at the end of the step while a bullet substeps.
+     */
+    private void solveBullets(double dt) {
+        for (int i = 0; i < size; i++) {
+            if (!sweeping[i] || impactTime[i] > 1) {
+                continue;
+            }
+            double x = startX[i], y = startY[i];
+            double dx = posX[i] - x, dy = posY[i] - y;
+            double remaining = 1; // Fraction of the step still to be moved
+            for (int substep = 0; substep < maxBulletSubsteps && impactTime[i] <= 1; substep++) {
+                double time = impactTime[i];
+                int other = impactPartner[i];
+                double nx = impactNormalX[i], ny = impactNormalY[i];
+                // Stop just short of the impact, so the next sweep does not start inside the other body
+                x += dx * time - nx * PENETRATION_SLOP;
+                y += dy * time - ny * PENETRATION_SLOP;
+                impact(i, other, nx, ny);
+                substepCount++;
+                remaining *= 1 - time;
+                dx = velX[i] * dt * remaining;
+                dy = velY[i] * dt * remaining;
+                impactTime[i] = CollisionDetector.NO_IMPACT;
+                for (int c = 0; c < candidateCount; c++) {
+                    if (candidateBullet[c] == i) {
+                        int candidate = candidateOther[c];
+                        sweep(i, candidate, x, y, dx, dy, posX[candidate], posY[candidate]);
+                    }
+                }
+            }
+            if (impactTime[i] > 1) {
+                x += dx;
+                y += dy;
+            }
+            posX[i] = x;
+            posY[i] = y;
+        }
+    }
+
+    /**
+     * Applies the impulse of a single impact between a bullet and another body, with the same restitution and
+     * friction rules as the contact solver.
+     */
+    private void impact(int a, int b, double nx, double ny) {
+        wake(b);
+        double wa = inverseMass[a], wb = inverseMass[b];
+        double rvx = velX[b] - velX[a];
+        double rvy = velY[b] - velY[a];
+        double closingSpeed = rvx * nx + rvy * ny;
+        if (closingSpeed >= 0 || wa + wb == 0) {
+            return;
+        }
+        double effectiveMass = 1 / (wa + wb);
+        double bounce = closingSpeed < -RESTITUTION_THRESHOLD
+                ? -Math.max(restitution[a], restitution[b]) * closingSpeed : 0;
+        double lambda = (bounce - closingSpeed) * effectiveMass;
+        applyImpulse(a, b, lambda * nx, lambda * ny);
+        double tangentSpeed = rvx * -ny + rvy * nx;
+        double maxFriction = Math.sqrt(friction[a] * friction[b]) * lambda;
+        double frictionImpulse = Math.max(-maxFriction, Math.min(maxFriction, -tangentSpeed * effectiveMass));
+        applyImpulse(a, b, frictionImpulse * -ny, frictionImpulse * nx);
+    }
+
+    private void addContact(int a, int b) {
+        int c = contactCount++;
+        if (c == contactA.length) {
+            int capacity = c * 2;
+            contactA = Arrays.copyOf(contactA, capacity);
+            contactB = Arrays.copyOf(contactB, capacity);
+            contactNormalX = Arrays.copyOf(contactNormalX, capacity);
+            contactNormalY = Arrays.copyOf(contactNormalY, capacity);
+            contactDepth = Arrays.copyOf(contactDepth, capacity);
+            contactOffset = Arrays.copyOf(contactOffset, capacity);
+            contactFriction = Arrays.copyOf(contactFriction, capacity);
+            contactBounce = Arrays.copyOf(contactBounce, capacity);
+            normalImpulse = Arrays.copyOf(normalImpulse, capacity);
+            tangentImpulse = Arrays.copyOf(tangentImpulse, capacity);
+        }
+        double nx = detector.getNormalX();
+        double ny = detector.getNormalY();
+        contactA[c] = a;
+        contactB[c] = b;
+        contactNormalX[c] = nx;
+        contactNormalY[c] = ny;
+        contactDepth[c] = detector.getDepth();
+        contactOffset[c] = (posX[b] - posX[a]) * nx + (posY[b] - posY[a]) * ny;
+        // The bouncier body decides the restitution, friction is the geometric mean like most engines use
+        contactFriction[c] = Math.sqrt(friction[a] * friction[b]);
+        double closingSpeed = (velX[b] - velX[a]) * nx + (velY[b] - velY[a]) * ny;
+        double depth = contactDepth[c];
+        if (depth < 0) {
+            // The bodies end the step a gap apart at their current speeds. Other contacts may change those speeds,
+            // but the two may only approach faster by as much as closes the gap, so they cannot pass into each
+            // other. Restitution is left to the next step, when they touch.
+            contactBounce[c] = closingSpeed + depth / stepTime;
+        } else {
+            // A resting body closes at the speed one step of gravity gives it, which must not bounce it off the
+            // body under it, or it hops on every step
+            double threshold = RESTITUTION_THRESHOLD + Math.hypot(gravityX, gravityY) * stepTime;
+            contactBounce[c] = closingSpeed < -threshold ? -Math.max(restitution[a], restitution[b]) * closingSpeed : 0;
+        }
+        // Only touching contacts start from last step's impulses. A gap may be closing or opening, and pushing
+        // across it with the impulse of a resting contact makes the bodies jitter instead of settle
+        int slot = findWarmSlot(a, b);
+        if (depth >= 0 && warmPairs[slot] != NO_PAIR) {
+            normalImpulse[c] = warmNormal[slot];
+            tangentImpulse[c] = warmTangent[slot];
+        } else {
+            normalImpulse[c] = 0;
+            tangentImpulse[c] = 0;
+        }
+    }
+
+    /**
+     * Returns the slot of warmPairs that holds the pair of bodies a and b, or the empty slot where it would go.
+     * The pair is stored with the lower slot first, so it is found whichever way round the broad phase reports it.
+     */
+    private int findWarmSlot(int a, int b) {
+        long pair = (long) Math.min(a, b) << 32 | Math.max(a, b);
+        int mask = warmPairs.length - 1;
+        long hash = pair * 0x9E3779B97F4A7C15L;
+        int slot = (int) (hash ^ hash >>> 32) & mask;
+        while (warmPairs[slot] != NO_PAIR && warmPairs[slot] != pair) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Remembers the impulses of this step's contacts, so the contacts that still touch in the next step start
+     * from them instead of from zero.
+     */
+    private void storeImpulses() {
+        if (warmPairs.length < 2 * contactCount) {
+            int capacity = Integer.highestOneBit(2 * contactCount - 1) << 1;
+            warmPairs = emptyWarmPairs(capacity);
+            warmNormal = new double[capacity];
+            warmTangent = new double[capacity];
+        } else {
+            Arrays.fill(warmPairs, NO_PAIR);
+        }
+        for (int c = 0; c < contactCount; c++) {
+            int a = contactA[c], b = contactB[c];
+            int slot = findWarmSlot(a, b);
+            warmPairs[slot] = (long) Math.min(a, b) << 32 | Math.max(a, b);
+            warmNormal[slot] = normalImpulse[c];
+            warmTangent[slot] = tangentImpulse[c];
+        }
+    }
+
+    /**
+     * Applies the impulses a contact starts from, those it ended the last step with, before the solver passes.
+     */
+    private void warmStart(int c) {
+        double nx = contactNormalX[c], ny = contactNormalY[c];
+        double normal = normalImpulse[c], tangent = tangentImpulse[c];
+        if (normal != 0 || tangent != 0) {
+            applyImpulse(contactA[c], contactB[c], normal * nx - tangent * ny, normal * ny + tangent * nx);
+        }
+    }
+
+    /**
+     * Resolves the contacts with sequential impulses. Each pass corrects the velocities of every contact in turn;
+     * the accumulated impulses are clamped so a contact only pushes and friction never exceeds the normal impulse
+     * times the friction coefficient. Afterwards the bodies are pushed apart to remove most of the overlap.
+     * <p>
+     * The contacts are first grouped into islands of bodies that touch directly or through a chain of dynamic
+     * bodies. Static bodies are never moved, so they do not join islands together, and no two islands share a body
+     * that the solver changes. Solving island by island therefore gives exactly the result of solving all contacts
+     * in order, and islands can be solved in parallel. Islands of at least coloringThreshold contacts are colored
+     * instead, so that the contacts of one color share no dynamic body and can be solved in parallel as well.
+     * Whether an island is colored depends only on its size, so the result is the same for any number of threads.
+     */
+    private void solveContacts() {
+        buildIslands();
+        boolean parallel = contactCount >= contactParallelThreshold && pool.getParallelism() > 1;
+        if (parallel && islandCount > 1) {
+            pool.invoke(new SolveIslands(0, islandCount));
+        } else {
+            solveIslands(0, islandCount);
+        }
+        for (int island = 0; island < islandCount; island++) {
+            if (islandStart[island + 1] - islandStart[island] >= coloringThreshold) {
+                solveColored(islandStart[island], islandStart[island + 1], parallel);
+            }
+        }
+    }
+
+    /**
+     * Groups the contacts into islands with a union-find over the dynamic bodies. Islands are numbered in the
+     * order of their first contact and keep the order of their contacts, so the grouping is deterministic.
+     */
+    private void buildIslands() {
+        if (islandParent.length < posX.length) {
+            islandParent = new int[posX.length];
+            islandOfBody = new int[posX.length];
+            bodyColors = new long[posX.length];
+        }
+        if (islandContacts.length < contactCount) {
+            islandContacts = new int[contactA.length];
+            contactIsland = new int[contactA.length];
+            islandStart = new int[contactA.length + 1];
+        }
+        for (int i = 0; i < size; i++) {
+            islandParent[i] = i;
+            islandOfBody[i] = -1;
+        }
+        for (int c = 0; c < contactCount; c++) {
+            int a = contactA[c], b = contactB[c];
+            if (inverseMass[a] != 0 && inverseMass[b] != 0) {
+                int rootA = findIsland(a), rootB = findIsland(b);
+                if (rootA != rootB) {
+                    islandParent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+                }
+            }
+        }
+        islandsValid = true;
+        islandCount = 0;
+        for (int c = 0; c < contactCount; c++) {
+            int root = findIsland(inverseMass[contactA[c]] != 0 ? contactA[c] : contactB[c]);
+            if (islandOfBody[root] < 0) {
+                islandStart[islandCount] = 0;
+                islandOfBody[root] = islandCount++;
+            }
+            int island = islandOfBody[root];
+            contactIsland[c] = island;
+            islandStart[island]++;
+        }
+        // Turn the counts into offsets and place every contact after the earlier ones of its island
+        int offset = 0;
+        for (int island = 0; island < islandCount; island++) {
+            int count = islandStart[island];
+            islandStart[island] = offset;
+            offset += count;
+        }
+        islandStart[islandCount] = offset;
+        for (int c = 0; c < contactCount; c++) {
+            islandContacts[islandStart[contactIsland[c]]++] = c;
+        }
+        for (int island = islandCount; island > 0; island--) {
+            islandStart[island] = islandStart[island - 1];
+        }
+        islandStart[0] = 0;
+    }
+
+    private int findIsland(int body) {
+        int[] parent = islandParent;
+        while (parent[body] != body) {
+            parent[body] = parent[parent[body]]; // Path halving
+            body = parent[body];
+        }
+        return body;
+    }
+
+    /**
+     * Solves the islands in [from, to) that are too small to be colored, one after the other.
+     */
+    private void solveIslands(int from, int to) {
+        for (int island = from; island < to; island++) {
+            int start = islandStart[island], end = islandStart[island + 1];
+            if (end - start >= coloringThreshold) {
+                continue;
+            }
+            for (int k = start; k < end; k++) {
+                warmStart(islandContacts[k]);
+            }
+            for (int iteration = 0; iteration < solverIterations; iteration++) {
+                for (int k = start; k < end; k++) {
+                    solveContact(islandContacts[k]);
+                }
+            }
+            for (int k = start; k < end; k++) {
+                moveBodies(islandContacts[k]);
+            }
+            for (int k = start; k < end; k++) {
+                correctContact(islandContacts[k]);
+            }
+        }
+    }
+
+    /**
+     * Solves a large island by color. Every contact gets the lowest color not yet used by a contact of either of
+     * its dynamic bodies, up to 64 colors; contacts that find none are solved one by one after the colored ones.
+     * Within one color the contacts are independent, so they are split into batches across the pool.
+     */
+    private void solveColored(int start, int end, boolean parallel) {
+        int count = end - start;
+        if (coloredContacts.length < count) {
+            coloredContacts = new int[contactA.length];
+            contactColor = new int[contactA.length];
+        }
+        for (int k = start; k < end; k++) {
+            int c = islandContacts[k];
+            bodyColors[contactA[c]] = 0;
+            bodyColors[contactB[c]] = 0;
+        }
+        Arrays.fill(colorStart, 0);
+        for (int k = start; k < end; k++) {
+            int c = islandContacts[k];
+            int a = contactA[c], b = contactB[c];
+            boolean dynamicA = inverseMass[a] != 0, dynamicB = inverseMass[b] != 0;
+            long used = (dynamicA ? bodyColors[a] : 0) | (dynamicB ? bodyColors[b] : 0);
+            int color = Long.numberOfTrailingZeros(~used); // 64 when all colors are taken
+            if (color < MAX_COLORS) {
+                if (dynamicA) {
+                    bodyColors[a] |= 1L << color;
+                }
+                if (dynamicB) {
+                    bodyColors[b] |= 1L << color;
+                }
+            }
+            contactColor[k - start] = color;
+            colorStart[color + 1]++;
+        }
+        for (int color = 0; color <= MAX_COLORS; color++) {
+            colorStart[color + 1] += colorStart[color];
+        }
+        for (int k = start; k < end; k++) {
+            coloredContacts[colorStart[contactColor[k - start]]++] = islandContacts[k];
+        }
+        for (int color = MAX_COLORS; color > 0; color--) {
+            colorStart[color] = colorStart[color - 1];
+        }
+        colorStart[0] = 0;
+
+        for (int k = start; k < end; k++) {
+            warmStart(islandContacts[k]); // In island order on this thread, so the sums are the same for any pool
+        }
+        for (int iteration = 0; iteration < solverIterations; iteration++) {
+            solveByColor(false, parallel);
+        }
+        for (int k = start; k < end; k++) {
+            moveBodies(islandContacts[k]);
+        }
+        solveByColor(true, parallel);
+    }
+
+    private void solveByColor(boolean positions, boolean parallel) {
+        for (int color = 0; color < MAX_COLORS; color++) {
+            int from = colorStart[color], to = colorStart[color + 1];
+            if (parallel && to - from > contactBatchSize) {
+                pool.invoke(new SolveColor(from, to, positions));
+            } else {
+                solveColor(from, to, positions);
+            }
+        }
+        solveColor(colorStart[MAX_COLORS], colorStart[MAX_COLORS + 1], positions);
+    }
+
+    private void solveColor(int from, int to, boolean positions) {
+        for (int k = from; k < to; k++) {
+            if (positions) {
+                correctContact(coloredContacts[k]);
+            } else {
+                solveContact(coloredContacts[k]);
+            }
+        }
+    }
+
+    /**
+     * Makes one pass of the solver over a contact.
+     */
+    private void solveContact(int c) {
+        int a = contactA[c], b = contactB[c];
+        double wa = inverseMass[a], wb = inverseMass[b];
+        double effectiveMass = 1 / (wa + wb);
+        double nx = contactNormalX[c], ny = contactNormalY[c];
+
+        double rvx = velX[b] - velX[a];
+        double rvy = velY[b] - velY[a];
+        double lambda = (contactBounce[c] - (rvx * nx + rvy * ny)) * effectiveMass;
+        double accumulated = Math.max(normalImpulse[c] + lambda, 0);
+        lambda = accumulated - normalImpulse[c];
+        normalImpulse[c] = accumulated;
+        applyImpulse(a, b, lambda * nx, lambda * ny);
+
+        // Friction acts along the tangent (-ny, nx)
+        rvx = velX[b] - velX[a];
+        rvy = velY[b] - velY[a];
+        lambda = -(rvx * -ny + rvy * nx) * effectiveMass;
+        double maxFriction = contactFriction[c] * normalImpulse[c];
+        accumulated = Math.max(-maxFriction, Math.min(maxFriction, tangentImpulse[c] + lambda));
+        lambda = accumulated - tangentImpulse[c];
+        tangentImpulse[c] = accumulated;
+        applyImpulse(a, b, lambda * -ny, lambda * nx);
+    }
+
+    /**
+     * Moves the dynamic bodies of a contact from where they started the step with their solved velocities. They
+     * were moved with the velocities from before the contacts were solved, so without this a resting body would
+     * sink by its fall during one step every step, and a tall stack would be pressed into the ground faster than
+     * the position correction can push it out. Moving a body twice gives the same position.
+     */
+    private void moveBodies(int c) {
+        int a = contactA[c], b = contactB[c];
+        if (inverseMass[a] != 0) {
+            posX[a] = startX[a] + velX[a] * stepTime;
+            posY[a] = startY[a] + velY[a] * stepTime;
+        }
+        if (inverseMass[b] != 0) {
+            posX[b] = startX[b] + velX[b] * stepTime;
+            posY[b] = startY[b] + velY[b] * stepTime;
+        }
+    }
+
+    /**
+     * Pushes the bodies of a contact apart to remove most of their overlap. Static bodies are left untouched.
+     * The overlap is the depth found by the narrow phase, less how far the bodies have moved apart along the
+     * normal since then.
+     */
+    private void correctContact(int c) {
+        int a = contactA[c], b = contactB[c];
+        double wa = inverseMass[a], wb = inverseMass[b];
+        double nx = contactNormalX[c], ny = contactNormalY[c];
+        double depth = contactDepth[c] - ((posX[b] - posX[a]) * nx + (posY[b] - posY[a]) * ny - contactOffset[c]);
+        double correction = Math.max(depth - PENETRATION_SLOP, 0) * POSITION_CORRECTION / (wa + wb);
+        double cx = correction * nx;
+        double cy = correction * ny;
+        if (wa != 0) {
+            posX[a] -= cx * wa;
+            posY[a] -= cy * wa;
+        }
+        if (wb != 0) {
+            posX[b] += cx * wb;
+            posY[b] += cy * wb;
+        }
+    }
+
+    /**
+     * Applies an impulse to the bodies of a contact. Static bodies are not written, so islands that share a static
+     * body can be solved at the same time.
+     */
+    private void applyImpulse(int a, int b, double x, double y) {
+        double wa = inverseMass[a], wb = inverseMass[b];
+        if (wa != 0) {
+            velX[a] -= x * wa;
+            velY[a] -= y * wa;
+        }
+        if (wb != 0) {
+            velX[b] += x * wb;
+            velY[b] += y * wb;
+        }
+    }
+
+    /**
+     * Picks up shapes that were moved by user code since the last step.
+     */
+    private void readShapePositions() {
+        for (int i = 0; i < size; i++) {
+            AbstractShape shape = shapes[i];
+            if (asleep[i] && (posX[i] != shape.getPos_x() || posY[i] != shape.getPos_y())) {
+                wake(i);
+            }
+            posX[i] = shape.getPos_x();
+            posY[i] = shape.getPos_y();
+            startX[i] = posX[i];
+            startY[i] = posY[i];
+        }
+    }
+
+    /**
+     * Writes the positions back to the shapes. This is done on the stepping thread, because moving a shape
+     * notifies its listeners (for example the spatial index of a window), which are not thread-safe.
+     */
+    private void writeShapePositions() {
+        for (int i = 0; i < size; i++) {
+            AbstractShape shape = shapes[i];
+            if (shape.getPos_x() != posX[i] || shape.getPos_y() != posY[i]) {
+                shape.setPosition(posX[i], posY[i]);
+            }
+        }
+    }
+
+    /**
+     * Integrates a range of slots, splitting it in half until it is no larger than the batch size.
+     */
+    private final class Integrate extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final double dt;
+
+        Integrate(int from, int to, double dt) {
+            this.from = from;
+            this.to = to;
+            this.dt = dt;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= batchSize) {
+                integrate(from, to, dt);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Integrate(from, mid, dt), new Integrate(mid, to, dt));
+        }
+    }
+
+    /**
+     * Solves a range of islands, splitting it in half until it holds no more than the contact batch size or a
+     * single island.
+     */
+    private final class SolveIslands extends RecursiveAction {
+        private final int from;
+        private final int to;
+
+        SolveIslands(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1 || islandStart[to] - islandStart[from] <= contactBatchSize) {
+                solveIslands(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new SolveIslands(from, mid), new SolveIslands(mid, to));
+        }
+    }
+
+    /**
+     * Solves a range of the contacts of one color, splitting it in half until it is no larger than the contact
+     * batch size.
+     */
+    private final class SolveColor extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final boolean positions;
+
+        SolveColor(int from, int to, boolean positions) {
+            this.from = from;
+            this.to = to;
+            this.positions = positions;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= contactBatchSize) {
+                solveColor(from, to, positions);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new SolveColor(from, mid, positions), new SolveColor(mid, to, positions));
+        }
+    }
+
+    /**
+     * Sets whether bodies collide with each other. Collisions are enabled by default.
+     *
+     * @param collisionsEnabled true to resolve collisions, false to let bodies pass through each other
+     */
+    public void setCollisionsEnabled(boolean collisionsEnabled) {
+        this.collisionsEnabled = collisionsEnabled;
+    }
+
+    public boolean isCollisionsEnabled() {
+        return collisionsEnabled;
+    }
+
+    /**
+     * Sets the number of passes the impulse solver makes over the contacts in each step. More passes make
+     * stacks of bodies stiffer at the cost of speed.
+     *
+     * @param solverIterations the number of passes, at least 1
+     */
+    public void setSolverIterations(int solverIterations) {
+        this.solverIterations = Math.max(1, solverIterations);
+    }
+
+    public int getSolverIterations() {
+        return solverIterations;
+    }
+
+    /**
+     * Sets the number of impacts a bullet can have in one step. A bullet that uses them all stops where it made
+     * the last one and continues in the next step.
+     *
+     * @param maxBulletSubsteps the number of substeps, at least 1
+     */
+    public void setMaxBulletSubsteps(int maxBulletSubsteps) {
+        this.maxBulletSubsteps = Math.max(1, maxBulletSubsteps);
+    }
+
+    public int getMaxBulletSubsteps() {
+        return maxBulletSubsteps;
+    }
+
+    /**
+     * Returns the number of substeps bullets took in the last step, one for every impact.
+     *
+     * @return the number of bullet substeps
+     */
+    public int getBulletSubstepCount() {
+        return substepCount;
+    }
+
+    /**
+     * Sets whether resting bodies fall asleep. Sleeping is enabled by default; disabling it wakes every body.
+     *
+     * @param sleepingEnabled true to let resting islands sleep
+     */
+    public void setSleepingEnabled(boolean sleepingEnabled) {
+        this.sleepingEnabled = sleepingEnabled;
+        if (!sleepingEnabled) {
+            wakeAll();
+        }
+    }
+
+    public boolean isSleepingEnabled() {
+        return sleepingEnabled;
+    }
+
+    /**
+     * Sets when bodies fall asleep: an island sleeps once all its bodies have moved slower than the sleep speed
+     * for the sleep time. The speed of a body is the distance it moved during a step divided by the timestep.
+     *
+     * @param sleepSpeed the speed below which a body is resting, in units per second
+     * @param sleepTime  the time an island has to rest before it sleeps, in seconds
+     */
+    public void setSleepThresholds(double sleepSpeed, double sleepTime) {
+        this.sleepSpeed = sleepSpeed;
+        this.sleepTime = sleepTime;
+    }
+
+    public double getSleepSpeed() {
+        return sleepSpeed;
+    }
+
+    public double getSleepTime() {
+        return sleepTime;
+    }
+
+    /**
+     * Returns the number of dynamic bodies that were awake after the last step.
+     *
+     * @return the number of awake bodies
+     */
+    public int getAwakeCount() {
+        return awakeCount;
+    }
+
+    /**
+     * Returns the number of dynamic bodies that were asleep after the last step.
+     *
+     * @return the number of sleeping bodies
+     */
+    public int getSleepingCount() {
+        return sleepingCount;
+    }
+
+    /**
+     * Returns the number of islands the contacts of the last step formed: groups of bodies that touch each other
+     * directly or through other dynamic bodies.
+     *
+     * @return the number of islands
+     */
+    public int getIslandCount() {
+        return islandCount;
+    }
+
+    /**
+     * Sets the number of contacts from which islands are solved in parallel on the pool. The result does not
+     * depend on it, only the speed.
+     *
+     * @param contactParallelThreshold the minimum number of contacts for a parallel solve
+     */
+    public void setContactParallelThreshold(int contactParallelThreshold) {
+        this.contactParallelThreshold = contactParallelThreshold;
+    }
+
+    /**
+     * Sets the number of contacts solved by one task of a parallel solve.
+     *
+     * @param contactBatchSize the number of contacts per task, at least 1
+     */
+    public void setContactBatchSize(int contactBatchSize) {
+        this.contactBatchSize = Math.max(1, contactBatchSize);
+    }
+
+    /**
+     * Sets the number of contacts from which an island is solved by color, so that a single large pile can use
+     * several cores. Coloring changes the order in which the contacts are solved, so it changes the result
+     * slightly, but the result stays the same for any number of threads.
+     *
+     * @param coloringThreshold the minimum number of contacts of a colored island
+     */
+    public void setColoringThreshold(int coloringThreshold) {
+        this.coloringThreshold = coloringThreshold;
+    }
+
+    public int getColoringThreshold() {
+        return coloringThreshold;
+    }
+
+    /**
+     * Returns the number of contacts resolved in the last step.
+     *
+     * @return the number of contacts
+     */
+    public int getContactCount() {
+        return contactCount;
+    }
+
+    /**
+     * Sets the pool used to integrate large worlds.
+     *
+     * @param pool the pool to be used
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Sets the number of bodies from which a step is split across the cores of the pool.
+     *
+     * @param parallelThreshold the minimum number of bodies for a parallel step
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Sets the number of bodies integrated by one task of a parallel step.
+     *
+     * @param batchSize the number of bodies per task, at least 1
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    private static double inverse(double mass) {
+        return mass > 0 ? 1 / mass : 0;
+    }
+
+    double getVelocityX(int i) {
+        return velX[i];
+    }
+
+    double getVelocityY(int i) {
+        return velY[i];
+    }
+
+    void setVelocity(int i, double x, double y) {
+        wake(i);
+        velX[i] = x;
+        velY[i] = y;
+    }
+
+    double getForceX(int i) {
+        return forceX[i];
+    }
+
+    double getForceY(int i) {
+        return forceY[i];
+    }
+
+    void applyForce(int i, double x, double y) {
+        wake(i);
+        forceX[i] += x;
+        forceY[i] += y;
+    }
+
+    void setMass(int i, double mass) {
+        wake(i);
+        inverseMass[i] = inverse(mass);
+    }
+
+    void setFriction(int i, double value) {
+        friction[i] = value;
+    }
+
+    void setRestitution(int i, double value) {
+        restitution[i] = value;
+    }
+
+    void setBullet(int i, boolean value) {
+        bullet[i] = value;
+    }
+
+    boolean isAsleep(int i) {
+        return asleep[i];
+    }
+
+    PhysicsBody getBody(int i) {
+        return bodies[i];
+    }
+
+    AbstractShape getShape(int i) {
+        return shapes[i];
+    }
+}
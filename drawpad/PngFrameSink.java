@@ -0,0 +1,60 @@
+package drawpad;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * This class is a FrameSink that writes every frame to a numbered PNG file, such as frame00000.png,
+ * frame00001.png and so on, for turning into a video or comparing against reference images.
+ */
+public class PngFrameSink implements FrameSink {
+    private final File directory; // Where the files are written
+    private final String prefix; // Put in front of the frame number in the file names
+
+    /**
+     * Constructor to create a PngFrameSink writing files named frame00000.png and up.
+     *
+     * @param directory the directory to write to, created if it does not exist
+     */
+    public PngFrameSink(File directory) {
+        this(directory, "frame");
+    }
+
+    /**
+     * Constructor to create a PngFrameSink writing files named prefix00000.png and up.
+     *
+     * @param directory the directory to write to, created if it does not exist
+     * @param prefix    the start of every file name
+     */
+    public PngFrameSink(File directory, String prefix) {
+        this.directory = directory;
+        this.prefix = prefix;
+    }
+
+    @Override
+    public void frameRendered(long frame, BufferedImage image) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create directory " + directory);
+        }
+        File file = getFile(frame);
+        if (!ImageIO.write(image, "png", file)) {
+            throw new IOException("No PNG writer for image type " + image.getType());
+        }
+    }
+
+    /**
+     * Returns the file a frame is written to.
+     *
+     * @param frame the number of the frame
+     * @return the file for the frame
+     */
+    public File getFile(long frame) {
+        return new File(directory, String.format("%s%05d.png", prefix, frame));
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+}
@@ -2,6 +2,7 @@ package drawpad;
 
 import java.awt.*;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
 
 /**
  * This class represents a rectangular shape, extending the AbstractShape class.
@@ -150,21 +151,57 @@ public class Rectangle extends AbstractShape{
         // Save the current transformation state of the graphics context
         AffineTransform oldTransform = g2d.getTransform();
 
-        // Translate the graphics context to the center of the rectangle
-        g2d.translate(getPos_x() + width / 2, getPos_y() + height / 2);
+        // Apply the cached translation and rotation and draw the rectangle from its top-left corner
+        g2d.transform(getLocalTransform());
+        drawLocal(g2d);
 
-        // Rotate the graphics context by the specified rotation angle
-        g2d.rotate(getRotation());
+        // Restore the original transformation state of the graphics context
+        g2d.setTransform(oldTransform);
+    }
 
-        // Translate back to the top-left corner of the rectangle
-        g2d.translate(-width / 2, -height / 2);
+    /**
+     * Calculates the transform that moves the top-left corner of the rectangle to its position and rotates it
+     * around its center.
+     *
+     * @param transform the transform to store the result in
+     */
+    @Override
+    protected void computeLocalTransform(AffineTransform transform) {
+        transform.translate(getPos_x() + width / 2, getPos_y() + height / 2);
+        transform.rotate(getRotation());
+        transform.translate(-width / 2, -height / 2);
+    }
 
-        // Draw the rotated rectangle
-        g2d.setColor(getColor());
-        g2d.fillRect(0, 0, (int) width, (int) height);
+    /**
+     * Draws the unrotated rectangle with its top-left corner at the origin.
+     *
+     * @param g the Graphics object on which to draw the rectangle
+     */
+    @Override
+    protected void drawLocal(Graphics2D g) {
+        g.setColor(getColor());
+        g.fillRect(0, 0, (int) width, (int) height);
+    }
 
-        // Restore the original transformation state of the graphics context
-        g2d.setTransform(oldTransform);
+    /**
+     * Returns the unrotated rectangle with its top-left corner at the origin, with its size rounded down to whole
+     * pixels like it is drawn.
+     *
+     * @return the outline of the rectangle
+     */
+    @Override
+    protected java.awt.Shape computeLocalOutline() {
+        return new Rectangle2D.Double(0, 0, (int) width, (int) height);
+    }
+
+    /**
+     * Adds the rectangle to a render queue.
+     *
+     * @param queue the queue to add the rectangle to
+     */
+    @Override
+    public void submit(RenderQueue queue) {
+        queue.addRectangle(getZOrder(), getColor(), getPos_x(), getPos_y(), width, height, getRotation(), getBounds());
     }
 
     /**
@@ -176,14 +213,32 @@ public class Rectangle extends AbstractShape{
         return width * height;
     }
 
+    /**
+     * Calculates the axis-aligned bounding box of the rectangle after it has been rotated around its center.
+     *
+     * @param bounds the rectangle to store the bounding box in
+     */
+    @Override
+    protected void computeBounds(Rectangle2D.Double bounds) {
+        double cos = Math.abs(Math.cos(getRotation()));
+        double sin = Math.abs(Math.sin(getRotation()));
+        double extentX = (width * cos + height * sin) / 2;
+        double extentY = (width * sin + height * cos) / 2;
+        double centerX = getPos_x() + width / 2;
+        double centerY = getPos_y() + height / 2;
+        bounds.setRect(centerX - extentX, centerY - extentY, 2 * extentX, 2 * extentY);
+    }
+
     /**
      * Resizes the rectangle by multiplying its width and height with the given factor.
      *
      * @param factor the factor by which to resize the rectangle
      */
     public void resize(double factor) {
+        fireShapeWillChange();
         this.width = this.width * factor;
         this.height = this.height * factor;
+        fireShapeChanged();
     }
 
     /**
@@ -201,7 +256,9 @@ public class Rectangle extends AbstractShape{
      * @param height the new height of the rectangle
      */
     public void setHeight(double height) {
+        fireShapeWillChange();
         this.height = height;
+        fireShapeChanged();
     }
 
     /**
@@ -219,7 +276,9 @@ public class Rectangle extends AbstractShape{
      * @param width the new width of the rectangle
      */
     public void setWidth(double width) {
+        fireShapeWillChange();
         this.width = width;
+        fireShapeChanged();
     }
 
 
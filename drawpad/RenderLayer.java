@@ -0,0 +1,288 @@
+package drawpad;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class is a named group of shapes drawn by an AbstractWindow as a unit, below or above the window's own
+ * shapes depending on its depth. Layers are created with AbstractWindow.createLayer.
+ * <p>
+ * A layer marked static is rasterized once into an image compatible with the screen and from then on drawn with
+ * a single drawImage call per frame. The image is redrawn only when a shape of the layer is added, removed or
+ * changed, or when the window changes size. Java2D keeps such images in video memory when it can, so blitting
+ * them is cheap. Use static layers for backgrounds and level geometry that rarely change.
+ * <p>
+ * Shapes are added to and removed from a layer like to the window itself: on another thread than the one that
+ * owns the window's shapes, the change is queued for the owner's next applyPendingChanges. With snapshot rendering
+ * enabled, the shapes of every layer are copied into each SceneSnapshot, and both dynamic and static layers are
+ * drawn from the copy, so painting never reads shapes that the owner may be changing.
+ */
+public class RenderLayer {
+    private final AbstractWindow window; // The window the layer belongs to
+    private final String name;
+    private final int depth; // Layers with a negative depth are drawn below the window's shapes, others above
+    private final List<Shape> shapes; // The shapes of the layer, in drawing order
+    private final ShapeListener shapeListener; // Registered on every AbstractShape of the layer
+    private boolean staticLayer; // Whether the layer is drawn from a cached image
+    private boolean visible = true;
+    private BufferedImage image; // The cached rasterization of a static layer, null until first drawn
+    private volatile boolean valid; // Whether image matches the shapes
+    private volatile long changes; // Incremented by every change of the shapes, copied into snapshots
+    private long rasterizedChanges = -1; // The changes of the snapshot copy image was drawn from, -1 if none
+    private long rasterizations; // Number of times the image has been redrawn
+
+    RenderLayer(AbstractWindow window, String name, int depth) {
+        this.window = window;
+        this.name = name;
+        this.depth = depth;
+        shapes = new ArrayList<>();
+        shapeListener = new ShapeListener() {
+            @Override
+            public void shapeWillChange(AbstractShape shape) {
+                window.markDirty(shape.getBounds());
+            }
+
+            @Override
+            public void shapeChanged(AbstractShape shape) {
+                valid = false;
+                changes++;
+                window.markDirty(shape.getBounds());
+            }
+        };
+    }
+
+    /**
+     * Adds a shape to the layer. It is drawn after the shapes already in the layer. When called on another thread
+     * than the one that owns the window's shapes, the shape is added at the owner's next call to
+     * applyPendingChanges.
+     *
+     * @param shape the shape to be added
+     */
+    public void addShape(Shape shape) {
+        if (window.isForeignThread()) {
+            window.queueChange(() -> addShape(shape));
+            return;
+        }
+        shapes.add(shape);
+        if (shape instanceof AbstractShape abstractShape) {
+            abstractShape.addShapeListener(shapeListener);
+        }
+        valid = false;
+        changes++;
+        window.markDirty(shape.getBounds());
+    }
+
+    /**
+     * Removes a shape from the layer. When called on another thread than the one that owns the window's shapes,
+     * the shape is removed at the owner's next call to applyPendingChanges.
+     *
+     * @param shape the shape to be removed
+     */
+    public void removeShape(Shape shape) {
+        if (window.isForeignThread()) {
+            window.queueChange(() -> removeShape(shape));
+            return;
+        }
+        if (!shapes.remove(shape)) {
+            return;
+        }
+        if (shape instanceof AbstractShape abstractShape) {
+            abstractShape.removeShapeListener(shapeListener);
+        }
+        valid = false;
+        changes++;
+        window.markDirty(shape.getBounds());
+    }
+
+    /**
+     * Returns the shapes of the layer in drawing order. Must be called on the thread that owns the window's
+     * shapes.
+     *
+     * @return an unmodifiable view of the shapes
+     */
+    public List<Shape> getShapes() {
+        return Collections.unmodifiableList(shapes);
+    }
+
+    /**
+     * Marks the layer as static or dynamic. A static layer is drawn from a cached image, a dynamic layer draws
+     * its shapes every frame. Changes to shapes that are not AbstractShapes are not noticed; call invalidate
+     * after changing them.
+     *
+     * @param staticLayer true to cache the layer in an image
+     */
+    public void setStatic(boolean staticLayer) {
+        this.staticLayer = staticLayer; // The image of a layer that is no longer static is released by paint
+        valid = false;
+        changes++;
+        window.markDirty(null);
+    }
+
+    /**
+     * Returns true if the layer is drawn from a cached image.
+     *
+     * @return true if the layer is static
+     */
+    public boolean isStatic() {
+        return staticLayer;
+    }
+
+    /**
+     * Shows or hides the layer.
+     *
+     * @param visible true to draw the layer
+     */
+    public void setVisible(boolean visible) {
+        this.visible = visible;
+        window.markDirty(null);
+    }
+
+    public boolean isVisible() {
+        return visible;
+    }
+
+    /**
+     * Forces a static layer to be rasterized again the next time it is drawn.
+     */
+    public void invalidate() {
+        valid = false;
+        changes++;
+        window.markDirty(null);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Returns how many times the cached image of the layer has been drawn, which should only grow when the
+     * layer changes.
+     *
+     * @return the number of rasterizations
+     */
+    public long getRasterizations() {
+        return rasterizations;
+    }
+
+    /**
+     * Returns the number of changes made to the shapes of the layer so far, which tells a snapshot copy of the
+     * layer whether its static image has to be drawn again.
+     */
+    long getChanges() {
+        return changes;
+    }
+
+    /**
+     * Copies the shapes of the layer into a queue, in drawing order. Called by the thread that owns the shapes.
+     */
+    void submit(RenderQueue commands) {
+        for (int i = 0, n = shapes.size(); i < n; i++) {
+            shapes.get(i).submit(commands);
+        }
+    }
+
+    /**
+     * Draws the layer from its live shapes onto a surface of the given size in user space.
+     */
+    void paint(Graphics2D g, int width, int height) {
+        if (visible) {
+            paint(g, width, height, staticLayer, null, 0);
+        }
+    }
+
+    /**
+     * Draws the layer onto a surface of the given size in user space, from a copy of its shapes made by
+     * submit when commands is not null, or from the live shapes otherwise.
+     *
+     * @param staticLayer   whether to draw the layer from its cached image
+     * @param commands      the copied shapes, or null to draw the live shapes
+     * @param copiedChanges the value of getChanges when the shapes were copied
+     */
+    void paint(Graphics2D g, int width, int height, boolean staticLayer, RenderQueue commands, long copiedChanges) {
+        if (!staticLayer && image != null) {
+            image.flush();
+            image = null;
+        }
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        if (!staticLayer) {
+            if (commands != null) {
+                commands.drawInOrder(g);
+            } else {
+                paintShapes(g);
+            }
+            return;
+        }
+        // Rasterize at the device resolution so a scaled (for example HiDPI) Graphics stays sharp
+        double scaleX = Math.abs(g.getTransform().getScaleX());
+        double scaleY = Math.abs(g.getTransform().getScaleY());
+        int imageWidth = (int) Math.ceil(width * scaleX);
+        int imageHeight = (int) Math.ceil(height * scaleY);
+        if (image == null || image.getWidth() != imageWidth || image.getHeight() != imageHeight) {
+            if (image != null) {
+                image.flush();
+            }
+            GraphicsConfiguration configuration = g.getDeviceConfiguration();
+            image = configuration != null
+                    ? configuration.createCompatibleImage(imageWidth, imageHeight, Transparency.TRANSLUCENT)
+                    : new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_ARGB_PRE);
+            valid = false;
+            rasterizedChanges = -1;
+        }
+        if (commands != null) {
+            if (rasterizedChanges != copiedChanges) {
+                rasterizedChanges = copiedChanges;
+                valid = false; // The copy may be older than the live shapes
+                rasterize(scaleX, scaleY, commands);
+            }
+        } else if (!valid) {
+            valid = true; // Set first, so a change made while rasterizing invalidates the image again
+            rasterizedChanges = -1;
+            rasterize(scaleX, scaleY, null);
+        }
+        g.drawImage(image, 0, 0, width, height, null);
+    }
+
+    private void rasterize(double scaleX, double scaleY, RenderQueue commands) {
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(0, 0, image.getWidth(), image.getHeight());
+            g.setComposite(AlphaComposite.SrcOver);
+            g.scale(scaleX, scaleY);
+            if (commands != null) {
+                commands.drawInOrder(g);
+            } else {
+                for (Shape shape : shapes) {
+                    shape.draw(g);
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+        rasterizations++;
+    }
+
+    /**
+     * Draws the shapes that intersect the clip area, like AbstractWindow does for its own shapes.
+     */
+    private void paintShapes(Graphics2D g) {
+        java.awt.Rectangle clip = g.getClipBounds();
+        for (Shape shape : shapes) {
+            Rectangle2D bounds = shape.getBounds();
+            if (clip == null || bounds == null || bounds.intersects(clip.x - 1, clip.y - 1, clip.width + 2,
+                    clip.height + 2)) {
+                shape.draw(g);
+            }
+        }
+    }
+}
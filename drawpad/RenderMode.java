@@ -0,0 +1,21 @@
+package drawpad;
+
+/**
+ * The ways a Window can get its frames onto the screen.
+ */
+public enum RenderMode {
+    /**
+     * Frames are requested with repaint() and drawn by Swing in paintComponent on the event dispatch thread.
+     */
+    PASSIVE,
+
+    /**
+     * Frames are drawn by the loop into a Canvas with a page-flipping BufferStrategy and shown immediately.
+     */
+    BUFFER_STRATEGY,
+
+    /**
+     * Frames are drawn by the loop into a VolatileImage back buffer that is then copied onto the panel.
+     */
+    VOLATILE_IMAGE
+}
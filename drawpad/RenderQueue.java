@@ -0,0 +1,534 @@
+package drawpad;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+
+/**
+ * This class collects lightweight draw commands from shapes and draws them with as few Java2D state changes
+ * as possible. Commands are stored in primitive arrays, so filling and drawing the queue does not allocate once
+ * the arrays have grown to the size of the scene.
+ * <p>
+ * Before drawing, the commands are sorted by z-order, then by color, then by kind. The color is set once per run
+ * of commands with the same color, and consecutive rectangles and triangles of the same color are merged into a
+ * single fill of one Path2D whose vertices are computed directly, without touching the Graphics2D transform.
+ * The order of shapes within the same z-order is therefore not preserved; give overlapping shapes different
+ * z-orders if their stacking matters. Rotated rectangles are filled as general polygons instead of through
+ * Java2D's parallelogram pipeline, so their edges may differ from Rectangle.draw by one pixel.
+ */
+public class RenderQueue {
+    static final byte RECTANGLE = 0;
+    static final byte TRIANGLE = 1;
+    static final byte OVAL = 2;
+    static final byte CUSTOM = 3; // A shape that is not an AbstractShape, drawn with its own draw method
+
+    private static final double TRIANGLE_HEIGHT = Math.sqrt(3); // Twice the height of an equilateral triangle per unit of base
+
+    private int size; // Number of commands in the queue
+    private byte[] kinds = new byte[0];
+    private int[] zOrders = new int[0];
+    private Color[] colors = new Color[0];
+    private double[] xs = new double[0];
+    private double[] ys = new double[0];
+    private double[] widths = new double[0]; // Width, or base for triangles
+    private double[] heights = new double[0];
+    private double[] rotations = new double[0];
+    private double[] minXs = new double[0]; // Bounding boxes, used to skip commands outside the clip
+    private double[] minYs = new double[0];
+    private double[] maxXs = new double[0];
+    private double[] maxYs = new double[0];
+    private Shape[] customShapes = new Shape[0];
+
+    private long[] keys = new long[0]; // Sort keys, filled by sort()
+    private int[] order = new int[0]; // Command indices in drawing order
+    private int[] scratch = new int[0]; // Merge buffer used by sort()
+    private boolean sorted; // Whether order matches the current commands
+
+    private final Path2D.Double path = new Path2D.Double(Path2D.WIND_NON_ZERO); // Reused for merged fills
+    private final int[] triangleXs = new int[3]; // Reused by drawInOrder for triangles
+    private final int[] triangleYs = new int[3];
+    private int stateChanges; // Color changes made by the last call to draw
+    private int fills; // Fill calls made by the last call to draw
+
+    /**
+     * Removes every command from the queue. The arrays are kept for reuse.
+     */
+    public void clear() {
+        Arrays.fill(colors, 0, size, null);
+        Arrays.fill(customShapes, 0, size, null);
+        size = 0;
+        sorted = false;
+    }
+
+    /**
+     * Returns the number of commands in the queue.
+     *
+     * @return the number of commands
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a filled rectangle that is rotated around its center.
+     *
+     * @param zOrder   the z-order of the rectangle, lower values are drawn first
+     * @param color    the color of the rectangle
+     * @param x        the x-coordinate of the top-left corner before rotation
+     * @param y        the y-coordinate of the top-left corner before rotation
+     * @param width    the width of the rectangle
+     * @param height   the height of the rectangle
+     * @param rotation the rotation in radians
+     * @param bounds   the bounding box of the rotated rectangle
+     */
+    public void addRectangle(int zOrder, Color color, double x, double y, double width, double height,
+                             double rotation, Rectangle2D bounds) {
+        int i = add(RECTANGLE, zOrder, color, bounds);
+        xs[i] = x;
+        ys[i] = y;
+        widths[i] = width;
+        heights[i] = height;
+        rotations[i] = rotation;
+    }
+
+    /**
+     * Adds a filled equilateral triangle that is rotated around the center of its unrotated bounding box.
+     *
+     * @param zOrder   the z-order of the triangle, lower values are drawn first
+     * @param color    the color of the triangle
+     * @param x        the x-coordinate of the top-left corner before rotation
+     * @param y        the y-coordinate of the top-left corner before rotation
+     * @param base     the length of a side
+     * @param rotation the rotation in radians
+     * @param bounds   the bounding box of the rotated triangle
+     */
+    public void addTriangle(int zOrder, Color color, double x, double y, double base, double rotation,
+                            Rectangle2D bounds) {
+        int i = add(TRIANGLE, zOrder, color, bounds);
+        xs[i] = x;
+        ys[i] = y;
+        widths[i] = base;
+        heights[i] = base * TRIANGLE_HEIGHT / 2;
+        rotations[i] = rotation;
+    }
+
+    /**
+     * Adds a filled oval.
+     *
+     * @param zOrder the z-order of the oval, lower values are drawn first
+     * @param color  the color of the oval
+     * @param x      the x-coordinate of the top-left corner of its bounding box
+     * @param y      the y-coordinate of the top-left corner of its bounding box
+     * @param width  the width of the oval
+     * @param height the height of the oval
+     */
+    public void addOval(int zOrder, Color color, double x, double y, double width, double height) {
+        int i = add(OVAL, zOrder, color, null);
+        xs[i] = x;
+        ys[i] = y;
+        widths[i] = width;
+        heights[i] = height;
+        minXs[i] = x;
+        minYs[i] = y;
+        maxXs[i] = x + width;
+        maxYs[i] = y + height;
+    }
+
+    /**
+     * Adds a shape that cannot be expressed as a primitive. It is drawn with its own draw method, after which
+     * the current color is considered unknown.
+     *
+     * @param zOrder the z-order of the shape, lower values are drawn first
+     * @param shape  the shape to be drawn
+     */
+    public void addShape(int zOrder, Shape shape) {
+        int i = add(CUSTOM, zOrder, null, shape.getBounds());
+        customShapes[i] = shape;
+    }
+
+    private int add(byte kind, int zOrder, Color color, Rectangle2D bounds) {
+        if (size == kinds.length) {
+            grow();
+        }
+        int i = size++;
+        kinds[i] = kind;
+        zOrders[i] = zOrder;
+        colors[i] = color;
+        if (bounds != null) {
+            minXs[i] = bounds.getMinX();
+            minYs[i] = bounds.getMinY();
+            maxXs[i] = bounds.getMaxX();
+            maxYs[i] = bounds.getMaxY();
+        } else {
+            minXs[i] = Double.NEGATIVE_INFINITY;
+            minYs[i] = Double.NEGATIVE_INFINITY;
+            maxXs[i] = Double.POSITIVE_INFINITY;
+            maxYs[i] = Double.POSITIVE_INFINITY;
+        }
+        sorted = false;
+        return i;
+    }
+
+    private void grow() {
+        int capacity = Math.max(64, kinds.length * 2);
+        kinds = Arrays.copyOf(kinds, capacity);
+        zOrders = Arrays.copyOf(zOrders, capacity);
+        colors = Arrays.copyOf(colors, capacity);
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        widths = Arrays.copyOf(widths, capacity);
+        heights = Arrays.copyOf(heights, capacity);
+        rotations = Arrays.copyOf(rotations, capacity);
+        minXs = Arrays.copyOf(minXs, capacity);
+        minYs = Arrays.copyOf(minYs, capacity);
+        maxXs = Arrays.copyOf(maxXs, capacity);
+        maxYs = Arrays.copyOf(maxYs, capacity);
+        customShapes = Arrays.copyOf(customShapes, capacity);
+        keys = new long[capacity];
+        order = new int[capacity];
+        scratch = new int[capacity];
+    }
+
+    /**
+     * Sorts the commands by z-order, color and kind. Commands with equal keys keep the order they were added in.
+     * Called by draw when needed.
+     */
+    public void sort() {
+        if (sorted) {
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            // 16 bits of z-order (offset so negative values sort first), 32 bits of color, 2 bits of kind
+            long z = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, zOrders[i])) - Short.MIN_VALUE;
+            long argb = colors[i] == null ? 0 : colors[i].getRGB() & 0xffffffffL;
+            keys[i] = (z << 34) | (argb << 2) | kinds[i];
+            order[i] = i;
+        }
+        // Bottom-up merge sort, which is stable and does not allocate
+        int[] from = order;
+        int[] to = scratch;
+        for (int width = 1; width < size; width *= 2) {
+            for (int lo = 0; lo < size; lo += 2 * width) {
+                int mid = Math.min(lo + width, size);
+                int hi = Math.min(lo + 2 * width, size);
+                int a = lo;
+                int b = mid;
+                for (int k = lo; k < hi; k++) {
+                    if (a < mid && (b >= hi || keys[from[a]] <= keys[from[b]])) {
+                        to[k] = from[a++];
+                    } else {
+                        to[k] = from[b++];
+                    }
+                }
+            }
+            int[] swap = from;
+            from = to;
+            to = swap;
+        }
+        order = from;
+        scratch = to;
+        sorted = true;
+    }
+
+    /**
+     * Draws every command that intersects the clip area of the Graphics object. The queue is left unchanged,
+     * so it can be drawn again.
+     *
+     * @param g the Graphics object on which to draw
+     * @return the number of commands drawn, the others lying outside the clip area
+     */
+    public int draw(Graphics g) {
+        sort();
+        stateChanges = 0;
+        fills = 0;
+        return drawRange((Graphics2D) g, 0, size, path, true);
+    }
+
+    /**
+     * Draws the commands from (inclusive) to (exclusive) of the drawing order that intersect the clip area, like
+     * draw does, merging polygons only within the range. Nothing is counted and the given path is used for the
+     * merged fills, so several threads can draw ranges of the same queue at once. The queue must be sorted.
+     *
+     * @return the number of commands drawn
+     */
+    int draw(Graphics g, int from, int to, Path2D.Double path) {
+        return drawRange((Graphics2D) g, from, to, path, false);
+    }
+
+    private int drawRange(Graphics2D g2d, int from, int to, Path2D.Double path, boolean count) {
+        java.awt.Rectangle clip = g2d.getClipBounds();
+        double clipMinX = clip == null ? Double.NEGATIVE_INFINITY : clip.x - 1;
+        double clipMinY = clip == null ? Double.NEGATIVE_INFINITY : clip.y - 1;
+        double clipMaxX = clip == null ? Double.POSITIVE_INFINITY : clip.x + clip.width + 1;
+        double clipMaxY = clip == null ? Double.POSITIVE_INFINITY : clip.y + clip.height + 1;
+
+        int currentArgb = 0;
+        boolean colorKnown = false;
+        int drawn = 0;
+        int n = from;
+        while (n < to) {
+            int i = order[n++];
+            if (minXs[i] > clipMaxX || maxXs[i] < clipMinX || minYs[i] > clipMaxY || maxYs[i] < clipMinY) {
+                continue;
+            }
+            drawn++;
+            byte kind = kinds[i];
+            if (kind == CUSTOM) {
+                customShapes[i].draw(g2d);
+                colorKnown = false;
+                if (count) {
+                    fills++;
+                }
+                continue;
+            }
+            int argb = colors[i].getRGB();
+            if (!colorKnown || argb != currentArgb) {
+                g2d.setColor(colors[i]);
+                currentArgb = argb;
+                colorKnown = true;
+                if (count) {
+                    stateChanges++;
+                }
+            }
+            if (kind == OVAL) {
+                g2d.fillOval((int) xs[i], (int) ys[i], (int) widths[i], (int) heights[i]);
+                if (count) {
+                    fills++;
+                }
+                continue;
+            }
+
+            // Merge this polygon with the following polygons of the same color and z-order into one fill
+            path.reset();
+            appendPolygon(path, i);
+            while (n < to && merges(i, order[n])) {
+                int next = order[n++];
+                if (minXs[next] > clipMaxX || maxXs[next] < clipMinX
+                        || minYs[next] > clipMaxY || maxYs[next] < clipMinY) {
+                    continue;
+                }
+                appendPolygon(path, next);
+                drawn++;
+            }
+            g2d.fill(path);
+            if (count) {
+                fills++;
+            }
+        }
+        return drawn;
+    }
+
+    /**
+     * Returns whether draw merges the polygon of the command next into the fill of command i.
+     */
+    private boolean merges(int i, int next) {
+        byte kind = kinds[next];
+        return (kind == RECTANGLE || kind == TRIANGLE) && zOrders[next] == zOrders[i]
+                && colors[next].getRGB() == colors[i].getRGB();
+    }
+
+    /**
+     * Returns the position in the drawing order after the fill that starts at position n: the end of the run of
+     * polygons draw merges into one fill, or n + 1 for an oval or a custom shape. The queue must be sorted.
+     */
+    int fillEnd(int n) {
+        int i = order[n];
+        int end = n + 1;
+        if (kinds[i] == RECTANGLE || kinds[i] == TRIANGLE) {
+            while (end < size && merges(i, order[end])) {
+                end++;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Returns whether the commands from (inclusive) to (exclusive) of the drawing order are filled the same
+     * whatever the clip: ovals and unrotated rectangles. Java2D clips the edges of other polygons to the clip
+     * before filling them, which can move a few pixels where the clip cuts through them, and custom shapes may
+     * draw anything. The queue must be sorted.
+     */
+    boolean isClipExact(int from, int to) {
+        for (int n = from; n < to; n++) {
+            int i = order[n];
+            if (kinds[i] != OVAL && (kinds[i] != RECTANGLE || rotations[i] != 0)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stores the bounding box of the commands from (inclusive) to (exclusive) of the drawing order in box as minX,
+     * minY, maxX and maxY. The queue must be sorted.
+     */
+    void getBounds(int from, int to, double[] box) {
+        box[0] = box[1] = Double.POSITIVE_INFINITY;
+        box[2] = box[3] = Double.NEGATIVE_INFINITY;
+        for (int n = from; n < to; n++) {
+            int i = order[n];
+            box[0] = Math.min(box[0], minXs[i]);
+            box[1] = Math.min(box[1], minYs[i]);
+            box[2] = Math.max(box[2], maxXs[i]);
+            box[3] = Math.max(box[3], maxYs[i]);
+        }
+    }
+
+    /**
+     * Draws every command that intersects the clip area of the Graphics object in the order the commands were
+     * added, with the same Java2D calls the shapes' own draw methods make, so the result is identical to drawing
+     * the shapes directly. Only the color changes are skipped when they are not needed. The queue is left
+     * unchanged, so it can be drawn again.
+     *
+     * @param g the Graphics object on which to draw
+     * @return the number of commands drawn, the others lying outside the clip area
+     */
+    public int drawInOrder(Graphics g) {
+        return drawInOrder(g, null);
+    }
+
+    /**
+     * Draws every command that intersects the clip area of the Graphics object in the order the commands were
+     * added, drawing circles, rectangles and triangles from the sprite cache when one is given.
+     *
+     * @param g           the Graphics object on which to draw
+     * @param spriteCache the sprite cache to be used, or null to draw like the shapes' own draw methods
+     * @return the number of commands drawn, the others lying outside the clip area
+     */
+    public int drawInOrder(Graphics g, SpriteCache spriteCache) {
+        Graphics2D g2d = (Graphics2D) g;
+        java.awt.Rectangle clip = g.getClipBounds();
+        double clipMinX = clip == null ? Double.NEGATIVE_INFINITY : clip.x - 1;
+        double clipMinY = clip == null ? Double.NEGATIVE_INFINITY : clip.y - 1;
+        double clipMaxX = clip == null ? Double.POSITIVE_INFINITY : clip.x + clip.width + 1;
+        double clipMaxY = clip == null ? Double.POSITIVE_INFINITY : clip.y + clip.height + 1;
+
+        stateChanges = 0;
+        fills = 0;
+        int currentArgb = 0;
+        boolean colorKnown = false;
+        AffineTransform oldTransform = g2d.getTransform();
+        for (int i = 0; i < size; i++) {
+            if (minXs[i] > clipMaxX || maxXs[i] < clipMinX || minYs[i] > clipMaxY || maxYs[i] < clipMinY) {
+                continue;
+            }
+            byte kind = kinds[i];
+            fills++;
+            if (kind == CUSTOM) {
+                customShapes[i].draw(g);
+                colorKnown = false;
+                continue;
+            }
+            if (spriteCache != null && drawSprite(g2d, spriteCache, i)) {
+                continue;
+            }
+            int argb = colors[i].getRGB();
+            if (!colorKnown || argb != currentArgb) {
+                g2d.setColor(colors[i]);
+                currentArgb = argb;
+                colorKnown = true;
+                stateChanges++;
+            }
+            if (kind == OVAL) {
+                g2d.fillOval((int) xs[i], (int) ys[i], (int) widths[i], (int) heights[i]);
+                continue;
+            }
+            double width = widths[i];
+            double height = heights[i];
+            g2d.translate(xs[i] + width / 2, ys[i] + height / 2);
+            g2d.rotate(rotations[i]);
+            g2d.translate(-width / 2, -height / 2);
+            if (kind == RECTANGLE) {
+                g2d.fillRect(0, 0, (int) width, (int) height);
+            } else {
+                triangleXs[1] = (int) width;
+                triangleXs[2] = (int) width / 2;
+                triangleYs[2] = (int) (TRIANGLE_HEIGHT * width) / 2;
+                g2d.fillPolygon(triangleXs, triangleYs, 3);
+            }
+            g2d.setTransform(oldTransform);
+        }
+        return fills; // One fill per command drawn
+    }
+
+    private boolean drawSprite(Graphics2D g, SpriteCache spriteCache, int i) {
+        return switch (kinds[i]) {
+            case OVAL -> spriteCache.drawOval(g, colors[i], xs[i], ys[i], widths[i], heights[i]);
+            case RECTANGLE -> spriteCache.drawRectangle(g, colors[i], xs[i], ys[i], widths[i], heights[i],
+                    rotations[i]);
+            default -> spriteCache.drawTriangle(g, colors[i], xs[i], ys[i], widths[i], rotations[i]);
+        };
+    }
+
+    /**
+     * Appends the outline of a rectangle or triangle command to a path. The vertices match what
+     * Rectangle.draw and Triangle.draw produce: integer sizes in the shape's local space, rotated around the
+     * center of the unrotated bounding box.
+     */
+    private void appendPolygon(Path2D.Double path, int i) {
+        double width = widths[i];
+        double height = heights[i];
+        double centerX = xs[i] + width / 2;
+        double centerY = ys[i] + height / 2;
+        double cos = Math.cos(rotations[i]);
+        double sin = Math.sin(rotations[i]);
+        double left = -width / 2;
+        double top = -height / 2;
+        if (kinds[i] == RECTANGLE) {
+            int w = (int) width;
+            int h = (int) height;
+            if (rotations[i] == 0) {
+                // fillRect under a translation rounds the origin to the nearest pixel, so do the same to cover
+                // exactly the pixels Rectangle.draw covers
+                double x = Math.floor(xs[i] + 0.5);
+                double y = Math.floor(ys[i] + 0.5);
+                path.moveTo(x, y);
+                path.lineTo(x + w, y);
+                path.lineTo(x + w, y + h);
+                path.lineTo(x, y + h);
+            } else {
+                moveTo(path, left, top, cos, sin, centerX, centerY);
+                lineTo(path, left + w, top, cos, sin, centerX, centerY);
+                lineTo(path, left + w, top + h, cos, sin, centerX, centerY);
+                lineTo(path, left, top + h, cos, sin, centerX, centerY);
+            }
+        } else {
+            int base = (int) width;
+            int h = (int) (TRIANGLE_HEIGHT * width) / 2;
+            moveTo(path, left, top, cos, sin, centerX, centerY);
+            lineTo(path, left + base, top, cos, sin, centerX, centerY);
+            lineTo(path, left + base / 2, top + h, cos, sin, centerX, centerY);
+        }
+        path.closePath();
+    }
+
+    private static void moveTo(Path2D.Double path, double x, double y, double cos, double sin, double centerX,
+                               double centerY) {
+        path.moveTo(centerX + x * cos - y * sin, centerY + x * sin + y * cos);
+    }
+
+    private static void lineTo(Path2D.Double path, double x, double y, double cos, double sin, double centerX,
+                               double centerY) {
+        path.lineTo(centerX + x * cos - y * sin, centerY + x * sin + y * cos);
+    }
+
+    /**
+     * Returns the number of times the color was changed by the last call to draw.
+     *
+     * @return the number of color changes
+     */
+    public int getStateChanges() {
+        return stateChanges;
+    }
+
+    /**
+     * Returns the number of fill calls made by the last call to draw, including custom shapes.
+     *
+     * @return the number of fill calls
+     */
+    public int getFills() {
+        return fills;
+    }
+}
@@ -0,0 +1,263 @@
+package drawpad;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * This class reads a scene of circles, rectangles and triangles from a file of fixed-size records that is mapped
+ * into memory with FileChannel.map. Opening a file only checks its header, however many shapes it holds; shapes
+ * are created when they are asked for, one at a time, as a range or as the shapes in a region, directly from the
+ * mapped bytes without parsing. SceneLoader adds all the shapes of a file to a window in the background.
+ * <p>
+ * Files are written by write. They hold a 32-byte header, one record per shape in drawing order, in the layout
+ * Checkpoint uses for shapes, and an index with the bounding box of each chunk of consecutive records. Region
+ * reads skip the chunks whose box misses the region, so they are cheapest when shapes that are close together
+ * are also written close together. All numbers are little-endian.
+ * <p>
+ * The mapping stays valid after the file has been opened, and reading does not change it, so a SceneFile can be
+ * read from several threads at once.
+ */
+public final class SceneFile {
+    private static final int MAGIC = 0x46535044; // "DPSF" in little-endian order
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32; // Magic, version, record size, counts, index offset
+    private static final int INDEX_ENTRY = 32; // Bounding box of a chunk: minX, minY, maxX, maxY
+    private static final int DEFAULT_CHUNK_SIZE = 1024; // Records per chunk of the index written by default
+
+    private final File file;
+    private final ByteBuffer map; // The whole file
+    private final int size; // Number of shapes
+    private final int chunkSize; // Number of records per chunk of the index
+    private final int chunkCount;
+    private final int indexOffset; // Position of the index in the file
+
+    private SceneFile(File file, ByteBuffer map) throws IOException {
+        this.file = file;
+        this.map = map;
+        size = map.getInt(12);
+        chunkSize = map.getInt(16);
+        chunkCount = map.getInt(20);
+        long index = map.getLong(24);
+        if (map.getInt(0) != MAGIC) {
+            throw new IOException("Not a scene file: " + file);
+        }
+        if (map.getInt(4) != VERSION || map.getInt(8) != Checkpoint.SHAPE_RECORD) {
+            throw new IOException("Unsupported scene file version " + map.getInt(4) + ": " + file);
+        }
+        if (size < 0 || chunkSize < 1 || chunkCount != (int) ((size + (long) chunkSize - 1) / chunkSize)
+                || index != HEADER_SIZE + (long) size * Checkpoint.SHAPE_RECORD
+                || map.capacity() != index + (long) chunkCount * INDEX_ENTRY) {
+            throw new IOException("Corrupt scene file: " + file);
+        }
+        indexOffset = (int) index;
+    }
+
+    /**
+     * Opens a scene file by mapping it into memory. The shapes are not read until they are asked for.
+     *
+     * @param file the file to be opened
+     * @return the opened scene
+     * @throws IOException if the file cannot be read or is not a scene file
+     */
+    public static SceneFile open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER_SIZE || length > Integer.MAX_VALUE) {
+                throw new IOException("Not a scene file: " + file);
+            }
+            ByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, length).order(ByteOrder.LITTLE_ENDIAN);
+            return new SceneFile(file, map);
+        }
+    }
+
+    /**
+     * Writes shapes to a scene file, in the given order, replacing the file if it exists.
+     *
+     * @param file   the file to be written
+     * @param shapes the shapes to be written
+     * @throws IOException              if the file cannot be written
+     * @throws IllegalArgumentException if a shape is not a Circle, Rectangle or Triangle
+     */
+    public static void write(File file, List<? extends AbstractShape> shapes) throws IOException {
+        write(file, shapes, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Writes shapes to a scene file, in the given order, replacing the file if it exists. Smaller chunks make the
+     * index larger and region reads more selective.
+     *
+     * @param file      the file to be written
+     * @param shapes    the shapes to be written
+     * @param chunkSize the number of records per chunk of the index, at least 1
+     * @throws IOException              if the file cannot be written
+     * @throws IllegalArgumentException if a shape is not a Circle, Rectangle or Triangle, or chunkSize is not
+     *                                  positive
+     */
+    public static void write(File file, List<? extends AbstractShape> shapes, int chunkSize) throws IOException {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        }
+        int size = shapes.size();
+        int chunkCount = (int) ((size + (long) chunkSize - 1) / chunkSize);
+        long indexOffset = HEADER_SIZE + (long) size * Checkpoint.SHAPE_RECORD;
+        if (indexOffset + (long) chunkCount * INDEX_ENTRY > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many shapes for one scene file: " + size);
+        }
+        int batch = Math.min(chunkSize, size);
+        ByteBuffer records = ByteBuffer.allocate(batch * Checkpoint.SHAPE_RECORD).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer index = ByteBuffer.allocate(chunkCount * INDEX_ENTRY).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(Checkpoint.SHAPE_RECORD).putInt(size).putInt(chunkSize)
+                .putInt(chunkCount).putLong(indexOffset).flip();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = HEADER_SIZE;
+            for (int chunk = 0; chunk < chunkCount; chunk++) {
+                int from = chunk * chunkSize;
+                int to = (int) Math.min(size, (long) from + chunkSize);
+                double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+                double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+                records.clear();
+                for (int i = from; i < to; i++) {
+                    AbstractShape shape = shapes.get(i);
+                    if (Checkpoint.writeShape(records, (i - from) * Checkpoint.SHAPE_RECORD, shape)
+                            == RenderQueue.CUSTOM) {
+                        throw new IllegalArgumentException("Unsupported shape: " + shape);
+                    }
+                    Rectangle2D bounds = shape.getBounds();
+                    minX = Math.min(minX, bounds.getMinX());
+                    minY = Math.min(minY, bounds.getMinY());
+                    maxX = Math.max(maxX, bounds.getMaxX());
+                    maxY = Math.max(maxY, bounds.getMaxY());
+                }
+                records.limit((to - from) * Checkpoint.SHAPE_RECORD);
+                position = writeFully(channel, records, position);
+                index.putDouble(minX).putDouble(minY).putDouble(maxX).putDouble(maxY);
+            }
+            writeFully(channel, index.flip(), position);
+            writeFully(channel, header, 0); // Written last, so an interrupted write leaves no valid header
+        }
+    }
+
+    private static long writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        return position;
+    }
+
+    /**
+     * Returns the number of shapes in the file.
+     *
+     * @return the number of shapes
+     */
+    public int size() {
+        return size;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Creates the shape at an index. Every call creates a new shape.
+     *
+     * @param index the index of the shape, in drawing order
+     * @return the new shape
+     * @throws IndexOutOfBoundsException if the index is not between 0 and size() - 1
+     */
+    public AbstractShape getShape(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Shape " + index + " of " + size);
+        }
+        return Checkpoint.createShape(map, HEADER_SIZE + index * Checkpoint.SHAPE_RECORD, null);
+    }
+
+    /**
+     * Creates the shapes in a range of indices and adds them to a list, in drawing order.
+     *
+     * @param from   the index of the first shape
+     * @param to     the index after the last shape
+     * @param result the list to add the shapes to
+     * @return result
+     * @throws IndexOutOfBoundsException if the range is not within 0 to size()
+     */
+    public List<AbstractShape> readShapes(int from, int to, List<AbstractShape> result) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("Shapes " + from + " to " + to + " of " + size);
+        }
+        Color color = null; // Shapes written one after another often share a color, and then a Color object
+        for (int i = from; i < to; i++) {
+            AbstractShape shape = Checkpoint.createShape(map, HEADER_SIZE + i * Checkpoint.SHAPE_RECORD, color);
+            color = shape.getColor();
+            result.add(shape);
+        }
+        return result;
+    }
+
+    /**
+     * Creates the shapes whose bounding box intersects a region and adds them to a list, in drawing order. Only the
+     * chunks of the file whose bounding box intersects the region are read.
+     *
+     * @param x      the x-coordinate of the region
+     * @param y      the y-coordinate of the region
+     * @param width  the width of the region
+     * @param height the height of the region
+     * @param result the list to add the shapes to
+     * @return result
+     */
+    public List<AbstractShape> readShapesIn(double x, double y, double width, double height,
+                                            List<AbstractShape> result) {
+        Color color = null;
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            int entry = indexOffset + chunk * INDEX_ENTRY;
+            if (map.getDouble(entry) > x + width || map.getDouble(entry + 8) > y + height
+                    || map.getDouble(entry + 16) < x || map.getDouble(entry + 24) < y) {
+                continue;
+            }
+            int to = (int) Math.min(size, (long) (chunk + 1) * chunkSize);
+            for (int i = chunk * chunkSize; i < to; i++) {
+                AbstractShape shape = Checkpoint.createShape(map, HEADER_SIZE + i * Checkpoint.SHAPE_RECORD, color);
+                color = shape.getColor();
+                if (shape.getBounds().intersects(x, y, width, height)) {
+                    result.add(shape);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the bounding box of all the shapes in the file, from the index.
+     *
+     * @return the bounding box, or null if the file holds no shapes
+     */
+    public Rectangle2D getBounds() {
+        if (chunkCount == 0) {
+            return null;
+        }
+        Rectangle2D.Double bounds = null;
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            int entry = indexOffset + chunk * INDEX_ENTRY;
+            double minX = map.getDouble(entry);
+            double minY = map.getDouble(entry + 8);
+            double maxX = map.getDouble(entry + 16);
+            double maxY = map.getDouble(entry + 24);
+            if (bounds == null) {
+                bounds = new Rectangle2D.Double(minX, minY, maxX - minX, maxY - minY);
+            } else {
+                bounds.add(minX, minY);
+                bounds.add(maxX, maxY);
+            }
+        }
+        return bounds;
+    }
+}
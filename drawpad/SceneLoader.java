@@ -0,0 +1,151 @@
+package drawpad;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class adds the shapes of a SceneFile to a window from its own thread, a batch at a time, so that a large
+ * scene appears progressively while the event dispatch thread stays free to paint and handle input.
+ * <p>
+ * The loader thread creates the shapes of each batch from the mapped file and passes the batch to
+ * AbstractWindow.addShapes on the event dispatch thread, which adds it at once or, if a simulation thread owns the
+ * shapes, queues it for that thread's next applyPendingChanges. Only a few batches are ever waiting to be added,
+ * so the loader does not run far ahead of the window.
+ */
+public class SceneLoader implements Runnable {
+    private static final int MAX_WAITING_BATCHES = 4; // Batches handed over but not yet added before the loader waits
+    private static final long WAIT_NANOS = 1_000_000L; // How long the loader parks while too many batches wait
+
+    private final SceneFile file; // The scene to be loaded
+    private final AbstractWindow window; // The window the shapes are added to
+    private volatile int batchSize = 4096; // Number of shapes created and added together
+    private volatile boolean running;
+    private Thread thread;
+    private int next; // Index of the next shape to read, so a stopped loader continues where it was
+    private volatile int handedOver; // Number of batches passed to the event dispatch thread
+    private volatile int addedBatches; // Number of those batches added to the window, written on the EDT
+    private volatile int loadedCount; // Number of shapes added to the window, written on the EDT
+
+    /**
+     * Constructor to create a SceneLoader that adds the shapes of a file to a window.
+     *
+     * @param file   the scene to be loaded
+     * @param window the window the shapes are added to
+     */
+    public SceneLoader(SceneFile file, AbstractWindow window) {
+        this.file = file;
+        this.window = window;
+    }
+
+    /**
+     * Starts loading on a new daemon thread. Does nothing if the loader is already running. A loader that was
+     * stopped continues with the shapes it had not read yet. If the previous thread is still finishing, it is
+     * waited for first, so the new thread continues from the last batch it read.
+     *
+     * @param name the name of the thread
+     */
+    public synchronized void start(String name) {
+        if (running) {
+            return;
+        }
+        Thread previous = thread;
+        if (previous != null && previous != Thread.currentThread()) {
+            // A run that ended on its own, or was stopped from its own thread, may not have been joined yet
+            try {
+                previous.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        running = true;
+        thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Asks the loader to stop and waits for its thread to finish, unless called from the loader thread itself.
+     * Batches that were already handed over are still added.
+     */
+    public void stop() {
+        Thread current;
+        synchronized (this) {
+            running = false;
+            current = thread; // Kept, so start can wait for it if it is not joined here
+        }
+        if (current != null && current != Thread.currentThread()) {
+            try {
+                current.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Returns true while the loader thread is reading the file.
+     *
+     * @return true if the loader is running
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Returns true once every shape of the file has been added to the window, or queued for the thread that owns
+     * its shapes.
+     *
+     * @return true if the scene is loaded
+     */
+    public boolean isDone() {
+        return loadedCount == file.size();
+    }
+
+    /**
+     * Returns the number of shapes added to the window so far, or queued for the thread that owns its shapes.
+     *
+     * @return the number of loaded shapes
+     */
+    public int getLoadedCount() {
+        return loadedCount;
+    }
+
+    /**
+     * Sets the number of shapes that are created and added together. Larger batches load faster in total, smaller
+     * ones keep each addition on the event dispatch thread shorter.
+     *
+     * @param batchSize the number of shapes per batch, at least 1
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    @Override
+    public void run() {
+        int size = file.size();
+        while (running && next < size) {
+            if (handedOver - addedBatches >= MAX_WAITING_BATCHES) {
+                LockSupport.parkNanos(WAIT_NANOS);
+                continue;
+            }
+            int from = next;
+            int to = (int) Math.min(size, (long) from + batchSize);
+            List<AbstractShape> batch = file.readShapes(from, to, new ArrayList<>(to - from));
+            next = to;
+            handedOver++;
+            SwingUtilities.invokeLater(() -> {
+                window.addShapes(batch);
+                loadedCount += batch.size();
+                addedBatches++;
+            });
+        }
+        running = false;
+    }
+}
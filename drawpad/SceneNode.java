@@ -0,0 +1,385 @@
+package drawpad;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class groups shapes so that they move, rotate and scale together. A node has a position, rotation and
+ * scale relative to its parent, and holds shapes and other nodes whose coordinates are relative to it, so
+ * nodes form a tree. Adding the root of the tree to a window draws all of it.
+ * <p>
+ * The world transform of a node (from its coordinates to the window's) is cached and recomputed only when the
+ * node or one of its ancestors has changed, and so is the transform every shape is drawn with, which combines
+ * the world transform with the shape's own AbstractShape.getLocalTransform. Moving a group of a thousand shapes
+ * therefore changes one node, and each shape is then drawn with a single precomputed transform.
+ * <p>
+ * The caches are brought up to date by draw and getBounds. Like other shapes that are not AbstractShapes, the
+ * window is not told when a node changes, so call repaint() after moving one.
+ */
+public class SceneNode implements Shape {
+    private static final int CULL_MARGIN = 1; // Pixels added around the clip, as in AbstractWindow
+    private static final AffineTransform IDENTITY = new AffineTransform();
+
+    private SceneNode parent; // Null for the root of a tree
+    private final List<Entry> entries = new ArrayList<>(); // The children, in drawing order
+    private final List<Shape> children = new ArrayList<>(); // The same children, handed out by getChildren
+    private double pos_x; // The x-coordinate of the node's origin in its parent
+    private double pos_y; // The y-coordinate of the node's origin in its parent
+    private double rotation; // The rotation around the node's origin(in radians)
+    private double scale = 1; // The scale of the node's coordinates
+    private final AffineTransform localTransform = new AffineTransform();
+    private final AffineTransform worldTransform = new AffineTransform();
+    private boolean localValid; // Whether localTransform and worldTransform match the position, rotation and scale
+    private long worldVersion; // Incremented every time worldTransform is recomputed
+    private long parentVersion; // The worldVersion of the parent that worldTransform was computed from
+    private final Rectangle2D.Double bounds = new Rectangle2D.Double(); // Union of the children's bounds
+    private boolean boundsKnown; // False if a child has unknown bounds
+
+    /**
+     * A child of the node with the transform and bounds it was last drawn with.
+     */
+    private static final class Entry {
+        final Shape shape;
+        final AffineTransform world = new AffineTransform(); // The node's world transform times the shape's own
+        final Rectangle2D.Double bounds = new Rectangle2D.Double(); // In window coordinates
+        boolean boundsKnown; // False if the shape's bounds are unknown
+        AffineTransform source; // The local transform of the shape that world was computed from
+        long version = -1; // The worldVersion of the node that world was computed from
+
+        Entry(Shape shape) {
+            this.shape = shape;
+        }
+    }
+
+    /**
+     * Constructor to create a SceneNode object at the origin of its parent.
+     */
+    public SceneNode() {
+    }
+
+    /**
+     * Constructor to create a SceneNode object with a specified position.
+     *
+     * @param pos_x the x-coordinate of the node's origin in its parent
+     * @param pos_y the y-coordinate of the node's origin in its parent
+     */
+    public SceneNode(double pos_x, double pos_y) {
+        this.pos_x = pos_x;
+        this.pos_y = pos_y;
+    }
+
+    /**
+     * Constructor to create a SceneNode object with a specified position and rotation.
+     *
+     * @param pos_x    the x-coordinate of the node's origin in its parent
+     * @param pos_y    the y-coordinate of the node's origin in its parent
+     * @param rotation the rotation around the node's origin(in radians)
+     */
+    public SceneNode(double pos_x, double pos_y, double rotation) {
+        this.pos_x = pos_x;
+        this.pos_y = pos_y;
+        this.rotation = rotation;
+    }
+
+    /**
+     * Adds a shape or a node to this node. Its coordinates are then relative to this node, and it is drawn
+     * after the children added before it.
+     *
+     * @param shape the shape or node to be added
+     * @throws IllegalArgumentException if the shape is a node that already has a parent, or is this node or one
+     *                                  of its ancestors
+     */
+    public void add(Shape shape) {
+        if (shape instanceof SceneNode node) {
+            if (node.parent != null) {
+                throw new IllegalArgumentException("The node already has a parent");
+            }
+            for (SceneNode ancestor = this; ancestor != null; ancestor = ancestor.parent) {
+                if (ancestor == node) {
+                    throw new IllegalArgumentException("A node cannot be added to itself or its descendants");
+                }
+            }
+            node.parent = this;
+            node.localValid = false;
+        }
+        entries.add(new Entry(shape));
+        children.add(shape);
+    }
+
+    /**
+     * Removes a shape or a node from this node. Does nothing if it is not a child of this node.
+     *
+     * @param shape the shape or node to be removed
+     */
+    public void remove(Shape shape) {
+        int index = children.indexOf(shape);
+        if (index < 0) {
+            return;
+        }
+        entries.remove(index);
+        children.remove(index);
+        if (shape instanceof SceneNode node) {
+            node.parent = null;
+            node.localValid = false;
+        }
+    }
+
+    /**
+     * Returns the shapes and nodes added to this node, in drawing order.
+     *
+     * @return an unmodifiable view of the children
+     */
+    public List<Shape> getChildren() {
+        return Collections.unmodifiableList(children);
+    }
+
+    /**
+     * Returns the node this node was added to.
+     *
+     * @return the parent, or null if this node is the root of its tree
+     */
+    public SceneNode getParent() {
+        return parent;
+    }
+
+    /**
+     * Sets the position of the node's origin in its parent.
+     *
+     * @param pos_x the new x-coordinate of the node's origin
+     * @param pos_y the new y-coordinate of the node's origin
+     */
+    public void setPosition(double pos_x, double pos_y) {
+        this.pos_x = pos_x;
+        this.pos_y = pos_y;
+        localValid = false;
+    }
+
+    public double getPos_x() {
+        return pos_x;
+    }
+
+    public double getPos_y() {
+        return pos_y;
+    }
+
+    /**
+     * Sets the rotation of the node around its origin in radians.
+     *
+     * @param rotation the new rotation of the node
+     */
+    public void setRotation(double rotation) {
+        this.rotation = rotation;
+        localValid = false;
+    }
+
+    public double getRotation() {
+        return rotation;
+    }
+
+    /**
+     * Sets the scale of the node's coordinates, which scales the children around the node's origin.
+     *
+     * @param scale the new scale of the node
+     */
+    public void setScale(double scale) {
+        this.scale = scale;
+        localValid = false;
+    }
+
+    public double getScale() {
+        return scale;
+    }
+
+    /**
+     * Returns the transform from the node's coordinates to its parent's.
+     * The returned transform is cached and must not be modified.
+     *
+     * @return the local transform of the node
+     */
+    public AffineTransform getLocalTransform() {
+        updateWorldTransform();
+        return localTransform;
+    }
+
+    /**
+     * Returns the transform from the node's coordinates to the coordinates of the root's parent, usually the
+     * window. The returned transform is cached and must not be modified.
+     *
+     * @return the world transform of the node
+     */
+    public AffineTransform getWorldTransform() {
+        updateWorldTransform();
+        return worldTransform;
+    }
+
+    /**
+     * Draws the children of the node, skipping the ones that lie outside the clip of the Graphics object.
+     *
+     * @param g the Graphics object on which to draw the node
+     */
+    @Override
+    public void draw(Graphics g) {
+        Graphics2D g2d = (Graphics2D) g;
+        update();
+        AffineTransform oldTransform = g2d.getTransform();
+        java.awt.Rectangle clip = g2d.getClipBounds();
+        if (clip != null) {
+            clip.grow(CULL_MARGIN, CULL_MARGIN);
+        }
+        drawChildren(g2d, oldTransform, clip);
+        g2d.setTransform(oldTransform);
+    }
+
+    private void drawChildren(Graphics2D g, AffineTransform base, java.awt.Rectangle clip) {
+        for (int i = 0, n = entries.size(); i < n; i++) {
+            Entry entry = entries.get(i);
+            if (clip != null && entry.boundsKnown && !entry.bounds.intersects(clip)) {
+                continue;
+            }
+            if (entry.shape instanceof SceneNode node) {
+                node.drawChildren(g, base, clip);
+                continue;
+            }
+            g.setTransform(base);
+            g.transform(entry.world);
+            if (entry.shape instanceof AbstractShape shape) {
+                shape.drawLocal(g);
+            } else {
+                entry.shape.draw(g);
+            }
+        }
+    }
+
+    /**
+     * Returns the axis-aligned bounding box of all the children in window coordinates.
+     *
+     * @return the bounding box of the node, or null if a child has unknown bounds
+     */
+    @Override
+    public Rectangle2D getBounds() {
+        update();
+        return boundsKnown ? bounds : null;
+    }
+
+    /**
+     * Resizes the node by multiplying its scale with the given factor.
+     *
+     * @param factor the factor by which to resize the node
+     */
+    @Override
+    public void resize(double factor) {
+        setScale(scale * factor);
+    }
+
+    /**
+     * Calculates and returns the sum of the areas of the children, scaled by the node's scale.
+     *
+     * @return the area of the node
+     */
+    @Override
+    public double getArea() {
+        double area = 0;
+        for (Shape shape : children) {
+            area += shape.getArea();
+        }
+        return area * scale * scale;
+    }
+
+    /**
+     * Brings the world transform up to date, starting from the root.
+     */
+    private void updateWorldTransform() {
+        if (parent != null) {
+            parent.updateWorldTransform();
+        }
+        refreshWorldTransform();
+    }
+
+    /**
+     * Brings the world transform up to date, assuming the parent's is.
+     */
+    private void refreshWorldTransform() {
+        long version = parent == null ? 0 : parent.worldVersion;
+        if (localValid && version == parentVersion) {
+            return;
+        }
+        localTransform.setToTranslation(pos_x, pos_y);
+        localTransform.rotate(rotation);
+        localTransform.scale(scale, scale);
+        worldTransform.setTransform(parent == null ? IDENTITY : parent.worldTransform);
+        worldTransform.concatenate(localTransform);
+        localValid = true;
+        parentVersion = version;
+        worldVersion++;
+    }
+
+    /**
+     * Brings the transforms and bounds of the node and everything below it up to date.
+     */
+    private void update() {
+        if (parent != null) {
+            parent.updateWorldTransform();
+        }
+        updateSubtree();
+    }
+
+    private void updateSubtree() {
+        refreshWorldTransform();
+        boundsKnown = true;
+        bounds.setRect(0, 0, 0, 0);
+        boolean empty = true;
+        for (int i = 0, n = entries.size(); i < n; i++) {
+            Entry entry = entries.get(i);
+            if (entry.shape instanceof SceneNode node) {
+                node.updateSubtree();
+                entry.boundsKnown = node.boundsKnown;
+                entry.bounds.setRect(node.bounds);
+            } else if (entry.shape instanceof AbstractShape shape) {
+                AffineTransform source = shape.getLocalTransform();
+                if (entry.version != worldVersion || entry.source != source) {
+                    entry.world.setTransform(worldTransform);
+                    entry.world.concatenate(source);
+                    entry.source = source;
+                    entry.version = worldVersion;
+                    entry.boundsKnown = true;
+                    transformBounds(worldTransform, shape.getBounds(), entry.bounds);
+                }
+            } else {
+                // Other shapes cannot tell when they change, so their bounds are recomputed every time
+                entry.world.setTransform(worldTransform);
+                Rectangle2D shapeBounds = entry.shape.getBounds();
+                entry.boundsKnown = shapeBounds != null;
+                if (shapeBounds != null) {
+                    transformBounds(worldTransform, shapeBounds, entry.bounds);
+                }
+            }
+            if (!entry.boundsKnown) {
+                boundsKnown = false;
+            } else if (empty) {
+                bounds.setRect(entry.bounds);
+                empty = false;
+            } else {
+                bounds.add(entry.bounds);
+            }
+        }
+    }
+
+    /**
+     * Calculates the axis-aligned bounding box of a rectangle after transforming its corners.
+     */
+    private static void transformBounds(AffineTransform transform, Rectangle2D in, Rectangle2D.Double out) {
+        double m00 = transform.getScaleX(), m01 = transform.getShearX(), m02 = transform.getTranslateX();
+        double m10 = transform.getShearY(), m11 = transform.getScaleY(), m12 = transform.getTranslateY();
+        double x0 = in.getMinX(), y0 = in.getMinY(), x1 = in.getMaxX(), y1 = in.getMaxY();
+        // The extremes of an affine map over a box are found by picking, per matrix entry, the smaller or larger end
+        double minX = m02 + Math.min(m00 * x0, m00 * x1) + Math.min(m01 * y0, m01 * y1);
+        double maxX = m02 + Math.max(m00 * x0, m00 * x1) + Math.max(m01 * y0, m01 * y1);
+        double minY = m12 + Math.min(m10 * x0, m10 * x1) + Math.min(m11 * y0, m11 * y1);
+        double maxY = m12 + Math.max(m10 * x0, m10 * x1) + Math.max(m11 * y0, m11 * y1);
+        out.setRect(minX, minY, maxX - minX, maxY - minY);
+    }
+}
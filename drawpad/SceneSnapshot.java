@@ -0,0 +1,128 @@
+package drawpad;
+
+import java.awt.*;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class holds a copy of the drawable state of a scene at one point in time: the color, position, size,
+ * rotation and z-order of every shape, stored as RenderQueue commands. Once published by a SceneSnapshotBuffer
+ * it is not changed, so it can be drawn on one thread while the simulation keeps changing the shapes on another.
+ * <p>
+ * The shapes of the window's visible layers are copied too, each layer into its own queue, and drawn from the
+ * copy below or above the window's shapes by paintLayers.
+ * <p>
+ * Shapes that are not AbstractShapes cannot be copied; they are drawn live with their own draw method.
+ */
+public final class SceneSnapshot {
+    private final RenderQueue commands = new RenderQueue(); // The copied shapes, in the order they were added
+    private long version; // Increases with every published snapshot, 0 for the empty initial snapshot
+    private boolean batched; // Whether the commands are drawn sorted and merged instead of in order
+    private RenderLayer[] layers = new RenderLayer[0]; // The window's layers when the snapshot was taken
+    private RenderQueue[] layerCommands = new RenderQueue[0]; // The copied shapes of each layer, reused
+    private long[] layerChanges = new long[0]; // RenderLayer.getChanges of each layer when it was copied
+    private boolean[] layerStatic = new boolean[0]; // Whether each layer was static, false for hidden layers
+    private boolean[] layerVisible = new boolean[0];
+
+    SceneSnapshot() {
+    }
+
+    /**
+     * Copies the state of the shapes into this snapshot, replacing its previous contents.
+     *
+     * @param shapes  the shapes of the scene, in drawing order
+     * @param layers  the layers of the scene, sorted by depth
+     * @param version the version of the snapshot
+     * @param batched whether the snapshot is drawn like batched rendering
+     */
+    void fill(List<? extends Shape> shapes, RenderLayer[] layers, long version, boolean batched) {
+        commands.clear();
+        for (int i = 0, n = shapes.size(); i < n; i++) {
+            shapes.get(i).submit(commands);
+        }
+        if (layerCommands.length < layers.length) {
+            int oldLength = layerCommands.length;
+            layerCommands = Arrays.copyOf(layerCommands, layers.length);
+            for (int i = oldLength; i < layers.length; i++) {
+                layerCommands[i] = new RenderQueue();
+            }
+            layerChanges = new long[layers.length];
+            layerStatic = new boolean[layers.length];
+            layerVisible = new boolean[layers.length];
+        }
+        for (int i = 0; i < layers.length; i++) {
+            RenderLayer layer = layers[i];
+            layerCommands[i].clear();
+            layerVisible[i] = layer.isVisible();
+            if (layerVisible[i]) {
+                layer.submit(layerCommands[i]);
+                layerChanges[i] = layer.getChanges();
+                layerStatic[i] = layer.isStatic();
+            }
+        }
+        this.layers = layers;
+        if (batched) {
+            commands.sort(); // Sort here, on the writing thread, so drawing does not change the commands
+        }
+        this.version = version;
+        this.batched = batched;
+    }
+
+    /**
+     * Returns the version of the snapshot. Later snapshots have higher versions.
+     *
+     * @return the version, 0 for the empty snapshot returned before anything was published
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the number of shapes in the snapshot.
+     *
+     * @return the number of shapes
+     */
+    public int size() {
+        return commands.size();
+    }
+
+    /**
+     * Draws the copied layers that are drawn below the window's shapes, or those drawn above them, in order of
+     * depth onto a surface of the given size in user space.
+     *
+     * @param g      the Graphics object on which to draw
+     * @param width  the width of the surface
+     * @param height the height of the surface
+     * @param below  true for the layers with a negative depth, false for the others
+     */
+    void paintLayers(Graphics2D g, int width, int height, boolean below) {
+        for (int i = 0; i < layers.length; i++) {
+            if (layerVisible[i] && (layers[i].getDepth() < 0) == below) {
+                layers[i].paint(g, width, height, layerStatic[i], layerCommands[i], layerChanges[i]);
+            }
+        }
+    }
+
+    /**
+     * Draws the shapes of the snapshot that intersect the clip area of the Graphics object, exactly as
+     * AbstractWindow draws the live shapes.
+     *
+     * @param g the Graphics object on which to draw
+     * @return the number of shapes drawn, the others lying outside the clip area
+     */
+    public int draw(Graphics g) {
+        return draw(g, null);
+    }
+
+    /**
+     * Draws the shapes of the snapshot that intersect the clip area of the Graphics object, using a sprite cache
+     * for the circles, rectangles and triangles unless the snapshot is batched.
+     *
+     * @param g           the Graphics object on which to draw
+     * @param spriteCache the sprite cache to be used, or null
+     * @return the number of shapes drawn, the others lying outside the clip area
+     */
+    public int draw(Graphics g, SpriteCache spriteCache) {
+        return batched ? commands.draw(g) : commands.drawInOrder(g, spriteCache);
+    }
+}
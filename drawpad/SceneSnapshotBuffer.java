@@ -0,0 +1,61 @@
+package drawpad;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * This class passes SceneSnapshots from the thread that updates a scene to the thread that draws it, without
+ * locks and without allocating. It holds three snapshots: one being written, the latest published one and one
+ * being drawn. Publishing swaps the written snapshot with the latest one, and acquiring swaps the drawn snapshot
+ * with the latest one if that is newer, each with a single atomic exchange. Neither side ever waits for the
+ * other, and a snapshot is never changed while it is being drawn.
+ * <p>
+ * There must be one writing thread and one reading thread.
+ */
+public class SceneSnapshotBuffer {
+    private static final RenderLayer[] NO_LAYERS = new RenderLayer[0];
+
+    private final AtomicReference<SceneSnapshot> latest = new AtomicReference<>(new SceneSnapshot());
+    private SceneSnapshot back = new SceneSnapshot(); // Owned by the writer
+    private SceneSnapshot front = new SceneSnapshot(); // Owned by the reader
+    private long version; // Version of the last published snapshot
+
+    /**
+     * Copies the state of the shapes into a new snapshot and publishes it. Called by the writing thread.
+     *
+     * @param shapes  the shapes of the scene, in drawing order
+     * @param batched whether the snapshot is drawn like batched rendering
+     * @return the version of the published snapshot
+     */
+    public long publish(List<? extends Shape> shapes, boolean batched) {
+        return publish(shapes, NO_LAYERS, batched);
+    }
+
+    /**
+     * Copies the state of the shapes and of the layers drawn with them into a new snapshot and publishes it.
+     * Called by the writing thread.
+     *
+     * @param shapes  the shapes of the scene, in drawing order
+     * @param layers  the layers of the scene, sorted by depth
+     * @param batched whether the snapshot is drawn like batched rendering
+     * @return the version of the published snapshot
+     */
+    public long publish(List<? extends Shape> shapes, RenderLayer[] layers, boolean batched) {
+        back.fill(shapes, layers, ++version, batched);
+        back = latest.getAndSet(back);
+        return version;
+    }
+
+    /**
+     * Returns the latest published snapshot. Called by the reading thread; the snapshot stays valid until the
+     * next call.
+     *
+     * @return the latest snapshot, or an empty snapshot if none has been published yet
+     */
+    public SceneSnapshot acquire() {
+        if (latest.get().getVersion() > front.getVersion()) {
+            front = latest.getAndSet(front);
+        }
+        return front;
+    }
+}
@@ -1,6 +1,7 @@
 package drawpad;
 
 import java.awt.*;
+import java.awt.geom.Rectangle2D;
 
 /**
  * This interface defines the common behavior and methods that all concrete shape implementations should have.
@@ -27,4 +28,26 @@ public interface Shape {
      * @return the area of the shape
      */
     double getArea();
+
+    /**
+     * Returns the axis-aligned bounding box of the shape, taking its rotation into account.
+     * It is used to skip shapes that lie outside the area being painted.
+     * The returned rectangle may be cached by the shape and must not be modified.
+     * The default implementation returns null, which means the bounds are unknown and the shape is always drawn.
+     *
+     * @return the bounding box of the shape, or null if it is unknown
+     */
+    default Rectangle2D getBounds() {
+        return null;
+    }
+
+    /**
+     * Adds the draw commands for this shape to a render queue.
+     * The default implementation adds the shape itself, so the queue calls draw for it.
+     *
+     * @param queue the queue to add the commands to
+     */
+    default void submit(RenderQueue queue) {
+        queue.addShape(0, this);
+    }
 }
@@ -0,0 +1,23 @@
+package drawpad;
+
+/**
+ * This interface is implemented by objects that want to be notified when the geometry or appearance of an
+ * AbstractShape changes, for example a spatial index that has to move the shape to a new cell.
+ */
+public interface ShapeListener {
+    /**
+     * Called before a property of the shape is changed, while getBounds() still returns the old bounds.
+     * Does nothing by default.
+     *
+     * @param shape the shape that is about to change
+     */
+    default void shapeWillChange(AbstractShape shape) {
+    }
+
+    /**
+     * Called after a property of the shape (position, rotation, size or color) has been changed.
+     *
+     * @param shape the shape that changed
+     */
+    void shapeChanged(AbstractShape shape);
+}
@@ -0,0 +1,87 @@
+package drawpad;
+
+import java.util.List;
+
+/**
+ * This interface defines a spatial index over shapes. It answers region, point and nearest-neighbour
+ * questions without scanning every shape, using the bounding box returned by {@link AbstractShape#getBounds()}.
+ * Implementations are not thread-safe.
+ */
+public interface SpatialIndex {
+    /**
+     * Adds a shape to the index.
+     *
+     * @param shape the shape to be added
+     */
+    void insert(AbstractShape shape);
+
+    /**
+     * Removes a shape from the index.
+     *
+     * @param shape the shape to be removed
+     * @return true if the shape was in the index, false otherwise
+     */
+    boolean remove(AbstractShape shape);
+
+    /**
+     * Re-reads the bounds of a shape that has moved or changed size. Shapes that are not in the index are ignored.
+     *
+     * @param shape the shape that changed
+     */
+    void update(AbstractShape shape);
+
+    /**
+     * Removes every shape from the index.
+     */
+    void clear();
+
+    /**
+     * Returns the number of shapes in the index.
+     *
+     * @return the number of shapes in the index
+     */
+    int size();
+
+    /**
+     * Collects every shape whose bounds intersect the given region.
+     *
+     * @param x      the x-coordinate of the region
+     * @param y      the y-coordinate of the region
+     * @param width  the width of the region
+     * @param height the height of the region
+     * @param result the list the matching shapes are added to
+     * @return the result list
+     */
+    List<AbstractShape> queryRegion(double x, double y, double width, double height, List<AbstractShape> result);
+
+    /**
+     * Collects every shape whose bounds contain the given point.
+     *
+     * @param x      the x-coordinate of the point
+     * @param y      the y-coordinate of the point
+     * @param result the list the matching shapes are added to
+     * @return the result list
+     */
+    List<AbstractShape> queryPoint(double x, double y, List<AbstractShape> result);
+
+    /**
+     * Collects the k shapes whose bounds are closest to the given point, closest first.
+     * A shape whose bounds contain the point has a distance of 0.
+     *
+     * @param x      the x-coordinate of the point
+     * @param y      the y-coordinate of the point
+     * @param k      the maximum number of shapes to return
+     * @param result the list the nearest shapes are added to
+     * @return the result list
+     */
+    List<AbstractShape> nearest(double x, double y, int k, List<AbstractShape> result);
+
+    /**
+     * Returns the squared distance from a point to a box, or 0 if the point is inside the box.
+     */
+    static double distanceSq(double x, double y, double minX, double minY, double maxX, double maxY) {
+        double dx = x < minX ? minX - x : (x > maxX ? x - maxX : 0);
+        double dy = y < minY ? minY - y : (y > maxY ? y - maxY : 0);
+        return dx * dx + dy * dy;
+    }
+}
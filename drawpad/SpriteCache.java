@@ -0,0 +1,439 @@
+package drawpad;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class draws circles, rectangles and triangles from pre-rasterized images (sprites) instead of running
+ * them through Java2D's geometry pipeline every frame. A sprite is rasterized once per combination of shape type,
+ * size, color, rotation and anti-aliasing, stored in a translucent image compatible with the screen, and from
+ * then on drawn with a single drawImage.
+ * <p>
+ * Rotations are quantized to a fixed number of steps per full turn, so shapes with nearly the same angle share
+ * a sprite. Sprites are placed on whole pixels, so a rotated shape may be drawn up to half a pixel away from
+ * where its own draw method would put it and at an angle up to half a step off, and anti-aliased edges at
+ * fractional positions lose their sub-pixel placement. Without anti-aliasing, circles and unrotated rectangles
+ * look the same as when drawn directly, apart from the odd edge pixel of an oval.
+ * <p>
+ * Under a transform that scales, such as the default transform of a HiDPI screen or a zoomed view, sprites are
+ * rasterized at the scaled size and drawn on whole device pixels, so they are as sharp as the shapes drawn
+ * directly. Under a transform that rotates, shears or flips, the shapes are not drawn from sprites at all.
+ * <p>
+ * The memory used by the sprites is limited by a budget in bytes; when it is exceeded the least recently used
+ * sprites are evicted. Sprites larger than the whole budget are never cached. This class is not thread-safe; it
+ * is meant to be used by the painting thread only.
+ */
+public class SpriteCache {
+    private static final int PADDING = 1; // Transparent border around rotated and anti-aliased sprites
+    private static final double TRIANGLE_HEIGHT = Math.sqrt(3); // Twice the height of a triangle per unit of base
+    private static final AffineTransform DEVICE = new AffineTransform(); // Draws scaled sprites in device pixels
+
+    private final LinkedHashMap<SpriteKey, BufferedImage> sprites; // In access order, least recently used first
+    private final SpriteKey probe = new SpriteKey(); // Reused to look sprites up without allocating
+    private long memoryBudget; // Maximum number of bytes used by the sprites
+    private long memoryUsage; // Number of bytes used by the sprites
+    private int rotationSteps; // Number of distinct rotations per full turn
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Constructor to create a SpriteCache with the specified memory budget and rotation quantization.
+     *
+     * @param memoryBudget  the maximum number of bytes used by the cached sprites
+     * @param rotationSteps the number of distinct rotations per full turn
+     */
+    public SpriteCache(long memoryBudget, int rotationSteps) {
+        sprites = new LinkedHashMap<>(64, 0.75f, true);
+        this.memoryBudget = memoryBudget;
+        this.rotationSteps = Math.max(1, rotationSteps);
+    }
+
+    /**
+     * Constructor to create a SpriteCache with a budget of 32 MB and 360 rotation steps (one per degree).
+     */
+    public SpriteCache() {
+        this(32L << 20, 360);
+    }
+
+    /**
+     * Draws a Circle, Rectangle or Triangle from its sprite.
+     *
+     * @param g     the Graphics object on which to draw
+     * @param shape the shape to be drawn
+     * @return true if the shape was drawn, false if it is of another type or the transform of g rotates, shears or
+     * flips, and it has to be drawn by the caller
+     */
+    public boolean draw(Graphics2D g, Shape shape) {
+        if (shape instanceof Circle circle) {
+            double diameter = 2 * circle.getRadius();
+            return drawOval(g, circle.getColor(), circle.getPos_x(), circle.getPos_y(), diameter, diameter);
+        }
+        if (shape instanceof Rectangle rectangle) {
+            return drawRectangle(g, rectangle.getColor(), rectangle.getPos_x(), rectangle.getPos_y(),
+                    rectangle.getWidth(), rectangle.getHeight(), rectangle.getRotation());
+        }
+        if (shape instanceof Triangle triangle) {
+            return drawTriangle(g, triangle.getColor(), triangle.getPos_x(), triangle.getPos_y(),
+                    triangle.getBase(), triangle.getRotation());
+        }
+        return false;
+    }
+
+    /**
+     * Draws an oval the way Circle.draw does, from its sprite.
+     *
+     * @return true if the oval was drawn, false if it is too large to be cached or g rotates, shears or flips
+     */
+    boolean drawOval(Graphics2D g, Color color, double x, double y, double width, double height) {
+        int w = (int) width;
+        int h = (int) height;
+        if (w <= 0 || h <= 0) {
+            return true;
+        }
+        AffineTransform transform = g.getTransform();
+        if (!isCached(transform)) {
+            return false;
+        }
+        BufferedImage sprite = lookup(g, transform, RenderQueue.OVAL, w, h, color, 0);
+        if (sprite == null) {
+            return false;
+        }
+        drawSprite(g, transform, sprite, (int) x - PADDING, (int) y - PADDING);
+        return true;
+    }
+
+    /**
+     * Draws a rectangle rotated around its center the way Rectangle.draw does, from its sprite.
+     *
+     * @return true if the rectangle was drawn, false if it is too large to be cached or g rotates, shears or flips
+     */
+    boolean drawRectangle(Graphics2D g, Color color, double x, double y, double width, double height,
+                          double rotation) {
+        return drawPolygon(g, RenderQueue.RECTANGLE, color, x, y, width, height, rotation);
+    }
+
+    /**
+     * Draws an equilateral triangle rotated around the center of its bounding box the way Triangle.draw does,
+     * from its sprite.
+     *
+     * @return true if the triangle was drawn, false if it is too large to be cached or g rotates, shears or flips
+     */
+    boolean drawTriangle(Graphics2D g, Color color, double x, double y, double base, double rotation) {
+        return drawPolygon(g, RenderQueue.TRIANGLE, color, x, y, base, base * TRIANGLE_HEIGHT / 2, rotation);
+    }
+
+    private boolean drawPolygon(Graphics2D g, byte kind, Color color, double x, double y, double width,
+                                double height, double rotation) {
+        int w = (int) width;
+        int h = kind == RenderQueue.RECTANGLE ? (int) height : (int) (TRIANGLE_HEIGHT * width) / 2;
+        if (w <= 0 || h <= 0) {
+            return true;
+        }
+        AffineTransform transform = g.getTransform();
+        if (!isCached(transform)) {
+            return false;
+        }
+        int step = quantize(rotation);
+        BufferedImage sprite = lookup(g, transform, kind, w, h, color, step);
+        if (sprite == null) {
+            return false;
+        }
+        if (step == 0 && kind == RenderQueue.RECTANGLE) {
+            // Like fillRect, round the origin to the nearest pixel
+            drawSprite(g, transform, sprite, x - PADDING, y - PADDING);
+            return true;
+        }
+        // The sprite is centered on the center of the shape
+        double centerX = x + width / 2;
+        double centerY = y + height / 2;
+        drawSprite(g, transform, sprite, centerX - sprite.getWidth() / (2 * transform.getScaleX()),
+                centerY - sprite.getHeight() / (2 * transform.getScaleY()));
+        return true;
+    }
+
+    /**
+     * Returns whether shapes drawn under the given transform can be drawn from sprites: it may only translate and
+     * scale by positive factors.
+     */
+    private static boolean isCached(AffineTransform transform) {
+        int others = ~(AffineTransform.TYPE_TRANSLATION | AffineTransform.TYPE_MASK_SCALE);
+        return (transform.getType() & others) == 0 && transform.getScaleX() > 0 && transform.getScaleY() > 0;
+    }
+
+    /**
+     * Draws a sprite with its top-left corner at the pixel nearest to the given point in user space. Under a
+     * scale the sprite was rasterized at the scaled size, so it is drawn in device space instead.
+     */
+    private static void drawSprite(Graphics2D g, AffineTransform transform, BufferedImage sprite, double left,
+                                   double top) {
+        double scaleX = transform.getScaleX();
+        double scaleY = transform.getScaleY();
+        if (scaleX == 1 && scaleY == 1) {
+            g.drawImage(sprite, (int) Math.floor(left + 0.5), (int) Math.floor(top + 0.5), null);
+            return;
+        }
+        g.setTransform(DEVICE);
+        try {
+            g.drawImage(sprite, (int) Math.floor(left * scaleX + transform.getTranslateX() + 0.5),
+                    (int) Math.floor(top * scaleY + transform.getTranslateY() + 0.5), null);
+        } finally {
+            g.setTransform(transform);
+        }
+    }
+
+    private int quantize(double rotation) {
+        double turns = rotation / (2 * Math.PI);
+        int step = (int) Math.round((turns - Math.floor(turns)) * rotationSteps);
+        return step == rotationSteps ? 0 : step;
+    }
+
+    /**
+     * Returns the sprite for the given properties, rasterizing it on a miss, or null if it does not fit in the
+     * budget.
+     */
+    private BufferedImage lookup(Graphics2D g, AffineTransform transform, byte kind, int width, int height,
+                                 Color color, int step) {
+        boolean antialias = g.getRenderingHint(RenderingHints.KEY_ANTIALIASING) == RenderingHints.VALUE_ANTIALIAS_ON;
+        double scaleX = transform.getScaleX();
+        double scaleY = transform.getScaleY();
+        probe.set(kind, width, height, color.getRGB(), step, antialias, scaleX, scaleY);
+        BufferedImage sprite = sprites.get(probe);
+        if (sprite != null) {
+            hits++;
+            return sprite;
+        }
+        misses++;
+        double angle = step * 2 * Math.PI / rotationSteps;
+        int spriteWidth;
+        int spriteHeight;
+        if (kind == RenderQueue.OVAL || (step == 0 && kind == RenderQueue.RECTANGLE)) {
+            spriteWidth = width + 2 * PADDING;
+            spriteHeight = height + 2 * PADDING;
+        } else {
+            double cos = Math.abs(Math.cos(angle));
+            double sin = Math.abs(Math.sin(angle));
+            spriteWidth = (int) Math.ceil(width * cos + height * sin) + 2 * PADDING;
+            spriteHeight = (int) Math.ceil(width * sin + height * cos) + 2 * PADDING;
+        }
+        int deviceWidth = (int) Math.ceil(spriteWidth * scaleX);
+        int deviceHeight = (int) Math.ceil(spriteHeight * scaleY);
+        long bytes = 4L * deviceWidth * deviceHeight;
+        if (bytes > memoryBudget) {
+            return null;
+        }
+        sprite = rasterize(g.getDeviceConfiguration(), kind, width, height, color, angle, antialias,
+                spriteWidth, spriteHeight, scaleX, scaleY);
+        memoryUsage += bytes;
+        sprites.put(probe.copy(), sprite);
+        evict();
+        return sprite;
+    }
+
+    /**
+     * Rasterizes a sprite of spriteWidth by spriteHeight user space pixels, at the given scale in device pixels.
+     */
+    private BufferedImage rasterize(GraphicsConfiguration configuration, byte kind, int width, int height,
+                                    Color color, double angle, boolean antialias, int spriteWidth, int spriteHeight,
+                                    double scaleX, double scaleY) {
+        int deviceWidth = (int) Math.ceil(spriteWidth * scaleX);
+        int deviceHeight = (int) Math.ceil(spriteHeight * scaleY);
+        BufferedImage sprite = configuration != null
+                ? configuration.createCompatibleImage(deviceWidth, deviceHeight, Transparency.TRANSLUCENT)
+                : new BufferedImage(deviceWidth, deviceHeight, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = sprite.createGraphics();
+        try {
+            g.scale(scaleX, scaleY);
+            g.setColor(color);
+            if (antialias) {
+                g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            }
+            if (kind == RenderQueue.OVAL) {
+                g.fillOval(PADDING, PADDING, width, height);
+            } else if (angle == 0 && kind == RenderQueue.RECTANGLE) {
+                g.fillRect(PADDING, PADDING, width, height);
+            } else {
+                // Rotate around the center of the sprite, like the shapes rotate around their center
+                AffineTransform transform = g.getTransform();
+                g.translate(spriteWidth / 2.0, spriteHeight / 2.0);
+                g.rotate(angle);
+                if (kind == RenderQueue.RECTANGLE) {
+                    g.translate(-width / 2.0, -height / 2.0);
+                    g.fillRect(0, 0, width, height);
+                } else {
+                    // Triangle.draw uses the exact height for the center and the truncated one for the apex
+                    g.translate(-width / 2.0, -TRIANGLE_HEIGHT * width / 4);
+                    g.fillPolygon(new int[]{0, width, width / 2}, new int[]{0, 0, height}, 3);
+                }
+                g.setTransform(transform);
+            }
+        } finally {
+            g.dispose();
+        }
+        return sprite;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<SpriteKey, BufferedImage>> iterator = sprites.entrySet().iterator();
+        while (memoryUsage > memoryBudget && iterator.hasNext()) {
+            BufferedImage sprite = iterator.next().getValue();
+            iterator.remove();
+            memoryUsage -= bytes(sprite);
+            sprite.flush();
+            evictions++;
+        }
+    }
+
+    private static long bytes(BufferedImage sprite) {
+        return 4L * sprite.getWidth() * sprite.getHeight();
+    }
+
+    /**
+     * Removes every sprite from the cache. The counters are kept.
+     */
+    public void clear() {
+        for (BufferedImage sprite : sprites.values()) {
+            sprite.flush();
+        }
+        sprites.clear();
+        memoryUsage = 0;
+    }
+
+    /**
+     * Sets the maximum number of bytes used by the cached sprites, evicting sprites if needed.
+     *
+     * @param memoryBudget the budget in bytes
+     */
+    public void setMemoryBudget(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+        evict();
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Returns the number of bytes used by the cached sprites, counting 4 bytes per pixel.
+     *
+     * @return the memory usage in bytes
+     */
+    public long getMemoryUsage() {
+        return memoryUsage;
+    }
+
+    /**
+     * Sets the number of distinct rotations per full turn. Clears the cache, because the sprites were
+     * rasterized at the old angles.
+     *
+     * @param rotationSteps the number of rotation steps, at least 1
+     */
+    public void setRotationSteps(int rotationSteps) {
+        this.rotationSteps = Math.max(1, rotationSteps);
+        clear();
+    }
+
+    public int getRotationSteps() {
+        return rotationSteps;
+    }
+
+    /**
+     * Returns the number of cached sprites.
+     *
+     * @return the number of sprites
+     */
+    public int size() {
+        return sprites.size();
+    }
+
+    /**
+     * Returns the number of draws that found their sprite in the cache.
+     *
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of draws that had to rasterize their sprite.
+     *
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of sprites evicted to stay within the budget.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Sets the hit, miss and eviction counters back to 0.
+     */
+    public void resetCounters() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    /**
+     * Identifies a sprite. Mutable so one instance can be reused for lookups; copies are stored in the map.
+     */
+    private static final class SpriteKey {
+        private byte kind;
+        private int width;
+        private int height;
+        private int argb;
+        private int step; // The quantized rotation
+        private boolean antialias;
+        private double scaleX; // Scale of the transform the sprite is drawn under
+        private double scaleY;
+
+        void set(byte kind, int width, int height, int argb, int step, boolean antialias, double scaleX,
+                 double scaleY) {
+            this.kind = kind;
+            this.width = width;
+            this.height = height;
+            this.argb = argb;
+            this.step = step;
+            this.antialias = antialias;
+            this.scaleX = scaleX;
+            this.scaleY = scaleY;
+        }
+
+        SpriteKey copy() {
+            SpriteKey copy = new SpriteKey();
+            copy.set(kind, width, height, argb, step, antialias, scaleX, scaleY);
+            return copy;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof SpriteKey other && kind == other.kind && width == other.width
+                    && height == other.height && argb == other.argb && step == other.step
+                    && antialias == other.antialias && scaleX == other.scaleX && scaleY == other.scaleY;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = kind;
+            hash = 31 * hash + width;
+            hash = 31 * hash + height;
+            hash = 31 * hash + argb;
+            hash = 31 * hash + step;
+            hash = 31 * hash + Double.hashCode(scaleX);
+            hash = 31 * hash + Double.hashCode(scaleY);
+            return 31 * hash + (antialias ? 1 : 0);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package drawpad;
+
+import java.util.Arrays;
+
+/**
+ * This class finds the pairs of overlapping bounding boxes among a set of boxes identified by their slot
+ * (0 to count - 1), as the broad phase of collision detection.
+ * <p>
+ * The boxes are kept sorted by their left edge. Sweeping through them in that order, each box only has to be
+ * compared with the boxes that start before it ends, so the cost grows with the number of boxes plus the number
+ * of pairs instead of with the square of the number of boxes. The order is kept between calls and repaired
+ * with an insertion sort, which takes close to linear time when the boxes have only moved a little.
+ */
+public class SweepAndPrune {
+    private int[] order = new int[16]; // Slots sorted by the left edge of their box
+    private int count; // Number of slots in order
+    private int[] pairs = new int[32]; // Slots of the overlapping pairs, two entries per pair
+    private int pairCount; // Number of pairs found by the last update
+
+    /**
+     * Finds the overlapping pairs among count boxes. The box of slot i spans [minX[i], maxX[i]] by
+     * [minY[i], maxY[i]]. Boxes that only touch count as overlapping.
+     *
+     * @param minX  the left edges of the boxes
+     * @param minY  the top edges of the boxes
+     * @param maxX  the right edges of the boxes
+     * @param maxY  the bottom edges of the boxes
+     * @param count the number of boxes
+     * @return the number of pairs found
+     */
+    public int update(double[] minX, double[] minY, double[] maxX, double[] maxY, int count) {
+        return update(minX, minY, maxX, maxY, null, count);
+    }
+
+    /**
+     * Finds the overlapping pairs among count boxes, leaving out the pairs in which neither box is moving. Boxes
+     * that do not move cannot start or stop overlapping each other, so a caller that keeps their pairs from an
+     * earlier call, or does not need them, saves reporting them again.
+     *
+     * @param minX   the left edges of the boxes
+     * @param minY   the top edges of the boxes
+     * @param maxX   the right edges of the boxes
+     * @param maxY   the bottom edges of the boxes
+     * @param moving whether each box is moving, or null to report every pair
+     * @param count  the number of boxes
+     * @return the number of pairs found
+     */
+    public int update(double[] minX, double[] minY, double[] maxX, double[] maxY, boolean[] moving, int count) {
+        resize(count);
+        int[] order = this.order;
+
+        // Insertion sort, nearly linear because the order of the last call is almost right
+        for (int i = 1; i < count; i++) {
+            int slot = order[i];
+            double key = minX[slot];
+            int j = i - 1;
+            while (j >= 0 && minX[order[j]] > key) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = slot;
+        }
+
+        pairCount = 0;
+        for (int i = 0; i < count; i++) {
+            int a = order[i];
+            double right = maxX[a];
+            double top = minY[a];
+            double bottom = maxY[a];
+            boolean still = moving != null && !moving[a];
+            for (int j = i + 1; j < count; j++) {
+                int b = order[j];
+                if (minX[b] > right) {
+                    break; // Every following box starts even further right
+                }
+                if (minY[b] <= bottom && maxY[b] >= top && !(still && !moving[b])) {
+                    addPair(a, b);
+                }
+            }
+        }
+        return pairCount;
+    }
+
+    /**
+     * Returns the number of pairs found by the last update.
+     *
+     * @return the number of pairs
+     */
+    public int getPairCount() {
+        return pairCount;
+    }
+
+    /**
+     * Returns the slot of the first box of a pair.
+     *
+     * @param pair the index of the pair, less than getPairCount()
+     * @return the slot of the first box
+     */
+    public int getFirst(int pair) {
+        return pairs[2 * pair];
+    }
+
+    /**
+     * Returns the slot of the second box of a pair.
+     *
+     * @param pair the index of the pair, less than getPairCount()
+     * @return the slot of the second box
+     */
+    public int getSecond(int pair) {
+        return pairs[2 * pair + 1];
+    }
+
+    /**
+     * Adjusts the order to the new number of slots. Slots are always numbered 0 to count - 1, so slots that no
+     * longer exist are dropped and new slots are appended; the rest keeps its order.
+     */
+    private void resize(int count) {
+        if (count < this.count) {
+            int kept = 0;
+            for (int i = 0; i < this.count; i++) {
+                if (order[i] < count) {
+                    order[kept++] = order[i];
+                }
+            }
+        } else if (count > this.count) {
+            if (count > order.length) {
+                order = Arrays.copyOf(order, Math.max(count, order.length * 2));
+            }
+            for (int i = this.count; i < count; i++) {
+                order[i] = i;
+            }
+        }
+        this.count = count;
+    }
+
+    private void addPair(int a, int b) {
+        if (2 * pairCount == pairs.length) {
+            pairs = Arrays.copyOf(pairs, pairs.length * 2);
+        }
+        pairs[2 * pairCount] = a;
+        pairs[2 * pairCount + 1] = b;
+        pairCount++;
+    }
+}
@@ -0,0 +1,342 @@
+package drawpad;
+
+import java.awt.*;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class draws the shapes of an AbstractWindow into an image using several threads, for exporting scenes
+ * and making thumbnails without a visible window.
+ * <p>
+ * The image is split into square tiles that are drawn in parallel on a ForkJoinPool. Every tile gets its own
+ * Graphics2D on the image, clipped to the tile, and only draws the shapes whose bounds touch it. The tiles write
+ * straight into the pixels of the image and never share a pixel, so nothing has to be copied or stitched together
+ * afterwards and the workers do not need any locking. The Graphics2D covers the whole image rather than a
+ * getSubimage view of the tile, so shapes are drawn at exactly the same device coordinates as when painting the
+ * image in one pass; a view would shift every shape by the tile origin and change how Java2D rounds fractional
+ * positions.
+ * <p>
+ * Shapes are drawn in the same order and with the same calls as AbstractWindow.paintShapes, and the result matches
+ * single-threaded painting pixel for pixel, whatever the number of threads. Java2D fills circles and unrotated
+ * rectangles the same whatever the clip, but clips the edges of other polygons (rotated shapes, and the paths that
+ * batched rendering merges triangles into) before filling them, which can move a few edge pixels where a tile
+ * border cuts through them. Such shapes that cross a tile border are therefore drawn on their own, on the whole
+ * image, between the parallel passes over the tiles that draw the shapes before and after them. Scenes of many
+ * rotated shapes and triangles get less parallel; larger tiles help. Static layers are drawn from their shapes
+ * rather than from their cached image, and the sprite cache of the window is not used, as it is not safe to share
+ * between threads.
+ * <p>
+ * The shapes are read by the workers while the image is drawn, so render must be called by the thread that owns
+ * the shapes (see AbstractWindow.applyPendingChanges), and custom Shape implementations must be safe to draw from
+ * several threads at once.
+ */
+public class TileRenderer {
+    private static final int CULL_MARGIN = 1; // Shapes are drawn at truncated pixel positions, so allow one pixel
+
+    private final int tileSize; // Width and height of a tile in pixels
+    private ForkJoinPool pool = ForkJoinPool.commonPool(); // Draws the tiles
+    private final List<Shape> below = new ArrayList<>(); // Reused by render to collect the shapes to draw
+    private final List<Shape> own = new ArrayList<>();
+    private final List<Shape> above = new ArrayList<>();
+
+    /**
+     * Constructor to create a renderer with tiles of 256 by 256 pixels.
+     */
+    public TileRenderer() {
+        this(256);
+    }
+
+    /**
+     * Constructor to create a renderer with tiles of the given size.
+     *
+     * @param tileSize the width and height of a tile in pixels, must be positive
+     */
+    public TileRenderer(int tileSize) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("Tile size must be positive: " + tileSize);
+        }
+        this.tileSize = tileSize;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Sets the pool the tiles are drawn on. The common pool is used by default.
+     *
+     * @param pool the pool to draw the tiles on
+     */
+    public void setPool(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("Pool must not be null");
+        }
+        this.pool = pool;
+    }
+
+    /**
+     * Draws the shapes of a window into an image, after filling it with the background color of the window when
+     * the window is opaque. The whole image is drawn, whatever the size of the window. Returns when all tiles are
+     * done.
+     *
+     * @param window the window whose shapes to draw
+     * @param target the image to draw into
+     */
+    public void render(AbstractWindow window, BufferedImage target) {
+        below.clear();
+        own.clear();
+        above.clear();
+        window.collectShapes(below, own, above);
+        boolean batched = window.isBatchedRendering();
+        int count = below.size() + (batched ? 0 : own.size()) + above.size();
+        Shape[] drawn = new Shape[count];
+        int i = 0;
+        for (Shape shape : below) {
+            drawn[i++] = shape;
+        }
+        RenderQueue queue = null;
+        if (batched) {
+            // One queue sorted up front, so the tiles and the passes in between draw ranges of the same order
+            queue = new RenderQueue();
+            for (Shape shape : own) {
+                shape.submit(queue);
+            }
+            queue.sort();
+        } else {
+            for (Shape shape : own) {
+                drawn[i++] = shape;
+            }
+        }
+        for (Shape shape : above) {
+            drawn[i++] = shape;
+        }
+        int ownFrom = below.size();
+        int ownCount = batched ? queue.size() : own.size();
+        below.clear();
+        own.clear();
+        above.clear();
+
+        // Bounds are read once here instead of once per tile
+        double[] minX = new double[count];
+        double[] minY = new double[count];
+        double[] maxX = new double[count];
+        double[] maxY = new double[count];
+        for (i = 0; i < count; i++) {
+            Rectangle2D bounds = drawn[i].getBounds();
+            if (bounds == null) {
+                minX[i] = minY[i] = Double.NEGATIVE_INFINITY; // Unknown bounds, always drawn
+                maxX[i] = maxY[i] = Double.POSITIVE_INFINITY;
+            } else {
+                minX[i] = bounds.getMinX();
+                minY[i] = bounds.getMinY();
+                maxX[i] = bounds.getMaxX();
+                maxY[i] = bounds.getMaxY();
+            }
+        }
+
+        int columns = (target.getWidth() + tileSize - 1) / tileSize;
+        int rows = (target.getHeight() + tileSize - 1) / tileSize;
+        Color background = window.isOpaque() ? window.getBackground() : null;
+        Job job = new Job(target, columns, drawn, minX, minY, maxX, maxY, ownFrom, ownCount, queue, background);
+        if (columns == 0 || rows == 0) {
+            return;
+        }
+
+        // Steps are the shapes, or the fills of the queue for batched own shapes, in drawing order
+        int steps = batched ? count + ownCount : count;
+        boolean[] alone = new boolean[steps];
+        double[] box = new double[4];
+        for (int step = 0; step < steps; ) {
+            int end = step + 1;
+            boolean exact;
+            if (queue != null && step >= ownFrom && step < ownFrom + ownCount) {
+                end = ownFrom + queue.fillEnd(step - ownFrom); // A merged fill is never split between passes
+                exact = queue.isClipExact(step - ownFrom, end - ownFrom);
+                queue.getBounds(step - ownFrom, end - ownFrom, box);
+            } else {
+                int shape = job.shapeIndex(step);
+                exact = isClipExact(drawn[shape]);
+                box[0] = minX[shape];
+                box[1] = minY[shape];
+                box[2] = maxX[shape];
+                box[3] = maxY[shape];
+            }
+            if (!exact && crossesTiles(box, columns, rows)) {
+                Arrays.fill(alone, step, end, true);
+            }
+            step = end;
+        }
+
+        // Alternate parallel passes over the tiles with the steps drawn alone, the first pass filling the background
+        int from = 0;
+        boolean clear = background != null;
+        do {
+            int to = from;
+            while (to < steps && !alone[to]) {
+                to++;
+            }
+            if (to > from || clear) {
+                pool.invoke(new TileTask(job, from, to, clear, 0, columns * rows));
+                clear = false;
+            }
+            from = to;
+            while (to < steps && alone[to]) {
+                to++;
+            }
+            if (to > from) {
+                Graphics2D g = target.createGraphics();
+                try {
+                    g.setClip(0, 0, target.getWidth(), target.getHeight());
+                    drawSteps(g, job, from, to);
+                } finally {
+                    g.dispose();
+                }
+            }
+            from = to;
+        } while (from < steps);
+    }
+
+    /**
+     * Returns whether Java2D fills the same pixels for a shape whatever the clip. Circles and unrotated rectangles
+     * and triangles are filled by their draw methods with whole pixel or axis aligned edges.
+     */
+    private static boolean isClipExact(Shape shape) {
+        if (shape instanceof Circle) {
+            return true;
+        }
+        return (shape instanceof Rectangle || shape instanceof Triangle) && ((AbstractShape) shape).getRotation() == 0;
+    }
+
+    /**
+     * Returns whether the area minX, minY, maxX, maxY in box, widened like the culling of the tiles, touches more
+     * than one tile of the image.
+     */
+    private boolean crossesTiles(double[] box, int columns, int rows) {
+        return tile(box[0] - CULL_MARGIN, columns) != tile(box[2] + CULL_MARGIN, columns)
+                || tile(box[1] - CULL_MARGIN, rows) != tile(box[3] + CULL_MARGIN, rows);
+    }
+
+    private int tile(double position, int tiles) {
+        return (int) Math.max(0, Math.min(tiles - 1, Math.floor(position / tileSize)));
+    }
+
+    /**
+     * The shapes and settings of one call to render, shared read-only by all tiles. The own shapes of a batched
+     * window are in the sorted queue rather than in shapes; a step is one of the shapes or one command of the queue.
+     */
+    private record Job(BufferedImage target, int columns, Shape[] shapes, double[] minX, double[] minY,
+                     double[] maxX, double[] maxY, int ownFrom, int ownCount, RenderQueue queue, Color background) {
+
+        /**
+         * Returns the index in shapes of the shape of a step that is not in the queue.
+         */
+        int shapeIndex(int step) {
+            return queue != null && step >= ownFrom + ownCount ? step - ownCount : step;
+        }
+    }
+
+    /**
+     * Draws the steps from (inclusive) to (exclusive) on the tiles tileFrom (inclusive) to tileTo (exclusive),
+     * splitting the range of tiles in two until a single tile is left.
+     */
+    private final class TileTask extends RecursiveAction {
+        private final Job job;
+        private final int from;
+        private final int to;
+        private final boolean clear; // Whether to fill the tiles with the background color first
+        private final int tileFrom;
+        private final int tileTo;
+
+        TileTask(Job job, int from, int to, boolean clear, int tileFrom, int tileTo) {
+            this.job = job;
+            this.from = from;
+            this.to = to;
+            this.clear = clear;
+            this.tileFrom = tileFrom;
+            this.tileTo = tileTo;
+        }
+
+        @Override
+        protected void compute() {
+            if (tileTo - tileFrom == 1) {
+                drawTile(job, tileFrom, from, to, clear);
+                return;
+            }
+            int middle = (tileFrom + tileTo) >>> 1;
+            invokeAll(new TileTask(job, from, to, clear, tileFrom, middle),
+                    new TileTask(job, from, to, clear, middle, tileTo));
+        }
+    }
+
+    private void drawTile(Job job, int tile, int from, int to, boolean clear) {
+        BufferedImage target = job.target();
+        int x = (tile % job.columns()) * tileSize;
+        int y = (tile / job.columns()) * tileSize;
+        int width = Math.min(tileSize, target.getWidth() - x);
+        int height = Math.min(tileSize, target.getHeight() - y);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.clipRect(x, y, width, height);
+            if (clear) {
+                g.setColor(job.background());
+                g.fillRect(x, y, width, height);
+            }
+            drawSteps(g, job, from, to);
+        } finally {
+            g.dispose();
+        }
+    }
+
+    /**
+     * Draws the steps from (inclusive) to (exclusive) whose shapes touch the clip area of g, like AbstractWindow
+     * does: the own shapes of a batched window through the queue, all other shapes with their draw methods.
+     */
+    private static void drawSteps(Graphics2D g, Job job, int from, int to) {
+        if (from >= to) {
+            return;
+        }
+        java.awt.Rectangle clip = g.getClipBounds();
+        double left = clip.x - CULL_MARGIN;
+        double top = clip.y - CULL_MARGIN;
+        double right = clip.x + clip.width + CULL_MARGIN;
+        double bottom = clip.y + clip.height + CULL_MARGIN;
+        RenderQueue queue = job.queue();
+        int ownFrom = job.ownFrom();
+        int ownTo = ownFrom + job.ownCount();
+        if (queue == null || to <= ownFrom || from >= ownTo) {
+            drawShapes(g, job, job.shapeIndex(from), job.shapeIndex(to - 1) + 1, left, top, right, bottom);
+            return;
+        }
+        drawShapes(g, job, from, ownFrom, left, top, right, bottom);
+        int queueTo = Math.min(to, ownTo) - ownFrom;
+        queue.draw(g, Math.max(from, ownFrom) - ownFrom, queueTo, new Path2D.Double(Path2D.WIND_NON_ZERO));
+        drawShapes(g, job, ownFrom, ownFrom + Math.max(0, to - ownTo), left, top, right, bottom);
+    }
+
+    /**
+     * Draws the shapes from (inclusive) to (exclusive) that touch the given area.
+     */
+    private static void drawShapes(Graphics2D g, Job job, int from, int to, double left, double top,
+                                   double right, double bottom) {
+        Shape[] shapes = job.shapes();
+        double[] minX = job.minX();
+        double[] minY = job.minY();
+        double[] maxX = job.maxX();
+        double[] maxY = job.maxY();
+        for (int i = from; i < to; i++) {
+            if (minX[i] < right && maxX[i] > left && minY[i] < bottom && maxY[i] > top) {
+                shapes[i].draw(g);
+            }
+        }
+    }
+}
@@ -2,8 +2,12 @@ package drawpad;
 
 import java.awt.*;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
 
 public class Triangle extends AbstractShape {
+    private static final double SQRT_3 = Math.sqrt(3);
+    private static final double HEIGHT_FACTOR = SQRT_3 / 2; // Height of an equilateral triangle per unit of base
+
     private double base;
 
     public Triangle(Color color, double base, double pos_x, double pos_y, double rotation) {
@@ -33,25 +37,59 @@ public class Triangle extends AbstractShape {
     @Override
     public void draw(Graphics g) {
         Graphics2D g2d = (Graphics2D) g;
-        g2d.setColor(getColor());
-
         AffineTransform oldTransform = g2d.getTransform();
+        g2d.transform(getLocalTransform());
+        drawLocal(g2d);
+        g2d.setTransform(oldTransform);
+    }
 
+    /**
+     * Calculates the transform that moves the triangle to its position and rotates it around the center of its
+     * unrotated bounding box.
+     *
+     * @param transform the transform to store the result in
+     */
+    @Override
+    protected void computeLocalTransform(AffineTransform transform) {
         // Calculate the center of the triangle
         double centerX = getPos_x() + base / 2;
-        double centerY = getPos_y() + (Math.sqrt(3) * base) / 4; // Height of an equilateral triangle = (sqrt(3) * sideLength) / 2
+        double centerY = getPos_y() + (SQRT_3 * base) / 4; // Height of an equilateral triangle = (sqrt(3) * sideLength) / 2
 
         // Translate to the center, rotate, and translate back
-        g2d.translate(centerX, centerY);
-        g2d.rotate(super.getRotation());
-        g2d.translate(-base / 2, -(Math.sqrt(3) * base) / 4);
+        transform.translate(centerX, centerY);
+        transform.rotate(getRotation());
+        transform.translate(-base / 2, -(SQRT_3 * base) / 4);
+    }
+
+    /**
+     * Draws the unrotated equilateral triangle with the top-left corner of its bounding box at the origin, using
+     * the cached outline.
+     *
+     * @param g the Graphics object on which to draw the triangle
+     */
+    @Override
+    protected void drawLocal(Graphics2D g) {
+        g.setColor(getColor());
+        Polygon polygon = (Polygon) getLocalOutline();
+        g.fillPolygon(polygon.xpoints, polygon.ypoints, polygon.npoints);
+    }
 
-        // Draw the rotated equilateral triangle
+    /**
+     * Returns the unrotated triangle with the top-left corner of its bounding box at the origin, with its
+     * corners rounded down to whole pixels like they are drawn.
+     *
+     * @return the outline of the triangle
+     */
+    @Override
+    protected java.awt.Shape computeLocalOutline() {
         int[] xPoints = {0, (int) base, (int) base / 2};
-        int[] yPoints = {0, 0, (int) (Math.sqrt(3) * base) / 2};
-        g2d.fillPolygon(xPoints, yPoints, 3);
+        int[] yPoints = {0, 0, (int) (SQRT_3 * base) / 2};
+        return new Polygon(xPoints, yPoints, 3);
+    }
 
-        g2d.setTransform(oldTransform);
+    @Override
+    public void submit(RenderQueue queue) {
+        queue.addTriangle(getZOrder(), getColor(), getPos_x(), getPos_y(), base, getRotation(), getBounds());
     }
 
     public double getBase() {
@@ -59,12 +97,42 @@ public class Triangle extends AbstractShape {
     }
 
     public void setBase(double base) {
+        fireShapeWillChange();
         this.base = base;
+        fireShapeChanged();
     }
 
     @Override
     public void resize(double factor) {
+        fireShapeWillChange();
         base *= factor;
+        fireShapeChanged();
+    }
+
+    /**
+     * Calculates the axis-aligned bounding box of the triangle after it has been rotated around
+     * the center of its unrotated bounding box.
+     *
+     * @param bounds the rectangle to store the bounding box in
+     */
+    @Override
+    protected void computeBounds(Rectangle2D.Double bounds) {
+        double halfBase = base / 2;
+        double halfHeight = base * HEIGHT_FACTOR / 2;
+        double cos = Math.cos(getRotation());
+        double sin = Math.sin(getRotation());
+
+        // Vertices relative to the center: (-halfBase, -halfHeight), (halfBase, -halfHeight), (0, halfHeight)
+        double x0 = -halfBase * cos + halfHeight * sin, y0 = -halfBase * sin - halfHeight * cos;
+        double x1 = halfBase * cos + halfHeight * sin, y1 = halfBase * sin - halfHeight * cos;
+        double x2 = -halfHeight * sin, y2 = halfHeight * cos;
+        double minX = Math.min(x0, Math.min(x1, x2));
+        double minY = Math.min(y0, Math.min(y1, y2));
+        double maxX = Math.max(x0, Math.max(x1, x2));
+        double maxY = Math.max(y0, Math.max(y1, y2));
+        double centerX = getPos_x() + halfBase;
+        double centerY = getPos_y() + halfHeight;
+        bounds.setRect(centerX + minX, centerY + minY, maxX - minX, maxY - minY);
     }
 
     @Override
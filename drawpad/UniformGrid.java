@@ -0,0 +1,323 @@
+package drawpad;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * This class is a spatial index that divides the plane into square cells of a fixed size.
+ * Every shape is stored in each cell its bounding box overlaps, so it works best when most shapes are
+ * about the size of a cell or smaller. Cells are created on demand, so the grid has no fixed extent.
+ */
+public class UniformGrid implements SpatialIndex {
+    private final double cellSize; // The width and height of a cell
+    private final Map<Long, List<Entry>> cells; // Occupied cells, keyed by packed cell coordinates
+    private final Map<AbstractShape, Entry> entries; // The entry of every indexed shape
+    private int stamp; // Incremented by every query, used to report shapes that span several cells only once
+
+    // The range of cells that have ever been occupied since the last clear
+    private int minCellX = Integer.MAX_VALUE;
+    private int minCellY = Integer.MAX_VALUE;
+    private int maxCellX = Integer.MIN_VALUE;
+    private int maxCellY = Integer.MIN_VALUE;
+
+    /**
+     * Constructor to create a UniformGrid with the specified cell size.
+     *
+     * @param cellSize the width and height of a cell, must be positive
+     */
+    public UniformGrid(double cellSize) {
+        if (!(cellSize > 0)) {
+            throw new IllegalArgumentException("cellSize must be positive: " + cellSize);
+        }
+        this.cellSize = cellSize;
+        this.cells = new HashMap<>();
+        this.entries = new IdentityHashMap<>();
+    }
+
+    /**
+     * Constructor to create a UniformGrid with a cell size of 64.
+     */
+    public UniformGrid() {
+        this(64);
+    }
+
+    /**
+     * Returns the width and height of a cell.
+     *
+     * @return the cell size
+     */
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    @Override
+    public void insert(AbstractShape shape) {
+        if (entries.containsKey(shape)) {
+            update(shape);
+            return;
+        }
+        Entry entry = new Entry(shape);
+        entry.setBounds(shape.getBounds());
+        entries.put(shape, entry);
+        addToCells(entry);
+    }
+
+    @Override
+    public boolean remove(AbstractShape shape) {
+        Entry entry = entries.remove(shape);
+        if (entry == null) {
+            return false;
+        }
+        removeFromCells(entry);
+        return true;
+    }
+
+    @Override
+    public void update(AbstractShape shape) {
+        Entry entry = entries.get(shape);
+        if (entry == null) {
+            return;
+        }
+        Rectangle2D bounds = shape.getBounds();
+        int cellMinX = cell(bounds.getMinX());
+        int cellMinY = cell(bounds.getMinY());
+        int cellMaxX = cell(bounds.getMaxX());
+        int cellMaxY = cell(bounds.getMaxY());
+        if (cellMinX == entry.cellMinX && cellMinY == entry.cellMinY
+                && cellMaxX == entry.cellMaxX && cellMaxY == entry.cellMaxY) {
+            // Still covers the same cells, only the stored box has to change
+            entry.setBounds(bounds);
+            return;
+        }
+        removeFromCells(entry);
+        entry.setBounds(bounds);
+        addToCells(entry);
+    }
+
+    @Override
+    public void clear() {
+        cells.clear();
+        entries.clear();
+        minCellX = Integer.MAX_VALUE;
+        minCellY = Integer.MAX_VALUE;
+        maxCellX = Integer.MIN_VALUE;
+        maxCellY = Integer.MIN_VALUE;
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public List<AbstractShape> queryRegion(double x, double y, double width, double height, List<AbstractShape> result) {
+        double maxX = x + width;
+        double maxY = y + height;
+        int stamp = ++this.stamp;
+        int cellMinX = Math.max(cell(x), minCellX);
+        int cellMinY = Math.max(cell(y), minCellY);
+        int cellMaxX = Math.min(cell(maxX), maxCellX);
+        int cellMaxY = Math.min(cell(maxY), maxCellY);
+        if (cellMinX > cellMaxX || cellMinY > cellMaxY) {
+            return result;
+        }
+
+        long cellCount = (long) (cellMaxX - cellMinX + 1) * (cellMaxY - cellMinY + 1);
+        if (cellCount > cells.size()) {
+            // The region covers more cells than are occupied, so visiting the occupied ones is cheaper
+            for (List<Entry> cell : cells.values()) {
+                collect(cell, x, y, maxX, maxY, stamp, result);
+            }
+            return result;
+        }
+        for (int cx = cellMinX; cx <= cellMaxX; cx++) {
+            for (int cy = cellMinY; cy <= cellMaxY; cy++) {
+                List<Entry> cell = cells.get(key(cx, cy));
+                if (cell != null) {
+                    collect(cell, x, y, maxX, maxY, stamp, result);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<AbstractShape> queryPoint(double x, double y, List<AbstractShape> result) {
+        List<Entry> cell = cells.get(key(cell(x), cell(y)));
+        if (cell != null) {
+            for (Entry entry : cell) {
+                if (entry.contains(x, y)) {
+                    result.add(entry.shape);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<AbstractShape> nearest(double x, double y, int k, List<AbstractShape> result) {
+        if (k <= 0 || entries.isEmpty()) {
+            return result;
+        }
+        int stamp = ++this.stamp;
+        PriorityQueue<Entry> best = new PriorityQueue<>(k, (a, b) -> Double.compare(b.distanceSq, a.distanceSq));
+        int cx = cell(x);
+        int cy = cell(y);
+
+        // Rings closer than the occupied cells are empty, so start at the first ring that can hold a shape
+        int dx = Math.max(Math.max(minCellX - cx, cx - maxCellX), 0);
+        int dy = Math.max(Math.max(minCellY - cy, cy - maxCellY), 0);
+        for (int r = Math.max(dx, dy); ; r++) {
+            scanRing(cx, cy, r, x, y, k, stamp, best);
+
+            // Every cell in a later ring is at least r cells away from the point
+            double reach = r * cellSize;
+            if (best.size() == k && best.peek().distanceSq <= reach * reach) {
+                break;
+            }
+            if (cx - r <= minCellX && cx + r >= maxCellX && cy - r <= minCellY && cy + r >= maxCellY) {
+                break;
+            }
+        }
+
+        Entry[] sorted = new Entry[best.size()];
+        for (int i = sorted.length - 1; i >= 0; i--) {
+            sorted[i] = best.poll();
+        }
+        for (Entry entry : sorted) {
+            result.add(entry.shape);
+        }
+        return result;
+    }
+
+    /**
+     * Offers every shape in the ring of cells at Chebyshev distance r from (cx, cy) to the k-best queue.
+     */
+    private void scanRing(int cx, int cy, int r, double x, double y, int k, int stamp, PriorityQueue<Entry> best) {
+        int fromX = Math.max(cx - r, minCellX);
+        int toX = Math.min(cx + r, maxCellX);
+        int fromY = Math.max(cy - r + 1, minCellY);
+        int toY = Math.min(cy + r - 1, maxCellY);
+        if (cy - r >= minCellY && cy - r <= maxCellY) {
+            for (int i = fromX; i <= toX; i++) {
+                offer(i, cy - r, x, y, k, stamp, best);
+            }
+        }
+        if (r > 0 && cy + r >= minCellY && cy + r <= maxCellY) {
+            for (int i = fromX; i <= toX; i++) {
+                offer(i, cy + r, x, y, k, stamp, best);
+            }
+        }
+        if (cx - r >= minCellX && cx - r <= maxCellX) {
+            for (int j = fromY; j <= toY; j++) {
+                offer(cx - r, j, x, y, k, stamp, best);
+            }
+        }
+        if (r > 0 && cx + r >= minCellX && cx + r <= maxCellX) {
+            for (int j = fromY; j <= toY; j++) {
+                offer(cx + r, j, x, y, k, stamp, best);
+            }
+        }
+    }
+
+    private void offer(int cx, int cy, double x, double y, int k, int stamp, PriorityQueue<Entry> best) {
+        List<Entry> cell = cells.get(key(cx, cy));
+        if (cell == null) {
+            return;
+        }
+        for (Entry entry : cell) {
+            if (entry.stamp == stamp) {
+                continue;
+            }
+            entry.stamp = stamp;
+            entry.distanceSq = SpatialIndex.distanceSq(x, y, entry.minX, entry.minY, entry.maxX, entry.maxY);
+            if (best.size() < k) {
+                best.add(entry);
+            } else if (entry.distanceSq < best.peek().distanceSq) {
+                best.poll();
+                best.add(entry);
+            }
+        }
+    }
+
+    private static void collect(List<Entry> cell, double minX, double minY, double maxX, double maxY,
+                                int stamp, List<AbstractShape> result) {
+        for (Entry entry : cell) {
+            if (entry.stamp != stamp && entry.intersects(minX, minY, maxX, maxY)) {
+                entry.stamp = stamp;
+                result.add(entry.shape);
+            }
+        }
+    }
+
+    private void addToCells(Entry entry) {
+        for (int cx = entry.cellMinX; cx <= entry.cellMaxX; cx++) {
+            for (int cy = entry.cellMinY; cy <= entry.cellMaxY; cy++) {
+                cells.computeIfAbsent(key(cx, cy), key -> new ArrayList<>(4)).add(entry);
+            }
+        }
+        minCellX = Math.min(minCellX, entry.cellMinX);
+        minCellY = Math.min(minCellY, entry.cellMinY);
+        maxCellX = Math.max(maxCellX, entry.cellMaxX);
+        maxCellY = Math.max(maxCellY, entry.cellMaxY);
+    }
+
+    private void removeFromCells(Entry entry) {
+        for (int cx = entry.cellMinX; cx <= entry.cellMaxX; cx++) {
+            for (int cy = entry.cellMinY; cy <= entry.cellMaxY; cy++) {
+                long key = key(cx, cy);
+                List<Entry> cell = cells.get(key);
+                if (cell != null && cell.remove(entry) && cell.isEmpty()) {
+                    cells.remove(key);
+                }
+            }
+        }
+    }
+
+    private int cell(double coordinate) {
+        return (int) Math.floor(coordinate / cellSize);
+    }
+
+    private static long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+
+    /**
+     * An indexed shape together with the bounds and cell range it was filed under.
+     */
+    private final class Entry {
+        final AbstractShape shape;
+        double minX, minY, maxX, maxY;
+        int cellMinX, cellMinY, cellMaxX, cellMaxY;
+        int stamp;
+        double distanceSq; // Scratch value used by nearest()
+
+        Entry(AbstractShape shape) {
+            this.shape = shape;
+        }
+
+        void setBounds(Rectangle2D bounds) {
+            minX = bounds.getMinX();
+            minY = bounds.getMinY();
+            maxX = bounds.getMaxX();
+            maxY = bounds.getMaxY();
+            cellMinX = cell(minX);
+            cellMinY = cell(minY);
+            cellMaxX = cell(maxX);
+            cellMaxY = cell(maxY);
+        }
+
+        boolean intersects(double minX, double minY, double maxX, double maxY) {
+            return this.minX <= maxX && this.maxX >= minX && this.minY <= maxY && this.maxY >= minY;
+        }
+
+        boolean contains(double x, double y) {
+            return x >= minX && x <= maxX && y >= minY && y <= maxY;
+        }
+    }
+}
@@ -4,7 +4,10 @@ import java.util.Objects;
 
 /**
  * Represents a 2D vector with x and y components.
- * This class is immutable and thread-safe.
+ * Methods that return a new Vector2D leave their operands unchanged. The in-place methods (named ...InPlace,
+ * set, rotate, project and lerp) modify this vector and the ...Into methods write their result into a
+ * destination vector, so per-frame math can be done without allocating. The destination may be one of the
+ * operands. Instances are mutable and not thread-safe.
  */
 public final class Vector2D {
     public double x;
@@ -42,6 +45,139 @@ public final class Vector2D {
         return new Vector2D(x + other.x, y + other.y);
     }
 
+    /**
+     * Sets the components of this vector.
+     *
+     * @param x the new x component
+     * @param y the new y component
+     * @return this vector
+     */
+    public Vector2D set(double x, double y) {
+        this.x = x;
+        this.y = y;
+        return this;
+    }
+
+    /**
+     * Copies the components of another vector into this vector.
+     *
+     * @param other the vector to copy
+     * @return this vector
+     */
+    public Vector2D set(Vector2D other) {
+        return set(other.x, other.y);
+    }
+
+    /**
+     * Adds another vector to this vector.
+     *
+     * @param other the vector to add
+     * @return this vector
+     */
+    public Vector2D addInPlace(Vector2D other) {
+        return set(x + other.x, y + other.y);
+    }
+
+    /**
+     * Adds the given components to this vector.
+     *
+     * @param dx the value to add to the x component
+     * @param dy the value to add to the y component
+     * @return this vector
+     */
+    public Vector2D addInPlace(double dx, double dy) {
+        return set(x + dx, y + dy);
+    }
+
+    /**
+     * Adds another vector multiplied by a scalar to this vector, as in position += velocity * dt.
+     *
+     * @param other  the vector to add
+     * @param scalar the factor to multiply the other vector by
+     * @return this vector
+     */
+    public Vector2D addScaledInPlace(Vector2D other, double scalar) {
+        return set(x + other.x * scalar, y + other.y * scalar);
+    }
+
+    /**
+     * Adds another vector to this vector and stores the result in dst.
+     *
+     * @param other the vector to add
+     * @param dst   the vector to store the result in
+     * @return dst
+     */
+    public Vector2D addInto(Vector2D other, Vector2D dst) {
+        return dst.set(x + other.x, y + other.y);
+    }
+
+    /**
+     * Subtracts another vector from this vector.
+     *
+     * @param other the vector to subtract
+     * @return this vector
+     */
+    public Vector2D subtractInPlace(Vector2D other) {
+        return set(x - other.x, y - other.y);
+    }
+
+    /**
+     * Subtracts another vector from this vector and stores the result in dst.
+     *
+     * @param other the vector to subtract
+     * @param dst   the vector to store the result in
+     * @return dst
+     */
+    public Vector2D subtractInto(Vector2D other, Vector2D dst) {
+        return dst.set(x - other.x, y - other.y);
+    }
+
+    /**
+     * Multiplies this vector by a scalar value.
+     *
+     * @param scalar the scalar value
+     * @return this vector
+     */
+    public Vector2D scaleInPlace(double scalar) {
+        return set(x * scalar, y * scalar);
+    }
+
+    /**
+     * Multiplies this vector by a scalar value and stores the result in dst.
+     *
+     * @param scalar the scalar value
+     * @param dst    the vector to store the result in
+     * @return dst
+     */
+    public Vector2D scaleInto(double scalar, Vector2D dst) {
+        return dst.set(x * scalar, y * scalar);
+    }
+
+    /**
+     * Normalizes this vector so it has a magnitude of 1. A zero-length vector is left unchanged
+     * instead of becoming NaN.
+     *
+     * @return this vector
+     */
+    public Vector2D normalizeInPlace() {
+        return normalizeInto(this);
+    }
+
+    /**
+     * Stores the normalized version of this vector in dst. If this vector has zero length, dst is set to
+     * the zero vector instead of NaN.
+     *
+     * @param dst the vector to store the result in
+     * @return dst
+     */
+    public Vector2D normalizeInto(Vector2D dst) {
+        double mag = magnitude();
+        if (mag == 0) {
+            return dst.set(0, 0);
+        }
+        return dst.set(x / mag, y / mag);
+    }
+
     /**
      * Adds two vectors and returns the result as a new Vector2D instance.
      *
@@ -84,6 +220,15 @@ public final class Vector2D {
         return Math.sqrt(x * x + y * y);
     }
 
+    /**
+     * Returns the squared magnitude of the vector, which avoids the square root when only comparing lengths.
+     *
+     * @return the squared magnitude of the vector
+     */
+    public double magnitudeSquared() {
+        return x * x + y * y;
+    }
+
     /**
      * Returns the angle (in radians) of the vector.
      *
@@ -112,10 +257,22 @@ public final class Vector2D {
      * @param angle the angle of rotation in radians
      */
     public void rotate(double angle) {
+        rotateInto(angle, this);
+    }
+
+    /**
+     * Rotates this vector by a given angle in radians and stores the result in dst.
+     *
+     * @param angle the angle of rotation in radians
+     * @param dst   the vector to store the result in
+     * @return dst
+     */
+    public Vector2D rotateInto(double angle, Vector2D dst) {
         double cos = Math.cos(angle);
         double sin = Math.sin(angle);
-        this.x = this.x * cos - this.y * sin;
-        this.y = this.x * sin + this.y * cos;
+        double rx = x * cos - y * sin;
+        double ry = x * sin + y * cos;
+        return dst.set(rx, ry);
     }
 
     /**
@@ -137,11 +294,24 @@ public final class Vector2D {
      * @param v2 the vector to project onto
      */
     public void project(Vector2D v2) {
-        double dot = dotProduct(new Vector2D(x, y), v2);
-        double mag2 = v2.magnitude() * v2.magnitude();
-        Vector2D v = scalarMultiply(v2, dot / mag2);
-        this.x = v.x;
-        this.y = v.y;
+        projectInto(v2, this);
+    }
+
+    /**
+     * Projects this vector onto another vector and stores the result in dst.
+     * Projecting onto a zero-length vector gives the zero vector.
+     *
+     * @param v2  the vector to project onto
+     * @param dst the vector to store the result in
+     * @return dst
+     */
+    public Vector2D projectInto(Vector2D v2, Vector2D dst) {
+        double mag2 = v2.magnitudeSquared();
+        if (mag2 == 0) {
+            return dst.set(0, 0);
+        }
+        double scale = (x * v2.x + y * v2.y) / mag2;
+        return dst.set(v2.x * scale, v2.y * scale);
     }
 
     /**
@@ -164,12 +334,19 @@ public final class Vector2D {
      * @param t  the interpolation factor (between 0 and 1)
      */
     public void lerp(Vector2D v2, double t) {
-        Vector2D v = add(
-                scalarMultiply(new Vector2D(x, y), 1 - t),
-                scalarMultiply(v2, t)
-        );
-        this.x = v.x;
-        this.y = v.y;
+        lerpInto(v2, t, this);
+    }
+
+    /**
+     * Performs linear interpolation between this vector and another vector and stores the result in dst.
+     *
+     * @param v2  the second vector
+     * @param t   the interpolation factor (between 0 and 1)
+     * @param dst the vector to store the result in
+     * @return dst
+     */
+    public Vector2D lerpInto(Vector2D v2, double t, Vector2D dst) {
+        return dst.set(x * (1 - t) + v2.x * t, y * (1 - t) + v2.y * t);
     }
 
     /**
@@ -207,6 +384,28 @@ public final class Vector2D {
     }
 
 
+    /**
+     * Clamps the magnitude of this vector between a minimum and maximum value.
+     * A zero-length vector is left unchanged, since it has no direction to scale along.
+     *
+     * @param min the minimum magnitude
+     * @param max the maximum magnitude
+     * @return this vector
+     */
+    public Vector2D clampInPlace(double min, double max) {
+        double mag = magnitude();
+        if (mag == 0) {
+            return this;
+        }
+        if (mag > max) {
+            return scaleInPlace(max / mag);
+        }
+        if (mag < min) {
+            return scaleInPlace(min / mag);
+        }
+        return this;
+    }
+
     /**
      * Multiplies a vector by a scalar value and returns the result as a new
      * Vector2D instance.
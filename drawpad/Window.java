@@ -1,15 +1,43 @@
 package drawpad;
 
 import javax.swing.*;
+import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.IOException;
 
 public class Window extends AbstractWindow implements ActionListener {
-    private InputManager input = new InputManager();
+    private final InputManager input = new InputManager(); // Polled before every update
     private int with = 800;
     private int height = 800;
-    private int fps = 16; // 60 frames per sec
+    private int fps = 16; // Delay between two timer ticks in milliseconds, 16 gives about 60 updates per second
     private String title = "New Panel";
+    private LoopMode loopMode = LoopMode.SWING_TIMER; // What drives update()
+    private final GameLoop gameLoop = new GameLoop(new GameLoopListener() { // Used in LoopMode.FIXED_STEP
+        @Override
+        public void tick(double dt) {
+            step(dt);
+        }
+
+        @Override
+        public void render(double alpha) {
+            interpolationAlpha = alpha;
+            Window.this.render(alpha);
+        }
+    });
+    private volatile double interpolationAlpha; // The alpha passed to the last render call
+    private volatile double deltaTime = fps / 1000.0; // Length of the current update step in seconds
+    private RenderMode renderMode = RenderMode.PASSIVE; // How frames get onto the screen
+    private volatile ActiveRenderer activeRenderer; // Draws the frames when the render mode is not PASSIVE
+    private long lastTick; // System.nanoTime of the last timer tick, used to detect merged ticks
+
+    /**
+     * Default constructor. The window repaints the shapes that changed once per frame, after update() has run,
+     * so automatic repainting is turned off.
+     */
+    public Window() {
+        setAutoRepaint(false);
+    }
 
     public void start() {
 
@@ -19,29 +47,145 @@ public class Window extends AbstractWindow implements ActionListener {
 
     }
 
+    /**
+     * Called by the game loop in LoopMode.FIXED_STEP after the updates of a frame have run, at up to the
+     * render rate. The default implementation draws a frame, either by requesting a repaint or, when an active
+     * render mode is set, by drawing and showing it directly; override it to do more before the frame is drawn.
+     *
+     * @param alpha how far the current time lies between the last update and the next one, between 0 and 1
+     */
+    public void render(double alpha) {
+        renderFrame();
+    }
+
+    /**
+     * Draws and shows a frame right away when an active render mode is set, otherwise repaints the area changed
+     * since the last frame. With snapshot rendering enabled, a snapshot of the shapes is published first.
+     */
+    public void renderFrame() {
+        if (isSnapshotRendering()) {
+            publishSnapshot();
+        }
+        ActiveRenderer renderer = activeRenderer;
+        if (renderer != null) {
+            clearDirtyRegion(); // The whole frame is drawn anyway
+            renderer.renderFrame();
+        } else {
+            repaintDirtyRegion();
+        }
+    }
+
     //this is a method which gets updated 60 times in a second
     @Override
     public void actionPerformed(ActionEvent e) {
+        FrameMetrics metrics = getFrameMetrics();
+        if (metrics != null) {
+            long now = System.nanoTime();
+            if (lastTick != 0) {
+                metrics.recordTimerTick(now - lastTick, fps * 1_000_000L);
+            }
+            lastTick = now;
+        }
+        step(fps / 1000.0);
+        renderFrame();
+    }
+
+    /**
+     * Applies the shape changes made on other threads and runs one update of the given length, on the calling
+     * thread. Used by the timer, the game loop and HeadlessRunner.
+     */
+    void step(double dt) {
+        deltaTime = dt;
+        applyPendingChanges();
+        input.poll();
+        FrameMetrics metrics = getFrameMetrics();
+        if (metrics == null) {
+            update();
+            return;
+        }
+        long start = System.nanoTime();
+        long startBytes = FrameMetrics.currentThreadAllocatedBytes();
         update();
+        metrics.recordUpdate(System.nanoTime() - start, FrameMetrics.currentThreadAllocatedBytes() - startBytes);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        ActiveRenderer renderer = activeRenderer;
+        if (renderer == null) {
+            super.paintComponent(g);
+        } else if (renderer.getMode() == RenderMode.VOLATILE_IMAGE && !renderer.paintLastFrame(g)) {
+            super.paintComponent(g);
+        }
+        // In BUFFER_STRATEGY mode the canvas covers the panel, so there is nothing to paint here
     }
 
     private void createAndShowGUI() {
         start();
         JFrame frame = new JFrame(title);
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        if (renderMode != RenderMode.PASSIVE) {
+            ActiveRenderer renderer = new ActiveRenderer(this, renderMode);
+            renderer.install();
+            activeRenderer = renderer;
+        }
         frame.add(this);
         frame.setSize(with, height);
         frame.setVisible(true);
         // Set up key bindings for the DrawPadPanel
         input.setupKeyBindings(this);
-        Timer timer = new Timer(fps, this); // 60 frames per second
-        timer.start();
+        if (activeRenderer != null && activeRenderer.getCanvas() != null) {
+            input.addMouseSource(activeRenderer.getCanvas()); // The canvas covers the panel and gets its mouse events
+        }
+        if (loopMode == LoopMode.FIXED_STEP) {
+            // update() now runs on the loop thread instead of the event dispatch thread, so paint from snapshots
+            setSnapshotRendering(true);
+            publishSnapshot();
+            gameLoop.start(title + " game loop");
+        } else {
+            Timer timer = new Timer(fps, this); // 60 frames per second
+            timer.start();
+        }
     }
 
     public void invoke(){
         SwingUtilities.invokeLater(this::createAndShowGUI);
     }
 
+    /**
+     * Runs the window without a JFrame for the given number of frames on the calling thread, drawing every frame
+     * into an image that is passed to the sink. Works with java.awt.headless=true. Frames are drawn as fast as
+     * possible; use a HeadlessRunner directly for a fixed frame rate or to read the measured frame rate.
+     *
+     * @param frames the number of frames to run
+     * @param sink   receives the frames, or null to only run the updates and draw
+     * @return the runner, for reading the frame count and the frames per second
+     * @throws IOException if the sink fails
+     */
+    public HeadlessRunner invokeHeadless(long frames, FrameSink sink) throws IOException {
+        HeadlessRunner runner = new HeadlessRunner(this);
+        runner.setFrameSink(sink);
+        runner.run(frames);
+        return runner;
+    }
+
+    /**
+     * Stops the game loop started in LoopMode.FIXED_STEP.
+     */
+    public void stopLoop() {
+        gameLoop.stop();
+    }
+
+    /**
+     * Returns the input manager of the window, which is polled before every update() so its state can be read
+     * in update().
+     *
+     * @return the input manager
+     */
+    public InputManager getInput() {
+        return input;
+    }
+
     public String getTitle() {
         return title;
     }
@@ -66,11 +210,108 @@ public class Window extends AbstractWindow implements ActionListener {
         this.height = height;
     }
 
+    /**
+     * Returns the delay between two timer ticks in LoopMode.SWING_TIMER, in milliseconds.
+     *
+     * @return the timer delay in milliseconds
+     */
     public int getFps() {
         return fps;
     }
 
+    /**
+     * Sets the delay between two timer ticks in LoopMode.SWING_TIMER, in milliseconds.
+     * Despite its name this is not a rate; use setUpdateRate with LoopMode.FIXED_STEP to set a rate.
+     *
+     * @param fps the timer delay in milliseconds
+     */
     public void setFps(int fps) {
         this.fps = fps;
     }
-}
\ No newline at end of file
+
+    public LoopMode getLoopMode() {
+        return loopMode;
+    }
+
+    /**
+     * Sets what drives update(). Must be called before invoke().
+     *
+     * @param loopMode the loop mode
+     */
+    public void setLoopMode(LoopMode loopMode) {
+        this.loopMode = loopMode;
+    }
+
+    public RenderMode getRenderMode() {
+        return renderMode;
+    }
+
+    /**
+     * Sets how frames get onto the screen. Must be called before invoke(). The active modes are meant to be
+     * used with LoopMode.FIXED_STEP, where the loop thread draws each frame right after its updates.
+     *
+     * @param renderMode the render mode
+     */
+    public void setRenderMode(RenderMode renderMode) {
+        this.renderMode = renderMode;
+    }
+
+    public double getUpdateRate() {
+        return gameLoop.getUpdateRate();
+    }
+
+    /**
+     * Sets the number of updates per second in LoopMode.FIXED_STEP.
+     *
+     * @param updateRate the number of updates per second, must be positive
+     */
+    public void setUpdateRate(double updateRate) {
+        gameLoop.setUpdateRate(updateRate);
+    }
+
+    public double getRenderRate() {
+        return gameLoop.getRenderRate();
+    }
+
+    /**
+     * Sets the maximum number of frames per second in LoopMode.FIXED_STEP.
+     *
+     * @param renderRate the number of frames per second, 0 or less to render as often as possible
+     */
+    public void setRenderRate(double renderRate) {
+        gameLoop.setRenderRate(renderRate);
+    }
+
+    public int getMaxUpdatesPerFrame() {
+        return gameLoop.getMaxUpdatesPerFrame();
+    }
+
+    /**
+     * Sets how many updates may run back to back in LoopMode.FIXED_STEP before a frame is rendered
+     * when the loop is catching up.
+     *
+     * @param maxUpdatesPerFrame the maximum number of updates per frame
+     */
+    public void setMaxUpdatesPerFrame(int maxUpdatesPerFrame) {
+        gameLoop.setMaxUpdatesPerFrame(maxUpdatesPerFrame);
+    }
+
+    /**
+     * Returns the length of the current update step in seconds: the fixed step in LoopMode.FIXED_STEP,
+     * or the timer delay in LoopMode.SWING_TIMER.
+     *
+     * @return the length of the update step in seconds
+     */
+    public double getDeltaTime() {
+        return deltaTime;
+    }
+
+    /**
+     * Returns the interpolation alpha passed to the last render call, for use while painting.
+     *
+     * @return the alpha, between 0 and 1
+     */
+    public double getInterpolationAlpha() {
+        return interpolationAlpha;
+    }
+}
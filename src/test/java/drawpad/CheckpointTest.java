@@ -0,0 +1,141 @@
+package drawpad;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CheckpointTest {
+    private final Circle circle = new Circle(Color.RED, 5, 10, 20);
+    private final drawpad.Rectangle rectangle = new drawpad.Rectangle(Color.BLUE, 30, 40, 50, 60, 0.5);
+    private final Triangle triangle = new Triangle(Color.GREEN, 12, 70, 80);
+    private final List<AbstractShape> shapes = List.of(circle, rectangle, triangle);
+    private final PhysicsWorld world = new PhysicsWorld();
+
+    CheckpointTest() {
+        world.setGravity(0, 0);
+        world.add(circle, new PhysicsBody());
+        world.add(rectangle, new PhysicsBody());
+        world.setVelocity(0, 3, 4);
+    }
+
+    @Test
+    void fullCheckpointRoundTripsThroughItsBytes() {
+        Checkpoint saved = new Checkpoint();
+        saved.capture(shapes, world);
+        Checkpoint loaded = new Checkpoint();
+        loaded.load(copy(saved.getBuffer()));
+        assertFalse(loaded.isDelta());
+        assertEquals(3, loaded.getShapeCount());
+        assertEquals(2, loaded.getBodyCount());
+
+        change();
+        loaded.restore(shapes, world);
+        assertOriginal();
+    }
+
+    @Test
+    void deltaStoresOnlyWhatChanged() {
+        Checkpoint base = new Checkpoint();
+        base.capture(shapes, world);
+        triangle.setColor(Color.BLACK);
+        world.setVelocity(1, -2, 0);
+
+        Checkpoint delta = new Checkpoint();
+        delta.captureDelta(base, shapes, world);
+        assertTrue(delta.isDelta());
+        assertEquals(2, delta.getRecordCount());
+        assertTrue(delta.getSize() < base.getSize());
+
+        Checkpoint loaded = new Checkpoint();
+        loaded.load(copy(delta.getBuffer()), base);
+        circle.setPosition(0, 0);
+        triangle.setColor(Color.WHITE);
+        world.setVelocity(1, 0, 0);
+        loaded.restore(shapes, world);
+        assertEquals(10, circle.getPos_x());
+        assertEquals(20, circle.getPos_y());
+        assertEquals(Color.BLACK.getRGB(), triangle.getColor().getRGB());
+        assertEquals(-2, world.getVelocityX(1));
+    }
+
+    @Test
+    void loadRejectsMalformedBytes() {
+        Checkpoint saved = new Checkpoint();
+        saved.capture(shapes, world);
+        ByteBuffer bytes = copy(saved.getBuffer());
+        Checkpoint loaded = new Checkpoint();
+        assertThrows(IllegalArgumentException.class, () -> loaded.load(bytes.duplicate().limit(20)));
+        assertThrows(IllegalArgumentException.class, () -> loaded.load(bytes.duplicate().limit(bytes.limit() - 1)));
+        ByteBuffer badKind = copy(bytes);
+        badKind.putInt(0, 7);
+        assertThrows(IllegalArgumentException.class, () -> loaded.load(badKind));
+        assertEquals(0, loaded.getShapeCount()); // A rejected load leaves an empty checkpoint
+    }
+
+    @Test
+    void deltaNeedsTheBaseItWasCapturedAgainst() {
+        Checkpoint base = new Checkpoint();
+        base.capture(shapes, world);
+        circle.setPosition(1, 2);
+        Checkpoint delta = new Checkpoint();
+        delta.captureDelta(base, shapes, world);
+        ByteBuffer bytes = copy(delta.getBuffer());
+
+        Checkpoint loaded = new Checkpoint();
+        assertThrows(IllegalArgumentException.class, () -> loaded.load(bytes));
+        Checkpoint other = new Checkpoint();
+        other.capture(shapes, world);
+        assertThrows(IllegalArgumentException.class, () -> loaded.load(bytes, other));
+        assertThrows(IllegalArgumentException.class, () -> delta.captureDelta(delta, shapes, world));
+
+        base.capture(shapes, world);
+        assertThrows(IllegalStateException.class, () -> delta.restore(shapes, world));
+    }
+
+    @Test
+    void restoreRejectsADifferentScene() {
+        Checkpoint saved = new Checkpoint();
+        saved.capture(shapes, world);
+        assertThrows(IllegalArgumentException.class, () -> saved.restore(List.of(circle, rectangle), world));
+        assertThrows(IllegalArgumentException.class, () -> saved.restore(shapes, null));
+        assertThrows(IllegalArgumentException.class,
+                () -> saved.restore(List.of(circle, triangle, rectangle), world));
+    }
+
+    private void change() {
+        circle.setPosition(100, 100);
+        circle.setRadius(9);
+        rectangle.setRotation(0);
+        rectangle.setWidth(1);
+        triangle.setColor(Color.BLACK);
+        triangle.setZOrder(4);
+        world.setVelocity(0, 0, 0);
+        world.getBody(1).setMass(3);
+    }
+
+    private void assertOriginal() {
+        assertEquals(10, circle.getPos_x());
+        assertEquals(20, circle.getPos_y());
+        assertEquals(5, circle.getRadius());
+        assertEquals(0.5, rectangle.getRotation());
+        assertEquals(30, rectangle.getWidth());
+        assertEquals(Color.GREEN.getRGB(), triangle.getColor().getRGB());
+        assertEquals(0, triangle.getZOrder());
+        assertEquals(3, world.getVelocityX(0));
+        assertEquals(4, world.getVelocityY(0));
+        assertEquals(10, world.getBody(1).getMass());
+    }
+
+    private static ByteBuffer copy(ByteBuffer source) {
+        ByteBuffer copy = ByteBuffer.allocate(source.remaining());
+        copy.put(source.duplicate()).flip();
+        return copy;
+    }
+}
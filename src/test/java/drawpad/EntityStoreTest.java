@@ -0,0 +1,30 @@
+package drawpad;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EntityStoreTest {
+    private static final int SLOT_MASK = (1 << 24) - 1;
+
+    @Test
+    void invalidMaskDoesNotTakeASlot() {
+        EntityStore store = new EntityStore();
+        int components = ComponentType.TRANSFORM.mask() | ComponentType.COLOR.mask();
+        int first = store.createEntity(components);
+        store.destroyEntity(first);
+
+        assertThrows(IllegalArgumentException.class, () -> store.createEntity(-1));
+        assertThrows(IllegalArgumentException.class, () -> store.createEntity(1 << 30));
+        int reused = store.createEntity(components);
+        assertEquals(first & SLOT_MASK, reused & SLOT_MASK); // The freed slot is still free
+        assertTrue(store.isAlive(reused));
+
+        assertThrows(IllegalArgumentException.class, () -> store.createEntity(-1));
+        int next = store.createEntity(components);
+        assertEquals(1, next & SLOT_MASK); // A new slot was not used up by the failed call
+        assertEquals(2, store.size());
+    }
+}
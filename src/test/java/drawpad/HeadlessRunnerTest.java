@@ -0,0 +1,33 @@
+package drawpad;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HeadlessRunnerTest {
+    @Test
+    void framesLargerThanTheWindowShowEveryShape() throws Exception {
+        for (boolean tiled : new boolean[]{false, true}) {
+            Window window = new Window();
+            window.addShape(new Circle(Color.RED, 10, 110, 1000)); // Below the window's default height of 800
+            window.addShape(new Circle(Color.BLUE, 10, 900, 100)); // Right of the window's default width of 800
+            HeadlessRunner runner = new HeadlessRunner(window);
+            runner.setFrameSize(1000, 1200);
+            if (tiled) {
+                runner.setTileRenderer(new TileRenderer(128));
+            }
+            runner.run(1);
+
+            BufferedImage frame = runner.getImage();
+            assertEquals(1000, frame.getWidth());
+            assertEquals(1200, frame.getHeight());
+            assertEquals(Color.RED.getRGB(), frame.getRGB(120, 1010), "tiled=" + tiled);
+            assertEquals(Color.BLUE.getRGB(), frame.getRGB(910, 110), "tiled=" + tiled);
+            assertEquals(window.getBackground().getRGB(), frame.getRGB(500, 600), "tiled=" + tiled);
+            assertEquals(1, runner.getFrameCount());
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package drawpad;
+
+import org.junit.jupiter.api.Test;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InputManagerTest {
+    private static final int KEY = KeyEvent.VK_A;
+
+    @Test
+    void nothingIsDownUntilPolled() {
+        InputManager input = new InputManager();
+        input.postKey(KEY, true);
+        input.postMouseButton(MouseEvent.BUTTON1, true, 5, 6);
+        assertFalse(input.isKeyDown(KEY));
+        assertFalse(input.isMouseButtonDown(MouseEvent.BUTTON1));
+        assertEquals(0, input.getMouseX());
+
+        assertEquals(2, input.poll());
+        assertTrue(input.isKeyDown(KEY));
+        assertTrue(input.isKeyPressed(KEY));
+        assertTrue(input.isMouseButtonDown(MouseEvent.BUTTON1));
+        assertEquals(5, input.getMouseX());
+        assertEquals(6, input.getMouseY());
+    }
+
+    @Test
+    void edgesLastOnePoll() {
+        InputManager input = new InputManager();
+        input.postKey(KEY, true);
+        input.poll();
+        input.postKey(KEY, true); // Key repeat
+        input.poll();
+        assertTrue(input.isKeyDown(KEY));
+        assertFalse(input.isKeyPressed(KEY));
+
+        input.postKey(KEY, false);
+        input.poll();
+        assertFalse(input.isKeyDown(KEY));
+        assertTrue(input.isKeyReleased(KEY));
+        input.poll();
+        assertFalse(input.isKeyReleased(KEY));
+    }
+
+    @Test
+    void tapBetweenTwoPollsIsReleasedInTheNextPoll() {
+        InputManager input = new InputManager();
+        input.postKey(KEY, true);
+        input.postKey(KEY, false);
+        input.postMouseButton(MouseEvent.BUTTON3, true, 0, 0);
+        input.postMouseButton(MouseEvent.BUTTON3, false, 0, 0);
+
+        input.poll();
+        assertTrue(input.isKeyDown(KEY));
+        assertTrue(input.isKeyPressed(KEY));
+        assertFalse(input.isKeyReleased(KEY));
+        assertTrue(input.isMouseButtonDown(MouseEvent.BUTTON3));
+        assertTrue(input.isMouseButtonPressed(MouseEvent.BUTTON3));
+
+        input.poll();
+        assertFalse(input.isKeyDown(KEY));
+        assertFalse(input.isKeyPressed(KEY));
+        assertTrue(input.isKeyReleased(KEY));
+        assertFalse(input.isMouseButtonDown(MouseEvent.BUTTON3));
+        assertTrue(input.isMouseButtonReleased(MouseEvent.BUTTON3));
+    }
+
+    @Test
+    void pressedAgainBeforeTheHeldReleaseStaysDown() {
+        InputManager input = new InputManager();
+        input.postKey(KEY, true);
+        input.postKey(KEY, false);
+        input.postKey(KEY, true);
+        input.poll();
+        input.poll();
+        assertTrue(input.isKeyDown(KEY));
+        assertFalse(input.isKeyReleased(KEY));
+    }
+
+    @Test
+    void droppedEventsReleaseEverything() {
+        InputManager input = new InputManager();
+        input.postKey(KEY, true);
+        input.postMouseButton(MouseEvent.BUTTON1, true, 0, 0);
+        input.poll();
+
+        for (int i = 0; i < InputManager.EVENT_CAPACITY; i++) {
+            input.postMouseWheel(1);
+        }
+        input.postKey(KEY, false); // Dropped
+        input.postMouseMove(40, 50); // Not queued, so never dropped
+        assertEquals(1, input.getDroppedEvents());
+
+        assertEquals(InputManager.EVENT_CAPACITY, input.poll());
+        assertFalse(input.isKeyDown(KEY));
+        assertTrue(input.isKeyReleased(KEY));
+        assertFalse(input.isMouseButtonDown(MouseEvent.BUTTON1));
+        assertEquals(InputManager.EVENT_CAPACITY, input.getWheelRotation());
+        assertEquals(40, input.getMouseX());
+        assertEquals(50, input.getMouseY());
+
+        input.postKey(KEY, true);
+        input.poll();
+        assertTrue(input.isKeyDown(KEY)); // Only the poll after a drop releases everything
+    }
+
+    @Test
+    void releaseAll() {
+        InputManager input = new InputManager();
+        input.postKey(KEY, true);
+        input.poll();
+        input.postReleaseAll();
+        input.poll();
+        assertFalse(input.isKeyDown(KEY));
+        assertTrue(input.isKeyReleased(KEY));
+    }
+
+    @Test
+    void mouseSourceCoordinatesAreRelativeToTheComponent() {
+        JPanel panel = new JPanel(null);
+        Canvas canvas = new Canvas();
+        canvas.setBounds(10, 20, 100, 100);
+        panel.add(canvas);
+        InputManager input = new InputManager();
+        input.setupKeyBindings(panel);
+        input.addMouseSource(canvas);
+        try {
+            canvas.dispatchEvent(new MouseEvent(canvas, MouseEvent.MOUSE_PRESSED, 0, 0, 3, 4, 1, false,
+                    MouseEvent.BUTTON1));
+            input.poll();
+            assertTrue(input.isMouseButtonDown(MouseEvent.BUTTON1));
+            assertEquals(13, input.getMouseX());
+            assertEquals(24, input.getMouseY());
+        } finally {
+            input.removeKeyBindings();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package drawpad;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PhysicsBodyTest {
+    private static final double EPSILON = 1e-9;
+
+    @Test
+    void applyGravityChangesTheVelocityInTheWorld() {
+        PhysicsWorld world = new PhysicsWorld();
+        world.setGravity(0, 0);
+        PhysicsBody body = new PhysicsBody();
+        world.add(new Circle(Color.RED, 5, 0, 0), body);
+        body.setVelocity(new Vector2D(3, 0));
+        world.setVelocity(body.index, 4, 1); // Changed through the world only, so the body's own copy is stale
+
+        Vector2D gravity = new Vector2D(0, 6);
+        double dv = gravity.y * body.getMass() * (1 / 60f);
+        Vector2D position = body.applyGravity(new Vector2D(10, 20), gravity);
+        assertEquals(4, body.getVelocity().x, EPSILON);
+        assertEquals(1 + dv, body.getVelocity().y, EPSILON);
+        assertEquals(14, position.x, EPSILON);
+        assertEquals(21 + dv, position.y, EPSILON);
+
+        body.applyGravity(position, gravity, position);
+        assertEquals(1 + 2 * dv, world.getVelocityY(body.index), EPSILON);
+    }
+
+    @Test
+    void applyGravityWithoutAWorld() {
+        PhysicsBody body = new PhysicsBody();
+        Vector2D gravity = new Vector2D(0, 6);
+        Vector2D position = body.applyGravity(new Vector2D(0, 0), gravity);
+        double dv = gravity.y * body.getMass() * (1 / 60f);
+        assertEquals(dv, body.getVelocity().y, EPSILON);
+        assertEquals(dv, position.y, EPSILON);
+    }
+}
@@ -0,0 +1,121 @@
+package drawpad;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PhysicsWorldTest {
+    private static final double FLOOR_Y = 900;
+
+    @Test
+    void tallColumnRestsOnAThinFloor() {
+        for (boolean sleeping : new boolean[]{false, true}) {
+            PhysicsWorld world = new PhysicsWorld();
+            world.setSleepingEnabled(sleeping);
+            world.setGravity(0, 500);
+            world.setSolverIterations(8);
+            PhysicsBody floor = new PhysicsBody();
+            floor.setMass(0);
+            world.add(new drawpad.Rectangle(Color.GRAY, 400, 20, 0, FLOOR_Y), floor);
+            Circle[] column = new Circle[40];
+            for (int i = 0; i < column.length; i++) {
+                column[i] = new Circle(Color.RED, 5, 195, FLOOR_Y - 10 * (i + 1));
+                world.add(column[i], new PhysicsBody());
+            }
+
+            for (int step = 0; step < 30 * 60; step++) {
+                world.step(1 / 60.0);
+            }
+            for (int i = 0; i < column.length; i++) {
+                double bottom = column[i].getPos_y() + 10;
+                assertTrue(bottom < FLOOR_Y + 2, "sleeping=" + sleeping + " circle " + i + " at " + bottom);
+                if (i > 0) {
+                    // Each circle rests on the one below it, the ones low in the column pressed in a little more
+                    double gap = column[i - 1].getPos_y() - column[i].getPos_y();
+                    assertTrue(gap > 7, "sleeping=" + sleeping + " circles " + (i - 1) + " and " + i + " " + gap);
+                }
+            }
+        }
+    }
+
+    @Test
+    void resultDoesNotDependOnTheNumberOfThreads() {
+        for (int coloringThreshold : new int[]{Integer.MAX_VALUE, 8}) {
+            double[] serial = simulatePiles(1, coloringThreshold);
+            double[] parallel = simulatePiles(4, coloringThreshold);
+            for (int i = 0; i < serial.length; i++) {
+                assertEquals(serial[i], parallel[i], 0, "coloringThreshold=" + coloringThreshold + " value " + i);
+            }
+        }
+    }
+
+    /**
+     * Drops shapes into three bins, so there are several islands to solve at the same time, and returns where they
+     * end up and how fast they move.
+     */
+    private static double[] simulatePiles(int threads, int coloringThreshold) {
+        PhysicsWorld world = new PhysicsWorld();
+        world.setGravity(0, 400);
+        world.setParallelThreshold(1);
+        world.setContactParallelThreshold(1);
+        world.setColoringThreshold(coloringThreshold);
+        Random random = new Random(7);
+        List<AbstractShape> shapes = new ArrayList<>();
+        List<PhysicsBody> bodies = new ArrayList<>();
+        for (int bin = 0; bin < 3; bin++) {
+            double left = bin * 200;
+            for (AbstractShape wall : new AbstractShape[]{new drawpad.Rectangle(Color.GRAY, 180, 20, left, 480),
+                    new drawpad.Rectangle(Color.GRAY, 10, 500, left, 0),
+                    new drawpad.Rectangle(Color.GRAY, 10, 500, left + 170, 0)}) {
+                PhysicsBody body = new PhysicsBody();
+                body.setMass(0);
+                world.add(wall, body);
+            }
+            for (int i = 0; i < 60; i++) {
+                double x = left + 15 + random.nextDouble() * 140;
+                double y = 470 - (i / 12) * 12 - random.nextDouble() * 4;
+                AbstractShape shape = switch (i % 3) {
+                    case 0 -> new Circle(Color.RED, 5, x, y);
+                    case 1 -> new drawpad.Rectangle(Color.RED, 10, 8, x, y, random.nextDouble());
+                    default -> new Triangle(Color.RED, 11, x, y, random.nextDouble());
+                };
+                PhysicsBody body = new PhysicsBody();
+                body.setMass(1 + random.nextDouble());
+                body.setFriction(0.3);
+                body.setRestitution(0.2);
+                world.add(shape, body);
+                shapes.add(shape);
+                bodies.add(body);
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        int islands = 0;
+        try {
+            world.setPool(pool);
+            for (int step = 0; step < 300; step++) {
+                world.step(1 / 60.0);
+                islands = Math.max(islands, world.getIslandCount());
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertTrue(islands > 1, "islands=" + islands);
+        double[] state = new double[4 * shapes.size()];
+        for (int i = 0; i < shapes.size(); i++) {
+            PhysicsBody body = bodies.get(i);
+            state[4 * i] = shapes.get(i).getPos_x();
+            state[4 * i + 1] = shapes.get(i).getPos_y();
+            state[4 * i + 2] = world.getVelocityX(body.index);
+            state[4 * i + 3] = world.getVelocityY(body.index);
+        }
+        return state;
+    }
+}
@@ -0,0 +1,73 @@
+package drawpad;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RenderLayerTest {
+    private static final int SIZE = 100;
+
+    @Test
+    void changesFromOtherThreadsAreQueuedForTheOwner() throws Exception {
+        AbstractWindow window = new AbstractWindow() {
+        };
+        RenderLayer layer = window.createLayer("background", -1);
+        Circle circle = new Circle(Color.RED, 5, 10, 10);
+        ExecutorService owner = Executors.newSingleThreadExecutor();
+        try {
+            owner.submit(window::applyPendingChanges).get();
+            layer.addShape(circle);
+            assertEquals(0, owner.submit(() -> layer.getShapes().size()).get());
+            owner.submit(window::applyPendingChanges).get();
+            assertEquals(1, owner.submit(() -> layer.getShapes().size()).get());
+
+            layer.removeShape(circle);
+            owner.submit(window::applyPendingChanges).get();
+            assertEquals(0, owner.submit(() -> layer.getShapes().size()).get());
+        } finally {
+            owner.shutdown();
+        }
+    }
+
+    @Test
+    void snapshotRenderingDrawsTheCopiedLayers() {
+        for (boolean staticLayer : new boolean[]{false, true}) {
+            AbstractWindow window = new AbstractWindow() {
+            };
+            window.setSize(SIZE, SIZE);
+            RenderLayer layer = window.createLayer("overlay", 1);
+            layer.setStatic(staticLayer);
+            Circle circle = new Circle(Color.RED, 5, 10, 10);
+            layer.addShape(circle);
+            window.setSnapshotRendering(true);
+            window.publishSnapshot();
+
+            circle.setPosition(70, 70); // Not published yet, so painting still shows the old position
+            BufferedImage frame = paint(window);
+            assertEquals(Color.RED.getRGB(), frame.getRGB(15, 15), "static=" + staticLayer);
+            assertTrue(frame.getRGB(75, 75) != Color.RED.getRGB(), "static=" + staticLayer);
+
+            window.publishSnapshot();
+            frame = paint(window);
+            assertTrue(frame.getRGB(15, 15) != Color.RED.getRGB(), "static=" + staticLayer);
+            assertEquals(Color.RED.getRGB(), frame.getRGB(75, 75), "static=" + staticLayer);
+        }
+    }
+
+    private static BufferedImage paint(AbstractWindow window) {
+        BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            window.paintShapes(g);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+}
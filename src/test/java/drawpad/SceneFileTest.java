@@ -0,0 +1,140 @@
+package drawpad;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SceneFileTest {
+    private static final int CHUNK_SIZE = 16;
+
+    @TempDir
+    File directory;
+
+    @Test
+    void writtenShapesAreReadBack() throws IOException {
+        List<AbstractShape> shapes = scene(200);
+        File file = new File(directory, "scene.dps");
+        SceneFile.write(file, shapes, CHUNK_SIZE);
+        SceneFile scene = SceneFile.open(file);
+        assertEquals(shapes.size(), scene.size());
+        for (int i = 0; i < shapes.size(); i++) {
+            assertEquals(describe(shapes.get(i)), describe(scene.getShape(i)), "shape " + i);
+        }
+        List<AbstractShape> range = scene.readShapes(30, 70, new ArrayList<>());
+        assertEquals(describe(shapes.subList(30, 70)), describe(range));
+        assertThrows(IndexOutOfBoundsException.class, () -> scene.getShape(shapes.size()));
+        assertThrows(IndexOutOfBoundsException.class, () -> scene.readShapes(10, 5, new ArrayList<>()));
+    }
+
+    @Test
+    void regionReadsMatchABruteForceSearch() throws IOException {
+        List<AbstractShape> shapes = scene(500);
+        File file = new File(directory, "scene.dps");
+        SceneFile.write(file, shapes, CHUNK_SIZE);
+        SceneFile scene = SceneFile.open(file);
+        Random random = new Random(7);
+        for (int query = 0; query < 50; query++) {
+            double x = random.nextDouble() * 1000 - 100;
+            double y = random.nextDouble() * 1000 - 100;
+            double width = random.nextDouble() * 300;
+            double height = random.nextDouble() * 300;
+            List<AbstractShape> expected = new ArrayList<>();
+            for (AbstractShape shape : shapes) {
+                if (shape.getBounds().intersects(x, y, width, height)) {
+                    expected.add(shape);
+                }
+            }
+            List<AbstractShape> found = scene.readShapesIn(x, y, width, height, new ArrayList<>());
+            assertEquals(describe(expected), describe(found), "region " + x + ", " + y + ", " + width + ", " + height);
+        }
+    }
+
+    @Test
+    void boundsCoverEveryShape() throws IOException {
+        List<AbstractShape> shapes = scene(100);
+        File file = new File(directory, "scene.dps");
+        SceneFile.write(file, shapes, CHUNK_SIZE);
+        Rectangle2D expected = shapes.get(0).getBounds();
+        for (AbstractShape shape : shapes) {
+            expected = expected.createUnion(shape.getBounds());
+        }
+        assertEquals(expected, SceneFile.open(file).getBounds());
+
+        File empty = new File(directory, "empty.dps");
+        SceneFile.write(empty, List.of());
+        assertEquals(0, SceneFile.open(empty).size());
+        assertNull(SceneFile.open(empty).getBounds());
+    }
+
+    @Test
+    void openRejectsOtherFiles() throws IOException {
+        File file = new File(directory, "scene.dps");
+        SceneFile.write(file, scene(40), CHUNK_SIZE);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+
+        File truncated = new File(directory, "truncated.dps");
+        Files.write(truncated.toPath(), Arrays.copyOf(bytes, bytes.length - 1));
+        assertThrows(IOException.class, () -> SceneFile.open(truncated));
+        File other = new File(directory, "other.dps");
+        byte[] garbage = bytes.clone();
+        garbage[0] ^= 1;
+        Files.write(other.toPath(), garbage);
+        assertThrows(IOException.class, () -> SceneFile.open(other));
+        File tiny = new File(directory, "tiny.dps");
+        Files.write(tiny.toPath(), new byte[8]);
+        assertThrows(IOException.class, () -> SceneFile.open(tiny));
+
+        assertThrows(IllegalArgumentException.class, () -> SceneFile.write(file, scene(4), 0));
+    }
+
+    /**
+     * Creates a scene of every kind of shape, in rows from top to bottom, so consecutive chunks cover nearby areas.
+     */
+    private static List<AbstractShape> scene(int count) {
+        Random random = new Random(42);
+        Color[] colors = {Color.RED, Color.GREEN, new Color(10, 20, 30, 40)};
+        List<AbstractShape> shapes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            double x = (i % 20) * 40 + random.nextDouble() * 10;
+            double y = (i / 20) * 40 + random.nextDouble() * 10;
+            Color color = colors[random.nextInt(colors.length)];
+            AbstractShape shape = switch (i % 3) {
+                case 0 -> new Circle(color, 3 + random.nextInt(20), x, y);
+                case 1 -> new drawpad.Rectangle(color, 5 + random.nextInt(30), 5 + random.nextInt(30), x, y,
+                        random.nextDouble() * Math.PI);
+                default -> new Triangle(color, 5 + random.nextInt(30), x, y, random.nextDouble());
+            };
+            if (i % 7 == 0) {
+                shape.setZOrder(i);
+            }
+            shapes.add(shape);
+        }
+        return shapes;
+    }
+
+    private static String describe(AbstractShape shape) {
+        return shape.getClass().getSimpleName() + " " + shape.getColor().getRGB() + " " + shape.getZOrder() + " "
+                + shape.getPos_x() + " " + shape.getPos_y() + " " + shape.getRotation() + " " + shape.getBounds();
+    }
+
+    private static List<String> describe(List<AbstractShape> shapes) {
+        List<String> descriptions = new ArrayList<>();
+        for (AbstractShape shape : shapes) {
+            descriptions.add(describe(shape));
+        }
+        return descriptions;
+    }
+}
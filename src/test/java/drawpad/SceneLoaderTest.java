@@ -0,0 +1,59 @@
+package drawpad;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SceneLoaderTest {
+    private static final int COUNT = 2000;
+
+    @TempDir
+    File directory;
+
+    @Test
+    void restartedLoaderAddsEveryShapeOnce() throws Exception {
+        List<AbstractShape> shapes = new ArrayList<>();
+        for (int i = 0; i < COUNT; i++) {
+            shapes.add(new Circle(Color.RED, 2, i % 100 * 5, i / 100 * 5));
+        }
+        File file = new File(directory, "scene.dps");
+        SceneFile.write(file, shapes);
+        AbstractWindow window = new AbstractWindow() {
+        };
+        SceneLoader loader = new SceneLoader(SceneFile.open(file), window);
+        loader.setBatchSize(7);
+
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        int restarts = 0;
+        while (!loader.isDone() && System.nanoTime() < deadline) {
+            loader.start("loader " + restarts++);
+            Thread.yield();
+            if (restarts % 2 == 0) {
+                loader.stop();
+            }
+        }
+        loader.stop();
+        for (int i = 0; i < 3; i++) {
+            loader.start("finished loader " + i); // Ends on its own straight away, then is started again
+        }
+        loader.stop();
+        SwingUtilities.invokeAndWait(() -> {
+        });
+
+        assertTrue(loader.isDone());
+        assertEquals(COUNT, loader.getLoadedCount());
+        List<Shape> below = new ArrayList<>();
+        List<Shape> own = new ArrayList<>();
+        List<Shape> above = new ArrayList<>();
+        SwingUtilities.invokeAndWait(() -> window.collectShapes(below, own, above));
+        assertEquals(COUNT, own.size());
+    }
+}
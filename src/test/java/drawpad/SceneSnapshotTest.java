@@ -0,0 +1,57 @@
+package drawpad;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SceneSnapshotTest {
+    @Test
+    void snapshotPaintsRecordCulledShapes() {
+        for (boolean batched : new boolean[]{false, true}) {
+            AbstractWindow window = new AbstractWindow() {
+            };
+            window.setSize(100, 100);
+            window.addShape(new Circle(Color.RED, 5, 10, 10));
+            window.addShape(new drawpad.Rectangle(Color.BLUE, 10, 10, 50, 50));
+            window.addShape(new Circle(Color.RED, 5, 500, 500));
+            window.addShape(new Triangle(Color.GREEN, 10, -300, 40));
+            window.setBatchedRendering(batched);
+            window.setSnapshotRendering(true);
+            window.publishSnapshot();
+            FrameMetrics metrics = new FrameMetrics();
+            window.setFrameMetrics(metrics);
+
+            BufferedImage image = new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = image.createGraphics();
+            try {
+                g.setClip(0, 0, 100, 100);
+                window.paintShapes(g);
+            } finally {
+                g.dispose();
+            }
+            assertEquals(2, metrics.getShapesDrawnMax(), "batched=" + batched);
+            assertEquals(2, metrics.getShapesCulledMax(), "batched=" + batched);
+        }
+    }
+
+    @Test
+    void queueDrawsReturnTheNumberDrawn() {
+        RenderQueue queue = new RenderQueue();
+        queue.addOval(0, Color.RED, 0, 0, 10, 10);
+        new drawpad.Rectangle(Color.RED, 10, 10, 20, 0).submit(queue);
+        new drawpad.Rectangle(Color.RED, 10, 10, 40, 0).submit(queue);
+        new drawpad.Rectangle(Color.RED, 10, 10, 400, 0).submit(queue);
+        BufferedImage image = new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setClip(0, 0, 100, 100);
+            assertEquals(3, queue.drawInOrder(g));
+            assertEquals(3, queue.draw(g)); // The two rectangles are merged into one fill but count as two
+        } finally {
+            g.dispose();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package drawpad;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpriteCacheTest {
+    private static final int SIZE = 120;
+
+    @Test
+    void scaledSpritesMatchTheShapesDrawnDirectly() {
+        SpriteCache cache = new SpriteCache();
+        AbstractShape[] shapes = {
+                new drawpad.Rectangle(Color.BLUE, 12, 7, 3, 4),
+                new drawpad.Rectangle(Color.RED, 10, 10, 30.4, 20.6)
+        };
+        for (double scale : new double[]{1, 2, 3}) {
+            for (AbstractShape shape : shapes) {
+                BufferedImage direct = paint(scale, g -> shape.draw(g));
+                BufferedImage cached = paint(scale, g -> assertTrue(cache.draw(g, shape)));
+                assertSamePixels(direct, cached, "scale=" + scale + " " + shape);
+            }
+        }
+        assertEquals(6, cache.size()); // One sprite per shape and scale
+    }
+
+    @Test
+    void rotatedTransformsAreNotCached() {
+        SpriteCache cache = new SpriteCache();
+        Circle circle = new Circle(Color.RED, 5, 10, 10);
+        BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.rotate(0.3);
+            assertFalse(cache.draw(g, circle));
+            g.setTransform(AffineTransform.getScaleInstance(-1, 1));
+            assertFalse(cache.draw(g, circle));
+        } finally {
+            g.dispose();
+        }
+        assertEquals(0, cache.size());
+    }
+
+    private interface Painter {
+        void paint(Graphics2D g);
+    }
+
+    private static BufferedImage paint(double scale, Painter painter) {
+        BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.scale(scale, scale);
+            painter.paint(g);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    private static void assertSamePixels(BufferedImage expected, BufferedImage actual, String message) {
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y), message + " at " + x + ", " + y);
+            }
+        }
+    }
+}
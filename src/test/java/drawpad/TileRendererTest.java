@@ -0,0 +1,92 @@
+package drawpad;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TileRendererTest {
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 150;
+
+    @Test
+    void tilesMatchPaintingInOnePass() {
+        for (boolean batched : new boolean[]{false, true}) {
+            AbstractWindow window = scene(batched);
+            BufferedImage expected = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = expected.createGraphics();
+            try {
+                g.setColor(window.getBackground());
+                g.fillRect(0, 0, WIDTH, HEIGHT);
+                g.setClip(0, 0, WIDTH, HEIGHT);
+                window.paintShapes(g);
+            } finally {
+                g.dispose();
+            }
+
+            ForkJoinPool pool = new ForkJoinPool(4);
+            try {
+                for (int tileSize : new int[]{16, 37, 256}) {
+                    TileRenderer renderer = new TileRenderer(tileSize);
+                    renderer.setPool(pool);
+                    BufferedImage tiled = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+                    renderer.render(window, tiled);
+                    for (int y = 0; y < HEIGHT; y++) {
+                        for (int x = 0; x < WIDTH; x++) {
+                            assertEquals(expected.getRGB(x, y), tiled.getRGB(x, y),
+                                    "batched=" + batched + " tileSize=" + tileSize + " at " + x + ", " + y);
+                        }
+                    }
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    @Test
+    void tileSizeMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new TileRenderer(0));
+        assertThrows(IllegalArgumentException.class, () -> new TileRenderer().setPool(null));
+    }
+
+    /**
+     * Creates a window of circles, rectangles and triangles, rotated and not, at fractional positions, many of them
+     * across tile borders, with a layer below and above the window's own shapes. Some shapes share a color and
+     * z-order, so batched rendering merges them into one path fill.
+     */
+    private static AbstractWindow scene(boolean batched) {
+        AbstractWindow window = new AbstractWindow() {
+        };
+        window.setSize(WIDTH, HEIGHT);
+        window.setBatchedRendering(batched);
+        Random random = new Random(3);
+        Color[] colors = {Color.RED, Color.BLUE, new Color(0, 160, 0, 128)};
+        for (int i = 0; i < 150; i++) {
+            double x = random.nextDouble() * (WIDTH + 20) - 10;
+            double y = random.nextDouble() * (HEIGHT + 20) - 10;
+            Color color = colors[i % colors.length];
+            double rotation = i % 2 == 0 ? 0 : random.nextDouble() * 2 * Math.PI;
+            AbstractShape shape = switch (i % 5) {
+                case 0 -> new Circle(color, 2 + random.nextDouble() * 15, x, y);
+                case 1, 2 -> new drawpad.Rectangle(color, 3 + random.nextDouble() * 30, 3 + random.nextDouble() * 20,
+                        x, y, rotation);
+                default -> new Triangle(color, 4 + random.nextInt(25), x, y, rotation);
+            };
+            if (i % 7 == 0) {
+                shape.setZOrder(1);
+            }
+            window.addShape(shape);
+        }
+        window.createLayer("background", -1).addShape(new Triangle(Color.GRAY, 120, 30.5, 20.5, 0.3));
+        RenderLayer overlay = window.createLayer("overlay", 1);
+        overlay.addShape(new Circle(Color.ORANGE, 25, 90.3, 60.7));
+        overlay.addShape(new drawpad.Rectangle(Color.PINK, 70, 30, 60.2, 80.6, 2.5));
+        return window;
+    }
+}
@@ -0,0 +1,40 @@
+package drawpad;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class Vector2DTest {
+    private static final double EPSILON = 1e-12;
+
+    @Test
+    void inPlaceOperationsMatchAllocatingOnes() {
+        Vector2D a = new Vector2D(3, -4);
+        Vector2D b = new Vector2D(0.5, 2);
+
+        Vector2D sum = a.add(b);
+        Vector2D dst = new Vector2D(0, 0);
+        assertSame(dst, a.addInto(b, dst));
+        assertEquals(sum.x, dst.x, EPSILON);
+        assertEquals(sum.y, dst.y, EPSILON);
+
+        Vector2D normalized = a.normalize();
+        Vector2D copy = new Vector2D(3, -4);
+        assertSame(copy, copy.normalizeInPlace());
+        assertEquals(normalized.x, copy.x, EPSILON);
+        assertEquals(normalized.y, copy.y, EPSILON);
+        assertEquals(1, copy.magnitude(), EPSILON);
+    }
+
+    @Test
+    void intoMethodsMayWriteIntoTheirReceiver() {
+        Vector2D v = new Vector2D(1, 2);
+        v.scaleInto(3, v);
+        assertEquals(3, v.x, EPSILON);
+        assertEquals(6, v.y, EPSILON);
+        v.subtractInto(new Vector2D(1, 1), v);
+        assertEquals(2, v.x, EPSILON);
+        assertEquals(5, v.y, EPSILON);
+    }
+}